@@ -18,7 +18,6 @@ package me.infuzion.chess.ai;
 
 import me.infuzion.chess.data.PubSubChannel;
 import me.infuzion.chess.data.PubSubMessage;
-import me.infuzion.chess.game.board.ChessMove;
 import me.infuzion.chess.game.piece.Color;
 import me.infuzion.chess.game.util.RandomStringGenerator;
 import me.infuzion.chess.web.dao.impl.UserDatabase;
@@ -30,13 +29,33 @@ import me.infuzion.web.server.EventListener;
 import me.infuzion.web.server.event.reflect.EventHandler;
 import me.infuzion.web.server.event.reflect.param.mapper.impl.BodyParam;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class AiService implements EventListener {
+    private static final int MOVE_THREADS = 2;
+
     private final GameService gameService;
-    private final UciEngine engine;
+    private final EnginePool engines;
+    /**
+     * Plays the moves found by the engines, so that neither an engine worker nor the pub/sub dispatch thread waits for
+     * the move to be written and published
+     */
+    private final ExecutorService moveExecutor;
 
-    public AiService(GameService gameService, UserDatabase userDatabase, UciEngine engine) {
+    public AiService(GameService gameService, UserDatabase userDatabase, EnginePool engines) {
         this.gameService = gameService;
-        this.engine = engine;
+        this.engines = engines;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.moveExecutor = Executors.newFixedThreadPool(MOVE_THREADS, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("AiService - move " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
         userDatabase.createUser(StockfishEngine.STOCKFISH_ID, "Stockfish 14",
                 new RandomStringGenerator(32).nextString(), "A strong open source chess engine", UserRole.BOT);
     }
@@ -46,10 +65,25 @@ public class AiService implements EventListener {
     private void onGameMove(PubSubMessage event, @BodyParam ChessGameMoveMessage message) {
         Game game = gameService.getGame(message.getGameId());
 
+        if (!game.getStatus().isInProgress()) {
+            // the move ended the game
+            return;
+        }
+
         if ((message.getMoveColor() == Color.WHITE && game.getPlayerBlack().equals(StockfishEngine.STOCKFISH_ID)) ||
                 (message.getMoveColor() == Color.BLACK && game.getPlayerWhite().equals(StockfishEngine.STOCKFISH_ID))) {
-            ChessMove move = engine.getBestMove(game);
-            gameService.addMove(game.getId(), StockfishEngine.STOCKFISH_ID, move);
+            // search on the engine pool so that the pub/sub dispatch thread is not blocked; a cached answer completes
+            // immediately, so the move is played on a separate executor rather than on the calling thread
+            engines.getBestMove(game)
+                    .thenAcceptAsync(move -> {
+                        if (move != null) {
+                            gameService.addMove(game.getId(), StockfishEngine.STOCKFISH_ID, move);
+                        }
+                    }, moveExecutor)
+                    .exceptionally(e -> {
+                        System.err.println("Failed to find a move for game " + game.getId() + ": " + e);
+                        return null;
+                    });
         }
     }
 }
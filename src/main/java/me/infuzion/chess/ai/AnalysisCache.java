@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.ChessMove;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the best moves found by engines, keyed by the Zobrist hash of the position and the profile it was searched
+ * with, and evicts the least recently used entries once it is full. Zobrist keys are stable across runs, so the cache
+ * can be saved to disk and loaded again on the next start.
+ * <p>
+ * Only searches at full skill are cached: at lower skill levels engines deliberately pick a random weaker move, and
+ * always answering with the same move would make them predictable.
+ */
+public class AnalysisCache {
+    private static final int FILE_VERSION = 1;
+
+    private final Map<Key, ChessMove> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public AnalysisCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ChessMove> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static boolean isCacheable(@NotNull SearchProfile profile) {
+        return profile.getSkillLevel() == SearchProfile.MAX_SKILL_LEVEL;
+    }
+
+    /**
+     * @return The cached move for the given position, or null if there is none
+     */
+    public @Nullable ChessMove get(long positionHash, @NotNull SearchProfile profile) {
+        if (!isCacheable(profile)) {
+            return null;
+        }
+
+        ChessMove move;
+        synchronized (this) {
+            move = entries.get(new Key(positionHash, profile));
+        }
+
+        if (move == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return move;
+    }
+
+    public void put(long positionHash, @NotNull SearchProfile profile, @NotNull ChessMove move) {
+        if (!isCacheable(profile)) {
+            return;
+        }
+
+        Key key = new Key(positionHash, profile);
+        synchronized (this) {
+            entries.put(key, move);
+        }
+    }
+
+    /**
+     * Removes an entry that turned out to be unusable, for example a move that is not legal in the position because of
+     * a hash collision. The lookup that returned it is counted as a miss instead of a hit.
+     */
+    public void invalidate(long positionHash, @NotNull SearchProfile profile) {
+        if (!isCacheable(profile)) {
+            return;
+        }
+
+        Key key = new Key(positionHash, profile);
+        synchronized (this) {
+            entries.remove(key);
+        }
+
+        hits.decrement();
+        misses.increment();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The fraction of lookups that found a move, or 0 if there was no lookup
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Writes every entry to the given file, from the least to the most recently used. The file is replaced atomically,
+     * so a crash while saving leaves the previous file intact.
+     */
+    public void save(@NotNull Path path) throws IOException {
+        List<Map.Entry<Key, ChessMove>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries.entrySet());
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(snapshot.size());
+
+            for (Map.Entry<Key, ChessMove> entry : snapshot) {
+                out.writeLong(entry.getKey().positionHash);
+                out.writeUTF(entry.getKey().profile.toString());
+                out.writeInt(entry.getValue().toPacked());
+            }
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the entries of a file written by {@link #save(Path)}. Nothing is loaded if the file does not exist.
+     *
+     * @throws IOException if the file could not be read or is not a saved cache
+     */
+    public void load(@NotNull Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FILE_VERSION) {
+                throw new IOException("unsupported analysis cache file: " + path);
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long positionHash = in.readLong();
+                SearchProfile profile;
+                try {
+                    profile = SearchProfile.parse(in.readUTF());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("corrupt analysis cache file: " + path, e);
+                }
+
+                put(positionHash, profile, ChessMove.unpack(in.readInt()));
+            }
+        }
+    }
+
+    private static final class Key {
+        private final long positionHash;
+        private final SearchProfile profile;
+
+        private Key(long positionHash, SearchProfile profile) {
+            this.positionHash = positionHash;
+            this.profile = profile;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return positionHash == other.positionHash && profile.equals(other.profile);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(positionHash, profile);
+        }
+    }
+}
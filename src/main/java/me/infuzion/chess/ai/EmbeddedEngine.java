@@ -0,0 +1,200 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.ChessBoard;
+import me.infuzion.chess.game.board.ChessMove;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * An engine that runs in this process on top of the game's own board and move generator, so it needs no external
+ * binary. It understands the subset of UCI that {@link UciEngine} uses; a {@code go} command searches on the calling
+ * thread and queues its answer before returning.
+ * <p>
+ * It is much weaker than Stockfish, which makes it suited to low strength opponents and to tests.
+ */
+public class EmbeddedEngine extends UciEngine {
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private final Queue<String> responses = new ArrayDeque<>();
+    private final Search search = new Search(SearchProfile.DEFAULT.getHashMegabytes());
+
+    private ChessBoard board = ChessBoard.fromFen(START_FEN);
+    private int skillLevel = SearchProfile.MAX_SKILL_LEVEL;
+    private volatile boolean alive = true;
+
+    public EmbeddedEngine() {
+        sendUciCommand("uci");
+        readUntil("uciok");
+    }
+
+    @Override
+    protected void sendUciCommand(String command) {
+        if (!alive) {
+            throw new EngineException("engine has been stopped");
+        }
+
+        String[] tokens = command.trim().split("\\s+");
+
+        switch (tokens[0]) {
+            case "uci":
+                responses.add("id name Embedded");
+                responses.add("option name Hash type spin default " + SearchProfile.DEFAULT.getHashMegabytes() + " min 1 max 1024");
+                responses.add("option name Skill Level type spin default " + SearchProfile.MAX_SKILL_LEVEL + " min 0 max "
+                        + SearchProfile.MAX_SKILL_LEVEL);
+                responses.add("uciok");
+                break;
+            case "isready":
+                responses.add("readyok");
+                break;
+            case "ucinewgame":
+                search.clear();
+                break;
+            case "setoption":
+                setOption(tokens);
+                break;
+            case "position":
+                board = parsePosition(tokens);
+                break;
+            case "go":
+                go(tokens);
+                break;
+            default:
+                // other commands, such as stop, have nothing to do because searches run synchronously
+                break;
+        }
+    }
+
+    @Override
+    protected String readUciResponse(long timeoutNanos) {
+        // every command has been answered by the time it returns
+        return responses.poll();
+    }
+
+    @Override
+    protected void disconnect() {
+        alive = false;
+    }
+
+    @Override
+    public boolean isAlive() {
+        return alive;
+    }
+
+    /**
+     * Handles {@code setoption name <name> value <value>}; option names may contain spaces.
+     */
+    private void setOption(String[] tokens) {
+        int value = Arrays.asList(tokens).indexOf("value");
+        if (tokens.length < 3 || value == -1 || value == tokens.length - 1) {
+            return;
+        }
+
+        String name = String.join(" ", Arrays.asList(tokens).subList(2, value));
+        try {
+            int number = Integer.parseInt(tokens[value + 1]);
+
+            if (name.equals("Hash")) {
+                search.resize(Math.max(1, number));
+            } else if (name.equals("Skill Level")) {
+                skillLevel = Math.max(0, Math.min(number, SearchProfile.MAX_SKILL_LEVEL));
+            }
+        } catch (NumberFormatException ignored) {
+            // unknown or malformed options are ignored, as the protocol requires
+        }
+    }
+
+    /**
+     * Handles {@code position (startpos | fen <fen>) [moves <move>...]}.
+     */
+    private ChessBoard parsePosition(String[] tokens) {
+        List<String> arguments = Arrays.asList(tokens);
+        int movesIndex = arguments.indexOf("moves");
+        int end = movesIndex == -1 ? tokens.length : movesIndex;
+
+        String fen;
+        if (tokens.length > 1 && tokens[1].equals("startpos")) {
+            fen = START_FEN;
+        } else if (tokens.length > 2 && tokens[1].equals("fen")) {
+            fen = String.join(" ", arguments.subList(2, end));
+        } else {
+            throw new EngineException("invalid position command: " + String.join(" ", tokens));
+        }
+
+        List<ChessMove> moves = new ArrayList<>();
+        if (movesIndex != -1) {
+            for (String move : arguments.subList(movesIndex + 1, tokens.length)) {
+                moves.add(fromUciMove(move));
+            }
+        }
+
+        try {
+            return ChessBoard.fromInitialFen(fen, moves);
+        } catch (RuntimeException e) {
+            throw new EngineException("invalid position command: " + String.join(" ", tokens), e);
+        }
+    }
+
+    /**
+     * Handles {@code go} with the {@code movetime}, {@code depth} and {@code nodes} limits. Other limits are ignored.
+     */
+    private void go(String[] tokens) {
+        int depth = 0;
+        long nodes = 0;
+        long moveTime = 0;
+
+        for (int i = 1; i + 1 < tokens.length; i++) {
+            switch (tokens[i]) {
+                case "depth":
+                    depth = Integer.parseInt(tokens[++i]);
+                    break;
+                case "nodes":
+                    nodes = Long.parseLong(tokens[++i]);
+                    break;
+                case "movetime":
+                    moveTime = Long.parseLong(tokens[++i]);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        int best = search.search(board, depth, nodes, moveTime, skillLevel, (iterationDepth, score, searched, move) ->
+                responses.add("info depth " + iterationDepth + " score " + formatScore(score) + " nodes " + searched
+                        + " pv " + toUciMove(ChessMove.unpack(move))));
+
+        responses.add(best == 0 ? "bestmove 0000" : "bestmove " + toUciMove(ChessMove.unpack(best)));
+    }
+
+    /**
+     * @return The score as UCI reports it: in centipawns, or as the number of moves to mate
+     */
+    private static String formatScore(int score) {
+        if (Math.abs(score) < Search.MATE - Search.MAX_PLY) {
+            return "cp " + score;
+        }
+
+        int plies = Search.MATE - Math.abs(score);
+        int moves = (plies + 1) / 2;
+        return "mate " + (score > 0 ? moves : -moves);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.web.domain.Game;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed set of engines that search positions concurrently. Requests are served in the order they were made by one
+ * worker thread per engine, so a worker always finds an idle engine and callers never block.
+ * <p>
+ * The pool supervises its engines: an engine that has exited or that failed with an {@link EngineException} is
+ * replaced with a new one from the factory before it is used again.
+ */
+public class EnginePool implements AutoCloseable {
+    private final BlockingQueue<UciEngine> idle;
+    private final ExecutorService executor;
+    private final EngineFactory factory;
+    private final Duration defaultDeadline;
+    private final AnalysisCache analysisCache;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param size            The number of engines to start
+     * @param factory         Creates the engines of this pool
+     * @param defaultDeadline How long a request may take, including the time spent waiting for an engine, before it
+     *                        fails with a {@link TimeoutException}
+     */
+    public EnginePool(int size, @NotNull EngineFactory factory, @NotNull Duration defaultDeadline) throws IOException {
+        this(size, factory, defaultDeadline, null);
+    }
+
+    /**
+     * @param analysisCache Consulted before searching a position, or null to always search
+     * @see #EnginePool(int, EngineFactory, Duration)
+     */
+    public EnginePool(int size, @NotNull EngineFactory factory, @NotNull Duration defaultDeadline,
+                      @Nullable AnalysisCache analysisCache) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.factory = factory;
+        this.analysisCache = analysisCache;
+        this.defaultDeadline = defaultDeadline;
+
+        for (int i = 0; i < size; i++) {
+            idle.add(factory.create());
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // the executor's queue is unbounded and FIFO, which serves requests fairly in arrival order
+        this.executor = Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName("EnginePool - worker " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<ChessMove> getBestMove(@NotNull Game state) {
+        return getBestMove(state, defaultDeadline);
+    }
+
+    /**
+     * Searches the current position of the given game on the next available engine, using the game's AI profile. If
+     * the position is in the analysis cache, the future is already complete.
+     *
+     * @param deadline How long the request may take, including the time spent waiting for an engine
+     * @return A future that completes with the best move, with null if the position has no legal move, or exceptionally
+     * with a {@link TimeoutException} if the deadline passes first
+     */
+    public CompletableFuture<ChessMove> getBestMove(@NotNull Game state, @NotNull Duration deadline) {
+        long positionHash = state.getBoard().getHash();
+        SearchProfile profile = state.getAiProfile();
+
+        if (analysisCache != null) {
+            ChessMove cached = analysisCache.get(positionHash, profile);
+            // a different position with the same hash can have a move that is not legal here
+            if (cached != null && state.getBoard().isLegal(cached)) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            if (cached != null) {
+                analysisCache.invalidate(positionHash, profile);
+            }
+        }
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        CompletableFuture<ChessMove> future = new CompletableFuture<>();
+
+        executor.execute(() -> {
+            if (future.isDone()) {
+                // timed out while queued
+                return;
+            }
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                future.completeExceptionally(new TimeoutException("no engine became available before the deadline"));
+                return;
+            }
+
+            UciEngine engine = takeEngine(state);
+            ChessMove move = null;
+            Throwable failure = null;
+            try {
+                if (!engine.isAlive()) {
+                    engine = restart(engine);
+                }
+
+                long start = System.nanoTime();
+                move = engine.getBestMove(state, profile);
+                long latency = System.nanoTime() - start;
+
+                if (analysisCache != null && move != null) {
+                    analysisCache.put(positionHash, profile, move);
+                }
+
+                searches.increment();
+                totalLatencyNanos.add(latency);
+                maxLatencyNanos.accumulate(latency);
+            } catch (EngineException e) {
+                failures.increment();
+                failure = e;
+                // the engine may still be busy with the failed command, so it cannot be reused
+                engine = restart(engine);
+            } catch (RuntimeException e) {
+                failures.increment();
+                failure = e;
+            } finally {
+                idle.add(engine);
+            }
+
+            // completed only after the engine is idle again, so dependent actions that run on this thread do not hold
+            // it while the next request waits
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(move);
+            }
+        });
+
+        return future.orTimeout(deadline.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Takes the idle engine that last searched the given game, so that it can reuse its hash table, or any idle engine
+     * if there is no such engine.
+     */
+    private UciEngine takeEngine(Game state) {
+        for (UciEngine engine : idle) {
+            // another worker may have taken the engine since it was seen
+            if (state.getId().equals(engine.getLastGame()) && idle.remove(engine)) {
+                return engine;
+            }
+        }
+
+        // there is one worker per engine, so an idle engine is always available here
+        return idle.poll();
+    }
+
+    /**
+     * Stops the given engine and creates a new one to take its place.
+     *
+     * @return The new engine, or the stopped engine if a new one could not be created; it will be restarted again the
+     * next time it is needed
+     */
+    private UciEngine restart(UciEngine engine) {
+        engine.disconnect();
+
+        try {
+            UciEngine replacement = factory.create();
+            restarts.increment();
+            System.err.println("Restarted engine (" + getStats() + ")");
+            return replacement;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to restart engine: " + e);
+            return engine;
+        }
+    }
+
+    public EngineStats getStats() {
+        long cacheHits = analysisCache == null ? 0 : analysisCache.getHits();
+        long cacheMisses = analysisCache == null ? 0 : analysisCache.getMisses();
+
+        return new EngineStats(searches.sum(), failures.sum(), restarts.sum(), totalLatencyNanos.sum(), maxLatencyNanos.get(),
+                cacheHits, cacheMisses);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+
+        UciEngine engine;
+        while ((engine = idle.poll()) != null) {
+            engine.disconnect();
+        }
+    }
+
+    @FunctionalInterface
+    public interface EngineFactory {
+        UciEngine create() throws IOException;
+    }
+}
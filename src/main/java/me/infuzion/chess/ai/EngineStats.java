@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+/**
+ * A snapshot of the health of an {@link EnginePool}.
+ */
+public class EngineStats {
+    private final long searches;
+    private final long failures;
+    private final long restarts;
+    private final long totalLatencyNanos;
+    private final long maxLatencyNanos;
+    private final long cacheHits;
+    private final long cacheMisses;
+
+    public EngineStats(long searches, long failures, long restarts, long totalLatencyNanos, long maxLatencyNanos,
+                       long cacheHits, long cacheMisses) {
+        this.searches = searches;
+        this.failures = failures;
+        this.restarts = restarts;
+        this.totalLatencyNanos = totalLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+    }
+
+    /**
+     * @return The number of searches that completed successfully
+     */
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * @return The number of searches that failed
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return The number of engines that were replaced after they crashed or stopped responding
+     */
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * @return The mean time taken by a successful search in milliseconds, or 0 if there was none
+     */
+    public double getMeanLatencyMillis() {
+        return searches == 0 ? 0 : totalLatencyNanos / (searches * 1e6);
+    }
+
+    /**
+     * @return The longest time taken by a successful search in milliseconds
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos / 1e6;
+    }
+
+    /**
+     * @return The number of requests answered from the analysis cache
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return The number of cacheable requests that had to be searched, including those whose cached move was not legal
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("searches=%d failures=%d restarts=%d meanLatency=%.1fms maxLatency=%.1fms cacheHits=%d cacheMisses=%d",
+                searches, failures, restarts, getMeanLatencyMillis(), getMaxLatencyMillis(), cacheHits, cacheMisses);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.BoardData;
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.piece.PieceType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A static evaluation made of material and piece-square tables, in centipawns.
+ */
+final class Evaluation {
+    /**
+     * Indexed by {@link PieceType#ordinal()}.
+     */
+    static final int[] PIECE_VALUES = new int[PieceType.values().length];
+
+    /**
+     * Piece-square bonuses from white's point of view, indexed by {@link PieceType#ordinal()} and written with the
+     * eighth rank first so that they read like a board.
+     */
+    private static final int[][] SQUARE_TABLES = new int[PieceType.values().length][];
+
+    static {
+        PIECE_VALUES[PieceType.PAWN.ordinal()] = 100;
+        PIECE_VALUES[PieceType.KNIGHT.ordinal()] = 320;
+        PIECE_VALUES[PieceType.BISHOP.ordinal()] = 330;
+        PIECE_VALUES[PieceType.ROOK.ordinal()] = 500;
+        PIECE_VALUES[PieceType.QUEEN.ordinal()] = 900;
+        PIECE_VALUES[PieceType.KING.ordinal()] = 0;
+
+        SQUARE_TABLES[PieceType.PAWN.ordinal()] = new int[]{
+                0, 0, 0, 0, 0, 0, 0, 0,
+                50, 50, 50, 50, 50, 50, 50, 50,
+                10, 10, 20, 30, 30, 20, 10, 10,
+                5, 5, 10, 25, 25, 10, 5, 5,
+                0, 0, 0, 20, 20, 0, 0, 0,
+                5, -5, -10, 0, 0, -10, -5, 5,
+                5, 10, 10, -20, -20, 10, 10, 5,
+                0, 0, 0, 0, 0, 0, 0, 0};
+        SQUARE_TABLES[PieceType.KNIGHT.ordinal()] = new int[]{
+                -50, -40, -30, -30, -30, -30, -40, -50,
+                -40, -20, 0, 0, 0, 0, -20, -40,
+                -30, 0, 10, 15, 15, 10, 0, -30,
+                -30, 5, 15, 20, 20, 15, 5, -30,
+                -30, 0, 15, 20, 20, 15, 0, -30,
+                -30, 5, 10, 15, 15, 10, 5, -30,
+                -40, -20, 0, 5, 5, 0, -20, -40,
+                -50, -40, -30, -30, -30, -30, -40, -50};
+        SQUARE_TABLES[PieceType.BISHOP.ordinal()] = new int[]{
+                -20, -10, -10, -10, -10, -10, -10, -20,
+                -10, 0, 0, 0, 0, 0, 0, -10,
+                -10, 0, 5, 10, 10, 5, 0, -10,
+                -10, 5, 5, 10, 10, 5, 5, -10,
+                -10, 0, 10, 10, 10, 10, 0, -10,
+                -10, 10, 10, 10, 10, 10, 10, -10,
+                -10, 5, 0, 0, 0, 0, 5, -10,
+                -20, -10, -10, -10, -10, -10, -10, -20};
+        SQUARE_TABLES[PieceType.ROOK.ordinal()] = new int[]{
+                0, 0, 0, 0, 0, 0, 0, 0,
+                5, 10, 10, 10, 10, 10, 10, 5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                0, 0, 0, 5, 5, 0, 0, 0};
+        SQUARE_TABLES[PieceType.QUEEN.ordinal()] = new int[]{
+                -20, -10, -10, -5, -5, -10, -10, -20,
+                -10, 0, 0, 0, 0, 0, 0, -10,
+                -10, 0, 5, 5, 5, 5, 0, -10,
+                -5, 0, 5, 5, 5, 5, 0, -5,
+                0, 0, 5, 5, 5, 5, 0, -5,
+                -10, 5, 5, 5, 5, 5, 0, -10,
+                -10, 0, 5, 0, 0, 0, 0, -10,
+                -20, -10, -10, -5, -5, -10, -10, -20};
+        SQUARE_TABLES[PieceType.KING.ordinal()] = new int[]{
+                -30, -40, -40, -50, -50, -40, -40, -30,
+                -30, -40, -40, -50, -50, -40, -40, -30,
+                -30, -40, -40, -50, -50, -40, -40, -30,
+                -30, -40, -40, -50, -50, -40, -40, -30,
+                -20, -30, -30, -40, -40, -30, -30, -20,
+                -10, -20, -20, -20, -20, -20, -20, -10,
+                20, 20, 0, 0, 0, 0, 20, 20,
+                20, 30, 10, 0, 0, 10, 30, 20};
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * @return The evaluation of the position from the point of view of the given side
+     */
+    static int evaluate(@NotNull BoardData data, @NotNull Color side) {
+        int score = 0;
+
+        for (PieceType type : PieceType.values()) {
+            score += evaluate(data.getBitboard(Color.WHITE, type), type, true);
+            score -= evaluate(data.getBitboard(Color.BLACK, type), type, false);
+        }
+
+        return side == Color.WHITE ? score : -score;
+    }
+
+    private static int evaluate(long pieces, PieceType type, boolean white) {
+        int[] table = SQUARE_TABLES[type.ordinal()];
+        int score = Long.bitCount(pieces) * PIECE_VALUES[type.ordinal()];
+
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+
+            // the tables start at a8, while square 0 is a1
+            score += table[white ? square ^ 56 : square];
+        }
+
+        return score;
+    }
+}
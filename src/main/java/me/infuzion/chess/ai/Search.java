@@ -0,0 +1,377 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.ChessBoard;
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.board.MoveGenerator;
+import me.infuzion.chess.game.piece.ChessPiece;
+import me.infuzion.chess.game.piece.PieceType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A negamax alpha-beta search with iterative deepening, a transposition table and a quiescence search over captures.
+ * Moves are tried in the order: the move stored in the transposition table, captures by most valuable victim and least
+ * valuable attacker, killer moves and finally quiet moves by their history score.
+ * <p>
+ * A search is not thread safe; each engine owns one.
+ */
+final class Search {
+    static final int MAX_PLY = 64;
+    static final int MATE = 30000;
+
+    private static final int INFINITY = 32000;
+    private static final int NO_MOVE = 0;
+
+    /**
+     * Limits are checked once every this many nodes, which must be one less than a power of two.
+     */
+    private static final int CHECK_INTERVAL = 1023;
+
+    private static final int TT_MOVE_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 29;
+    private static final int KILLER_SCORE = 1 << 28;
+
+    private final int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] orderScores = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[64][64];
+    private final Random random = new Random();
+
+    private TranspositionTable table;
+
+    private ChessBoard board;
+    private long nodes;
+    private long nodeLimit;
+    private long deadlineNanos;
+    private boolean aborted;
+    private int rootBestMove;
+    private int noise;
+
+    Search(int hashMegabytes) {
+        this.table = new TranspositionTable(hashMegabytes);
+    }
+
+    void resize(int hashMegabytes) {
+        table = new TranspositionTable(hashMegabytes);
+    }
+
+    void clear() {
+        table.clear();
+    }
+
+    /**
+     * Searches the given position until one of the limits is reached. The board is restored before this returns.
+     *
+     * @param maxDepth       The deepest iteration to complete, or 0 for no limit
+     * @param nodeLimit      The most nodes to search, or 0 for no limit
+     * @param moveTimeMillis The longest time to search for, or 0 for no limit
+     * @param skillLevel     From 0 to {@link SearchProfile#MAX_SKILL_LEVEL}; lower levels search shallower and add noise
+     *                       to the evaluation
+     * @return The best move in the packed encoding of {@link ChessMove}, or 0 if the side to move has no legal move
+     */
+    int search(@NotNull ChessBoard board, int maxDepth, long nodeLimit, long moveTimeMillis, int skillLevel,
+               @NotNull InfoListener info) {
+        this.board = board;
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit == 0 ? Long.MAX_VALUE : nodeLimit;
+        this.deadlineNanos = moveTimeMillis == 0 ? Long.MAX_VALUE : System.nanoTime() + moveTimeMillis * 1_000_000;
+        this.aborted = false;
+        this.noise = (SearchProfile.MAX_SKILL_LEVEL - skillLevel) * 10;
+
+        int depthLimit = maxDepth == 0 ? MAX_PLY : Math.min(maxDepth, MAX_PLY);
+        if (skillLevel < SearchProfile.MAX_SKILL_LEVEL) {
+            depthLimit = Math.min(depthLimit, 1 + skillLevel / 4);
+        }
+
+        for (int[] killer : killers) {
+            killer[0] = killer[1] = NO_MOVE;
+        }
+        for (int[] counts : history) {
+            Arrays.fill(counts, 0);
+        }
+
+        int rootCount = MoveGenerator.generateLegalMoves(board, moves[0]);
+        if (rootCount == 0) {
+            return NO_MOVE;
+        }
+
+        int bestMove = moves[0][0];
+        for (int depth = 1; depth <= depthLimit; depth++) {
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+
+            if (aborted) {
+                break;
+            }
+
+            bestMove = rootBestMove;
+            info.onIteration(depth, score, nodes, bestMove);
+
+            if (Math.abs(score) >= MATE - MAX_PLY) {
+                // a forced mate was found; searching deeper cannot change the result
+                break;
+            }
+        }
+
+        return bestMove;
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+
+    private boolean shouldStop() {
+        nodes++;
+        if (nodes >= nodeLimit || ((nodes & CHECK_INTERVAL) == 0 && System.nanoTime() - deadlineNanos >= 0)) {
+            aborted = true;
+        }
+        return aborted;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (shouldStop()) {
+            return 0;
+        }
+
+        if (ply > 0 && (board.getHalfMoveClock() >= 100 || board.isThreefoldRepetition())) {
+            return 0;
+        }
+
+        boolean inCheck = MoveGenerator.isInCheck(board.getData(), board.getCurrentTurn());
+        if (inCheck && ply < MAX_PLY) {
+            depth++;
+        }
+
+        if (depth <= 0 || ply >= MAX_PLY) {
+            return quiesce(ply, alpha, beta);
+        }
+
+        long hash = board.getHash();
+        long entry = table.probe(hash);
+        int ttMove = NO_MOVE;
+
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int[] plyMoves = moves[ply];
+        int count = MoveGenerator.generateLegalMoves(board, plyMoves);
+
+        if (count == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+
+        scoreMoves(ply, count, ttMove);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = NO_MOVE;
+
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(ply, i, count);
+
+            board.makeMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            board.unmakeMove();
+
+            if (aborted) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (ply == 0) {
+                    rootBestMove = move;
+                }
+            }
+
+            if (score > alpha) {
+                alpha = score;
+            }
+
+            if (alpha >= beta) {
+                if (!ChessMove.isCapture(move)) {
+                    if (killers[ply][0] != move) {
+                        killers[ply][1] = killers[ply][0];
+                        killers[ply][0] = move;
+                    }
+                    history[ChessMove.getSource(move)][ChessMove.getEnd(move)] += depth * depth;
+                }
+                break;
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER_BOUND
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        table.store(hash, bestMove, toTable(bestScore, ply), depth, bound);
+
+        return bestScore;
+    }
+
+    /**
+     * Searches captures and promotions only, until the position is quiet, so that the evaluation is not taken in the
+     * middle of an exchange.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        if (shouldStop()) {
+            return 0;
+        }
+
+        int standPat = Evaluation.evaluate(board.getData(), board.getCurrentTurn());
+        if (noise > 0) {
+            standPat += random.nextInt(2 * noise + 1) - noise;
+        }
+
+        if (standPat >= beta || ply >= MAX_PLY) {
+            return standPat;
+        }
+        if (standPat > alpha) {
+            alpha = standPat;
+        }
+
+        int[] plyMoves = moves[ply];
+        int total = MoveGenerator.generateLegalMoves(board, plyMoves);
+        int count = 0;
+
+        for (int i = 0; i < total; i++) {
+            int move = plyMoves[i];
+            if (ChessMove.isCapture(move) || ChessMove.getPromotion(move) != null) {
+                plyMoves[count++] = move;
+            }
+        }
+
+        scoreMoves(ply, count, NO_MOVE);
+
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(ply, i, count);
+
+            board.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            board.unmakeMove();
+
+            if (aborted) {
+                return 0;
+            }
+
+            if (score >= beta) {
+                return score;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+        }
+
+        return alpha;
+    }
+
+    private void scoreMoves(int ply, int count, int ttMove) {
+        int[] plyMoves = moves[ply];
+        int[] scores = orderScores[ply];
+
+        for (int i = 0; i < count; i++) {
+            int move = plyMoves[i];
+
+            if (move == ttMove) {
+                scores[i] = TT_MOVE_SCORE;
+            } else if (ChessMove.isCapture(move)) {
+                ChessPiece victim = board.getData().getPiece(ChessMove.getEnd(move));
+                ChessPiece attacker = board.getData().getPiece(ChessMove.getSource(move));
+                // en passant is the only capture without a piece on the target square
+                int victimValue = Evaluation.PIECE_VALUES[victim == null ? PieceType.PAWN.ordinal() : victim.getType().ordinal()];
+
+                scores[i] = CAPTURE_SCORE + victimValue * 16 - Evaluation.PIECE_VALUES[attacker.getType().ordinal()] / 16;
+            } else if (move == killers[ply][0] || move == killers[ply][1]) {
+                scores[i] = KILLER_SCORE;
+            } else {
+                scores[i] = history[ChessMove.getSource(move)][ChessMove.getEnd(move)];
+            }
+        }
+    }
+
+    /**
+     * Moves the best scored of the remaining moves into position {@code index} and returns it. Selecting lazily is
+     * cheaper than sorting because most nodes are cut off after the first few moves.
+     */
+    private int nextMove(int ply, int index, int count) {
+        int[] plyMoves = moves[ply];
+        int[] scores = orderScores[ply];
+
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+
+        int move = plyMoves[best];
+        plyMoves[best] = plyMoves[index];
+        plyMoves[index] = move;
+
+        int score = scores[best];
+        scores[best] = scores[index];
+        scores[index] = score;
+
+        return move;
+    }
+
+    /**
+     * Mate scores are stored relative to the position rather than the root, so that they stay correct when the
+     * position is reached at a different ply.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    @FunctionalInterface
+    interface InfoListener {
+        /**
+         * Called after every completed iteration.
+         */
+        void onIteration(int depth, int score, long nodes, int bestMove);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * How strongly and for how long an engine searches for the moves of a game. A search stops as soon as any of its
+ * limits is reached, so a node limit caps the work done for a move regardless of how fast the engine runs. Limits that
+ * are 0 are not applied.
+ */
+public class SearchProfile {
+    public static final int MIN_LEVEL = 1;
+    public static final int MAX_LEVEL = 8;
+    public static final int MAX_SKILL_LEVEL = 20;
+
+    /**
+     * A full strength search of 5 milliseconds.
+     */
+    public static final SearchProfile DEFAULT = new SearchProfile(5, 0, 0, MAX_SKILL_LEVEL, 1, 16);
+
+    private static final int[] LEVEL_SKILL = {0, 3, 6, 9, 12, 15, 18, MAX_SKILL_LEVEL};
+    private static final int[] LEVEL_NODES = {1_000, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000};
+    private static final int LEVEL_MOVE_TIME_MILLIS = 1000;
+
+    private final int moveTimeMillis;
+    private final int depth;
+    private final int nodes;
+    private final int skillLevel;
+    private final int threads;
+    private final int hashMegabytes;
+
+    /**
+     * @param moveTimeMillis The longest time to search for, or 0
+     * @param depth          The deepest ply to search to, or 0
+     * @param nodes          The most positions to search, or 0
+     * @param skillLevel     The UCI {@code Skill Level} option, from 0 to 20
+     * @param threads        The UCI {@code Threads} option
+     * @param hashMegabytes  The UCI {@code Hash} option
+     */
+    public SearchProfile(int moveTimeMillis, int depth, int nodes, int skillLevel, int threads, int hashMegabytes) {
+        if (moveTimeMillis < 0 || depth < 0 || nodes < 0) {
+            throw new IllegalArgumentException("limits must not be negative");
+        }
+        if (moveTimeMillis == 0 && depth == 0 && nodes == 0) {
+            throw new IllegalArgumentException("at least one limit is required");
+        }
+        if (skillLevel < 0 || skillLevel > MAX_SKILL_LEVEL) {
+            throw new IllegalArgumentException("skill level must be between 0 and " + MAX_SKILL_LEVEL);
+        }
+        if (threads <= 0 || hashMegabytes <= 0) {
+            throw new IllegalArgumentException("threads and hash must be positive");
+        }
+
+        this.moveTimeMillis = moveTimeMillis;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.skillLevel = skillLevel;
+        this.threads = threads;
+        this.hashMegabytes = hashMegabytes;
+    }
+
+    /**
+     * @param level A playing strength from {@link #MIN_LEVEL} to {@link #MAX_LEVEL}
+     * @return A single threaded profile whose skill level and node budget grow with the level
+     */
+    public static SearchProfile forLevel(int level) {
+        if (level < MIN_LEVEL || level > MAX_LEVEL) {
+            throw new IllegalArgumentException("level must be between " + MIN_LEVEL + " and " + MAX_LEVEL);
+        }
+
+        return new SearchProfile(LEVEL_MOVE_TIME_MILLIS, 0, LEVEL_NODES[level - 1], LEVEL_SKILL[level - 1], 1, 16);
+    }
+
+    /**
+     * Parses a profile written as comma separated {@code key=value} pairs with the keys {@code movetime}, {@code depth},
+     * {@code nodes}, {@code skill}, {@code threads} and {@code hash}. Keys that are left out take their value from
+     * {@link #DEFAULT}, except for the limits, which are 0 unless given. For example, {@code nodes=20000,skill=5}.
+     *
+     * @throws IllegalArgumentException if the profile is malformed
+     */
+    public static SearchProfile parse(@NotNull String profile) {
+        int moveTime = 0;
+        int depth = 0;
+        int nodes = 0;
+        int skill = DEFAULT.skillLevel;
+        int threads = DEFAULT.threads;
+        int hash = DEFAULT.hashMegabytes;
+
+        for (String pair : profile.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator == -1) {
+                throw new IllegalArgumentException("invalid search profile: " + profile);
+            }
+
+            int value;
+            try {
+                value = Integer.parseInt(pair.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid search profile: " + profile, e);
+            }
+
+            switch (pair.substring(0, separator)) {
+                case "movetime":
+                    moveTime = value;
+                    break;
+                case "depth":
+                    depth = value;
+                    break;
+                case "nodes":
+                    nodes = value;
+                    break;
+                case "skill":
+                    skill = value;
+                    break;
+                case "threads":
+                    threads = value;
+                    break;
+                case "hash":
+                    hash = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("invalid search profile: " + profile);
+            }
+        }
+
+        return new SearchProfile(moveTime, depth, nodes, skill, threads, hash);
+    }
+
+    /**
+     * @return The UCI {@code go} command that searches with the limits of this profile
+     */
+    public String toGoCommand() {
+        StringBuilder command = new StringBuilder("go");
+
+        if (moveTimeMillis != 0) {
+            command.append(" movetime ").append(moveTimeMillis);
+        }
+        if (depth != 0) {
+            command.append(" depth ").append(depth);
+        }
+        if (nodes != 0) {
+            command.append(" nodes ").append(nodes);
+        }
+
+        return command.toString();
+    }
+
+    public int getMoveTimeMillis() {
+        return moveTimeMillis;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public int getSkillLevel() {
+        return skillLevel;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getHashMegabytes() {
+        return hashMegabytes;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SearchProfile)) {
+            return false;
+        }
+        SearchProfile other = (SearchProfile) obj;
+        return moveTimeMillis == other.moveTimeMillis && depth == other.depth && nodes == other.nodes
+                && skillLevel == other.skillLevel && threads == other.threads && hashMegabytes == other.hashMegabytes;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(moveTimeMillis, depth, nodes, skillLevel, threads, hashMegabytes);
+    }
+
+    /**
+     * @return The profile in the format accepted by {@link #parse(String)}
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        if (moveTimeMillis != 0) {
+            builder.append("movetime=").append(moveTimeMillis).append(',');
+        }
+        if (depth != 0) {
+            builder.append("depth=").append(depth).append(',');
+        }
+        if (nodes != 0) {
+            builder.append("nodes=").append(nodes).append(',');
+        }
+
+        return builder.append("skill=").append(skillLevel)
+                .append(",threads=").append(threads)
+                .append(",hash=").append(hashMegabytes)
+                .toString();
+    }
+}
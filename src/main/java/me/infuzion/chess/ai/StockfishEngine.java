@@ -19,27 +19,74 @@ package me.infuzion.chess.ai;
 import me.infuzion.chess.game.util.Identifier;
 
 import java.io.*;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs a UCI engine, normally Stockfish, as a child process. The output of the process is read on a separate thread so
+ * that reads can time out instead of blocking on a process that has hung.
+ */
 public class StockfishEngine extends UciEngine {
     public static final Identifier STOCKFISH_ID = new Identifier("STOCKFISH_nZ98HP");
 
+    /**
+     * Queued by the reader thread once the process has closed its output. Compared by identity.
+     */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    private static final String END_OF_STREAM = new String("<end of stream>");
+
     private final Process process;
-    private final BufferedReader reader;
     private final BufferedWriter writer;
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
 
     public StockfishEngine(String path) throws IOException {
-        process = new ProcessBuilder(path).start();
+        this(List.of(path));
+    }
+
+    /**
+     * @param command The program to run and its arguments
+     */
+    public StockfishEngine(List<String> command) throws IOException {
+        process = new ProcessBuilder(command).start();
 
-        reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
         writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
 
-        sendUciCommand("uci");
-        readUntil("uciok");
+        Thread readerThread = new Thread(() -> {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    responses.add(line);
+                }
+            } catch (IOException ignored) {
+                // the stream is closed when the process is destroyed
+            } finally {
+                responses.add(END_OF_STREAM);
+            }
+        });
+        readerThread.setName("StockfishEngine - reader " + process.pid());
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        try {
+            sendUciCommand("uci");
+            readUntil("uciok");
+        } catch (EngineException e) {
+            disconnect();
+            throw e;
+        }
     }
 
     @Override
     protected void disconnect() {
-        process.destroy();
+        process.destroyForcibly();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return process.isAlive();
     }
 
     @Override
@@ -49,16 +96,27 @@ public class StockfishEngine extends UciEngine {
             writer.write('\n');
             writer.flush();
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new EngineException("failed to send " + command + " to the engine", e);
         }
     }
 
     @Override
-    protected String readUciResponse() {
+    protected String readUciResponse(long timeoutNanos) {
+        String response;
         try {
-            return reader.readLine();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            response = responses.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EngineException("interrupted while waiting for the engine", e);
         }
+
+        //noinspection StringEquality
+        if (response == END_OF_STREAM) {
+            // leave the marker for later reads
+            responses.add(END_OF_STREAM);
+            throw new EngineException("engine exited");
+        }
+
+        return response;
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results indexed by the Zobrist hash of the position. Each slot holds the most
+ * recent result stored for any position that maps to it, packed into a single long next to the full hash.
+ */
+final class TranspositionTable {
+    static final int EXACT = 0;
+    static final int LOWER_BOUND = 1;
+    static final int UPPER_BOUND = 2;
+
+    private static final int BYTES_PER_ENTRY = 2 * Long.BYTES;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    /**
+     * @param megabytes The memory to use; rounded down to a power of two number of entries
+     */
+    TranspositionTable(int megabytes) {
+        long maxEntries = Math.max(1, (long) megabytes * 1024 * 1024 / BYTES_PER_ENTRY);
+        int size = Integer.highestOneBit((int) Math.min(maxEntries, 1 << 30));
+
+        this.keys = new long[size];
+        this.entries = new long[size];
+        this.mask = size - 1;
+    }
+
+    static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    static int depth(long entry) {
+        return (int) ((entry >>> 32) & 0xFF);
+    }
+
+    static int bound(long entry) {
+        return (int) ((entry >>> 40) & 0x3);
+    }
+
+    /**
+     * @return The entry stored for the given position, or 0 if there is none
+     */
+    long probe(long hash) {
+        int index = (int) hash & mask;
+        return keys[index] == hash ? entries[index] : 0;
+    }
+
+    void store(long hash, int move, int score, int depth, int bound) {
+        int index = (int) hash & mask;
+
+        keys[index] = hash;
+        // the valid flag keeps an entry for the null move with a score of 0 from reading as empty
+        entries[index] = (move & 0xFFFFL) | ((score & 0xFFFFL) << 16) | ((long) Math.min(depth, 0xFF) << 32)
+                | ((long) bound << 40) | (1L << 42);
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+    }
+}
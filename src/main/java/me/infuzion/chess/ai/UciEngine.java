@@ -19,22 +19,77 @@ package me.infuzion.chess.ai;
 import me.infuzion.chess.game.board.ChessMove;
 import me.infuzion.chess.game.board.ChessPosition;
 import me.infuzion.chess.game.piece.PieceType;
+import me.infuzion.chess.game.util.Identifier;
 import me.infuzion.chess.web.domain.Game;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A chess engine that is controlled through the Universal Chess Interface. A single engine can only search one position
+ * at a time; concurrent callers are queued in order. Use an {@link EnginePool} to search several positions at once.
+ * <p>
+ * Every command must be answered within the command timeout. An engine that exits or does not answer in time fails
+ * with an {@link EngineException} and should be replaced.
+ */
 public abstract class UciEngine {
-    protected volatile AtomicBoolean inUse = new AtomicBoolean();
+    public static final Duration DEFAULT_COMMAND_TIMEOUT = Duration.ofSeconds(5);
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Map<String, String> options = new HashMap<>();
+    private volatile Duration commandTimeout = DEFAULT_COMMAND_TIMEOUT;
+    private volatile Identifier lastGame;
 
+    /**
+     * @throws EngineException If the command could not be sent to the engine
+     */
     protected abstract void sendUciCommand(String command);
 
-    protected abstract String readUciResponse();
+    /**
+     * @param timeoutNanos How long to wait for a response
+     * @return The next line written by the engine, or null if it did not write one in time
+     * @throws EngineException If the engine has exited
+     */
+    protected abstract String readUciResponse(long timeoutNanos);
 
     protected abstract void disconnect();
 
+    /**
+     * @return False if the engine has exited
+     */
+    public abstract boolean isAlive();
+
+    public Duration getCommandTimeout() {
+        return commandTimeout;
+    }
+
+    public void setCommandTimeout(Duration commandTimeout) {
+        this.commandTimeout = commandTimeout;
+    }
+
+    /**
+     * @return The game of the last search, whose positions may still be in the engine's hash table
+     */
+    @Nullable Identifier getLastGame() {
+        return lastGame;
+    }
+
     protected String readUntil(String key) {
+        return readUntil(key, commandTimeout);
+    }
+
+    protected String readUntil(String key, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+
         while (true) {
-            String response = readUciResponse();
+            String response = readUciResponse(Math.max(0, deadline - System.nanoTime()));
+            if (response == null) {
+                throw new EngineException("engine did not answer with " + key + " within " + timeout.toMillis() + "ms");
+            }
             System.out.println(response);
             if (response.startsWith(key)) {
                 return response;
@@ -47,25 +102,94 @@ public abstract class UciEngine {
         readUntil("readyok");
     }
 
-    public ChessMove getBestMove(Game state) {
-        while (!inUse.compareAndSet(false, true)) {
-            Thread.onSpinWait();
+    /**
+     * Sets an option of the engine, unless it already has the given value. Must be called while holding the lock.
+     */
+    private void setOption(String name, String value) {
+        if (!value.equals(options.put(name, value))) {
+            sendUciCommand("setoption name " + name + " value " + value);
         }
-        sendUciCommand("ucinewgame");
-        waitUntilReady();
+    }
+
+    public @Nullable ChessMove getBestMove(Game state) {
+        return getBestMove(state, state.getAiProfile());
+    }
 
-        sendUciCommand("position fen " + state.getCurrentFen());
-        sendUciCommand("go movetime 5");
+    /**
+     * Searches the current position of the given game. Consecutive searches for the same game keep the engine's hash
+     * table, so work done for earlier moves is reused.
+     *
+     * @return The best move, or null if the position has no legal move because the game is over
+     */
+    public @Nullable ChessMove getBestMove(Game state, SearchProfile profile) {
+        String bestMove;
 
-        String bestMove = readUntil("bestmove").split(" ")[1];
+        lock.lock();
+        try {
+            setOption("Threads", Integer.toString(profile.getThreads()));
+            setOption("Hash", Integer.toString(profile.getHashMegabytes()));
+            setOption("Skill Level", Integer.toString(profile.getSkillLevel()));
 
-        inUse.set(false);
+            if (!state.getId().equals(lastGame)) {
+                sendUciCommand("ucinewgame");
+                lastGame = state.getId();
+            }
+            waitUntilReady();
+
+            sendUciCommand(positionCommand(state));
+            sendUciCommand(profile.toGoCommand());
+
+            bestMove = readUntil("bestmove", commandTimeout.plusMillis(profile.getMoveTimeMillis())).split(" ")[1];
+        } finally {
+            lock.unlock();
+        }
+
+        return fromUciMove(bestMove);
+    }
+
+    /**
+     * Sends the moves of the game after its initial position when they are known, so that the engine can recognize
+     * repetitions.
+     */
+    private static String positionCommand(Game state) {
+        List<ChessMove> moves = state.getMoves();
+
+        if (moves == null || moves.isEmpty()) {
+            return "position fen " + state.getCurrentFen();
+        }
+
+        StringBuilder command = new StringBuilder("position fen ").append(state.getInitialFen()).append(" moves");
+        for (ChessMove move : moves) {
+            command.append(' ').append(toUciMove(move));
+        }
+        return command.toString();
+    }
+
+    /**
+     * @return The move in long algebraic notation, for example {@code e2e4} or {@code e7e8q}
+     */
+    static String toUciMove(ChessMove move) {
+        String notation = move.getSource().getPosition() + move.getEnd().getPosition();
+        if (move.getPromotion() != null) {
+            notation += Character.toLowerCase(move.getPromotion().getAbbreviation());
+        }
+        return notation;
+    }
+
+    /**
+     * @return The move, or null if the engine answered with {@code (none)} or the null move {@code 0000}, which is how
+     * engines report that there is no legal move
+     */
+    static @Nullable ChessMove fromUciMove(String move) {
+        if (move.equals("(none)") || move.equals("0000")) {
+            return null;
+        }
 
         PieceType promotion = null;
-        if (bestMove.length() == 5) {
-            promotion = PieceType.fromAbbreviation(bestMove.charAt(4));
+        if (move.length() == 5) {
+            promotion = PieceType.fromAbbreviation(move.charAt(4));
         }
 
-        return new ChessMove(new ChessPosition(bestMove.substring(0, 2)), new ChessPosition(bestMove.substring(2, 4)), promotion);
+        return new ChessMove(ChessPosition.of(move.substring(0, 2)), ChessPosition.of(move.substring(2, 4)), promotion);
     }
 }
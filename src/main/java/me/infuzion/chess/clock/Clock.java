@@ -23,12 +23,15 @@ public class Clock {
     private final int blackTimeDeciSeconds;
     private final long lastMoveTimeEpochMillis;
     private final Color currentActive;
+    private final TimeControl timeControl;
 
-    public Clock(int whiteTimeDeciSeconds, int blackTimeDeciSeconds, long lastMoveTimeEpochMillis, Color currentActive) {
+    public Clock(int whiteTimeDeciSeconds, int blackTimeDeciSeconds, long lastMoveTimeEpochMillis, Color currentActive,
+                 TimeControl timeControl) {
         this.whiteTimeDeciSeconds = whiteTimeDeciSeconds;
         this.blackTimeDeciSeconds = blackTimeDeciSeconds;
         this.lastMoveTimeEpochMillis = lastMoveTimeEpochMillis;
         this.currentActive = currentActive;
+        this.timeControl = timeControl;
     }
 
     @Override
@@ -47,7 +50,15 @@ public class Clock {
         return blackTimeDeciSeconds;
     }
 
+    public long getLastMoveTimeEpochMillis() {
+        return lastMoveTimeEpochMillis;
+    }
+
     public Color getCurrentActive() {
         return currentActive;
     }
+
+    public TimeControl getTimeControl() {
+        return timeControl;
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.util.Identifier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Stores the running clocks of games. Every operation is atomic with respect to the other operations on the same game,
+ * so a move can never be charged twice and a clock can never be reported as expired more than once.
+ */
+public interface ClockBackend {
+    /**
+     * Starts the clock of a game with white to move, unless it is already running. The time control is stored with the
+     * clock and applied by every later call to {@link #move(Identifier, Color, long)}.
+     *
+     * @param gameId         The game to start the clock for
+     * @param timeControl    The time control of the game
+     * @param nowEpochMillis The time the clock starts at
+     * @return The started clock, or null if the clock was already running
+     */
+    @Nullable
+    Clock start(@NotNull Identifier gameId, @NotNull TimeControl timeControl, long nowEpochMillis);
+
+    /**
+     * Charges the given player for the time used on their move, credits them with the increment of the time control and
+     * starts their opponent's clock.
+     *
+     * @param gameId             The game the move was made in
+     * @param color              The color that moved
+     * @param moveTimeEpochMillis The time the move was made at
+     * @return The updated clock, or null if the clock is not running or it is not the given color's turn
+     */
+    @Nullable
+    Clock move(@NotNull Identifier gameId, @NotNull Color color, long moveTimeEpochMillis);
+
+    /**
+     * @return The clock of the given game with the time used by the player to move deducted, or null if it is not running
+     */
+    @Nullable
+    Clock get(@NotNull Identifier gameId, long nowEpochMillis);
+
+    /**
+     * Stops the clock of the given game. Stopping a clock that is not running has no effect.
+     */
+    void remove(@NotNull Identifier gameId);
+
+    /**
+     * Stops every clock whose player to move has run out of time and passes it to the given consumer.
+     *
+     * @param nowEpochMillis The current time
+     * @param expired        Called with the game and the color that ran out of time for each expired clock
+     * @return The earliest deadline of the clocks that are still running in milliseconds since the epoch, or
+     * {@link Long#MAX_VALUE} if there is none
+     */
+    long expire(long nowEpochMillis, @NotNull BiConsumer<Identifier, Color> expired);
+}
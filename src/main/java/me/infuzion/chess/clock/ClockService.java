@@ -29,84 +29,39 @@ import me.infuzion.web.server.event.reflect.EventHandler;
 import me.infuzion.web.server.event.reflect.param.mapper.impl.BodyParam;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import redis.clients.jedis.*;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
-import static me.infuzion.chess.game.piece.Color.BLACK;
 import static me.infuzion.chess.game.piece.Color.WHITE;
 
 public class ClockService implements EventListener {
-    private static final String CLOCK_EXPIRING_KEY = "chess::clock.expiring";
-    private static final String CLOCK_EXPIRED_KEY = "chess::clock.expired";
+    private static final long RECONCILE_INTERVAL_MILLIS = 5000;
 
-    private final JedisPool pool;
+    private final ClockBackend backend;
     private final PubSubSource pubSubSource;
+    private final ExpiryScheduler scheduler = new ExpiryScheduler(RECONCILE_INTERVAL_MILLIS);
 
-    public ClockService(JedisPool pool, PubSubSource pubSubSource) {
-        this.pool = pool;
+    public ClockService(ClockBackend backend, PubSubSource pubSubSource) {
+        this.backend = backend;
         this.pubSubSource = pubSubSource;
     }
 
+    /**
+     * Reports clocks that have run out of time. Between checks the thread sleeps until the earliest deadline known to the
+     * backend (or one scheduled locally in the meantime) instead of polling it.
+     */
     public void runHandleExpiringGames() {
-        try (Jedis jedis = pool.getResource()) {
-            while (true) {
-                Instant now = Instant.now();
-                jedis.watch(CLOCK_EXPIRING_KEY);
-
-                int minScore = 0;
-                double maxScore = now.toEpochMilli() / 100.;
-
-                Set<String> results = jedis.zrangeByScore(CLOCK_EXPIRING_KEY, minScore, maxScore);
-
-                if (results.size() == 0) {
-                    jedis.unwatch();
-                    continue;
-                }
-
-                Transaction transaction = jedis.multi();
-
-                for (String key : results) {
-                    transaction.rpush(CLOCK_EXPIRED_KEY, key);
-                    transaction.zrem(CLOCK_EXPIRING_KEY, key);
-                }
-
-                transaction.exec();
-            }
-        }
-    }
-
-    public void runClearExpiringGames() {
-        try (Jedis jedis = pool.getResource()) {
-            while (true) {
-                // no need for a transaction as blpop is atomic
-                List<String> results = jedis.blpop(15, CLOCK_EXPIRED_KEY);
-
-                if (results == null || results.size() != 2) {
-                    continue;
-                }
-
-                // results[0] contains the key of the list popped from
-                // results[1] contains the value popped
-
-                Identifier gameId = new Identifier(results.get(1));
-                String gameKey = "chess::clock.active." + gameId.getId();
-
-                if (jedis.exists(gameKey)) {
-                    String colorStr = jedis.hget(gameKey, "current_active");
-
-                    jedis.del(gameKey);
-
-                    if (colorStr == null) {
-                        continue;
-                    }
-
-                    publishTimeExpired(gameId, Color.valueOf(colorStr));
+        while (true) {
+            try {
+                scheduler.reset();
+                long nextDeadline = backend.expire(System.currentTimeMillis(), this::publishTimeExpired);
+                scheduler.await(nextDeadline);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                try {
+                    scheduler.await(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    return;
                 }
             }
         }
@@ -119,134 +74,55 @@ public class ClockService implements EventListener {
     }
 
     @EventHandler
-    @PubSubChannel(channel = "chess::game.move")
+    @PubSubChannel(channel = "chess::game.start")
     private void onGameStart(PubSubMessage event, @BodyParam ChessGameStartMessage message) {
-        startClockForGame(message.getGameId(), 10 * 60 * 5, 10 * 60 * 5);
+        TimeControl timeControl = message.getTimeControl();
+        startClockForGame(message.getGameId(), timeControl == null ? TimeControl.DEFAULT : timeControl);
     }
 
-    public void startClockForGame(@NotNull Identifier gameId, int whiteTimeDeciSeconds, int blackTimeDeciSeconds) {
-        String game = gameId.getId();
-        String clockKey = "chess::clock.active." + game;
-
-        Instant instant = Instant.now();
-
-        Clock clock = new Clock(whiteTimeDeciSeconds, blackTimeDeciSeconds, instant.toEpochMilli(), WHITE);
-
-        try (Jedis jedis = pool.getResource()) {
-            jedis.watch(clockKey);
-
-            if (jedis.exists(clockKey)) {
-                // timer was already started, abort this transaction
-                jedis.unwatch();
-                return;
-            }
-
-            Transaction transaction = jedis.multi();
-
-            transaction.zadd("chess::clock.expiring", (instant.toEpochMilli() / 100.) + clock.getWhiteTimeDeciSeconds(), game);
+    public void startClockForGame(@NotNull Identifier gameId, @NotNull TimeControl timeControl) {
+        long now = System.currentTimeMillis();
 
-            transaction.hset(clockKey, "white_time", Integer.toString(clock.getWhiteTimeDeciSeconds()));
-            transaction.hset(clockKey, "black_time", Integer.toString(clock.getBlackTimeDeciSeconds()));
-            transaction.hset(clockKey, "current_active", WHITE.name());
-            transaction.hset(clockKey, "last_move_time", DateTimeFormatter.ISO_INSTANT.format(instant));
+        Clock clock = backend.start(gameId, timeControl, now);
 
-            transaction.exec();
+        if (clock == null) {
+            // timer was already started
+            return;
         }
 
+        scheduler.schedule(now + clock.getWhiteTimeDeciSeconds() * 100L);
         pubSubSource.publish("chess::clock.update", new ChessClockUpdateMessage(gameId, clock));
     }
 
     @Nullable
     public Clock getClockForGame(@NotNull Identifier gameId) {
-        try (Jedis jedis = pool.getResource()) {
-            Map<String, String> resps = jedis.hgetAll("chess::clock.active." + gameId.getId());
-
-            if (resps == null || resps.size() == 0) {
-                return null;
-            }
-
-            int whiteTimeDeciSeconds = Integer.parseInt(resps.get("white_time"));
-            int blackTimeDeciSeconds = Integer.parseInt(resps.get("black_time"));
-            Color color = Color.valueOf(resps.get("current_active"));
-            Instant lastMoveTime = Instant.parse(resps.get("last_move_time"));
-
-            Instant now = Instant.now();
-
-            System.out.println(now);
-            System.out.println(lastMoveTime);
-
-            if (color == WHITE) {
-                whiteTimeDeciSeconds -= (int) (Duration.between(lastMoveTime, now).toMillis() / 100.);
-            } else if (color == BLACK) {
-                blackTimeDeciSeconds -= (int) (Duration.between(lastMoveTime, now).toMillis() / 100.);
-            }
-
-            return new Clock(whiteTimeDeciSeconds, blackTimeDeciSeconds, lastMoveTime.toEpochMilli(), color);
-        }
+        return backend.get(gameId, System.currentTimeMillis());
     }
 
-
     @EventHandler
     @PubSubChannel(channel = "chess::game.move")
     private void onGameMove(PubSubMessage event, @BodyParam ChessGameMoveMessage message) {
-        // create the timestamp before acquiring a redis instance to minimize overhead added to move times
-        Instant now = Instant.now();
-        String gameId = message.getGameId().getId();
-        String clockKey = "chess::clock.active." + gameId;
-
-        try (Jedis jedis = pool.getResource()) {
-            jedis.watch(clockKey);
-
-            // ensure that the move has not already been processed
-
-            Pipeline pipeline = jedis.pipelined();
-            Response<String> colorStrResponse = pipeline.hget(clockKey, "current_active");
-            Response<String> whiteTimeResponse = pipeline.hget(clockKey, "white_time");
-            Response<String> blackTimeResponse = pipeline.hget(clockKey, "black_time");
-            Response<String> lastMoveTimeResp = pipeline.hget(clockKey, "last_move_time");
-            pipeline.sync();
-
-            String colorStr = colorStrResponse.get();
-
-            if (colorStr == null || Color.valueOf(colorStr) != message.getMoveColor()) {
-                jedis.unwatch();
-                return;
-            }
-
-            Transaction transaction = jedis.multi();
-
-            int whiteTime = Integer.parseInt(whiteTimeResponse.get());
-            int blackTime = Integer.parseInt(blackTimeResponse.get());
-            Instant lastMoveTime = Instant.parse(lastMoveTimeResp.get());
-            Color color = Color.valueOf(colorStr);
-
-            if (color == WHITE) {
-                whiteTime -= (int) (Duration.between(lastMoveTime, now).toMillis() / 100.);
-                transaction.zadd("chess::clock.expiring", (now.toEpochMilli() / 100.) + whiteTime, gameId);
-                transaction.hset(clockKey, "white_time", Integer.toString(whiteTime));
-            } else if (color == BLACK) {
-                blackTime -= (int) (Duration.between(lastMoveTime, now).toMillis() / 100.);
-                transaction.zadd("chess::clock.expiring", (now.toEpochMilli() / 100.) + blackTime, gameId);
-                transaction.hset(clockKey, "black_time", Integer.toString(blackTime));
-            }
+        // the move is timestamped when it is received, so time spent validating and publishing it is not charged
+        long moveTime = message.getMoveTimeEpochMillis();
+        if (moveTime <= 0) {
+            moveTime = System.currentTimeMillis();
+        }
 
-            transaction.hset(clockKey, "current_active", message.getMoveColor().invert().name());
-            transaction.hset(clockKey, "last_move_time", DateTimeFormatter.ISO_INSTANT.format(now));
+        // the backend ignores the move if it has already been processed
+        Clock clock = backend.move(message.getGameId(), message.getMoveColor(), moveTime);
 
-            transaction.exec();
-            pubSubSource.publish("chess::clock.update", new ChessClockUpdateMessage(message.getGameId(), new Clock(whiteTime, blackTime, lastMoveTime.toEpochMilli(), color.invert())));
+        if (clock == null) {
+            return;
         }
+
+        int remaining = clock.getCurrentActive() == WHITE ? clock.getWhiteTimeDeciSeconds() : clock.getBlackTimeDeciSeconds();
+        scheduler.schedule(moveTime + remaining * 100L);
+        pubSubSource.publish("chess::clock.update", new ChessClockUpdateMessage(message.getGameId(), clock));
     }
 
     @EventHandler
     @PubSubChannel(channel = "chess::game.end")
     private void onGameEnd(PubSubMessage event, @BodyParam ChessGameEndMessage message) {
-        String gameId = message.getGameId().getId();
-        String clockKey = "chess::clock.active." + gameId;
-
-        try (Jedis jedis = pool.getResource()) {
-            // no need for a transaction because deletions can happen multiple time without side-effect
-            jedis.del(clockKey);
-        }
+        backend.remove(message.getGameId());
     }
 }
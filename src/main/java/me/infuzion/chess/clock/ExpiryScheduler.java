@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+/**
+ * Tracks the earliest clock deadline known to this node and lets the expiry thread sleep until it is reached. The
+ * expiring sorted set in Redis already keeps every deadline in order, so only the head of the set has to be mirrored
+ * here; deadlines written by this node are passed to {@link #schedule(long)} so that the expiry thread wakes up early
+ * when a clock is started or updated with a deadline earlier than the one it is currently waiting for.
+ */
+class ExpiryScheduler {
+    private final long reconcileIntervalMillis;
+    private long scheduledMillis = Long.MAX_VALUE;
+
+    /**
+     * @param reconcileIntervalMillis The longest time to wait before checking the sorted set again, which picks up
+     *                                deadlines written by other nodes
+     */
+    ExpiryScheduler(long reconcileIntervalMillis) {
+        this.reconcileIntervalMillis = reconcileIntervalMillis;
+    }
+
+    /**
+     * Wakes the waiting thread at the given time if it is earlier than the deadline it is currently waiting for.
+     *
+     * @param deadlineEpochMillis The deadline of a clock, in milliseconds since the epoch
+     */
+    synchronized void schedule(long deadlineEpochMillis) {
+        if (deadlineEpochMillis < scheduledMillis) {
+            scheduledMillis = deadlineEpochMillis;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Forgets any deadlines passed to {@link #schedule(long)}. This must be called before reading the head of the sorted
+     * set, so that deadlines scheduled while the set is being read are not lost.
+     */
+    synchronized void reset() {
+        scheduledMillis = Long.MAX_VALUE;
+    }
+
+    /**
+     * Blocks until the earlier of the given deadline and any deadline scheduled since the last {@link #reset()}, or
+     * until the reconcile interval has passed.
+     *
+     * @param nextDeadlineEpochMillis The earliest deadline in the sorted set, or {@link Long#MAX_VALUE} if it is empty
+     */
+    synchronized void await(long nextDeadlineEpochMillis) throws InterruptedException {
+        long limit = Math.min(nextDeadlineEpochMillis, System.currentTimeMillis() + reconcileIntervalMillis);
+
+        while (true) {
+            long wakeAt = Math.min(limit, scheduledMillis);
+            long remaining = wakeAt - System.currentTimeMillis();
+
+            if (remaining <= 0) {
+                return;
+            }
+
+            wait(remaining);
+        }
+    }
+}
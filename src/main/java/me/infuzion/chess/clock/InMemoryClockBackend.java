@@ -0,0 +1,345 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.util.Identifier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static me.infuzion.chess.game.piece.Color.BLACK;
+import static me.infuzion.chess.game.piece.Color.WHITE;
+
+/**
+ * Keeps clocks in memory for deployments with a single node. Every game is assigned a slot, and the state of the clock
+ * in that slot is spread over parallel primitive arrays. Elapsed time is measured with {@link System#nanoTime()}, so
+ * clocks are not affected by adjustments to the wall clock.
+ * <p>
+ * Deadlines are kept in a binary min-heap so that expiring clocks does not scan every game. A move or removal does not
+ * search the heap for the old deadline; instead each slot has a generation that is bumped whenever its deadline
+ * changes, and heap entries from an older generation are skipped when they reach the top.
+ */
+public class InMemoryClockBackend implements ClockBackend {
+    private static final long NANOS_PER_DECISECOND = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Map<Identifier, Integer> slots = new HashMap<>();
+
+    private Identifier[] games = new Identifier[16];
+    private int[] whiteTimes = new int[16];
+    private int[] blackTimes = new int[16];
+    private boolean[] whiteActive = new boolean[16];
+    private long[] lastMoveNanos = new long[16];
+    private long[] lastMoveEpochMillis = new long[16];
+    private TimeControl[] timeControls = new TimeControl[16];
+    private int[] generations = new int[16];
+
+    private long[] heapDeadlines = new long[16];
+    private int[] heapSlots = new int[16];
+    private int[] heapGenerations = new int[16];
+    private int heapSize = 0;
+
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+    private int slotCount = 0;
+
+    /**
+     * Converts a wall-clock timestamp into the {@link System#nanoTime()} time base. Timestamps in the future are treated
+     * as the current time.
+     */
+    private static long toNanos(long epochMillis) {
+        long age = Math.max(0, System.currentTimeMillis() - epochMillis);
+        return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(age);
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+
+        if (slotCount == games.length) {
+            int capacity = games.length * 2;
+            games = Arrays.copyOf(games, capacity);
+            whiteTimes = Arrays.copyOf(whiteTimes, capacity);
+            blackTimes = Arrays.copyOf(blackTimes, capacity);
+            whiteActive = Arrays.copyOf(whiteActive, capacity);
+            lastMoveNanos = Arrays.copyOf(lastMoveNanos, capacity);
+            lastMoveEpochMillis = Arrays.copyOf(lastMoveEpochMillis, capacity);
+            timeControls = Arrays.copyOf(timeControls, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+            freeSlots = Arrays.copyOf(freeSlots, capacity);
+        }
+
+        return slotCount++;
+    }
+
+    private void releaseSlot(int slot) {
+        slots.remove(games[slot]);
+        games[slot] = null;
+        timeControls[slot] = null;
+        generations[slot]++;
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Queues the current deadline of the given slot, invalidating the one queued before it.
+     */
+    private void schedule(int slot) {
+        generations[slot]++;
+
+        if (heapSize > 2 * slots.size() + 16) {
+            compactHeap();
+        }
+
+        int time = whiteActive[slot] ? whiteTimes[slot] : blackTimes[slot];
+        push(lastMoveNanos[slot] + time * NANOS_PER_DECISECOND, slot, generations[slot]);
+    }
+
+    private boolean isStale(int entry) {
+        int slot = heapSlots[entry];
+        return games[slot] == null || generations[slot] != heapGenerations[entry];
+    }
+
+    /**
+     * Drops invalidated entries so that the heap does not grow with the number of moves played.
+     */
+    private void compactHeap() {
+        int size = 0;
+
+        for (int i = 0; i < heapSize; i++) {
+            if (!isStale(i)) {
+                heapDeadlines[size] = heapDeadlines[i];
+                heapSlots[size] = heapSlots[i];
+                heapGenerations[size] = heapGenerations[i];
+                size++;
+            }
+        }
+
+        heapSize = size;
+
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private void push(long deadline, int slot, int generation) {
+        if (heapSize == heapDeadlines.length) {
+            int capacity = heapSize * 2;
+            heapDeadlines = Arrays.copyOf(heapDeadlines, capacity);
+            heapSlots = Arrays.copyOf(heapSlots, capacity);
+            heapGenerations = Arrays.copyOf(heapGenerations, capacity);
+        }
+
+        int entry = heapSize++;
+        heapDeadlines[entry] = deadline;
+        heapSlots[entry] = slot;
+        heapGenerations[entry] = generation;
+
+        while (entry > 0) {
+            int parent = (entry - 1) / 2;
+
+            if (heapDeadlines[parent] <= heapDeadlines[entry]) {
+                break;
+            }
+
+            swap(entry, parent);
+            entry = parent;
+        }
+    }
+
+    private void pop() {
+        heapSize--;
+        heapDeadlines[0] = heapDeadlines[heapSize];
+        heapSlots[0] = heapSlots[heapSize];
+        heapGenerations[0] = heapGenerations[heapSize];
+        siftDown(0);
+    }
+
+    private void siftDown(int entry) {
+        while (true) {
+            int smallest = entry;
+            int left = 2 * entry + 1;
+            int right = left + 1;
+
+            if (left < heapSize && heapDeadlines[left] < heapDeadlines[smallest]) {
+                smallest = left;
+            }
+            if (right < heapSize && heapDeadlines[right] < heapDeadlines[smallest]) {
+                smallest = right;
+            }
+            if (smallest == entry) {
+                return;
+            }
+
+            swap(entry, smallest);
+            entry = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long deadline = heapDeadlines[a];
+        heapDeadlines[a] = heapDeadlines[b];
+        heapDeadlines[b] = deadline;
+
+        int slot = heapSlots[a];
+        heapSlots[a] = heapSlots[b];
+        heapSlots[b] = slot;
+
+        int generation = heapGenerations[a];
+        heapGenerations[a] = heapGenerations[b];
+        heapGenerations[b] = generation;
+    }
+
+    private Clock toClock(int slot) {
+        return new Clock(whiteTimes[slot], blackTimes[slot], lastMoveEpochMillis[slot], whiteActive[slot] ? WHITE : BLACK,
+                timeControls[slot]);
+    }
+
+    @Override
+    public synchronized @Nullable Clock start(@NotNull Identifier gameId, @NotNull TimeControl timeControl, long nowEpochMillis) {
+        if (slots.containsKey(gameId)) {
+            return null;
+        }
+
+        int slot = allocateSlot();
+        slots.put(gameId, slot);
+
+        games[slot] = gameId;
+        whiteTimes[slot] = timeControl.getInitialDeciSeconds();
+        blackTimes[slot] = timeControl.getInitialDeciSeconds();
+        timeControls[slot] = timeControl;
+        whiteActive[slot] = true;
+        lastMoveNanos[slot] = toNanos(nowEpochMillis);
+        lastMoveEpochMillis[slot] = nowEpochMillis;
+        schedule(slot);
+
+        return toClock(slot);
+    }
+
+    @Override
+    public synchronized @Nullable Clock move(@NotNull Identifier gameId, @NotNull Color color, long moveTimeEpochMillis) {
+        Integer slot = slots.get(gameId);
+
+        if (slot == null || whiteActive[slot] != (color == WHITE)) {
+            return null;
+        }
+
+        // lag compensation can place a move before the previous one; it never gives a player time back
+        long moveNanos = Math.max(lastMoveNanos[slot], toNanos(moveTimeEpochMillis));
+        int elapsed = (int) ((moveNanos - lastMoveNanos[slot]) / NANOS_PER_DECISECOND);
+        int change = timeControls[slot].creditFor(elapsed) - elapsed;
+
+        if (color == WHITE) {
+            whiteTimes[slot] += change;
+        } else {
+            blackTimes[slot] += change;
+        }
+
+        whiteActive[slot] = color != WHITE;
+        lastMoveNanos[slot] = moveNanos;
+        lastMoveEpochMillis[slot] = Math.max(lastMoveEpochMillis[slot], moveTimeEpochMillis);
+        schedule(slot);
+
+        return toClock(slot);
+    }
+
+    @Override
+    public synchronized @Nullable Clock get(@NotNull Identifier gameId, long nowEpochMillis) {
+        Integer slot = slots.get(gameId);
+
+        if (slot == null) {
+            return null;
+        }
+
+        int elapsed = (int) ((toNanos(nowEpochMillis) - lastMoveNanos[slot]) / NANOS_PER_DECISECOND);
+        int whiteTime = whiteTimes[slot];
+        int blackTime = blackTimes[slot];
+
+        if (whiteActive[slot]) {
+            whiteTime -= elapsed;
+        } else {
+            blackTime -= elapsed;
+        }
+
+        return new Clock(whiteTime, blackTime, lastMoveEpochMillis[slot], whiteActive[slot] ? WHITE : BLACK, timeControls[slot]);
+    }
+
+    @Override
+    public synchronized void remove(@NotNull Identifier gameId) {
+        Integer slot = slots.get(gameId);
+
+        if (slot != null) {
+            releaseSlot(slot);
+        }
+    }
+
+    @Override
+    public long expire(long nowEpochMillis, @NotNull BiConsumer<Identifier, Color> expired) {
+        long nowNanos = toNanos(nowEpochMillis);
+        long nextRemaining = Long.MAX_VALUE;
+
+        Identifier[] expiredGames = new Identifier[0];
+        Color[] expiredColors = new Color[0];
+        int expiredCount = 0;
+
+        synchronized (this) {
+            while (heapSize > 0) {
+                if (isStale(0)) {
+                    pop();
+                    continue;
+                }
+
+                long remaining = heapDeadlines[0] - nowNanos;
+
+                if (remaining > 0) {
+                    nextRemaining = remaining;
+                    break;
+                }
+
+                int slot = heapSlots[0];
+                pop();
+
+                if (expiredCount == expiredGames.length) {
+                    expiredGames = Arrays.copyOf(expiredGames, Math.max(4, expiredCount * 2));
+                    expiredColors = Arrays.copyOf(expiredColors, expiredGames.length);
+                }
+
+                expiredGames[expiredCount] = games[slot];
+                expiredColors[expiredCount] = whiteActive[slot] ? WHITE : BLACK;
+                expiredCount++;
+
+                releaseSlot(slot);
+            }
+        }
+
+        // report outside of the lock so that listeners can use this backend
+        for (int i = 0; i < expiredCount; i++) {
+            expired.accept(expiredGames[i], expiredColors[i]);
+        }
+
+        if (nextRemaining == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+
+        return nowEpochMillis + TimeUnit.NANOSECONDS.toMillis(nextRemaining + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the network lag of a single connection and decides how much of it to credit to a player's clock. The server
+ * measures the round trip itself by sending a ping and timing the echo; half of it is taken as the one-way lag. Clients
+ * may also report the lag they measured. Both are smoothed with an exponential moving average, and a move is only
+ * credited the smaller of the two, so a client cannot claim more lag than the server observed. The credit for a move is
+ * further bounded by a fixed maximum and by a quota that is spent by every credit and refilled slowly with each move.
+ * <p>
+ * Instances are safe to use from multiple threads.
+ */
+public class LagEstimator {
+    /**
+     * Samples above this are treated as this value; anything higher is a stalled connection rather than lag.
+     */
+    static final long MAX_SAMPLE_MILLIS = 2000;
+    static final long MAX_CREDIT_MILLIS = 500;
+    static final long INITIAL_QUOTA_MILLIS = 1000;
+    static final long QUOTA_GAIN_MILLIS = 100;
+    static final long MAX_QUOTA_MILLIS = 2000;
+
+    private static final double SMOOTHING = 0.25;
+
+    private double claimedMillis = -1;
+    private double measuredMillis = -1;
+    private long quotaMillis = INITIAL_QUOTA_MILLIS;
+
+    private long pingToken = 0;
+    private long pingSentNanos = -1;
+
+    private static double smooth(double estimate, long lagMillis) {
+        long sample = Math.max(0, Math.min(lagMillis, MAX_SAMPLE_MILLIS));
+
+        if (estimate < 0) {
+            return sample;
+        }
+
+        return estimate + SMOOTHING * (sample - estimate);
+    }
+
+    /**
+     * @param lagMillis A one-way lag measured by the client
+     */
+    public synchronized void record(long lagMillis) {
+        claimedMillis = smooth(claimedMillis, lagMillis);
+    }
+
+    /**
+     * Starts a round trip measurement. Only the latest ping is timed; an echo of an earlier one is ignored.
+     *
+     * @param nowNanos The current {@link System#nanoTime()}
+     * @return The token the client has to echo back
+     */
+    public synchronized long ping(long nowNanos) {
+        pingSentNanos = nowNanos;
+        return ++pingToken;
+    }
+
+    /**
+     * Completes a round trip measurement started by {@link #ping(long)}.
+     *
+     * @param token    The token echoed by the client
+     * @param nowNanos The current {@link System#nanoTime()}
+     * @return Whether the echo matched the outstanding ping
+     */
+    public synchronized boolean pong(long token, long nowNanos) {
+        if (token != pingToken || pingSentNanos < 0) {
+            return false;
+        }
+
+        long roundTripMillis = TimeUnit.NANOSECONDS.toMillis(nowNanos - pingSentNanos);
+        measuredMillis = smooth(measuredMillis, roundTripMillis / 2);
+        pingSentNanos = -1;
+
+        return true;
+    }
+
+    /**
+     * @return The lag that can be credited in milliseconds: the smaller of the measured and the reported lag, or 0 if
+     * either is missing
+     */
+    public synchronized long getEstimateMillis() {
+        if (claimedMillis < 0 || measuredMillis < 0) {
+            return 0;
+        }
+
+        return Math.round(Math.min(claimedMillis, measuredMillis));
+    }
+
+    /**
+     * Spends part of the quota on a move.
+     *
+     * @return The time to credit to the player for the move, in milliseconds
+     */
+    public synchronized long creditForMove() {
+        quotaMillis = Math.min(MAX_QUOTA_MILLIS, quotaMillis + QUOTA_GAIN_MILLIS);
+
+        long credit = Math.min(getEstimateMillis(), Math.min(MAX_CREDIT_MILLIS, quotaMillis));
+        quotaMillis -= credit;
+
+        return credit;
+    }
+}
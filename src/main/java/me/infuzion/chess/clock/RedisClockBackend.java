@@ -0,0 +1,241 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.util.Identifier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static me.infuzion.chess.game.piece.Color.WHITE;
+
+/**
+ * Keeps clocks in Redis so that they are shared by every node. Each operation is a single Lua script, so it takes one
+ * round trip and cannot be interleaved with an operation from another node.
+ */
+public class RedisClockBackend implements ClockBackend {
+    private static final String CLOCK_EXPIRING_KEY = "chess::clock.expiring";
+    private static final String CLOCK_EXPIRED_KEY = "chess::clock.expired";
+    private static final String CLOCK_KEY_PREFIX = "chess::clock.active.";
+
+    private static final int MAX_COLLECTED_CLOCKS = 1000;
+
+    private static final RedisScript START_SCRIPT = RedisScript.load("scripts/clock/start.lua");
+    private static final RedisScript MOVE_SCRIPT = RedisScript.load("scripts/clock/move.lua");
+    private static final RedisScript COLLECT_SCRIPT = RedisScript.load("scripts/clock/collect.lua");
+    private static final RedisScript CLAIM_SCRIPT = RedisScript.load("scripts/clock/claim.lua");
+    private static final RedisScript MIGRATE_SCRIPT = RedisScript.load("scripts/clock/migrate.lua");
+
+    private final JedisPool pool;
+
+    public RedisClockBackend(JedisPool pool) {
+        this.pool = pool;
+    }
+
+    private static String clockKey(Identifier gameId) {
+        return CLOCK_KEY_PREFIX + gameId.getId();
+    }
+
+    /**
+     * Parses the time of the last move as stored in a clock hash. Clocks written before the clock scripts existed store
+     * an ISO-8601 instant instead of epoch milliseconds.
+     */
+    static long parseMoveTime(@NotNull String lastMoveTime) {
+        try {
+            return Long.parseLong(lastMoveTime);
+        } catch (NumberFormatException e) {
+            try {
+                return Instant.parse(lastMoveTime).toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                throw e;
+            }
+        }
+    }
+
+    private static boolean isLegacy(@Nullable String lastMoveTime, @Nullable String initialTime) {
+        if (lastMoveTime == null) {
+            // the clock was removed while it was being read
+            return false;
+        }
+
+        return initialTime == null || !lastMoveTime.chars().allMatch(Character::isDigit);
+    }
+
+    /**
+     * Rewrites clocks stored in the format used before the clock scripts: the time of the last move becomes epoch
+     * milliseconds and clocks without a time control are given {@link TimeControl#DEFAULT}, which is what every clock
+     * used at the time. This must run before the scripts touch those clocks, as they cannot read the old format.
+     *
+     * @return The number of clocks that were rewritten
+     */
+    public int migrateLegacyClocks() {
+        TimeControl timeControl = TimeControl.DEFAULT;
+        ScanParams params = new ScanParams().match(CLOCK_KEY_PREFIX + "*").count(MAX_COLLECTED_CLOCKS);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        int migrated = 0;
+
+        try (Jedis jedis = pool.getResource()) {
+            do {
+                ScanResult<String> scan = jedis.scan(cursor, params);
+
+                for (String key : scan.getResult()) {
+                    List<String> fields = jedis.hmget(key, "last_move_time", "initial_time");
+                    String lastMoveTime = fields.get(0);
+
+                    if (!isLegacy(lastMoveTime, fields.get(1))) {
+                        continue;
+                    }
+
+                    Object result = MIGRATE_SCRIPT.eval(jedis, List.of(key),
+                            List.of(lastMoveTime, Long.toString(parseMoveTime(lastMoveTime)),
+                                    Integer.toString(timeControl.getInitialDeciSeconds()),
+                                    Integer.toString(timeControl.getIncrementDeciSeconds()),
+                                    timeControl.getIncrementType().name()));
+
+                    if (Long.valueOf(1).equals(result)) {
+                        migrated++;
+                    }
+                }
+
+                cursor = scan.getCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        }
+
+        return migrated;
+    }
+
+    @Override
+    public @Nullable Clock start(@NotNull Identifier gameId, @NotNull TimeControl timeControl, long nowEpochMillis) {
+        int initial = timeControl.getInitialDeciSeconds();
+
+        try (Jedis jedis = pool.getResource()) {
+            Object started = START_SCRIPT.eval(jedis, List.of(clockKey(gameId), CLOCK_EXPIRING_KEY),
+                    List.of(gameId.getId(), Integer.toString(initial), Integer.toString(initial), Long.toString(nowEpochMillis),
+                            Integer.toString(timeControl.getIncrementDeciSeconds()), timeControl.getIncrementType().name()));
+
+            if (!Long.valueOf(1).equals(started)) {
+                // timer was already started
+                return null;
+            }
+        }
+
+        return new Clock(initial, initial, nowEpochMillis, WHITE, timeControl);
+    }
+
+    @Override
+    public @Nullable Clock move(@NotNull Identifier gameId, @NotNull Color color, long moveTimeEpochMillis) {
+        try (Jedis jedis = pool.getResource()) {
+            // the script ignores the move if it has already been processed
+            Object result = MOVE_SCRIPT.eval(jedis, List.of(clockKey(gameId), CLOCK_EXPIRING_KEY),
+                    List.of(gameId.getId(), color.name(), Long.toString(moveTimeEpochMillis)));
+
+            if (result == null) {
+                return null;
+            }
+
+            List<?> values = (List<?>) result;
+            int whiteTime = ((Long) values.get(0)).intValue();
+            int blackTime = ((Long) values.get(1)).intValue();
+            Color active = Color.valueOf((String) values.get(2));
+            TimeControl timeControl = new TimeControl(((Long) values.get(3)).intValue(), ((Long) values.get(4)).intValue(),
+                    TimeControl.IncrementType.valueOf((String) values.get(5)));
+
+            long lastMoveTime = Long.parseLong((String) values.get(6));
+
+            return new Clock(whiteTime, blackTime, lastMoveTime, active, timeControl);
+        }
+    }
+
+    @Override
+    public @Nullable Clock get(@NotNull Identifier gameId, long nowEpochMillis) {
+        try (Jedis jedis = pool.getResource()) {
+            Map<String, String> resps = jedis.hgetAll(clockKey(gameId));
+
+            if (resps == null || resps.size() == 0) {
+                return null;
+            }
+
+            int whiteTimeDeciSeconds = Integer.parseInt(resps.get("white_time"));
+            int blackTimeDeciSeconds = Integer.parseInt(resps.get("black_time"));
+            Color color = Color.valueOf(resps.get("current_active"));
+            long lastMoveTime = parseMoveTime(resps.get("last_move_time"));
+            TimeControl timeControl = TimeControl.DEFAULT;
+
+            if (resps.containsKey("initial_time")) {
+                timeControl = new TimeControl(Integer.parseInt(resps.get("initial_time")),
+                        Integer.parseInt(resps.get("increment")), TimeControl.IncrementType.valueOf(resps.get("increment_type")));
+            }
+
+            int elapsed = (int) ((nowEpochMillis - lastMoveTime) / 100);
+
+            if (color == WHITE) {
+                whiteTimeDeciSeconds -= elapsed;
+            } else {
+                blackTimeDeciSeconds -= elapsed;
+            }
+
+            return new Clock(whiteTimeDeciSeconds, blackTimeDeciSeconds, lastMoveTime, color, timeControl);
+        }
+    }
+
+    @Override
+    public void remove(@NotNull Identifier gameId) {
+        try (Jedis jedis = pool.getResource()) {
+            // no need for a transaction because deletions can happen multiple time without side-effect
+            jedis.del(clockKey(gameId));
+        }
+    }
+
+    /**
+     * Moves clocks whose deadline has passed from the expiring sorted set to the shared expired list, then claims every
+     * clock on the list. Entries queued by a node that failed before claiming them are picked up by the next node to
+     * run this.
+     */
+    @Override
+    public long expire(long nowEpochMillis, @NotNull BiConsumer<Identifier, Color> expired) {
+        try (Jedis jedis = pool.getResource()) {
+            Object next = COLLECT_SCRIPT.eval(jedis, List.of(CLOCK_EXPIRING_KEY, CLOCK_EXPIRED_KEY),
+                    List.of(Double.toString(nowEpochMillis / 100.), Integer.toString(MAX_COLLECTED_CLOCKS)));
+
+            String game;
+            while ((game = jedis.lpop(CLOCK_EXPIRED_KEY)) != null) {
+                Identifier gameId = new Identifier(game);
+                Object color = CLAIM_SCRIPT.eval(jedis, List.of(clockKey(gameId)), List.of(Long.toString(nowEpochMillis)));
+
+                if (color != null) {
+                    expired.accept(gameId, Color.valueOf((String) color));
+                }
+            }
+
+            if (next == null) {
+                return Long.MAX_VALUE;
+            }
+
+            return (long) Math.ceil(Double.parseDouble((String) next) * 100);
+        }
+    }
+}
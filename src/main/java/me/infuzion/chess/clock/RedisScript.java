@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import org.jetbrains.annotations.NotNull;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A Lua script bundled as a resource and executed atomically on the Redis server. Scripts are invoked by their SHA1
+ * digest so that only the digest is sent on each call; if the server does not know the script yet (for example after a
+ * restart) the full source is sent once, which also caches it on the server.
+ */
+public class RedisScript {
+    private final String source;
+    private volatile String sha;
+
+    private RedisScript(String source) {
+        this.source = source;
+    }
+
+    public static RedisScript load(@NotNull String resource) {
+        try (InputStream stream = Objects.requireNonNull(RedisScript.class.getClassLoader().getResourceAsStream(resource), resource)) {
+            return new RedisScript(new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Object eval(@NotNull Jedis jedis, @NotNull List<String> keys, @NotNull List<String> args) {
+        String sha = this.sha;
+
+        if (sha != null) {
+            try {
+                return jedis.evalsha(sha, keys, args);
+            } catch (JedisNoScriptException ignored) {
+                // the script cache was flushed; fall through and send the source again
+            }
+        }
+
+        Object result = jedis.eval(source, keys, args);
+        this.sha = jedis.scriptLoad(source);
+        return result;
+    }
+}
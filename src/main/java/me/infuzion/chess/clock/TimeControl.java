@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * The time each player starts with and the time credited to a player after each of their moves.
+ */
+public class TimeControl {
+    /**
+     * Five minutes for each player without any increment.
+     */
+    public static final TimeControl DEFAULT = new TimeControl(10 * 60 * 5, 0, IncrementType.FISCHER);
+    /**
+     * The longest time control accepted by {@link #parse(String)}, which is the size of the column it is stored in.
+     */
+    public static final int MAX_LENGTH = 16;
+
+    private final int initialDeciSeconds;
+    private final int incrementDeciSeconds;
+    private final IncrementType incrementType;
+
+    public TimeControl(int initialDeciSeconds, int incrementDeciSeconds, @NotNull IncrementType incrementType) {
+        if (initialDeciSeconds <= 0) {
+            throw new IllegalArgumentException("initial time must be positive");
+        }
+        if (incrementDeciSeconds < 0) {
+            throw new IllegalArgumentException("increment must not be negative");
+        }
+
+        this.initialDeciSeconds = initialDeciSeconds;
+        this.incrementDeciSeconds = incrementDeciSeconds;
+        this.incrementType = incrementType;
+    }
+
+    /**
+     * Parses a time control written as the initial time and the increment in seconds, separated by {@code +} for a
+     * Fischer increment or {@code d} for a Bronstein delay. For example, {@code 180+2} is three minutes with a two second
+     * increment and {@code 300d3} is five minutes with a three second delay.
+     *
+     * @throws IllegalArgumentException if the time control is malformed, or if it or the form it is stored in is longer
+     *                                  than {@link #MAX_LENGTH}
+     */
+    public static TimeControl parse(@NotNull String timeControl) {
+        if (timeControl.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("time control is longer than " + MAX_LENGTH + " characters: " + timeControl);
+        }
+
+        int separator = timeControl.indexOf('+');
+        IncrementType type = IncrementType.FISCHER;
+
+        if (separator == -1) {
+            separator = timeControl.indexOf('d');
+            type = IncrementType.BRONSTEIN;
+        }
+
+        if (separator == -1) {
+            throw new IllegalArgumentException("invalid time control: " + timeControl);
+        }
+
+        try {
+            int initial = parseDeciSeconds(timeControl.substring(0, separator));
+            int increment = parseDeciSeconds(timeControl.substring(separator + 1));
+
+            TimeControl parsed = new TimeControl(initial, increment, type);
+
+            // the stored form can be longer than the input, as in 1e8+0
+            if (parsed.toString().length() > MAX_LENGTH) {
+                throw new IllegalArgumentException("time control is longer than " + MAX_LENGTH + " characters: " + parsed);
+            }
+
+            return parsed;
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("invalid time control: " + timeControl, e);
+        }
+    }
+
+    private static int parseDeciSeconds(String seconds) {
+        return Math.toIntExact(Math.round(Double.parseDouble(seconds) * 10));
+    }
+
+    private static String formatSeconds(int deciSeconds) {
+        return deciSeconds % 10 == 0 ? Integer.toString(deciSeconds / 10) : Double.toString(deciSeconds / 10.);
+    }
+
+    /**
+     * @param elapsedDeciSeconds The time the player used for their move
+     * @return The time to add back to the player's clock after the move
+     */
+    public int creditFor(int elapsedDeciSeconds) {
+        if (incrementType == IncrementType.BRONSTEIN) {
+            return Math.max(0, Math.min(elapsedDeciSeconds, incrementDeciSeconds));
+        }
+
+        return incrementDeciSeconds;
+    }
+
+    public int getInitialDeciSeconds() {
+        return initialDeciSeconds;
+    }
+
+    public int getIncrementDeciSeconds() {
+        return incrementDeciSeconds;
+    }
+
+    public IncrementType getIncrementType() {
+        return incrementType;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TimeControl)) {
+            return false;
+        }
+        TimeControl other = (TimeControl) obj;
+        return initialDeciSeconds == other.initialDeciSeconds && incrementDeciSeconds == other.incrementDeciSeconds
+                && incrementType == other.incrementType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(initialDeciSeconds, incrementDeciSeconds, incrementType);
+    }
+
+    /**
+     * @return The time control in the format accepted by {@link #parse(String)}
+     */
+    @Override
+    public String toString() {
+        return formatSeconds(initialDeciSeconds) + (incrementType == IncrementType.FISCHER ? '+' : 'd')
+                + formatSeconds(incrementDeciSeconds);
+    }
+
+    public enum IncrementType {
+        /**
+         * The full increment is added after every move.
+         */
+        FISCHER,
+        /**
+         * The time used for a move is added back, up to the increment.
+         */
+        BRONSTEIN
+    }
+}
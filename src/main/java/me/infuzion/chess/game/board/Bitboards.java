@@ -0,0 +1,269 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.piece.Color;
+
+import java.util.SplittableRandom;
+
+/**
+ * Helpers for working with 64-bit bitboards. Square indices follow the little-endian mapping used by
+ * {@link ChessPosition#getIndex()}: a1 is bit 0, h1 is bit 7 and h8 is bit 63.
+ * <p>
+ * {@link #rankOf(int)} and {@link #fileOf(int)} use the same naming as {@link ChessPosition} (rank is the letter
+ * column), while the mask constants use standard chess naming ({@code FILE_A} is the a column).
+ * <p>
+ * All attack queries are table lookups. Leaper and pawn attacks are precomputed per square; slider attacks use magic
+ * bitboards, where the relevant blockers are multiplied by a per-square magic number to index a table of attack sets.
+ * The magics are searched for once when this class is loaded, using a fixed seed so that the tables are the same on
+ * every run.
+ */
+public final class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_3 = RANK_1 << 16;
+    public static final long RANK_6 = RANK_1 << 40;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    private static final long NOT_FILE_A = ~FILE_A;
+    private static final long NOT_FILE_H = ~FILE_H;
+    private static final long NOT_FILE_AB = ~(FILE_A | (FILE_A << 1));
+    private static final long NOT_FILE_GH = ~(FILE_H | (FILE_H >>> 1));
+
+    private static final long MAGIC_SEED = 0x2545F4914F6CDD1DL;
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[Color.values().length][64];
+
+    private static final Magic[] ROOK_MAGICS = new Magic[64];
+    private static final Magic[] BISHOP_MAGICS = new Magic[64];
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            long b = bit(square);
+
+            KNIGHT_ATTACKS[square] = ((b << 17) & NOT_FILE_A) | ((b << 15) & NOT_FILE_H)
+                    | ((b << 10) & NOT_FILE_AB) | ((b << 6) & NOT_FILE_GH)
+                    | ((b >>> 17) & NOT_FILE_H) | ((b >>> 15) & NOT_FILE_A)
+                    | ((b >>> 10) & NOT_FILE_GH) | ((b >>> 6) & NOT_FILE_AB);
+
+            long sides = ((b << 1) & NOT_FILE_A) | ((b >>> 1) & NOT_FILE_H);
+            long row = b | sides;
+            KING_ATTACKS[square] = sides | (row << 8) | (row >>> 8);
+
+            PAWN_ATTACKS[Color.WHITE.ordinal()][square] = ((b << 9) & NOT_FILE_A) | ((b << 7) & NOT_FILE_H);
+            PAWN_ATTACKS[Color.BLACK.ordinal()][square] = ((b >>> 7) & NOT_FILE_A) | ((b >>> 9) & NOT_FILE_H);
+        }
+
+        SplittableRandom random = new SplittableRandom(MAGIC_SEED);
+        for (int square = 0; square < 64; square++) {
+            ROOK_MAGICS[square] = Magic.find(square, false, random);
+            BISHOP_MAGICS[square] = Magic.find(square, true, random);
+        }
+
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                boolean diagonal;
+
+                if ((rookAttacks(a, 0) & bit(b)) != 0) {
+                    diagonal = false;
+                } else if ((bishopAttacks(a, 0) & bit(b)) != 0) {
+                    diagonal = true;
+                } else {
+                    continue;
+                }
+
+                // the rays of both squares only overlap on the line that joins them
+                BETWEEN[a][b] = slidingAttacks(a, bit(b), diagonal) & slidingAttacks(b, bit(a), diagonal);
+                LINE[a][b] = (slidingAttacks(a, 0, diagonal) & slidingAttacks(b, 0, diagonal)) | bit(a) | bit(b);
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int square(int rank, int file) {
+        return (file << 3) | rank;
+    }
+
+    public static int rankOf(int square) {
+        return square & 7;
+    }
+
+    public static int fileOf(int square) {
+        return square >>> 3;
+    }
+
+    public static ChessPosition toPosition(int square) {
+        return ChessPosition.of(square);
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return The squares attacked by a pawn of the given color standing on the given square
+     */
+    public static long pawnAttacks(Color color, int square) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    public static long rookAttacks(int square, long occupancy) {
+        return ROOK_MAGICS[square].attacks(occupancy);
+    }
+
+    public static long bishopAttacks(int square, long occupancy) {
+        return BISHOP_MAGICS[square].attacks(occupancy);
+    }
+
+    public static long queenAttacks(int square, long occupancy) {
+        return rookAttacks(square, occupancy) | bishopAttacks(square, occupancy);
+    }
+
+    /**
+     * @return The squares strictly between two squares on the same rank, file or diagonal, or 0 if they are not aligned
+     */
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * @return The full rank, file or diagonal through two squares (including both), or 0 if they are not aligned
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * Computes slider attacks by walking each ray. This is only used to fill the lookup tables.
+     */
+    static long slidingAttacks(int square, long occupancy, boolean diagonal) {
+        if (diagonal) {
+            return slide(square, occupancy, 1, 1) | slide(square, occupancy, 1, -1)
+                    | slide(square, occupancy, -1, 1) | slide(square, occupancy, -1, -1);
+        }
+        return slide(square, occupancy, 1, 0) | slide(square, occupancy, -1, 0)
+                | slide(square, occupancy, 0, 1) | slide(square, occupancy, 0, -1);
+    }
+
+    private static long slide(int square, long occupancy, int rankDelta, int fileDelta) {
+        long attacks = 0;
+        int rank = rankOf(square) + rankDelta;
+        int file = fileOf(square) + fileDelta;
+
+        while (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+            long b = bit(square(rank, file));
+            attacks |= b;
+
+            // the ray stops at the first occupied square (which is itself attacked)
+            if ((occupancy & b) != 0) {
+                break;
+            }
+
+            rank += rankDelta;
+            file += fileDelta;
+        }
+
+        return attacks;
+    }
+
+    /**
+     * The magic lookup for one slider on one square.
+     */
+    private static final class Magic {
+        private final long mask;
+        private final long magic;
+        private final int shift;
+        private final long[] table;
+
+        private Magic(long mask, long magic, int shift, long[] table) {
+            this.mask = mask;
+            this.magic = magic;
+            this.shift = shift;
+            this.table = table;
+        }
+
+        private long attacks(long occupancy) {
+            return table[(int) (((occupancy & mask) * magic) >>> shift)];
+        }
+
+        private static Magic find(int square, boolean diagonal, SplittableRandom random) {
+            // pieces on the last square of a ray never change the attack set, so they are left out of the mask
+            long edges = ((RANK_1 | RANK_8) & ~(RANK_1 << (fileOf(square) * 8)))
+                    | ((FILE_A | FILE_H) & ~(FILE_A << rankOf(square)));
+            long mask = slidingAttacks(square, 0, diagonal) & ~edges;
+            int bits = Long.bitCount(mask);
+            int size = 1 << bits;
+
+            long[] occupancies = new long[size];
+            long[] attacks = new long[size];
+
+            // enumerate every subset of the mask
+            long subset = 0;
+            for (int i = 0; i < size; i++) {
+                occupancies[i] = subset;
+                attacks[i] = slidingAttacks(square, subset, diagonal);
+                subset = (subset - mask) & mask;
+            }
+
+            long[] table = new long[size];
+            int[] epoch = new int[size];
+
+            for (int attempt = 1; ; attempt++) {
+                // sparse candidates are far more likely to be magic
+                long magic = random.nextLong() & random.nextLong() & random.nextLong();
+
+                if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+                    continue;
+                }
+
+                boolean collision = false;
+                for (int i = 0; i < size && !collision; i++) {
+                    int index = (int) ((occupancies[i] * magic) >>> (64 - bits));
+
+                    if (epoch[index] != attempt) {
+                        epoch[index] = attempt;
+                        table[index] = attacks[i];
+                    } else if (table[index] != attacks[i]) {
+                        collision = true;
+                    }
+                }
+
+                if (!collision) {
+                    return new Magic(mask, magic, 64 - bits, table);
+                }
+            }
+        }
+    }
+}
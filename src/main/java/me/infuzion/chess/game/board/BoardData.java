@@ -3,8 +3,9 @@ package me.infuzion.chess.game.board;
 import me.infuzion.chess.game.piece.*;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Set;
 
 public class BoardData {
 
@@ -24,8 +25,7 @@ public class BoardData {
             }
 
             for (int col = 0; col < 8; col++) {
-                ChessPiece piece;
-                ChessPosition curPosition = new ChessPosition(col, 7 - row);
+                ChessPosition curPosition = ChessPosition.of(col, 7 - row);
 
                 if (curTypes.length <= col) {
                     pieces[7 - row][col] = null;
@@ -36,66 +36,166 @@ public class BoardData {
                     continue;
                 }
 
-                switch (curTypes[col]) {
-                    case BISHOP:
-                        piece = new Bishop(curColors[col], curPosition);
-                        break;
-                    case KING:
-                        piece = new King(curColors[col], curPosition);
-                        break;
-                    case KNIGHT:
-                        piece = new Knight(curColors[col], curPosition);
-                        break;
-                    case PAWN:
-                        piece = new Pawn(curColors[col], curPosition);
-                        break;
-                    case QUEEN:
-                        piece = new Queen(curColors[col], curPosition);
-                        break;
-                    case ROOK:
-                        piece = new Rook(curColors[col], curPosition);
-                        break;
-                    default:
-                        if (curTypes[col] == null) {
-                            piece = null;
-                            break;
-                        }
-                        throw new RuntimeException(
-                                "Unknown input piece type: " + curTypes[col].name());
-                }
-                pieces[7 - row][col] = piece;
+                pieces[7 - row][col] = createPiece(curTypes[col], curColors[col], curPosition);
             }
         }
         return new BoardData(pieces);
     }
 
+    public static ChessPiece createPiece(PieceType type, Color color, ChessPosition position) {
+        switch (type) {
+            case BISHOP:
+                return new Bishop(color, position);
+            case KING:
+                return new King(color, position);
+            case KNIGHT:
+                return new Knight(color, position);
+            case PAWN:
+                return new Pawn(color, position);
+            case QUEEN:
+                return new Queen(color, position);
+            case ROOK:
+                return new Rook(color, position);
+            default:
+                throw new RuntimeException("Unknown input piece type: " + type.name());
+        }
+    }
+
+    // cached because values() copies the array on every call
+    private static final int PIECE_TYPES = PieceType.values().length;
+    private static final CastlingAvailability[] CASTLING_AVAILABILITIES = CastlingAvailability.values();
+
     private final ChessPiece[][] pieces;
 
+    /**
+     * One bitboard per color and piece type, indexed by {@link #bitboardIndex(Color, PieceType)}. These are kept in
+     * lockstep with {@link #pieces} by {@link #setPiece(int, int, ChessPiece)}.
+     */
+    private final long[] pieceBitboards = new long[Color.values().length * PIECE_TYPES];
+    private final long[] colorBitboards = new long[Color.values().length];
+
     @Nullable
     private ChessPosition enPassantSquare = null;
 
-    private final EnumSet<CastlingAvailability> castlingAvailability = EnumSet.allOf(CastlingAvailability.class);
+    private final EnumSet<CastlingAvailability> castlingAvailability = EnumSet.noneOf(CastlingAvailability.class);
+
+    /**
+     * Zobrist hash of the pieces and castling availability, updated whenever either changes.
+     */
+    private long hash;
+
+    /**
+     * Creates an empty board with no castling availability.
+     */
+    BoardData() {
+        this.pieces = new ChessPiece[8][8];
+    }
 
     public BoardData(ChessPiece[][] pieces) {
         this.pieces = pieces;
+
+        for (CastlingAvailability availability : CASTLING_AVAILABILITIES) {
+            addCastlingAvailability(availability);
+        }
+
+        for (int file = 0; file < pieces.length; file++) {
+            for (int rank = 0; rank < pieces[file].length; rank++) {
+                if (pieces[file][rank] != null) {
+                    addToBitboards(Bitboards.square(rank, file), pieces[file][rank]);
+                }
+            }
+        }
     }
 
     /**
      * Creates a copy of the given board data object and any references to objects contained within.
      *
-     * @param data
+     * @param data The board data to copy
      */
     public BoardData(BoardData data) {
-        this.pieces = Arrays.stream(data.pieces).map(ChessPiece[]::clone).toArray(ChessPiece[][]::new);
+        this.pieces = new ChessPiece[data.pieces.length][];
+        for (int file = 0; file < pieces.length; file++) {
+            pieces[file] = new ChessPiece[data.pieces[file].length];
+            for (int rank = 0; rank < pieces[file].length; rank++) {
+                ChessPiece piece = data.pieces[file][rank];
+                pieces[file][rank] = piece == null ? null : piece.clone();
+            }
+        }
         this.enPassantSquare = data.enPassantSquare;
+        this.castlingAvailability.addAll(data.castlingAvailability);
+        this.hash = data.hash;
+        System.arraycopy(data.pieceBitboards, 0, pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(data.colorBitboards, 0, colorBitboards, 0, colorBitboards.length);
+    }
+
+    private static int bitboardIndex(Color color, PieceType type) {
+        return color.ordinal() * PIECE_TYPES + type.ordinal();
     }
 
+    /**
+     * The returned array is the backing storage of this board and must not be modified directly; use
+     * {@link #setPiece(ChessPosition, ChessPiece)} so that the bitboards stay in sync.
+     */
     public ChessPiece[][] getPieces() {
         return pieces;
     }
 
     public void setPiece(int rank, int file, ChessPiece piece) {
+        int square = Bitboards.square(rank, file);
+        ChessPiece previous = pieces[file][rank];
+
+        if (previous != null) {
+            removeFromBitboards(square, previous);
+        }
+
         pieces[file][rank] = piece;
+
+        if (piece != null) {
+            addToBitboards(square, piece);
+        }
+    }
+
+    private void addToBitboards(int square, ChessPiece piece) {
+        long bit = Bitboards.bit(square);
+        pieceBitboards[bitboardIndex(piece.getColor(), piece.getType())] |= bit;
+        colorBitboards[piece.getColor().ordinal()] |= bit;
+        hash ^= Zobrist.piece(piece.getColor(), piece.getType(), square);
+    }
+
+    private void removeFromBitboards(int square, ChessPiece piece) {
+        long mask = ~Bitboards.bit(square);
+        pieceBitboards[bitboardIndex(piece.getColor(), piece.getType())] &= mask;
+        colorBitboards[piece.getColor().ordinal()] &= mask;
+        hash ^= Zobrist.piece(piece.getColor(), piece.getType(), square);
+    }
+
+    /**
+     * @return A bitboard with a bit set for every square containing a piece of the given color and type
+     */
+    public long getBitboard(Color color, PieceType type) {
+        return pieceBitboards[bitboardIndex(color, type)];
+    }
+
+    /**
+     * @return A bitboard with a bit set for every square containing a piece of the given color
+     */
+    public long getOccupancy(Color color) {
+        return colorBitboards[color.ordinal()];
+    }
+
+    /**
+     * @return A bitboard with a bit set for every occupied square
+     */
+    public long getOccupancy() {
+        return colorBitboards[0] | colorBitboards[1];
+    }
+
+    public ChessPiece getPiece(int square) {
+        return pieces[Bitboards.fileOf(square)][Bitboards.rankOf(square)];
+    }
+
+    public void setPiece(int square, ChessPiece piece) {
+        setPiece(Bitboards.rankOf(square), Bitboards.fileOf(square), piece);
     }
 
     public void setPiece(ChessPosition pos, ChessPiece piece) {
@@ -126,22 +226,62 @@ public class BoardData {
         this.enPassantSquare = enPassantSquare;
     }
 
+    /**
+     * @return True if a pawn is able to capture on the current en passant square
+     */
+    public boolean isEnPassantCapturePossible() {
+        if (enPassantSquare == null) {
+            return false;
+        }
+
+        int square = enPassantSquare.getIndex();
+        if ((getOccupancy() & Bitboards.bit(square)) != 0) {
+            return false;
+        }
+
+        if ((Bitboards.bit(square) & Bitboards.RANK_6) != 0) {
+            return (Bitboards.pawnAttacks(Color.BLACK, square) & getBitboard(Color.WHITE, PieceType.PAWN)) != 0;
+        }
+        if ((Bitboards.bit(square) & Bitboards.RANK_3) != 0) {
+            return (Bitboards.pawnAttacks(Color.WHITE, square) & getBitboard(Color.BLACK, PieceType.PAWN)) != 0;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the Zobrist hash of the pieces, castling availability and en passant square. The en passant square is
+     * only included when a capture on it is possible, so that positions which only differ by an unusable en passant
+     * square hash the same. The side to move is not part of this hash; see {@link ChessBoard#getHash()}.
+     *
+     * @return The Zobrist hash of this board
+     */
+    public long getHash() {
+        if (enPassantSquare != null && isEnPassantCapturePossible()) {
+            return hash ^ Zobrist.enPassant(enPassantSquare.getRank());
+        }
+        return hash;
+    }
+
     public static void main(String[] args) {
         System.out.println(ChessBoard.getDefaultBoard().toFen());
     }
 
     public void setCastlingAvailabilityFromFenString(String fen) {
+        for (CastlingAvailability availability : CASTLING_AVAILABILITIES) {
+            removeCastlingAvailability(availability);
+        }
+
         if (fen.contains("K")) {
-            castlingAvailability.add(CastlingAvailability.WHITE_KING_SIDE);
+            addCastlingAvailability(CastlingAvailability.WHITE_KING_SIDE);
         }
         if (fen.contains("Q")) {
-            castlingAvailability.add(CastlingAvailability.WHITE_QUEEN_SIDE);
+            addCastlingAvailability(CastlingAvailability.WHITE_QUEEN_SIDE);
         }
         if (fen.contains("k")) {
-            castlingAvailability.add(CastlingAvailability.BLACK_KING_SIDE);
+            addCastlingAvailability(CastlingAvailability.BLACK_KING_SIDE);
         }
         if (fen.contains("q")) {
-            castlingAvailability.add(CastlingAvailability.BLACK_QUEEN_SIDE);
+            addCastlingAvailability(CastlingAvailability.BLACK_QUEEN_SIDE);
         }
     }
 
@@ -167,7 +307,86 @@ public class BoardData {
     }
 
 
-    public EnumSet<CastlingAvailability> getCastlingAvailability() {
-        return castlingAvailability;
+    /**
+     * @return A read-only view of the castling availability; use {@link #addCastlingAvailability(CastlingAvailability)}
+     * and {@link #removeCastlingAvailability(CastlingAvailability)} to modify it
+     */
+    public Set<CastlingAvailability> getCastlingAvailability() {
+        return Collections.unmodifiableSet(castlingAvailability);
+    }
+
+    public boolean hasCastlingAvailability(CastlingAvailability availability) {
+        return castlingAvailability.contains(availability);
+    }
+
+    public void addCastlingAvailability(CastlingAvailability availability) {
+        if (castlingAvailability.add(availability)) {
+            hash ^= Zobrist.castling(availability);
+        }
+    }
+
+    public void removeCastlingAvailability(CastlingAvailability availability) {
+        if (castlingAvailability.remove(availability)) {
+            hash ^= Zobrist.castling(availability);
+        }
+    }
+
+    /**
+     * @return The castling availability packed into an int with one bit per {@link CastlingAvailability} ordinal
+     */
+    public int getCastlingMask() {
+        int mask = 0;
+        for (CastlingAvailability availability : CASTLING_AVAILABILITIES) {
+            if (castlingAvailability.contains(availability)) {
+                mask |= 1 << availability.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Restores the castling availability from a mask returned by {@link #getCastlingMask()}.
+     */
+    public void setCastlingMask(int mask) {
+        for (CastlingAvailability availability : CASTLING_AVAILABILITIES) {
+            if ((mask & (1 << availability.ordinal())) != 0) {
+                addCastlingAvailability(availability);
+            } else {
+                removeCastlingAvailability(availability);
+            }
+        }
+    }
+
+    /**
+     * Removes any castling availability that depends on a king or rook remaining on the given square. This should be
+     * called with both the start and end squares of every move so that captured rooks also revoke castling.
+     *
+     * @param position The square that a piece moved from or to
+     */
+    public void revokeCastlingAvailability(ChessPosition position) {
+        switch (position.getIndex()) {
+            case 0: // a1
+                removeCastlingAvailability(CastlingAvailability.WHITE_QUEEN_SIDE);
+                break;
+            case 4: // e1
+                removeCastlingAvailability(CastlingAvailability.WHITE_QUEEN_SIDE);
+                removeCastlingAvailability(CastlingAvailability.WHITE_KING_SIDE);
+                break;
+            case 7: // h1
+                removeCastlingAvailability(CastlingAvailability.WHITE_KING_SIDE);
+                break;
+            case 56: // a8
+                removeCastlingAvailability(CastlingAvailability.BLACK_QUEEN_SIDE);
+                break;
+            case 60: // e8
+                removeCastlingAvailability(CastlingAvailability.BLACK_QUEEN_SIDE);
+                removeCastlingAvailability(CastlingAvailability.BLACK_KING_SIDE);
+                break;
+            case 63: // h8
+                removeCastlingAvailability(CastlingAvailability.BLACK_KING_SIDE);
+                break;
+            default:
+                break;
+        }
     }
 }
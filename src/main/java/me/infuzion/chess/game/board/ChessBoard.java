@@ -2,31 +2,61 @@ package me.infuzion.chess.game.board;
 
 import me.infuzion.chess.game.piece.ChessPiece;
 import me.infuzion.chess.game.piece.Color;
-import me.infuzion.chess.game.piece.King;
 import me.infuzion.chess.game.piece.PieceType;
 import me.infuzion.chess.game.util.PGNParser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.StringJoiner;
 
 import static me.infuzion.chess.game.piece.Color.BLACK;
 import static me.infuzion.chess.game.piece.Color.WHITE;
 import static me.infuzion.chess.game.piece.PieceType.*;
 
 public class ChessBoard {
-    private final List<ChessMove> moves = new ArrayList<>();
+    // moves and undo records are kept in the packed encoding and reused so that makeMove does not allocate
+    private int[] moves = new int[64];
+    // the hash of the position before each move, for repetition detection
+    private long[] positionHashes = new long[64];
+    private int moveCount = 0;
+    private UndoRecord[] undoHistory = new UndoRecord[0];
+    private int undoCount = 0;
 
     private final BoardData data;
     private Color currentTurn = WHITE;
     private int halfMoveClock = 0;
+    // plies played before the starting position, taken from the full move number of the FEN
+    private int plyOffset = 0;
 
     public ChessBoard(BoardData data) {
         this.data = data;
     }
 
+    ChessBoard(BoardData data, Color currentTurn, int halfMoveClock, int plyOffset) {
+        this.data = data;
+        this.currentTurn = currentTurn;
+        this.halfMoveClock = halfMoveClock;
+        this.plyOffset = plyOffset;
+    }
+
+    /**
+     * Creates an independent copy of the given board, including its move history. Moves made before the copy was
+     * created cannot be undone on the copy.
+     *
+     * @param board The board to copy
+     */
+    public ChessBoard(ChessBoard board) {
+        this.data = new BoardData(board.data);
+        this.moves = board.moves.clone();
+        this.positionHashes = board.positionHashes.clone();
+        this.moveCount = board.moveCount;
+        this.currentTurn = board.currentTurn;
+        this.halfMoveClock = board.halfMoveClock;
+        this.plyOffset = board.plyOffset;
+    }
+
     private static ChessBoard getChessBoard() {
         final PieceType[][] pieces = {
                 {ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT, ROOK},
@@ -56,69 +86,30 @@ public class ChessBoard {
     }
 
     public static boolean isUnderCheck(@NotNull Color side, BoardData data) {
-        King king = getKing(side, data.getPieces());
-        return king != null && canPieceAttack(king.currentPosition(), data, side.invert());
+        return MoveGenerator.isInCheck(data, side);
     }
 
     public static boolean canPieceAttack(@NotNull ChessPosition position, @NotNull BoardData data, @NotNull Color color) {
-        for (ChessPiece[] pieceArr : data.getPieces()) {
-            for (ChessPiece piece : pieceArr) {
-                if (piece == null) {
-                    continue;
-                }
-                if (piece.getColor() == color) {
-                    if (piece.isMoveAllowedIgnoringCheck(data, new ChessMove(piece.currentPosition(), position), true)) {
-                        System.out.println(position.toString() + piece.currentPosition());
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        return MoveGenerator.isSquareAttacked(data, position.getIndex(), color);
     }
 
     public static List<ChessPiece> piecesThatCanMoveTo(ChessPosition position, BoardData data, @Nullable Color color) {
-        boolean skipColor = color == null;
         List<ChessPiece> piecesToRet = new ArrayList<>();
-        for (ChessPiece[] pieceArr : data.getPieces()) {
-            for (ChessPiece piece : pieceArr) {
-                if (piece == null) {
-                    continue;
-                }
-                if (skipColor || piece.getColor() == color) {
-                    if (piece.isMoveAllowedIgnoringCheck(data, new ChessMove(piece.currentPosition(), position), true)) {
-                        piecesToRet.add(piece);
-                    }
-                }
+        long candidates = color == null ? data.getOccupancy() : data.getOccupancy(color);
+
+        while (candidates != 0) {
+            int square = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+
+            if ((MoveGenerator.pseudoLegalTargets(data, square) & Bitboards.bit(position.getIndex())) != 0) {
+                piecesToRet.add(data.getPiece(square));
             }
         }
         return piecesToRet;
     }
 
     public static boolean isUnderCheckAfterMove(@NotNull BoardData data, @NotNull Color side, @NotNull ChessMove move) {
-        ChessPosition start = move.getSource();
-        ChessPosition end = move.getEnd();
-
-        ChessPiece piece = data.getPiece(start).clone();
-
-        ChessBoard clone = new ChessBoard(new BoardData(data));
-        piece.executeMoveWithoutValidation(clone, move);
-        piece.setPosition(end);
-        return isUnderCheck(side, clone.data);
-    }
-
-    private static King getKing(Color color, ChessPiece[][] pieces) {
-        for (ChessPiece[] pieceArr : pieces) {
-            for (ChessPiece piece : pieceArr) {
-                if (piece == null) {
-                    continue;
-                }
-                if (piece.getColor() == color && piece instanceof King) {
-                    return (King) piece;
-                }
-            }
-        }
-        return null;
+        return MoveGenerator.isInCheckAfterMove(data, side, move);
     }
 
     public static ChessBoard fromPGNString(String pgn) {
@@ -128,45 +119,7 @@ public class ChessBoard {
     }
 
     public static ChessBoard fromFen(String fen) {
-        String[] split = fen.split(" ", 6);
-
-        if (split.length != 6) {
-            throw new IllegalArgumentException("invalid fen");
-        }
-
-
-        final PieceType[][] pieces = new PieceType[8][8];
-        final Color[][] pieceColors = new Color[8][8];
-
-        String[] fenPieces = split[0].split("/");
-
-        for (int i = 0; i < 8; i++) {
-            String fenRank = fenPieces[i];
-
-            int count = 0;
-            for (int j = 0; count < 8; j++) {
-                char cur = fenRank.charAt(j);
-                if (Character.isDigit(cur)) {
-                    count += Character.getNumericValue(cur);
-                    continue;
-                }
-                pieceColors[i][count] = Character.isUpperCase(cur) ? WHITE : BLACK;
-                pieces[i][count] = PieceType.fromAbbreviation(cur);
-                count++;
-            }
-        }
-
-        BoardData data = BoardData.fromPieceTypes(pieces, pieceColors);
-
-        data.setCastlingAvailabilityFromFenString(split[2]);
-        data.setEnPassantSquare(split[3].equals("-") ? null : new ChessPosition(split[3]));
-
-        ChessBoard board = new ChessBoard(data);
-
-        board.currentTurn = split[1].equals("w") ? WHITE : BLACK;
-        board.halfMoveClock = Integer.parseInt(split[4]);
-
-        return board;
+        return Fen.parse(fen);
     }
 
     public static ChessBoard fromInitialFen(String fen, List<ChessMove> moves) {
@@ -187,44 +140,278 @@ public class ChessBoard {
     }
 
     public int getCurrentPly() {
-        return moves.size();
+        return moveCount;
+    }
+
+    /**
+     * @return The number of moves played since the start of the game, counting the moves recorded by the move number of
+     * the FEN the board was created from
+     */
+    public int getGamePly() {
+        return plyOffset + moveCount;
     }
 
     public BoardData getData() {
         return data;
     }
 
-    public boolean move(ChessMove move) {
-        ChessPiece from = data.getPiece(move.getSource());
-        ChessPiece to = data.getPiece(move.getEnd());
+    public int getHalfMoveClock() {
+        return halfMoveClock;
+    }
 
-        if (from == null) {
-            return false;
+    public int getFullMoveNumber() {
+        return (plyOffset + moveCount) / 2 + 1;
+    }
+
+    public Color getCurrentTurn() {
+        return currentTurn;
+    }
+
+    /**
+     * @return The Zobrist hash of the current position, including the side to move
+     */
+    public long getHash() {
+        return data.getHash() ^ Zobrist.sideToMove(currentTurn);
+    }
+
+    /**
+     * @return Every legal move for the side to move
+     */
+    public List<ChessMove> legalMoves() {
+        return MoveGenerator.generateLegalMoves(this);
+    }
+
+    /**
+     * Checks whether the given move is legal for the side to move without playing it. A missing promotion piece on a
+     * promoting pawn move is treated as a queen promotion.
+     */
+    public boolean isLegal(@NotNull ChessMove move) {
+        return MoveGenerator.isLegal(this, move);
+    }
+
+    /**
+     * Checks whether the game has ended on the board. Draws by repetition and by the fifty-move rule are applied
+     * automatically instead of waiting for a claim.
+     *
+     * @return The reason the game has ended, or null if the side to move can continue
+     */
+    public @Nullable GameEndReason getGameEndReason() {
+        if (!MoveGenerator.hasLegalMove(data, currentTurn)) {
+            return MoveGenerator.isInCheck(data, currentTurn) ? GameEndReason.CHECKMATE : GameEndReason.STALEMATE;
+        }
+        if (isThreefoldRepetition()) {
+            return GameEndReason.THREEFOLD_REPETITION;
+        }
+        if (halfMoveClock >= 100) {
+            return GameEndReason.FIFTY_MOVE_RULE;
         }
+        return null;
+    }
 
-        if (from.getColor() != this.currentTurn) {
-            return false;
+    /**
+     * @return True if the current position has occurred at least three times
+     */
+    public boolean isThreefoldRepetition() {
+        long hash = getHash();
+        int occurrences = 1;
+        // captures and pawn moves cannot be undone, so only positions since the last one can repeat
+        int oldest = Math.max(0, moveCount - halfMoveClock);
+
+        // positions with the same side to move are two plies apart
+        for (int ply = moveCount - 2; ply >= oldest; ply -= 2) {
+            if (positionHashes[ply] == hash && ++occurrences >= 3) {
+                return true;
+            }
         }
 
-        boolean valid = from.move(this, move);
+        return false;
+    }
 
-        if (!valid) {
+    public boolean move(ChessMove move) {
+        if (!isLegal(move)) {
             return false;
         }
 
-        halfMoveClock++;
+        makeMove(move);
+        return true;
+    }
+
+    /**
+     * Plays the given move in place without checking whether it is legal. The move can be taken back with
+     * {@link #unmakeMove()}, which allows searching the move tree without copying the board.
+     *
+     * @param move A legal move for the side to move
+     */
+    public void makeMove(@NotNull ChessMove move) {
+        makeMove(move.toPacked());
+    }
+
+    /**
+     * Plays the given packed move (see {@link ChessMove}) in place without checking whether it is legal.
+     *
+     * @param move A legal move for the side to move
+     */
+    public void makeMove(int move) {
+        int from = ChessMove.getSource(move);
+        int to = ChessMove.getEnd(move);
+        ChessPiece piece = data.getPiece(from);
+
+        if (piece == null) {
+            throw new IllegalArgumentException("No piece at " + Bitboards.toPosition(from));
+        }
+
+        boolean pawn = piece.getType() == PAWN;
+        int capturedSquare = to;
+
+        if (pawn && Bitboards.rankOf(from) != Bitboards.rankOf(to) && data.getPiece(to) == null) {
+            // en passant; the captured pawn is behind the target square
+            capturedSquare = piece.getColor() == WHITE ? to - 8 : to + 8;
+        }
+
+        ChessPiece captured = data.getPiece(capturedSquare);
+        long previousHash = getHash();
+
+        pushUndo().set(piece, captured, capturedSquare, data.getCastlingMask(), data.getEnPassantSquare(), halfMoveClock);
+
+        if (captured != null) {
+            data.setPiece(capturedSquare, null);
+        }
+
+        ChessPosition end = Bitboards.toPosition(to);
+        data.setPiece(from, null);
+        piece.setPosition(end);
+        data.setPiece(to, piece);
+
+        if (isCastle(piece, from, to)) {
+            moveRook(rookCorner(from, to), (from + to) / 2);
+        }
+
+        if (pawn && (Bitboards.bit(to) & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0) {
+            // a promotion without a specified piece defaults to a queen
+            PieceType promotion = ChessMove.getPromotion(move);
+            data.setPiece(to, BoardData.createPiece(promotion == null ? QUEEN : promotion, piece.getColor(), end));
+        }
+
+        data.setEnPassantSquare(pawn && Math.abs(to - from) == 16 ? Bitboards.toPosition((from + to) / 2) : null);
+        data.revokeCastlingAvailability(Bitboards.toPosition(from));
+        data.revokeCastlingAvailability(end);
 
         // if move is capture or pawn move, reset half move clock
-        if (from.getType() == PAWN || to != null) {
-            halfMoveClock = 0;
+        halfMoveClock = pawn || captured != null ? 0 : halfMoveClock + 1;
+        addMove(move, previousHash);
+        currentTurn = currentTurn.invert();
+    }
+
+    /**
+     * Takes back the last move played with {@link #makeMove(ChessMove)} or {@link #move(ChessMove)}.
+     */
+    public void unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to undo");
         }
 
-        return true;
+        UndoRecord undo = undoHistory[--undoCount];
+        int move = moves[--moveCount];
+        int from = ChessMove.getSource(move);
+        int to = ChessMove.getEnd(move);
+
+        currentTurn = currentTurn.invert();
+
+        if (isCastle(undo.moved, from, to)) {
+            moveRook((from + to) / 2, rookCorner(from, to));
+        }
+
+        data.setPiece(to, null);
+        undo.moved.setPosition(Bitboards.toPosition(from));
+        data.setPiece(from, undo.moved);
+
+        if (undo.captured != null) {
+            data.setPiece(undo.capturedSquare, undo.captured);
+        }
+
+        data.setCastlingMask(undo.castlingMask);
+        data.setEnPassantSquare(undo.enPassantSquare);
+        halfMoveClock = undo.halfMoveClock;
+        undo.clear();
+    }
+
+    private UndoRecord pushUndo() {
+        if (undoCount == undoHistory.length) {
+            undoHistory = Arrays.copyOf(undoHistory, Math.max(16, undoCount * 2));
+        }
+
+        UndoRecord undo = undoHistory[undoCount];
+        if (undo == null) {
+            undo = undoHistory[undoCount] = new UndoRecord();
+        }
+
+        undoCount++;
+        return undo;
+    }
+
+    private void addMove(int move, long previousHash) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moveCount * 2);
+            positionHashes = Arrays.copyOf(positionHashes, moveCount * 2);
+        }
+
+        positionHashes[moveCount] = previousHash;
+        moves[moveCount++] = move;
+    }
+
+    private static boolean isCastle(ChessPiece piece, int from, int to) {
+        return piece.getType() == KING && Math.abs(to - from) == 2;
+    }
+
+    private static int rookCorner(int kingFrom, int kingTo) {
+        return kingTo > kingFrom ? kingFrom + 3 : kingFrom - 4;
+    }
+
+    private void moveRook(int from, int to) {
+        ChessPiece rook = data.getPiece(from);
+
+        if (rook != null) {
+            data.setPiece(from, null);
+            rook.setPosition(Bitboards.toPosition(to));
+            data.setPiece(to, rook);
+        }
     }
 
     public void recordMove(ChessMove move) {
-        moves.add(move);
+        addMove(move.toPacked(), getHash());
         currentTurn = currentTurn.invert();
+        // the move was played outside of makeMove, so earlier undo records no longer describe this board
+        while (undoCount > 0) {
+            undoHistory[--undoCount].clear();
+        }
+    }
+
+    /**
+     * The state that cannot be recovered from the move itself when undoing it. Records are reused between moves.
+     */
+    private static final class UndoRecord {
+        private ChessPiece moved;
+        private ChessPiece captured;
+        private int capturedSquare;
+        private int castlingMask;
+        private ChessPosition enPassantSquare;
+        private int halfMoveClock;
+
+        private void set(ChessPiece moved, @Nullable ChessPiece captured, int capturedSquare, int castlingMask,
+                         @Nullable ChessPosition enPassantSquare, int halfMoveClock) {
+            this.moved = moved;
+            this.captured = captured;
+            this.capturedSquare = capturedSquare;
+            this.castlingMask = castlingMask;
+            this.enPassantSquare = enPassantSquare;
+            this.halfMoveClock = halfMoveClock;
+        }
+
+        private void clear() {
+            // drop piece references so that undone records do not keep captured pieces alive
+            moved = null;
+            captured = null;
+        }
     }
 
     @Override
@@ -247,40 +434,6 @@ public class ChessBoard {
     }
 
     public String toFen() {
-        StringJoiner joiner = new StringJoiner("/");
-        for (int i = data.getPieces().length - 1; i >= 0; i--) {
-            ChessPiece[] rank = data.getPieces()[i];
-            StringBuilder builder = new StringBuilder();
-            int counter = 0;
-
-            for (ChessPiece piece : rank) {
-                if (piece == null) {
-                    counter++;
-                    continue;
-                }
-
-                if (counter != 0) {
-                    builder.append(counter);
-                    counter = 0;
-                }
-
-                char abbr = piece.getType().getAbbreviation();
-                char p = piece.getColor() == WHITE ? Character.toUpperCase(abbr) : Character.toLowerCase(abbr);
-                builder.append(p);
-            }
-
-            if (counter != 0) {
-                builder.append(counter);
-            }
-
-            joiner.add(builder.toString());
-        }
-
-        String pieces = joiner.toString();
-        String activeColor = currentTurn == WHITE ? "w" : "b";
-        String castlingAvailability = data.getCastlingAvailabilityAsFenString();
-        String enPassantTarget = data.getEnPassantSquare() == null ? "-" : data.getEnPassantSquare().getPosition();
-
-        return String.format("%s %s %s %s %d %d", pieces, activeColor, castlingAvailability, enPassantTarget, halfMoveClock, (moves.size() / 2) + 1);
+        return Fen.toString(this);
     }
 }
@@ -19,13 +19,32 @@ package me.infuzion.chess.game.board;
 import me.infuzion.chess.game.piece.PieceType;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Objects;
+
+/**
+ * A move from one square to another, with an optional promotion piece.
+ * <p>
+ * Move generation and search use a packed 16-bit encoding instead so that they do not allocate:
+ * <ul>
+ *     <li>bits 0-5: source square index</li>
+ *     <li>bits 6-11: end square index</li>
+ *     <li>bits 12-13: promotion piece (knight, bishop, rook or queen), only meaningful with {@link #PROMOTION_FLAG}</li>
+ *     <li>bit 14: {@link #PROMOTION_FLAG}</li>
+ *     <li>bit 15: {@link #CAPTURE_FLAG}, set by the move generator and ignored when playing the move</li>
+ * </ul>
+ */
 public class ChessMove {
+    public static final int PROMOTION_FLAG = 1 << 14;
+    public static final int CAPTURE_FLAG = 1 << 15;
+
+    private static final PieceType[] PACKED_PROMOTIONS = {PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN};
+
     private final ChessPosition source;
     private final ChessPosition end;
     private final PieceType promotion;
 
     public ChessMove(String source, String end) {
-        this(new ChessPosition(source), new ChessPosition(end));
+        this(ChessPosition.of(source), ChessPosition.of(end));
     }
 
     public ChessMove(ChessPosition source, ChessPosition end) {
@@ -53,6 +72,74 @@ public class ChessMove {
         return promotion;
     }
 
+    /**
+     * @return This move in the packed encoding, without the capture flag
+     * @throws IllegalArgumentException If the promotion piece is a pawn or a king
+     */
+    public int toPacked() {
+        return pack(source.getIndex(), end.getIndex(), promotion);
+    }
+
+    /**
+     * @param source    The source square index
+     * @param end       The end square index
+     * @param promotion The promotion piece, or null if the move is not a promotion
+     * @return The packed move
+     * @throws IllegalArgumentException If the promotion piece is a pawn or a king
+     */
+    public static int pack(int source, int end, @Nullable PieceType promotion) {
+        int move = source | (end << 6);
+
+        if (promotion == null) {
+            return move;
+        }
+
+        for (int i = 0; i < PACKED_PROMOTIONS.length; i++) {
+            if (PACKED_PROMOTIONS[i] == promotion) {
+                return move | (i << 12) | PROMOTION_FLAG;
+            }
+        }
+
+        throw new IllegalArgumentException("Invalid promotion: " + promotion);
+    }
+
+    public static ChessMove unpack(int move) {
+        return new ChessMove(ChessPosition.of(getSource(move)), ChessPosition.of(getEnd(move)), getPromotion(move));
+    }
+
+    public static int getSource(int move) {
+        return move & 0x3F;
+    }
+
+    public static int getEnd(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static @Nullable PieceType getPromotion(int move) {
+        return (move & PROMOTION_FLAG) == 0 ? null : PACKED_PROMOTIONS[(move >>> 12) & 3];
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE_FLAG) != 0;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ChessMove)) {
+            return false;
+        }
+        ChessMove other = (ChessMove) obj;
+        return Objects.equals(source, other.source) && Objects.equals(end, other.end) && promotion == other.promotion;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, end, promotion);
+    }
+
     @Override
     public String toString() {
         return "ChessMove{" +
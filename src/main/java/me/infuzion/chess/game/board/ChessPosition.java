@@ -2,13 +2,24 @@ package me.infuzion.chess.game.board;
 
 /**
  * rank 0 and file 0 is the position a1
+ * <p>
+ * Positions are immutable, so the 64 instances returned by the {@code of} factories are shared. Prefer them over the
+ * constructors, which are kept for existing callers.
  */
 public class ChessPosition {
 
     private final static Character[] rankLetters = {'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h'};
+    private final static ChessPosition[] positions = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < positions.length; square++) {
+            positions[square] = new ChessPosition(Bitboards.rankOf(square), Bitboards.fileOf(square));
+        }
+    }
 
     private final int rank;
     private final int file;
+    private final String position;
 
     public ChessPosition(int rank, int file) {
         if (rank >= 8 || rank < 0) {
@@ -19,6 +30,7 @@ public class ChessPosition {
         }
         this.rank = rank;
         this.file = file;
+        this.position = rankLetters[rank] + String.valueOf(file + 1);
     }
 
     public ChessPosition(int row, char col) {
@@ -29,14 +41,53 @@ public class ChessPosition {
         this(Integer.parseInt(algebraicNotation.substring(1)), algebraicNotation.charAt(0));
     }
 
+    /**
+     * @return The shared position for the given rank (letter column) and file (row)
+     */
+    public static ChessPosition of(int rank, int file) {
+        if (rank >= 8 || rank < 0) {
+            throw new IllegalArgumentException("Invalid rank value: " + rank);
+        }
+        if (file >= 8 || file < 0) {
+            throw new IllegalArgumentException("Invalid file value: " + file);
+        }
+        return positions[Bitboards.square(rank, file)];
+    }
+
+    /**
+     * @param square The bitboard square index (a1 is 0, h1 is 7 and h8 is 63)
+     * @return The shared position for the given square
+     */
+    public static ChessPosition of(int square) {
+        if (square >= 64 || square < 0) {
+            throw new IllegalArgumentException("Invalid square: " + square);
+        }
+        return positions[square];
+    }
+
+    /**
+     * @param algebraicNotation A square such as {@code e4}
+     * @return The shared position for the given square
+     */
+    public static ChessPosition of(String algebraicNotation) {
+        if (algebraicNotation.length() != 2) {
+            throw new IllegalArgumentException("Invalid position: " + algebraicNotation);
+        }
+
+        char row = algebraicNotation.charAt(1);
+        if (row < '1' || row > '8') {
+            throw new IllegalArgumentException("Invalid position: " + algebraicNotation);
+        }
+
+        return positions[Bitboards.square(rankCharToRank(algebraicNotation.charAt(0)), row - '1')];
+    }
+
     public static int rankCharToRank(char file) {
         char colLowerCase = Character.toLowerCase(file);
-        for (int i = 0; i < rankLetters.length; i++) {
-            if (colLowerCase == rankLetters[i]) {
-                return i;
-            }
+        if (colLowerCase < 'a' || colLowerCase > 'h') {
+            throw new IllegalArgumentException("Invalid Input: " + colLowerCase);
         }
-        throw new IllegalArgumentException("Invalid Input: " + colLowerCase);
+        return colLowerCase - 'a';
     }
 
     public int getRank() {
@@ -48,13 +99,20 @@ public class ChessPosition {
     }
 
     public String getPosition() {
-        return rankLetters[rank] + String.valueOf(file + 1);
+        return position;
     }
 
     public int getFile() {
         return file;
     }
 
+    /**
+     * @return The bitboard square index of this position (a1 is 0, h1 is 7 and h8 is 63)
+     */
+    public int getIndex() {
+        return Bitboards.square(rank, file);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -68,6 +126,11 @@ public class ChessPosition {
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return getIndex();
+    }
+
     @Override
     public String toString() {
         return getPosition();
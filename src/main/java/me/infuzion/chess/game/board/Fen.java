@@ -0,0 +1,261 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.piece.CastlingAvailability;
+import me.infuzion.chess.game.piece.ChessPiece;
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.piece.PieceType;
+import org.jetbrains.annotations.NotNull;
+
+import static me.infuzion.chess.game.piece.Color.BLACK;
+import static me.infuzion.chess.game.piece.Color.WHITE;
+
+/**
+ * Reads and writes Forsyth-Edwards Notation in a single pass. Pieces are placed directly on a {@link BoardData}
+ * without intermediate arrays, and boards are written into a caller-supplied {@link StringBuilder} so that the buffer
+ * can be reused.
+ */
+public final class Fen {
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(96));
+
+    private Fen() {
+    }
+
+    /**
+     * @param fen A FEN string with all six fields
+     * @return A new board in the described position
+     * @throws IllegalArgumentException If the string is not valid FEN
+     */
+    public static ChessBoard parse(@NotNull String fen) {
+        BoardData data = new BoardData();
+        int length = fen.length();
+        int i = 0;
+
+        // piece placement, from a8 to h1
+        int row = 7;
+        int column = 0;
+        for (; i < length; i++) {
+            char c = fen.charAt(i);
+
+            if (c == ' ') {
+                break;
+            } else if (c == '/') {
+                if (column != 8 || row == 0) {
+                    throw invalid(fen);
+                }
+                row--;
+                column = 0;
+            } else if (c >= '1' && c <= '8') {
+                column += c - '0';
+            } else {
+                PieceType type = pieceType(c);
+
+                if (type == null || column >= 8) {
+                    throw invalid(fen);
+                }
+
+                Color color = Character.isUpperCase(c) ? WHITE : BLACK;
+                int square = Bitboards.square(column, row);
+                data.setPiece(square, BoardData.createPiece(type, color, ChessPosition.of(square)));
+                column++;
+            }
+
+            if (column > 8) {
+                throw invalid(fen);
+            }
+        }
+
+        if (row != 0 || column != 8 || i + 2 >= length) {
+            throw invalid(fen);
+        }
+
+        // active color
+        char turn = fen.charAt(++i);
+        if ((turn != 'w' && turn != 'b') || fen.charAt(++i) != ' ') {
+            throw invalid(fen);
+        }
+
+        // castling availability
+        for (i++; i < length && fen.charAt(i) != ' '; i++) {
+            switch (fen.charAt(i)) {
+                case 'K':
+                    data.addCastlingAvailability(CastlingAvailability.WHITE_KING_SIDE);
+                    break;
+                case 'Q':
+                    data.addCastlingAvailability(CastlingAvailability.WHITE_QUEEN_SIDE);
+                    break;
+                case 'k':
+                    data.addCastlingAvailability(CastlingAvailability.BLACK_KING_SIDE);
+                    break;
+                case 'q':
+                    data.addCastlingAvailability(CastlingAvailability.BLACK_QUEEN_SIDE);
+                    break;
+                case '-':
+                    break;
+                default:
+                    throw invalid(fen);
+            }
+        }
+
+        // en passant target square
+        if (++i >= length) {
+            throw invalid(fen);
+        }
+        if (fen.charAt(i) == '-') {
+            i++;
+        } else if (i + 1 < length && fen.charAt(i) >= 'a' && fen.charAt(i) <= 'h'
+                && fen.charAt(i + 1) >= '1' && fen.charAt(i + 1) <= '8') {
+            data.setEnPassantSquare(ChessPosition.of(fen.charAt(i) - 'a', fen.charAt(i + 1) - '1'));
+            i += 2;
+        } else {
+            throw invalid(fen);
+        }
+
+        // half move clock and full move number
+        if (i >= length || fen.charAt(i) != ' ') {
+            throw invalid(fen);
+        }
+
+        int halfMoveClock = 0;
+        int digits = 0;
+        for (i++; i < length && fen.charAt(i) != ' '; i++, digits++) {
+            halfMoveClock = halfMoveClock * 10 + digit(fen, i);
+        }
+
+        int fullMoveNumber = 0;
+        int fullMoveDigits = 0;
+        for (i++; i < length; i++, fullMoveDigits++) {
+            fullMoveNumber = fullMoveNumber * 10 + digit(fen, i);
+        }
+
+        if (digits == 0 || fullMoveDigits == 0 || fullMoveNumber < 1) {
+            throw invalid(fen);
+        }
+
+        Color currentTurn = turn == 'w' ? WHITE : BLACK;
+        int plyOffset = (fullMoveNumber - 1) * 2 + (currentTurn == BLACK ? 1 : 0);
+        return new ChessBoard(data, currentTurn, halfMoveClock, plyOffset);
+    }
+
+    /**
+     * @return The FEN string of the given board, built in a buffer that is reused by the calling thread
+     */
+    public static String toString(@NotNull ChessBoard board) {
+        StringBuilder builder = BUFFER.get();
+        builder.setLength(0);
+        write(board, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the FEN string of the given board to the given builder.
+     */
+    public static void write(@NotNull ChessBoard board, @NotNull StringBuilder builder) {
+        BoardData data = board.getData();
+
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+
+            for (int column = 0; column < 8; column++) {
+                ChessPiece piece = data.getPiece(Bitboards.square(column, row));
+
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+
+                if (empty != 0) {
+                    builder.append((char) ('0' + empty));
+                    empty = 0;
+                }
+
+                char abbr = piece.getType().getAbbreviation();
+                builder.append(piece.getColor() == WHITE ? abbr : Character.toLowerCase(abbr));
+            }
+
+            if (empty != 0) {
+                builder.append((char) ('0' + empty));
+            }
+            if (row != 0) {
+                builder.append('/');
+            }
+        }
+
+        builder.append(board.getCurrentTurn() == WHITE ? " w " : " b ");
+
+        int length = builder.length();
+        if (data.hasCastlingAvailability(CastlingAvailability.WHITE_KING_SIDE)) {
+            builder.append('K');
+        }
+        if (data.hasCastlingAvailability(CastlingAvailability.WHITE_QUEEN_SIDE)) {
+            builder.append('Q');
+        }
+        if (data.hasCastlingAvailability(CastlingAvailability.BLACK_KING_SIDE)) {
+            builder.append('k');
+        }
+        if (data.hasCastlingAvailability(CastlingAvailability.BLACK_QUEEN_SIDE)) {
+            builder.append('q');
+        }
+        if (builder.length() == length) {
+            builder.append('-');
+        }
+
+        builder.append(' ');
+        ChessPosition enPassant = data.getEnPassantSquare();
+        if (enPassant == null) {
+            builder.append('-');
+        } else {
+            builder.append(enPassant.getPosition());
+        }
+
+        builder.append(' ').append(board.getHalfMoveClock()).append(' ').append(board.getFullMoveNumber());
+    }
+
+    private static PieceType pieceType(char c) {
+        switch (Character.toUpperCase(c)) {
+            case 'P':
+                return PieceType.PAWN;
+            case 'N':
+                return PieceType.KNIGHT;
+            case 'B':
+                return PieceType.BISHOP;
+            case 'R':
+                return PieceType.ROOK;
+            case 'Q':
+                return PieceType.QUEEN;
+            case 'K':
+                return PieceType.KING;
+            default:
+                return null;
+        }
+    }
+
+    private static int digit(String fen, int index) {
+        char c = fen.charAt(index);
+
+        if (c < '0' || c > '9') {
+            throw invalid(fen);
+        }
+
+        return c - '0';
+    }
+
+    private static IllegalArgumentException invalid(String fen) {
+        return new IllegalArgumentException("invalid fen: " + fen);
+    }
+}
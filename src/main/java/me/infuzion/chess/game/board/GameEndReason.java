@@ -0,0 +1,44 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+/**
+ * The ways a game can end on the board, as detected by {@link ChessBoard#getGameEndReason()}.
+ */
+public enum GameEndReason {
+    /**
+     * The side to move is in check and has no legal moves; the other side wins.
+     */
+    CHECKMATE,
+    /**
+     * The side to move is not in check but has no legal moves.
+     */
+    STALEMATE,
+    /**
+     * The current position has occurred three times with the same side to move, castling rights and en passant
+     * possibilities.
+     */
+    THREEFOLD_REPETITION,
+    /**
+     * Fifty moves by each side have been played without a capture or a pawn move.
+     */
+    FIFTY_MOVE_RULE;
+
+    public boolean isDraw() {
+        return this != CHECKMATE;
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.piece.CastlingAvailability;
+import me.infuzion.chess.game.piece.ChessPiece;
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.piece.PieceType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static me.infuzion.chess.game.board.Bitboards.*;
+import static me.infuzion.chess.game.piece.Color.WHITE;
+import static me.infuzion.chess.game.piece.PieceType.*;
+
+/**
+ * Legal move generation and validation driven by the bitboards stored in {@link BoardData}.
+ * <p>
+ * The pieces giving check and the pieces pinned to the king are computed once per position. Pseudo-legal targets are
+ * then filtered with a check mask (the checking piece and the squares between it and the king) and, for pinned pieces,
+ * the line through the king. King moves are checked against the attackers of the destination square with the king
+ * removed, and en passant captures, which can uncover a check along the rank, are checked against the occupancy the
+ * board would have after the capture. No board copies are made.
+ */
+public final class MoveGenerator {
+    /**
+     * The size of a move buffer that can hold the moves of any position (the known maximum is 218).
+     */
+    public static final int MAX_MOVES = 256;
+
+    private static final PieceType[] PROMOTIONS = {QUEEN, ROOK, BISHOP, KNIGHT};
+
+    private static final int E1 = 4;
+    private static final int E8 = 60;
+
+    private MoveGenerator() {
+    }
+
+    public static List<ChessMove> generateLegalMoves(@NotNull ChessBoard board) {
+        return generateLegalMoves(board.getData(), board.getCurrentTurn());
+    }
+
+    /**
+     * Generates every legal move for the given side. Promotions are generated once for each possible promotion piece.
+     *
+     * @param data The board to generate moves for
+     * @param side The side to move
+     * @return A list of all legal moves
+     */
+    public static List<ChessMove> generateLegalMoves(@NotNull BoardData data, @NotNull Color side) {
+        int[] buffer = new int[MAX_MOVES];
+        int count = generateLegalMoves(data, side, buffer);
+        List<ChessMove> moves = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            moves.add(ChessMove.unpack(buffer[i]));
+        }
+
+        return moves;
+    }
+
+    public static int generateLegalMoves(@NotNull ChessBoard board, @NotNull int[] moves) {
+        return generateLegalMoves(board.getData(), board.getCurrentTurn(), moves);
+    }
+
+    /**
+     * Generates every legal move for the given side in the packed encoding described in {@link ChessMove}, without
+     * allocating.
+     *
+     * @param data  The board to generate moves for
+     * @param side  The side to move
+     * @param moves The buffer to write the moves to; at least {@link #MAX_MOVES} long
+     * @return The number of moves written
+     */
+    public static int generateLegalMoves(@NotNull BoardData data, @NotNull Color side, @NotNull int[] moves) {
+        int count = 0;
+        long own = data.getOccupancy(side);
+        long enemy = data.getOccupancy(side.invert());
+        long occupancy = own | enemy;
+        long enPassant = enPassantTarget(data, side);
+
+        long king = data.getBitboard(side, KING);
+        int kingSquare = Long.numberOfTrailingZeros(king);
+        long checkMask = checkMask(data, side, king, occupancy);
+        long pinned = pinned(data, side, king, own, enemy, occupancy);
+
+        long pieces = own;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+
+            PieceType type = data.getPiece(from).getType();
+            long targets;
+
+            if (from == kingSquare) {
+                targets = kingTargets(data, side, from, own, occupancy) | castlingTargets(data, side, from);
+            } else {
+                targets = pseudoLegalTargets(data, side, type, from, occupancy, enemy);
+
+                long mask = checkMask;
+                if ((pinned & bit(from)) != 0) {
+                    mask &= line(kingSquare, from);
+                }
+
+                if (type == PAWN && (targets & enPassant) != 0) {
+                    // en passant removes a piece that is not on the target square, so it is verified separately
+                    mask &= ~enPassant;
+                    if (leavesKingSafe(data, side, PAWN, from, Long.numberOfTrailingZeros(enPassant))) {
+                        mask |= enPassant;
+                    }
+                }
+
+                targets &= mask;
+            }
+
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+
+                int move = ChessMove.pack(from, to, null);
+                if ((enemy & bit(to)) != 0 || (type == PAWN && (enPassant & bit(to)) != 0)) {
+                    move |= ChessMove.CAPTURE_FLAG;
+                }
+
+                if (type == PAWN && isPromotionSquare(side, to)) {
+                    for (PieceType promotion : PROMOTIONS) {
+                        moves[count++] = move | ChessMove.pack(0, 0, promotion);
+                    }
+                } else {
+                    moves[count++] = move;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return True if the given side has at least one legal move
+     */
+    public static boolean hasLegalMove(@NotNull BoardData data, @NotNull Color side) {
+        return generateLegalMoves(data, side, new int[MAX_MOVES]) > 0;
+    }
+
+    /**
+     * Computes the squares the piece on the given square could move to if check and castling are ignored.
+     *
+     * @param data   The board containing the piece
+     * @param square The square index of the piece
+     * @return The bitboard of target squares, or 0 if the square is empty
+     */
+    public static long pseudoLegalTargets(@NotNull BoardData data, int square) {
+        ChessPiece piece = data.getPiece(square);
+
+        if (piece == null) {
+            return 0;
+        }
+
+        Color side = piece.getColor();
+        long own = data.getOccupancy(side);
+        long enemy = data.getOccupancy(side.invert());
+
+        if (piece.getType() == KING) {
+            return kingAttacks(square) & ~own;
+        }
+
+        return pseudoLegalTargets(data, side, piece.getType(), square, own | enemy, enemy);
+    }
+
+    private static long pseudoLegalTargets(BoardData data, Color side, PieceType type, int from, long occupancy, long enemy) {
+        long own = occupancy & ~enemy;
+
+        switch (type) {
+            case PAWN:
+                return pawnTargets(data, side, from, occupancy, enemy);
+            case KNIGHT:
+                return knightAttacks(from) & ~own;
+            case BISHOP:
+                return bishopAttacks(from, occupancy) & ~own;
+            case ROOK:
+                return rookAttacks(from, occupancy) & ~own;
+            case QUEEN:
+                return queenAttacks(from, occupancy) & ~own;
+            case KING:
+                return kingAttacks(from) & ~own;
+            default:
+                throw new IllegalStateException("Unknown piece type: " + type);
+        }
+    }
+
+    /**
+     * Checks whether the given move is legal for the side to move on the given board. A missing promotion piece on a
+     * promoting pawn move is treated as a queen promotion.
+     */
+    public static boolean isLegal(@NotNull ChessBoard board, @NotNull ChessMove move) {
+        return isLegal(board.getData(), board.getCurrentTurn(), move);
+    }
+
+    public static boolean isLegal(@NotNull BoardData data, @NotNull Color side, @NotNull ChessMove move) {
+        PieceType promotion = move.getPromotion();
+
+        if (promotion == PAWN || promotion == KING) {
+            return false;
+        }
+
+        return isLegal(data, side, move.toPacked());
+    }
+
+    /**
+     * Checks whether the given packed move is legal for the given side. The capture flag is ignored.
+     */
+    public static boolean isLegal(@NotNull BoardData data, @NotNull Color side, int move) {
+        int from = ChessMove.getSource(move);
+        int to = ChessMove.getEnd(move);
+        ChessPiece piece = data.getPiece(from);
+
+        if (piece == null || piece.getColor() != side || from == to) {
+            return false;
+        }
+
+        long own = data.getOccupancy(side);
+        long enemy = data.getOccupancy(side.invert());
+        long occupancy = own | enemy;
+        long target = bit(to);
+
+        if ((own & target) != 0) {
+            return false;
+        }
+
+        long king = data.getBitboard(side, KING);
+        int kingSquare = Long.numberOfTrailingZeros(king);
+
+        if (from == kingSquare) {
+            if (isCastle(KING, from, to)) {
+                return (castlingTargets(data, side, from) & target) != 0;
+            }
+            return (kingTargets(data, side, from, own, occupancy) & target) != 0;
+        }
+
+        if ((pseudoLegalTargets(data, side, piece.getType(), from, occupancy, enemy) & target) == 0) {
+            return false;
+        }
+
+        if (isEnPassant(data, side, piece.getType(), from, to)) {
+            return leavesKingSafe(data, side, PAWN, from, to);
+        }
+
+        long mask = checkMask(data, side, king, occupancy);
+        if ((pinned(data, side, king, own, enemy, occupancy) & bit(from)) != 0) {
+            mask &= line(kingSquare, from);
+        }
+
+        return (mask & target) != 0;
+    }
+
+    /**
+     * Checks whether the king of the given side would be attacked after the given move, without validating the move
+     * itself. The board is not modified.
+     */
+    public static boolean isInCheckAfterMove(@NotNull BoardData data, @NotNull Color side, @NotNull ChessMove move) {
+        ChessPiece piece = data.getPiece(move.getSource());
+
+        if (piece == null) {
+            return isInCheck(data, side);
+        }
+
+        return !leavesKingSafe(data, side, piece.getType(), move.getSource().getIndex(), move.getEnd().getIndex());
+    }
+
+    public static boolean isInCheck(@NotNull BoardData data, @NotNull Color side) {
+        long king = data.getBitboard(side, KING);
+        return king != 0 && isSquareAttacked(data, Long.numberOfTrailingZeros(king), side.invert());
+    }
+
+    /**
+     * @param data     The board to check
+     * @param square   The square index to check
+     * @param attacker The color of the attacking side
+     * @return True if any piece of the attacking color attacks the given square
+     */
+    public static boolean isSquareAttacked(@NotNull BoardData data, int square, @NotNull Color attacker) {
+        return attackersTo(data, square, attacker, data.getOccupancy(), -1L) != 0;
+    }
+
+    /**
+     * Computes the pieces of the attacking color that attack the given square assuming the given occupancy.
+     *
+     * @param occupancy     The occupancy to use when computing slider attacks
+     * @param attackerMask  A mask applied to the attacking pieces (used to exclude captured pieces)
+     */
+    static long attackersTo(BoardData data, int square, Color attacker, long occupancy, long attackerMask) {
+        long queens = data.getBitboard(attacker, QUEEN);
+        long attackers = (pawnAttacks(attacker.invert(), square) & data.getBitboard(attacker, PAWN))
+                | (knightAttacks(square) & data.getBitboard(attacker, KNIGHT))
+                | (kingAttacks(square) & data.getBitboard(attacker, KING))
+                | (bishopAttacks(square, occupancy) & (data.getBitboard(attacker, BISHOP) | queens))
+                | (rookAttacks(square, occupancy) & (data.getBitboard(attacker, ROOK) | queens));
+
+        return attackers & attackerMask;
+    }
+
+    private static long pawnTargets(BoardData data, Color side, int from, long occupancy, long enemy) {
+        long empty = ~occupancy;
+        long pawn = bit(from);
+        long targets;
+
+        if (side == WHITE) {
+            long single = (pawn << 8) & empty;
+            targets = single | (((single & RANK_3) << 8) & empty);
+        } else {
+            long single = (pawn >>> 8) & empty;
+            targets = single | (((single & RANK_6) >>> 8) & empty);
+        }
+
+        return targets | (pawnAttacks(side, from) & (enemy | enPassantTarget(data, side)));
+    }
+
+    private static long enPassantTarget(BoardData data, Color side) {
+        ChessPosition square = data.getEnPassantSquare();
+
+        if (square == null) {
+            return 0;
+        }
+
+        // only squares behind a pawn that has just moved two squares can be captured en passant
+        long target = bit(square.getIndex());
+        return (target & (side == WHITE ? RANK_6 : RANK_3)) & ~data.getOccupancy();
+    }
+
+    private static boolean isEnPassant(BoardData data, Color side, PieceType type, int from, int to) {
+        return type == PAWN && rankOf(from) != rankOf(to) && (enPassantTarget(data, side) & bit(to)) != 0;
+    }
+
+    private static boolean isPromotionSquare(Color side, int to) {
+        return (bit(to) & (side == WHITE ? RANK_8 : RANK_1)) != 0;
+    }
+
+    private static boolean isCastle(PieceType type, int from, int to) {
+        return type == KING && (from == E1 || from == E8) && Math.abs(to - from) == 2;
+    }
+
+    private static boolean leavesKingSafe(BoardData data, Color side, PieceType type, int from, int to) {
+        long king = data.getBitboard(side, KING);
+
+        if (king == 0) {
+            return true;
+        }
+
+        long captured = bit(to);
+        if (isEnPassant(data, side, type, from, to)) {
+            captured = side == WHITE ? bit(to - 8) : bit(to + 8);
+        }
+
+        long occupancy = (data.getOccupancy() & ~bit(from) & ~captured) | bit(to);
+        // follow the same king as isInCheck so that both agree on boards with more than one king
+        int kingSquare = Long.numberOfTrailingZeros(king);
+        if (kingSquare == from) {
+            kingSquare = to;
+        }
+
+        return attackersTo(data, kingSquare, side.invert(), occupancy, ~captured) == 0;
+    }
+
+    /**
+     * @return The squares a piece may move to without leaving the given king in check, ignoring pins: everything when
+     * not in check, the checking piece and the squares between it and the king when in single check, and nothing when
+     * in double check
+     */
+    private static long checkMask(BoardData data, Color side, long king, long occupancy) {
+        if (king == 0) {
+            return -1L;
+        }
+
+        int kingSquare = Long.numberOfTrailingZeros(king);
+        long checkers = attackersTo(data, kingSquare, side.invert(), occupancy, -1L);
+
+        if (checkers == 0) {
+            return -1L;
+        }
+        if (Long.bitCount(checkers) > 1) {
+            return 0;
+        }
+
+        return checkers | between(kingSquare, Long.numberOfTrailingZeros(checkers));
+    }
+
+    /**
+     * @return The pieces of the given side that are the only piece between their king and an enemy slider
+     */
+    private static long pinned(BoardData data, Color side, long king, long own, long enemy, long occupancy) {
+        if (king == 0) {
+            return 0;
+        }
+
+        Color attacker = side.invert();
+        int kingSquare = Long.numberOfTrailingZeros(king);
+        long queens = data.getBitboard(attacker, QUEEN);
+
+        // sliders that would attack the king if none of our pieces were in the way
+        long snipers = (rookAttacks(kingSquare, enemy) & (data.getBitboard(attacker, ROOK) | queens))
+                | (bishopAttacks(kingSquare, enemy) & (data.getBitboard(attacker, BISHOP) | queens));
+        long pinned = 0;
+
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+
+            long blockers = between(kingSquare, sniper) & occupancy;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & own;
+            }
+        }
+
+        return pinned;
+    }
+
+    /**
+     * @return The squares the king on the given square can step to without moving into check, excluding castling
+     */
+    private static long kingTargets(BoardData data, Color side, int from, long own, long occupancy) {
+        long candidates = kingAttacks(from) & ~own;
+        // the king must not block attacks on the squares behind it
+        long withoutKing = occupancy & ~bit(from);
+        long targets = 0;
+
+        while (candidates != 0) {
+            int to = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+
+            if (attackersTo(data, to, side.invert(), withoutKing, -1L) == 0) {
+                targets |= bit(to);
+            }
+        }
+
+        return targets;
+    }
+
+    private static long castlingTargets(BoardData data, Color side, int from) {
+        int home = side == WHITE ? E1 : E8;
+
+        if (from != home) {
+            return 0;
+        }
+
+        Color enemy = side.invert();
+        if (isSquareAttacked(data, home, enemy)) {
+            return 0;
+        }
+
+        CastlingAvailability kingSide = side == WHITE ? CastlingAvailability.WHITE_KING_SIDE : CastlingAvailability.BLACK_KING_SIDE;
+        CastlingAvailability queenSide = side == WHITE ? CastlingAvailability.WHITE_QUEEN_SIDE : CastlingAvailability.BLACK_QUEEN_SIDE;
+        long occupancy = data.getOccupancy();
+        long rooks = data.getBitboard(side, ROOK);
+        long targets = 0;
+
+        if (data.hasCastlingAvailability(kingSide) && (rooks & bit(home + 3)) != 0
+                && (occupancy & (bit(home + 1) | bit(home + 2))) == 0
+                && !isSquareAttacked(data, home + 1, enemy) && !isSquareAttacked(data, home + 2, enemy)) {
+            targets |= bit(home + 2);
+        }
+
+        if (data.hasCastlingAvailability(queenSide) && (rooks & bit(home - 4)) != 0
+                && (occupancy & (bit(home - 1) | bit(home - 2) | bit(home - 3))) == 0
+                && !isSquareAttacked(data, home - 1, enemy) && !isSquareAttacked(data, home - 2, enemy)) {
+            targets |= bit(home - 2);
+        }
+
+        return targets;
+    }
+}
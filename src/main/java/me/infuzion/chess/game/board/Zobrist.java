@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.piece.CastlingAvailability;
+import me.infuzion.chess.game.piece.ChessPiece;
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.piece.PieceType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys used to hash positions. The keys are generated from a fixed seed so that hashes are stable across runs
+ * and can be persisted.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private static final int PIECE_TYPES = PieceType.values().length;
+
+    private static final long[][] PIECES = new long[Color.values().length * PIECE_TYPES][64];
+    private static final long[] CASTLING = new long[CastlingAvailability.values().length];
+    private static final long[] EN_PASSANT = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        for (long[] squares : PIECES) {
+            for (int i = 0; i < squares.length; i++) {
+                squares[i] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT.length; i++) {
+            EN_PASSANT[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(@NotNull Color color, @NotNull PieceType type, int square) {
+        return PIECES[color.ordinal() * PIECE_TYPES + type.ordinal()][square];
+    }
+
+    public static long castling(@NotNull CastlingAvailability availability) {
+        return CASTLING[availability.ordinal()];
+    }
+
+    /**
+     * @param rank The letter column of the en passant square (see {@link ChessPosition#getRank()})
+     */
+    public static long enPassant(int rank) {
+        return EN_PASSANT[rank];
+    }
+
+    public static long sideToMove(@NotNull Color color) {
+        return color == Color.BLACK ? BLACK_TO_MOVE : 0;
+    }
+
+    /**
+     * Computes the hash of a position from scratch. This should always be equal to the incrementally maintained
+     * {@link BoardData#getHash()} combined with {@link #sideToMove(Color)}.
+     */
+    public static long computeHash(@NotNull BoardData data, @NotNull Color sideToMove) {
+        long hash = sideToMove(sideToMove);
+
+        long occupancy = data.getOccupancy();
+        while (occupancy != 0) {
+            int square = Long.numberOfTrailingZeros(occupancy);
+            occupancy &= occupancy - 1;
+
+            ChessPiece piece = data.getPiece(square);
+            hash ^= piece(piece.getColor(), piece.getType(), square);
+        }
+
+        for (CastlingAvailability availability : data.getCastlingAvailability()) {
+            hash ^= castling(availability);
+        }
+
+        ChessPosition enPassant = data.getEnPassantSquare();
+        if (enPassant != null && data.isEnPassantCapturePossible()) {
+            hash ^= enPassant(enPassant.getRank());
+        }
+
+        return hash;
+    }
+}
@@ -60,9 +60,14 @@ public abstract class ChessPiece implements Cloneable {
     }
 
     protected void executeMove(ChessBoard board, ChessMove move) {
-        board.getData().setPiece(position, null);
-        board.getData().setPiece(move.getEnd(), this);
-        board.getData().setEnPassantSquare(null);
+        BoardData data = board.getData();
+        data.setPiece(position, null);
+        data.setPiece(move.getEnd(), this);
+        data.setEnPassantSquare(null);
+
+        // moving a king or rook, or capturing a rook, removes the related castling possibilities
+        data.revokeCastlingAvailability(position);
+        data.revokeCastlingAvailability(move.getEnd());
     }
 
     public boolean move(ChessBoard board, ChessMove move, boolean ignoreCheck) {
@@ -1,74 +1,74 @@
 package me.infuzion.chess.game.piece;
 
+import me.infuzion.chess.game.board.Bitboards;
 import me.infuzion.chess.game.board.BoardData;
 import me.infuzion.chess.game.board.ChessBoard;
 import me.infuzion.chess.game.board.ChessMove;
 import me.infuzion.chess.game.board.ChessPosition;
+import me.infuzion.chess.game.board.MoveGenerator;
 
 public class King extends ChessPiece {
     public King(Color color, ChessPosition position) {
         super(color, position, PieceType.KING);
     }
 
-    private final ChessPosition WHITE_KING_SIDE_CASTLE_TARGET = new ChessPosition("g1");
-    private final ChessPosition WHITE_KING_SIDE_CASTLE_SQUARE1 = new ChessPosition("f1");
-    private final ChessPosition WHITE_KING_SIDE_CASTLE_SQUARE2 = new ChessPosition("g1");
-    private final ChessPosition WHITE_KING_SIDE_CASTLE_ROOK_START = new ChessPosition("h1");
-    private final ChessPosition WHITE_KING_SIDE_CASTLE_ROOK_END = new ChessPosition("f1");
-
-    private final ChessPosition WHITE_QUEEN_SIDE_CASTLE_TARGET = new ChessPosition("c1");
-    private final ChessPosition WHITE_QUEEN_SIDE_CASTLE_SQUARE1 = new ChessPosition("d1");
-    private final ChessPosition WHITE_QUEEN_SIDE_CASTLE_SQUARE2 = new ChessPosition("c1");
-    private final ChessPosition WHITE_QUEEN_SIDE_CASTLE_SQUARE3 = new ChessPosition("b1");
-    private final ChessPosition WHITE_QUEEN_SIDE_CASTLE_ROOK_START = new ChessPosition("a1");
-    private final ChessPosition WHITE_QUEEN_SIDE_CASTLE_ROOK_END = new ChessPosition("d1");
-
-    private final ChessPosition BLACK_KING_SIDE_CASTLE_TARGET = new ChessPosition("g8");
-    private final ChessPosition BLACK_KING_SIDE_CASTLE_SQUARE1 = new ChessPosition("f8");
-    private final ChessPosition BLACK_KING_SIDE_CASTLE_SQUARE2 = new ChessPosition("g8");
-    private final ChessPosition BLACK_KING_SIDE_CASTLE_ROOK_START = new ChessPosition("h8");
-    private final ChessPosition BLACK_KING_SIDE_CASTLE_ROOK_END = new ChessPosition("f8");
-
-    private final ChessPosition BLACK_QUEEN_SIDE_CASTLE_TARGET = new ChessPosition("c8");
-    private final ChessPosition BLACK_QUEEN_SIDE_CASTLE_SQUARE1 = new ChessPosition("d8");
-    private final ChessPosition BLACK_QUEEN_SIDE_CASTLE_SQUARE2 = new ChessPosition("c8");
-    private final ChessPosition BLACK_QUEEN_SIDE_CASTLE_SQUARE3 = new ChessPosition("b8");
-    private final ChessPosition BLACK_QUEEN_SIDE_CASTLE_ROOK_START = new ChessPosition("a8");
-    private final ChessPosition BLACK_QUEEN_SIDE_CASTLE_ROOK_END = new ChessPosition("d8");
+    private static final ChessPosition WHITE_KING_SIDE_CASTLE_TARGET = ChessPosition.of("g1");
+    private static final ChessPosition WHITE_KING_SIDE_CASTLE_SQUARE1 = ChessPosition.of("f1");
+    private static final ChessPosition WHITE_KING_SIDE_CASTLE_SQUARE2 = ChessPosition.of("g1");
+    private static final ChessPosition WHITE_KING_SIDE_CASTLE_ROOK_START = ChessPosition.of("h1");
+    private static final ChessPosition WHITE_KING_SIDE_CASTLE_ROOK_END = ChessPosition.of("f1");
+
+    private static final ChessPosition WHITE_QUEEN_SIDE_CASTLE_TARGET = ChessPosition.of("c1");
+    private static final ChessPosition WHITE_QUEEN_SIDE_CASTLE_SQUARE1 = ChessPosition.of("d1");
+    private static final ChessPosition WHITE_QUEEN_SIDE_CASTLE_SQUARE2 = ChessPosition.of("c1");
+    private static final ChessPosition WHITE_QUEEN_SIDE_CASTLE_SQUARE3 = ChessPosition.of("b1");
+    private static final ChessPosition WHITE_QUEEN_SIDE_CASTLE_ROOK_START = ChessPosition.of("a1");
+    private static final ChessPosition WHITE_QUEEN_SIDE_CASTLE_ROOK_END = ChessPosition.of("d1");
+
+    private static final ChessPosition BLACK_KING_SIDE_CASTLE_TARGET = ChessPosition.of("g8");
+    private static final ChessPosition BLACK_KING_SIDE_CASTLE_SQUARE1 = ChessPosition.of("f8");
+    private static final ChessPosition BLACK_KING_SIDE_CASTLE_SQUARE2 = ChessPosition.of("g8");
+    private static final ChessPosition BLACK_KING_SIDE_CASTLE_ROOK_START = ChessPosition.of("h8");
+    private static final ChessPosition BLACK_KING_SIDE_CASTLE_ROOK_END = ChessPosition.of("f8");
+
+    private static final ChessPosition BLACK_QUEEN_SIDE_CASTLE_TARGET = ChessPosition.of("c8");
+    private static final ChessPosition BLACK_QUEEN_SIDE_CASTLE_SQUARE1 = ChessPosition.of("d8");
+    private static final ChessPosition BLACK_QUEEN_SIDE_CASTLE_SQUARE2 = ChessPosition.of("c8");
+    private static final ChessPosition BLACK_QUEEN_SIDE_CASTLE_SQUARE3 = ChessPosition.of("b8");
+    private static final ChessPosition BLACK_QUEEN_SIDE_CASTLE_ROOK_START = ChessPosition.of("a8");
+    private static final ChessPosition BLACK_QUEEN_SIDE_CASTLE_ROOK_END = ChessPosition.of("d8");
 
     @Override
     public void executeMove(ChessBoard board, ChessMove move) {
         BoardData data = board.getData();
 
-        if (isValidWhiteKingSideCastle(data, move)) {
-            board.getData().movePieceWithoutVerification(WHITE_KING_SIDE_CASTLE_ROOK_START, WHITE_KING_SIDE_CASTLE_ROOK_END);
-        } else if (isValidWhiteQueenSideCastle(data, move)) {
-            board.getData().movePieceWithoutVerification(WHITE_QUEEN_SIDE_CASTLE_ROOK_START, WHITE_QUEEN_SIDE_CASTLE_ROOK_END);
-        } else if (isValidBlackKingSideCastle(data, move)) {
-            board.getData().movePieceWithoutVerification(BLACK_KING_SIDE_CASTLE_ROOK_START, BLACK_KING_SIDE_CASTLE_ROOK_END);
-        } else if (isValidBlackQueenSideCastle(data, move)) {
-            board.getData().movePieceWithoutVerification(BLACK_QUEEN_SIDE_CASTLE_ROOK_START, BLACK_QUEEN_SIDE_CASTLE_ROOK_END);
-        }
-
-        // moving the king (even to castle) removes all castling possibilities
-        if (this.getColor() == Color.WHITE &&
-                (data.getCastlingAvailability().contains(CastlingAvailability.WHITE_KING_SIDE) ||
-                        data.getCastlingAvailability().contains(CastlingAvailability.WHITE_QUEEN_SIDE))) {
-            data.getCastlingAvailability().remove(CastlingAvailability.WHITE_QUEEN_SIDE);
-            data.getCastlingAvailability().remove(CastlingAvailability.WHITE_KING_SIDE);
-        }
-        if (this.getColor() == Color.BLACK &&
-                (data.getCastlingAvailability().contains(CastlingAvailability.BLACK_KING_SIDE) ||
-                        data.getCastlingAvailability().contains(CastlingAvailability.BLACK_QUEEN_SIDE))) {
-            data.getCastlingAvailability().remove(CastlingAvailability.BLACK_QUEEN_SIDE);
-            data.getCastlingAvailability().remove(CastlingAvailability.BLACK_KING_SIDE);
+        // castling has already been validated at this point, so the king moving two squares is enough to identify it
+        if (Math.abs(move.getSource().getRank() - move.getEnd().getRank()) == 2) {
+            ChessPosition end = move.getEnd();
+
+            if (end.equals(WHITE_KING_SIDE_CASTLE_TARGET)) {
+                moveRook(data, WHITE_KING_SIDE_CASTLE_ROOK_START, WHITE_KING_SIDE_CASTLE_ROOK_END);
+            } else if (end.equals(WHITE_QUEEN_SIDE_CASTLE_TARGET)) {
+                moveRook(data, WHITE_QUEEN_SIDE_CASTLE_ROOK_START, WHITE_QUEEN_SIDE_CASTLE_ROOK_END);
+            } else if (end.equals(BLACK_KING_SIDE_CASTLE_TARGET)) {
+                moveRook(data, BLACK_KING_SIDE_CASTLE_ROOK_START, BLACK_KING_SIDE_CASTLE_ROOK_END);
+            } else if (end.equals(BLACK_QUEEN_SIDE_CASTLE_TARGET)) {
+                moveRook(data, BLACK_QUEEN_SIDE_CASTLE_ROOK_START, BLACK_QUEEN_SIDE_CASTLE_ROOK_END);
+            }
         }
 
+        // moving the king (even to castle) removes all castling possibilities; handled by ChessPiece#executeMove
         super.executeMove(board, move);
     }
 
+    private void moveRook(BoardData data, ChessPosition start, ChessPosition end) {
+        if (data.getPiece(start) != null) {
+            data.movePieceWithoutVerification(start, end);
+        }
+    }
+
     private boolean isEmptyAndSafe(ChessPosition position, BoardData data, Color color) {
-        return data.getPiece(position) == null && !ChessBoard.canPieceAttack(position, data, color.invert());
+        return data.getPiece(position) == null && !MoveGenerator.isSquareAttacked(data, position.getIndex(), color.invert());
     }
 
     private boolean isValidWhiteKingSideCastle(BoardData data, ChessMove move) {
@@ -120,20 +120,7 @@ public class King extends ChessPiece {
 
     @Override
     public boolean isMoveAllowedIgnoringCheck(BoardData data, ChessMove move, boolean excludeCastling) {
-        ChessPosition start = move.getSource();
-        ChessPosition end = move.getEnd();
-
-        int startX = start.getRank();
-        int startY = start.getFile();
-        int endX = end.getRank();
-        int endY = end.getFile();
-
-        int differenceX = Math.abs(startX - endX);
-        int differenceY = Math.abs(startY - endY);
-
-        if ((differenceX == 1 && differenceY == 1)
-                || (differenceX == 0 && differenceY == 1)
-                || (differenceX == 1 && differenceY == 0)) {
+        if ((Bitboards.kingAttacks(move.getSource().getIndex()) & Bitboards.bit(move.getEnd().getIndex())) != 0) {
             return true;
         }
 
@@ -1,5 +1,6 @@
 package me.infuzion.chess.game.piece;
 
+import me.infuzion.chess.game.board.Bitboards;
 import me.infuzion.chess.game.board.BoardData;
 import me.infuzion.chess.game.board.ChessMove;
 import me.infuzion.chess.game.board.ChessPosition;
@@ -11,21 +12,7 @@ public class Knight extends ChessPiece {
 
     @Override
     public boolean isMoveAllowedIgnoringCheck(BoardData data, ChessMove move, boolean excludeCastling) {
-        ChessPosition start = move.getSource();
-        ChessPosition end = move.getEnd();
-
-        int startRank = start.getRank();
-        int startFile = start.getFile();
-        int endRank = end.getRank();
-        int endFile = end.getFile();
-
-        int differenceX = Math.abs(startRank - endRank);
-        int differenceY = Math.abs(startFile - endFile);
-
-        if (differenceX == 1 && differenceY == 2) {
-            return true;
-        }
-
-        return differenceX == 2 && differenceY == 1;
+        long attacks = Bitboards.knightAttacks(move.getSource().getIndex());
+        return (attacks & Bitboards.bit(move.getEnd().getIndex())) != 0;
     }
 }
@@ -14,27 +14,32 @@ public class Pawn extends ChessPiece {
 
     @Override
     protected void executeMove(ChessBoard board, ChessMove move) {
-        ChessPosition enPassantSquare = board.getData().getEnPassantSquare();
-        if (move.getEnd().equals(enPassantSquare)) {
+        BoardData data = board.getData();
+        ChessPosition enPassantSquare = data.getEnPassantSquare();
+        ChessPosition newEnPassantSquare = null;
+
+        if (move.getEnd().equals(enPassantSquare) && move.getSource().getRank() != move.getEnd().getRank()) {
             if (getColor() == WHITE) {
-                board.getData().setPiece(enPassantSquare.getRank(), enPassantSquare.getFile() - 1, null);
+                data.setPiece(enPassantSquare.getRank(), enPassantSquare.getFile() - 1, null);
             } else {
-                board.getData().setPiece(enPassantSquare.getRank(), enPassantSquare.getFile() + 1, null);
+                data.setPiece(enPassantSquare.getRank(), enPassantSquare.getFile() + 1, null);
             }
-            board.getData().setEnPassantSquare(null);
         } else if ((move.getSource().getFile() == 1 || move.getSource().getFile() == 6) &&
                 (move.getEnd().getFile() == 3 || move.getEnd().getFile() == 4)) {
-            ChessPosition position = getEnPassantSquare(board, move.getSource(), move.getEnd());
+            newEnPassantSquare = getEnPassantSquare(board, move.getSource(), move.getEnd());
+        }
 
-            if (position != null) {
-                board.getData().setEnPassantSquare(position);
-            }
-        } else {
-            board.getData().setEnPassantSquare(null);
+        super.executeMove(board, move);
+
+        if (newEnPassantSquare != null) {
+            data.setEnPassantSquare(newEnPassantSquare);
         }
 
-        board.getData().setPiece(this.currentPosition(), null);
-        board.getData().setPiece(move.getEnd(), this);
+        if (move.getEnd().getFile() == (getColor() == WHITE ? 7 : 0)) {
+            // a promotion without a specified piece defaults to a queen
+            PieceType promotion = move.getPromotion() == null ? PieceType.QUEEN : move.getPromotion();
+            data.setPiece(move.getEnd(), BoardData.createPiece(promotion, getColor(), move.getEnd()));
+        }
     }
 
     private ChessPosition getEnPassantSquare(ChessBoard board, ChessPosition start, ChessPosition end) {
@@ -67,7 +72,7 @@ public class Pawn extends ChessPiece {
 
             // 2 squares if isFirstMove
             if (isFirstMove && startFile + 2 * forward == endFile) {
-                return new ChessPosition(endRank, endFile - forward);
+                return ChessPosition.of(endRank, endFile - forward);
             }
 
             return null;
@@ -16,7 +16,7 @@ public class ChessUtilities {
                 ).registerTypeAdapter(ChessPosition.class,
                         (JsonSerializer<ChessPosition>) (src, typeOfSrc, context) -> new JsonPrimitive(src.getPosition())
                 ).registerTypeAdapter(ChessPosition.class,
-                        (JsonDeserializer<ChessPosition>) (json, type, context) -> new ChessPosition(json.getAsString())
+                        (JsonDeserializer<ChessPosition>) (json, type, context) -> ChessPosition.of(json.getAsString())
                 ).create();
     }
 }
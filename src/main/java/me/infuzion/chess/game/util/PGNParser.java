@@ -3,7 +3,7 @@ package me.infuzion.chess.game.util;
 import me.infuzion.chess.game.board.ChessBoard;
 import me.infuzion.chess.game.board.ChessMove;
 import me.infuzion.chess.game.board.ChessPosition;
-import me.infuzion.chess.game.piece.ChessPiece;
+import me.infuzion.chess.game.board.MoveGenerator;
 import me.infuzion.chess.game.piece.Color;
 import me.infuzion.chess.game.piece.PieceType;
 
@@ -11,7 +11,6 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 
 public class PGNParser {
@@ -56,39 +55,36 @@ public class PGNParser {
                 rank = Integer.parseInt(token.value);
                 if (lastWasFile) {
                     if (pos1 == null) {
-                        pos1 = new ChessPosition(rank, file);
+                        pos1 = ChessPosition.of(ChessPosition.rankCharToRank(file), rank - 1);
                     } else {
-                        pos2 = new ChessPosition(rank, file);
+                        pos2 = ChessPosition.of(ChessPosition.rankCharToRank(file), rank - 1);
                     }
                 }
                 continue;
             }
             lastWasFile = false;
         }
-        ChessPiece start;
-        ChessPosition end;
         if (pos1 == null) {
             return false;
         }
         if (pos2 == null) {
             PieceType finalType = type;
-            Stream<ChessPiece> stream = ChessBoard.piecesThatCanMoveTo(pos1, board.getData(), turn).stream();
-            if (finalType != null) {
-                stream = stream.filter(piece -> piece.getType() == finalType);
-            }
-            List<ChessPiece> possible = stream.collect(Collectors.toList());
+            ChessPosition end = pos1;
+            List<ChessMove> possible = MoveGenerator.generateLegalMoves(board.getData(), turn).stream()
+                    .filter(candidate -> candidate.getEnd().equals(end))
+                    .filter(candidate -> finalType == null || board.getData().getPiece(candidate.getSource()).getType() == finalType)
+                    // promotions are generated once per piece type; a bare destination square promotes to a queen
+                    .filter(candidate -> candidate.getPromotion() == null || candidate.getPromotion() == PieceType.QUEEN)
+                    .collect(Collectors.toList());
 
             if (possible.size() != 1) {
                 return false;
             }
-            start = possible.get(0);
-            end = pos1;
-        } else {
-            start = board.getData().getPiece(pos1);
-            end = pos2;
+
+            return board.move(possible.get(0));
         }
 
-        return start.move(board, new ChessMove(start.currentPosition(), end));
+        return board.move(new ChessMove(pos1, pos2));
     }
 
     private enum Tokens {
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.util;
+
+import me.infuzion.chess.game.board.ChessBoard;
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.board.MoveGenerator;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth. The counts for the standard positions below are well
+ * known, which makes this useful both for verifying move generation and for measuring its throughput.
+ * <p>
+ * Usage: {@code Perft <depth> [fen] [--divide]}
+ */
+public final class Perft {
+    public static final String STARTING_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    public static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    public static final String POSITION_3 = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    public static final String POSITION_4 = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+    public static final String POSITION_5 = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+    private Perft() {
+    }
+
+    public static long perft(@NotNull ChessBoard board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        // one move buffer per ply, so that the walk does not allocate
+        return perft(board, depth, new int[depth][MoveGenerator.MAX_MOVES]);
+    }
+
+    private static long perft(ChessBoard board, int depth, int[][] buffers) {
+        int[] moves = buffers[depth - 1];
+        int count = MoveGenerator.generateLegalMoves(board, moves);
+
+        if (depth == 1) {
+            return count;
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            board.makeMove(moves[i]);
+            nodes += perft(board, depth - 1, buffers);
+            board.unmakeMove();
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Splits the perft count by root move, which makes it possible to narrow down a mismatch against another engine.
+     *
+     * @return The node count below each root move keyed by the move in long algebraic notation (e.g. {@code e7e8q})
+     */
+    public static Map<String, Long> divide(@NotNull ChessBoard board, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Invalid depth: " + depth);
+        }
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (ChessMove move : MoveGenerator.generateLegalMoves(board)) {
+            board.makeMove(move);
+            counts.put(toLongAlgebraic(move), perft(board, depth - 1));
+            board.unmakeMove();
+        }
+
+        return counts;
+    }
+
+    private static String toLongAlgebraic(ChessMove move) {
+        String notation = move.getSource().getPosition() + move.getEnd().getPosition();
+        if (move.getPromotion() != null) {
+            notation += Character.toLowerCase(move.getPromotion().getAbbreviation());
+        }
+        return notation;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Perft <depth> [fen] [--divide]");
+            return;
+        }
+
+        int depth = Integer.parseInt(args[0]);
+        String fen = STARTING_POSITION;
+        boolean divide = false;
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--divide")) {
+                divide = true;
+            } else {
+                fen = args[i];
+            }
+        }
+
+        ChessBoard board = ChessBoard.fromFen(fen);
+        long start = System.nanoTime();
+        long nodes;
+
+        if (divide) {
+            nodes = 0;
+            for (Map.Entry<String, Long> entry : divide(board, depth).entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+                nodes += entry.getValue();
+            }
+            System.out.println();
+        } else {
+            nodes = perft(board, depth);
+        }
+
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        System.out.println("Nodes searched: " + nodes);
+        System.out.printf("Time: %.3fs (%d nodes/s)%n", elapsed / 1e9, nodes * 1_000_000_000L / elapsed);
+    }
+}
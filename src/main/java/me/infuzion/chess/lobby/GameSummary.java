@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.lobby;
+
+import me.infuzion.chess.clock.TimeControl;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.GameStatus;
+import me.infuzion.chess.web.game.Visibility;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * What the lobby shows of a game. The fields that a {@link me.infuzion.chess.web.domain.Game} also has are named the
+ * same, so a summary is serialized like a game without its moves and AI profile, plus {@code ply} and
+ * {@code lastActivityEpochMillis}. The shape is documented as {@code GameSummary} in {@code doc/openapi.yaml}.
+ */
+public class GameSummary {
+    private final Identifier id;
+    private final String initialFen;
+    private final Visibility visibility;
+    private final Identifier playerWhite;
+    private final Identifier playerBlack;
+    private final GameStatus status;
+    private final String currentFen;
+    private final TimeControl timeControl;
+    private final int ply;
+    private final long lastActivityEpochMillis;
+
+    public GameSummary(@NotNull Identifier id, @NotNull String initialFen, @NotNull Visibility visibility,
+                       @Nullable Identifier playerWhite, @Nullable Identifier playerBlack, @NotNull GameStatus status,
+                       @NotNull String currentFen, @NotNull TimeControl timeControl, int ply, long lastActivityEpochMillis) {
+        this.id = id;
+        this.initialFen = initialFen;
+        this.visibility = visibility;
+        this.playerWhite = playerWhite;
+        this.playerBlack = playerBlack;
+        this.status = status;
+        this.currentFen = currentFen;
+        this.timeControl = timeControl;
+        this.ply = ply;
+        this.lastActivityEpochMillis = lastActivityEpochMillis;
+    }
+
+    public Identifier getId() {
+        return id;
+    }
+
+    /**
+     * @return The position the game started from
+     */
+    public String getInitialFen() {
+        return initialFen;
+    }
+
+    public Visibility getVisibility() {
+        return visibility;
+    }
+
+    public @Nullable Identifier getPlayerWhite() {
+        return playerWhite;
+    }
+
+    public @Nullable Identifier getPlayerBlack() {
+        return playerBlack;
+    }
+
+    public GameStatus getStatus() {
+        return status;
+    }
+
+    public String getCurrentFen() {
+        return currentFen;
+    }
+
+    public TimeControl getTimeControl() {
+        return timeControl;
+    }
+
+    /**
+     * @return The number of moves played, as far as the lobby has seen them
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * @return The time the game was created, started or last moved in
+     */
+    public long getLastActivityEpochMillis() {
+        return lastActivityEpochMillis;
+    }
+}
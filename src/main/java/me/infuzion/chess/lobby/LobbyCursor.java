@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.lobby;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The position of a game in the lobby, which is ordered by last activity and then id, both descending. A cursor is
+ * written as the last activity in milliseconds since the epoch, followed by a dot and the id.
+ */
+final class LobbyCursor {
+    private final long lastActivityEpochMillis;
+    private final String id;
+
+    LobbyCursor(long lastActivityEpochMillis, @NotNull String id) {
+        this.lastActivityEpochMillis = lastActivityEpochMillis;
+        this.id = id;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the given string is not a cursor
+     */
+    static LobbyCursor parse(@NotNull String cursor) {
+        int separator = cursor.indexOf('.');
+        if (separator <= 0 || separator == cursor.length() - 1) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
+
+        long lastActivity;
+        try {
+            lastActivity = Long.parseLong(cursor.substring(0, separator));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+        }
+
+        return new LobbyCursor(lastActivity, cursor.substring(separator + 1));
+    }
+
+    long getLastActivityEpochMillis() {
+        return lastActivityEpochMillis;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    /**
+     * @return True if a game with the given activity and id is listed after this position
+     */
+    boolean precedes(long lastActivityEpochMillis, @NotNull String id) {
+        return lastActivityEpochMillis < this.lastActivityEpochMillis
+                || (lastActivityEpochMillis == this.lastActivityEpochMillis && id.compareTo(this.id) < 0);
+    }
+
+    @Override
+    public String toString() {
+        return lastActivityEpochMillis + "." + id;
+    }
+}
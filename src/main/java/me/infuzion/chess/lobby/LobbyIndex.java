@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.lobby;
+
+import me.infuzion.chess.clock.RedisScript;
+import me.infuzion.chess.clock.TimeControl;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.GameStatus;
+import me.infuzion.chess.web.game.Visibility;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the games that have not ended in Redis, so that the lobby can be listed without querying the database. Every
+ * game has a summary hash, and a sorted set orders the games by their last activity. Each update is a single Lua
+ * script, so updates of the same game from different nodes cannot be interleaved, and repeating an update has no
+ * effect.
+ */
+public class LobbyIndex {
+    private static final String ACTIVE_KEY = "chess::lobby.active";
+    private static final String BUILT_KEY = "chess::lobby.built";
+
+    /**
+     * How long the summary of an ended game is kept to ignore late updates, in seconds.
+     */
+    private static final int ENDED_SUMMARY_SECONDS = 24 * 60 * 60;
+
+    private static final RedisScript ADD_SCRIPT = RedisScript.load("scripts/lobby/add.lua");
+    private static final RedisScript START_SCRIPT = RedisScript.load("scripts/lobby/start.lua");
+    private static final RedisScript MOVE_SCRIPT = RedisScript.load("scripts/lobby/move.lua");
+    private static final RedisScript END_SCRIPT = RedisScript.load("scripts/lobby/end.lua");
+
+    private final JedisPool pool;
+
+    public LobbyIndex(JedisPool pool) {
+        this.pool = pool;
+    }
+
+    private static String summaryKey(String gameId) {
+        return "chess::lobby.game." + gameId;
+    }
+
+    private static String idOrEmpty(@Nullable Identifier id) {
+        return id == null ? "" : id.getId();
+    }
+
+    private static @Nullable Identifier idOrNull(@Nullable String id) {
+        return id == null || id.isEmpty() ? null : new Identifier(id);
+    }
+
+    /**
+     * Adds a game to the lobby, unless it is already there or has ended recently.
+     */
+    public void add(@NotNull GameSummary game) {
+        String id = game.getId().getId();
+
+        try (Jedis jedis = pool.getResource()) {
+            ADD_SCRIPT.eval(jedis, List.of(summaryKey(id), ACTIVE_KEY),
+                    List.of(id, idOrEmpty(game.getPlayerWhite()), idOrEmpty(game.getPlayerBlack()), game.getStatus().name(),
+                            game.getCurrentFen(), game.getTimeControl().toString(), Integer.toString(game.getPly()),
+                            Long.toString(game.getLastActivityEpochMillis()),
+                            game.getInitialFen(), game.getVisibility().name()));
+        }
+    }
+
+    /**
+     * Records that a game waiting for players has started. Has no effect if the game is not waiting.
+     */
+    public void start(@NotNull Identifier gameId, @NotNull Identifier playerWhite, @NotNull Identifier playerBlack,
+                      long nowEpochMillis) {
+        try (Jedis jedis = pool.getResource()) {
+            START_SCRIPT.eval(jedis, List.of(summaryKey(gameId.getId()), ACTIVE_KEY),
+                    List.of(gameId.getId(), playerWhite.getId(), playerBlack.getId(), Long.toString(nowEpochMillis)));
+        }
+    }
+
+    /**
+     * Records a move of a game. Has no effect if the game is not in the lobby or a later move has been recorded.
+     *
+     * @param ply The number of moves played once the move has been made
+     */
+    public void move(@NotNull Identifier gameId, int ply, @NotNull String currentFen, @NotNull GameStatus status,
+                     long nowEpochMillis) {
+        try (Jedis jedis = pool.getResource()) {
+            MOVE_SCRIPT.eval(jedis, List.of(summaryKey(gameId.getId()), ACTIVE_KEY),
+                    List.of(gameId.getId(), Integer.toString(ply), currentFen, status.name(), Long.toString(nowEpochMillis)));
+        }
+    }
+
+    public void end(@NotNull Identifier gameId, @NotNull GameStatus finalStatus) {
+        try (Jedis jedis = pool.getResource()) {
+            END_SCRIPT.eval(jedis, List.of(summaryKey(gameId.getId()), ACTIVE_KEY),
+                    List.of(gameId.getId(), finalStatus.name(), Integer.toString(ENDED_SUMMARY_SECONDS)));
+        }
+    }
+
+    /**
+     * Marks the index as built. Only one caller succeeds until the mark is lost, for example because Redis was
+     * emptied, so only that caller has to fill the index with the games that already exist.
+     *
+     * @return True if the caller should fill the index
+     */
+    public boolean claimBuild() {
+        try (Jedis jedis = pool.getResource()) {
+            return jedis.set(BUILT_KEY, "1", SetParams.setParams().nx()) != null;
+        }
+    }
+
+    /**
+     * Lists the games in the lobby, most recently active first. The cursor of a page is the last activity and id of its
+     * last game, so a game that is moved in while the lobby is paged through can appear again on a later page or be
+     * skipped.
+     *
+     * @param after The cursor of the previous page, or null to list the first page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public LobbyPage getGames(@Nullable String after, int limit) {
+        LobbyCursor cursor = after == null ? null : LobbyCursor.parse(after);
+
+        try (Jedis jedis = pool.getResource()) {
+            String max = cursor == null ? "+inf" : Long.toString(cursor.getLastActivityEpochMillis());
+            // games with the same activity as the cursor are ordered by id, descending, and the ones up to the cursor
+            // have to be skipped
+            long ties = cursor == null ? 0 : jedis.zcount(ACTIVE_KEY, max, max);
+            List<Tuple> entries = selectPage(jedis.zrevrangeByScoreWithScores(ACTIVE_KEY, max, "-inf", 0, (int) (limit + ties)),
+                    cursor, limit);
+
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<Map<String, String>>> responses = new ArrayList<>(entries.size());
+            for (Tuple entry : entries) {
+                responses.add(pipeline.hgetAll(summaryKey(entry.getElement())));
+            }
+            pipeline.sync();
+
+            List<GameSummary> games = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                Map<String, String> summary = responses.get(i).get();
+
+                // the game ended after it was listed
+                if (summary.isEmpty() || GameStatus.valueOf(summary.get("status")).isEnded()) {
+                    continue;
+                }
+
+                games.add(new GameSummary(new Identifier(entries.get(i).getElement()), summary.get("initial_fen"),
+                        Visibility.valueOf(summary.get("visibility")), idOrNull(summary.get("white")),
+                        idOrNull(summary.get("black")), GameStatus.valueOf(summary.get("status")), summary.get("fen"),
+                        TimeControl.parse(summary.get("time_control")), Integer.parseInt(summary.get("ply")),
+                        Long.parseLong(summary.get("last_activity"))));
+            }
+
+            // a full page may be followed by more games
+            String nextCursor = null;
+            if (entries.size() == limit) {
+                Tuple last = entries.get(entries.size() - 1);
+                nextCursor = new LobbyCursor((long) last.getScore(), last.getElement()).toString();
+            }
+
+            return new LobbyPage(games, nextCursor);
+        }
+    }
+
+    /**
+     * Picks the entries of a page from the entries of the sorted set up to the activity of the cursor, which are ordered
+     * by activity and then id, both descending, and include the entries with the same activity as the cursor.
+     *
+     * @param after The cursor of the previous page, or null for the first page
+     */
+    static List<Tuple> selectPage(@NotNull Collection<Tuple> entries, @Nullable LobbyCursor after, int limit) {
+        List<Tuple> page = new ArrayList<>(limit);
+
+        for (Tuple entry : entries) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (after == null || after.precedes((long) entry.getScore(), entry.getElement())) {
+                page.add(entry);
+            }
+        }
+
+        return page;
+    }
+}
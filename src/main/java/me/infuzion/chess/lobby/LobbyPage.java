@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.lobby;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * One page of the games in the lobby.
+ */
+public class LobbyPage {
+    private final List<GameSummary> games;
+    private final String nextCursor;
+
+    /**
+     * @param nextCursor The cursor to request the next page with, or null if this is the last page
+     */
+    public LobbyPage(@NotNull List<GameSummary> games, @Nullable String nextCursor) {
+        this.games = games;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<GameSummary> getGames() {
+        return games;
+    }
+
+    public @Nullable String getNextCursor() {
+        return nextCursor;
+    }
+}
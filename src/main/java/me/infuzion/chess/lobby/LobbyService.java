@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.lobby;
+
+import me.infuzion.chess.data.PubSubChannel;
+import me.infuzion.chess.data.PubSubMessage;
+import me.infuzion.chess.game.board.ChessBoard;
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GamePage;
+import me.infuzion.chess.web.domain.GameStatus;
+import me.infuzion.chess.web.domain.service.GameService;
+import me.infuzion.chess.web.domain.service.message.ChessGameCreateMessage;
+import me.infuzion.chess.web.domain.service.message.ChessGameEndMessage;
+import me.infuzion.chess.web.domain.service.message.ChessGameMoveMessage;
+import me.infuzion.chess.web.domain.service.message.ChessGameStartMessage;
+import me.infuzion.web.server.EventListener;
+import me.infuzion.web.server.event.reflect.EventHandler;
+import me.infuzion.web.server.event.reflect.param.mapper.impl.BodyParam;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+
+/**
+ * Keeps the lobby index up to date with the game events, and lists the lobby from it. Every node receives every event
+ * and applies it to the index; applying an event more than once has no effect.
+ */
+public class LobbyService implements EventListener {
+    private static final int REBUILD_PAGE_SIZE = 100;
+
+    private final LobbyIndex index;
+
+    public LobbyService(LobbyIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Adds the games that have not ended to the index, unless another node already has. Games that were created before
+     * the index was kept, or while Redis was unavailable, are otherwise missing from the lobby.
+     */
+    public void buildIndex(@NotNull GameService gameService) {
+        if (!index.claimBuild()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int added = 0;
+        String cursor = null;
+
+        do {
+            GamePage page = gameService.getActiveGames(cursor, REBUILD_PAGE_SIZE);
+
+            for (Game game : page.getGames()) {
+                Instant updatedAt = game.getUpdatedAt();
+
+                index.add(new GameSummary(game.getId(), game.getInitialFen(), game.getVisibility(), game.getPlayerWhite(),
+                        game.getPlayerBlack(), game.getStatus(), game.getCurrentFen(), game.getTimeControl(), plyOf(game),
+                        updatedAt == null ? now : updatedAt.toEpochMilli()));
+            }
+
+            added += page.getGames().size();
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        System.out.println("Added " + added + " games to the lobby index");
+    }
+
+    /**
+     * Counts the moves of a listed game, whose moves are not loaded, from the move numbers of its initial and current
+     * positions.
+     */
+    static int plyOf(@NotNull Game game) {
+        int initialPly = ChessBoard.fromFen(game.getInitialFen()).getGamePly();
+        return Math.max(0, game.getBoard().getGamePly() - initialPly);
+    }
+
+    /**
+     * @param after The cursor of the previous page, or null to list the first page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public LobbyPage getGames(@Nullable String after, int limit) {
+        return index.getGames(after, limit);
+    }
+
+    @EventHandler
+    @PubSubChannel(channel = "chess::game.create")
+    private void onGameCreate(PubSubMessage event, @BodyParam ChessGameCreateMessage message) {
+        index.add(new GameSummary(message.getGameId(), message.getInitialFen(), message.getVisibility(),
+                message.getWhitePlayerId(), message.getBlackPlayerId(), GameStatus.WAITING, message.getCurrentFen(), message.getTimeControl(), 0, System.currentTimeMillis()));
+    }
+
+    @EventHandler
+    @PubSubChannel(channel = "chess::game.start")
+    private void onGameStart(PubSubMessage event, @BodyParam ChessGameStartMessage message) {
+        index.start(message.getGameId(), message.getWhitePlayerId(), message.getBlackPlayerId(), System.currentTimeMillis());
+    }
+
+    @EventHandler
+    @PubSubChannel(channel = "chess::game.move")
+    private void onGameMove(PubSubMessage event, @BodyParam ChessGameMoveMessage message) {
+        // a move that ends the game is followed by an end event
+        GameStatus status = message.getMoveColor() == Color.WHITE ? GameStatus.IN_PROGRESS_BLACK : GameStatus.IN_PROGRESS_WHITE;
+
+        index.move(message.getGameId(), message.getPly(), message.getCurrentFen(), status, System.currentTimeMillis());
+    }
+
+    @EventHandler
+    @PubSubChannel(channel = "chess::game.end")
+    private void onGameEnd(PubSubMessage event, @BodyParam ChessGameEndMessage message) {
+        index.end(message.getGameId(), message.getFinalState());
+    }
+}
@@ -19,14 +19,24 @@ package me.infuzion.chess.web;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import me.infuzion.chess.ai.AiService;
+import me.infuzion.chess.ai.AnalysisCache;
+import me.infuzion.chess.ai.EmbeddedEngine;
+import me.infuzion.chess.ai.EnginePool;
 import me.infuzion.chess.ai.StockfishEngine;
+import me.infuzion.chess.clock.ClockBackend;
 import me.infuzion.chess.clock.ClockService;
+import me.infuzion.chess.clock.InMemoryClockBackend;
+import me.infuzion.chess.clock.RedisClockBackend;
 import me.infuzion.chess.data.PubSubChannel;
 import me.infuzion.chess.data.PubSubChannelPredicate;
 import me.infuzion.chess.data.RedisPubSubSource;
 import me.infuzion.chess.game.util.ChessUtilities;
+import me.infuzion.chess.lobby.LobbyIndex;
+import me.infuzion.chess.lobby.LobbyService;
+import me.infuzion.chess.web.dao.MatchDao;
 import me.infuzion.chess.web.dao.impl.MatchDatabase;
 import me.infuzion.chess.web.dao.impl.UserDatabase;
+import me.infuzion.chess.web.dao.impl.WriteBehindMatchDao;
 import me.infuzion.chess.web.domain.service.GameService;
 import me.infuzion.chess.web.domain.service.TokenService;
 import me.infuzion.chess.web.event.helper.RequestUser;
@@ -51,8 +61,12 @@ import redis.clients.jedis.exceptions.JedisConnectionException;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 
 public class Chess implements EventListener {
+    private static final int MAX_CACHED_ANALYSES = 100_000;
 
     public Chess(Server server, String postgresJDBCUri, String redisUri) throws IOException, URISyntaxException {
         EventManager manager = server.getEventManager();
@@ -61,12 +75,12 @@ public class Chess implements EventListener {
         JedisPool pool = createJedisPool(redisUri);
 
         UserDatabase userDatabase = new UserDatabase(ds);
-        MatchDatabase matchDatabase = new MatchDatabase(ds);
+        MatchDatabase matchDatabase = new MatchDatabase(ds, getMoveStorage(System.getenv("MOVE_STORAGE")));
 
         RedisPubSubSource source = new RedisPubSubSource(manager, pool, new DefaultTypeConverter(ChessUtilities.gson));
 
         TokenService tokenService = new TokenService(pool, userDatabase);
-        GameService gameService = new GameService(matchDatabase, source);
+        GameService gameService = new GameService(createMatchDao(System.getenv("MOVE_JOURNAL_PATH"), matchDatabase), source);
 
         manager.registerAnnotation(RequiresAuthentication.class, new RequireAuthenticationPredicate(tokenService));
         manager.registerAnnotation(RequestUser.class, new RequestUserParamMapper(tokenService));
@@ -84,36 +98,121 @@ public class Chess implements EventListener {
         thread.setName("Redis Subscription Thread");
         thread.start();
 
-        ClockService service = new ClockService(pool, source);
-        Thread thread1 = new Thread(service::runClearExpiringGames);
-        thread1.setName("ClockService - runClearExpiringGames");
+        ClockService service = new ClockService(createClockBackend(System.getenv("CLOCK_BACKEND"), pool), source);
+
+        Thread thread1 = new Thread(service::runHandleExpiringGames);
+        thread1.setName("ClockService - runHandleExpiringGames");
         thread1.start();
 
-        Thread thread2 = new Thread(service::runHandleExpiringGames);
-        thread2.setName("ClockService - runHandleExpiringGames");
-        thread2.start();
+        LobbyService lobbyService = new LobbyService(new LobbyIndex(pool));
+
+        Thread lobbyThread = new Thread(() -> lobbyService.buildIndex(gameService));
+        lobbyThread.setName("LobbyService - buildIndex");
+        lobbyThread.start();
 
         manager.registerListener(service);
+        manager.registerListener(lobbyService);
         manager.registerListener(new ChessAuthenticationHelper(tokenService));
         manager.registerListener(new ChessUserAuthenticationListener(userDatabase, tokenService));
         manager.registerListener(new ChessMoveListener(gameService, service, manager));
         manager.registerListener(new ChessUserProfileListener(userDatabase));
-        manager.registerListener(new ChessGameListener(gameService));
+        manager.registerListener(new ChessGameListener(gameService, lobbyService));
 
-        manager.registerListener(new AiService(gameService, userDatabase, new StockfishEngine(System.getenv("STOCKFISH_PATH"))));
+        EnginePool engines = new EnginePool(Runtime.getRuntime().availableProcessors(),
+                createEngineFactory(System.getenv("AI_ENGINE"), System.getenv("STOCKFISH_PATH")), Duration.ofSeconds(10),
+                createAnalysisCache(System.getenv("ANALYSIS_CACHE_PATH")));
+        manager.registerListener(new AiService(gameService, userDatabase, engines));
 
         manager.registerListener(new EventListener() {
             @EventHandler()
             private void cors(PageRequestEvent event) {
                 event.setResponseHeader("Access-Control-Allow-Origin", "*");
                 event.setResponseHeader("Access-Control-Allow-Headers", "*");
+                event.setResponseHeader("Access-Control-Expose-Headers", ChessGameListener.NEXT_CURSOR_HEADER);
             }
         });
 
         server.start();
     }
 
-    private static HikariDataSource getSqlDataSource(String url) {
+    /**
+     * @param type "packed" to store the moves of new matches on their match row; anything else stores them as rows of
+     *             the moves table
+     */
+    private static MatchDatabase.MoveStorage getMoveStorage(String type) {
+        if ("packed".equalsIgnoreCase(type)) {
+            return MatchDatabase.MoveStorage.PACKED;
+        }
+        return MatchDatabase.MoveStorage.ROWS;
+    }
+
+    /**
+     * @param journalPath The journal to acknowledge moves from before they are written to the database, which is only
+     *                    correct when a single node is running; or null to write moves immediately
+     */
+    private static MatchDao createMatchDao(String journalPath, MatchDatabase database) throws IOException {
+        if (journalPath == null) {
+            return database;
+        }
+
+        WriteBehindMatchDao dao = new WriteBehindMatchDao(database, Paths.get(journalPath));
+
+        Thread closeThread = new Thread(() -> {
+            try {
+                dao.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        closeThread.setName("WriteBehindMatchDao - close");
+        Runtime.getRuntime().addShutdownHook(closeThread);
+
+        return dao;
+    }
+
+    /**
+     * @param type          "embedded" to search in this process, which is also used when no Stockfish binary is
+     *                      configured; anything else runs Stockfish
+     * @param stockfishPath The Stockfish binary to run
+     */
+    private static EnginePool.EngineFactory createEngineFactory(String type, String stockfishPath) {
+        if ("embedded".equalsIgnoreCase(type) || stockfishPath == null) {
+            return EmbeddedEngine::new;
+        }
+        return () -> new StockfishEngine(stockfishPath);
+    }
+
+    /**
+     * @param path The file to keep the cache in between runs, or null to keep it in memory only
+     */
+    private static AnalysisCache createAnalysisCache(String path) {
+        AnalysisCache cache = new AnalysisCache(MAX_CACHED_ANALYSES);
+
+        if (path == null) {
+            return cache;
+        }
+
+        Path file = Paths.get(path);
+        try {
+            cache.load(file);
+        } catch (IOException e) {
+            System.err.println("Failed to load the analysis cache; starting with an empty cache: " + e);
+        }
+
+        Thread saveThread = new Thread(() -> {
+            try {
+                cache.save(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        saveThread.setName("AnalysisCache - save");
+        Runtime.getRuntime().addShutdownHook(saveThread);
+
+        return cache;
+    }
+
+    static HikariDataSource getSqlDataSource(String url) {
         HikariConfig config = new HikariConfig();
         config.setJdbcUrl(url);
 
@@ -121,10 +220,31 @@ public class Chess implements EventListener {
         config.addDataSourceProperty("cachePrepStmts", "true");
         config.addDataSourceProperty("prepStmtCacheSize", "250");
         config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        // sends batched inserts as multi-row statements
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
 
         return new HikariDataSource(config);
     }
 
+    /**
+     * @param type "memory" to keep clocks in this process, which is only correct when a single node is running; anything
+     *             else keeps them in Redis
+     */
+    private static ClockBackend createClockBackend(String type, JedisPool pool) {
+        if ("memory".equalsIgnoreCase(type)) {
+            return new InMemoryClockBackend();
+        }
+
+        RedisClockBackend backend = new RedisClockBackend(pool);
+        int migrated = backend.migrateLegacyClocks();
+
+        if (migrated > 0) {
+            System.out.println("Migrated " + migrated + " clocks to the current format");
+        }
+
+        return backend;
+    }
+
     private static JedisPool createJedisPool(String uri) throws URISyntaxException {
         URI redisURI = new URI(uri);
         JedisPoolConfig poolConfig = new JedisPoolConfig();
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web;
+
+import com.zaxxer.hikari.HikariDataSource;
+import me.infuzion.chess.web.dao.impl.MatchDatabase;
+
+/**
+ * Moves the moves of every match that stores them as rows of the moves table into packed moves on its match row. It
+ * can run while the server is running, and can be stopped and run again at any time. Matches that are being written to
+ * while it runs are retried until none are left; the server should store the moves of new matches packed, or this will
+ * not finish.
+ * <p>
+ * Run with {@code JDBC_DATABASE_URL=... java -cp chess.jar me.infuzion.chess.web.MigrateMoveStorage}.
+ */
+public class MigrateMoveStorage {
+    private static final int MATCHES_PER_TRANSACTION = 100;
+    private static final int MAX_PASSES = 10;
+    private static final long PASS_DELAY_MILLIS = 1000;
+
+    public static void main(String[] args) throws InterruptedException {
+        try (HikariDataSource source = Chess.getSqlDataSource(System.getenv("JDBC_DATABASE_URL"))) {
+            MatchDatabase database = new MatchDatabase(source, MatchDatabase.MoveStorage.PACKED);
+
+            long total = 0;
+            for (int pass = 1; pass <= MAX_PASSES; pass++) {
+                int migrated;
+                while ((migrated = database.migrateToPackedMoves(MATCHES_PER_TRANSACTION)) > 0) {
+                    total += migrated;
+                    System.out.println("Migrated " + total + " matches");
+                }
+
+                // the migration skips locked matches, so check that none were left behind
+                long remaining = database.countUnmigratedMatches();
+                if (remaining == 0) {
+                    System.out.println("Every match stores packed moves");
+                    return;
+                }
+
+                System.out.println(remaining + " matches were being written to; retrying");
+                Thread.sleep(PASS_DELAY_MILLIS);
+            }
+
+            System.err.println(database.countUnmigratedMatches() + " matches still store their moves as rows; is the server "
+                    + "storing the moves of new matches packed?");
+            System.exit(1);
+        }
+    }
+}
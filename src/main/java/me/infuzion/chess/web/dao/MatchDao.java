@@ -19,15 +19,29 @@ package me.infuzion.chess.web.dao;
 import me.infuzion.chess.game.board.ChessMove;
 import me.infuzion.chess.game.util.Identifier;
 import me.infuzion.chess.web.domain.Game;
-
-import java.util.List;
+import me.infuzion.chess.web.domain.GamePage;
+import org.jetbrains.annotations.Nullable;
 
 public interface MatchDao {
     Game getMatch(Identifier identifier);
 
-    List<Game> getMatches(int limit);
+    /**
+     * Lists the games that have not ended, newest first. The games are listed without their moves.
+     *
+     * @param after The cursor of the previous page, or null to list the first page
+     * @param limit The maximum number of games in the page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    GamePage getActiveMatches(@Nullable String after, int limit);
 
-    List<Game> getRecentMatchesForUser(Identifier user, int limit);
+    /**
+     * Lists the games the given user plays in, newest first. The games are listed without their moves.
+     *
+     * @param after The cursor of the previous page, or null to list the first page
+     * @param limit The maximum number of games in the page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    GamePage getRecentMatchesForUser(Identifier user, @Nullable String after, int limit);
 
     /**
      * Updates the persisted copy of the game as well as persisting the given move using the current information in the
@@ -35,7 +49,7 @@ public interface MatchDao {
      *
      * @param game The updated game object to persist
      * @param move The move object to persist
-     * @return A copy of the game object as it was persisted
+     * @return A copy of the given game object; it is not read back from storage
      */
     Game updateAndAddMove(Game game, ChessMove move);
 
@@ -43,7 +57,7 @@ public interface MatchDao {
      * Persists a copy of the given object and updating any conflicting information (this does not persist any move information).
      *
      * @param game The updated game object to persist
-     * @return A copy of the game object as it was persisted
+     * @return A copy of the given game object; it is not read back from storage
      */
     Game updateMatch(Game game);
 
@@ -52,7 +66,7 @@ public interface MatchDao {
      * object itself is stored).
      *
      * @param game The game object to persist
-     * @return A copy of the game object as it was persisted
+     * @return A copy of the given game object; it is not read back from storage
      */
     Game newMatch(Game game);
 }
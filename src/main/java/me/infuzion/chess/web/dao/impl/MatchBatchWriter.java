@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Applies queued writes to stored matches in bulk.
+ */
+interface MatchBatchWriter {
+    /**
+     * Applies the given writes in a single transaction. Writes that were already applied by an earlier call must be
+     * ignored, because a batch is retried in full if the process stops before it is acknowledged.
+     *
+     * @param writes The writes in the order they were made
+     */
+    void writeBatch(@NotNull List<MatchWrite> writes);
+}
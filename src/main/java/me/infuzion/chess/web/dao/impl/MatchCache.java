@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.Game;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used games in memory together with the version of the database row they were loaded from.
+ * Cached games are never handed out directly; callers always receive a copy, so mutating a returned game (for example
+ * by playing a move on its board) cannot affect the cached snapshot.
+ */
+class MatchCache {
+    private final Map<Identifier, Entry> entries;
+
+    MatchCache(int maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Identifier, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Nullable
+    synchronized Entry get(@NotNull Identifier id) {
+        return entries.get(id);
+    }
+
+    /**
+     * Stores a copy of the given game as it was loaded from the given version of its row.
+     */
+    void put(@NotNull Game game, int version) {
+        Entry entry = new Entry(new Game(game), version);
+
+        synchronized (this) {
+            entries.put(game.getId(), entry);
+        }
+    }
+
+    synchronized void invalidate(@NotNull Identifier id) {
+        entries.remove(id);
+    }
+
+    static final class Entry {
+        private final Game game;
+        private final int version;
+
+        private Entry(Game game, int version) {
+            this.game = game;
+            this.version = version;
+        }
+
+        int getVersion() {
+            return version;
+        }
+
+        /**
+         * @return The number of plies stored for the cached game
+         */
+        int getPly() {
+            return game.getBoard().getCurrentPly();
+        }
+
+        /**
+         * @return A copy of the cached game that is safe to modify
+         */
+        Game copy() {
+            return new Game(game);
+        }
+
+        Game getGame() {
+            return game;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The position of a match in a listing ordered by creation time and then id, newest first. A cursor is written as the
+ * creation time in microseconds since the epoch, which is the precision of the database, followed by a dot and the id.
+ */
+final class MatchCursor {
+    private final Instant createdAt;
+    private final String id;
+
+    MatchCursor(@NotNull Instant createdAt, @NotNull String id) {
+        this.createdAt = createdAt.truncatedTo(ChronoUnit.MICROS);
+        this.id = id;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the given string is not a cursor
+     */
+    static MatchCursor parse(@NotNull String cursor) {
+        int separator = cursor.indexOf('.');
+        if (separator <= 0 || separator == cursor.length() - 1) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
+
+        long micros;
+        try {
+            micros = Long.parseLong(cursor.substring(0, separator));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+        }
+
+        return new MatchCursor(Instant.EPOCH.plus(micros, ChronoUnit.MICROS), cursor.substring(separator + 1));
+    }
+
+    Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, createdAt) + "." + id;
+    }
+}
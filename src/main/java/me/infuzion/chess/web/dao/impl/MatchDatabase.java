@@ -1,25 +1,58 @@
 package me.infuzion.chess.web.dao.impl;
 
+import me.infuzion.chess.ai.SearchProfile;
+import me.infuzion.chess.clock.TimeControl;
 import me.infuzion.chess.game.board.ChessMove;
 import me.infuzion.chess.game.board.ChessPosition;
 import me.infuzion.chess.game.piece.PieceType;
 import me.infuzion.chess.game.util.Identifier;
 import me.infuzion.chess.web.dao.MatchDao;
 import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GamePage;
 import me.infuzion.chess.web.domain.GameStatus;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+public class MatchDatabase extends Database implements MatchDao, MatchBatchWriter {
+    private static final int MAX_CACHED_MATCHES = 1024;
+    /**
+     * The columns of a match that are listed, which leave out its moves.
+     */
+    private static final String LISTED_COLUMNS = "ID, PLAYER_WHITE, PLAYER_BLACK, STATUS, INITIAL_FEN, CURRENT_FEN, TIME_CONTROL, AI_PROFILE, CREATED_AT, UPDATED_AT";
 
-public class MatchDatabase extends Database implements MatchDao {
     private final DataSource source;
+    private final MoveStorage moveStorage;
+    /**
+     * The ids of the statuses of games that have not ended, as a comma-separated list for use in SQL.
+     */
+    private final String activeStatusIds;
+    private final MatchCache cache = new MatchCache(MAX_CACHED_MATCHES);
 
     public MatchDatabase(DataSource source) {
+        this(source, MoveStorage.ROWS);
+    }
+
+    /**
+     * @param moveStorage How the moves of new matches are stored; existing matches keep the layout they were created
+     *                    with until they are migrated with {@link #migrateToPackedMoves(int)}
+     */
+    public MatchDatabase(DataSource source, MoveStorage moveStorage) {
         this.source = source;
+        this.moveStorage = moveStorage;
 
         DBHelper.executeStatement(source, "CREATE TABLE IF NOT EXISTS MATCH_STATUS" +
                 "(ID        SERIAL       PRIMARY KEY  NOT NULL," +
@@ -54,21 +87,111 @@ public class MatchDatabase extends Database implements MatchDao {
                         + "FROM_SQUARE    VARCHAR(2),"
                         + "TO_SQUARE      VARCHAR(2),"
                         + "PROMOTION      VARCHAR(16)    DEFAULT NULL)");
+
+        // Bumped on every write so cached games can be checked against the database without loading their moves
+        DBHelper.executeStatement(source, "ALTER TABLE MATCHES ADD COLUMN IF NOT EXISTS VERSION INTEGER NOT NULL DEFAULT 0");
+        DBHelper.executeStatement(source, "ALTER TABLE MATCHES ADD COLUMN IF NOT EXISTS TIME_CONTROL VARCHAR(" + TimeControl.MAX_LENGTH + ") NOT NULL DEFAULT '" + TimeControl.DEFAULT + "'");
+        createMovesMatchPlyIndex();
+        DBHelper.executeStatement(source, "ALTER TABLE MATCHES ADD COLUMN IF NOT EXISTS AI_PROFILE VARCHAR(128) NOT NULL DEFAULT '" + SearchProfile.DEFAULT + "'");
+        // The moves of the match encoded by PackedMoves, or null if they are stored as rows of MOVES
+        DBHelper.executeStatement(source, "ALTER TABLE MATCHES ADD COLUMN IF NOT EXISTS MOVES_PACKED BYTEA DEFAULT NULL");
+        DBHelper.executeStatement(source, "ALTER TABLE MATCHES ADD COLUMN IF NOT EXISTS CREATED_AT TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()");
+        DBHelper.executeStatement(source, "ALTER TABLE MATCHES ADD COLUMN IF NOT EXISTS UPDATED_AT TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()");
+
+        this.activeStatusIds = DBHelper.prepareStatement(source, "SELECT ID, NAME FROM MATCH_STATUS ORDER BY ID", ps -> {
+            StringJoiner ids = new StringJoiner(", ");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (!GameStatus.valueOf(rs.getString("NAME")).isEnded()) {
+                        ids.add(Integer.toString(rs.getInt("ID")));
+                    }
+                }
+            }
+            return ids.toString();
+        });
+
+        // Listings are read newest first from these indexes, continuing after the last match of the previous page, so
+        // their cost does not grow with the number of matches
+        DBHelper.executeStatement(source, "CREATE INDEX IF NOT EXISTS MATCHES_ACTIVE_CREATED ON MATCHES (CREATED_AT, ID) WHERE STATUS IN (" + activeStatusIds + ")");
+        DBHelper.executeStatement(source, "CREATE INDEX IF NOT EXISTS MATCHES_WHITE_CREATED ON MATCHES (PLAYER_WHITE, CREATED_AT, ID)");
+        DBHelper.executeStatement(source, "CREATE INDEX IF NOT EXISTS MATCHES_BLACK_CREATED ON MATCHES (PLAYER_BLACK, CREATED_AT, ID)");
+    }
+
+    /**
+     * Creates the unique index that lets batched move inserts be retried without adding a move twice. Moves written
+     * before the index existed can repeat a ply, which would make creating it fail; the first move stored for each ply
+     * is kept and the others are removed. Repeats that differ from the kept move are reported, since they mean the
+     * match was stored inconsistently.
+     */
+    private void createMovesMatchPlyIndex() {
+        DBHelper.transaction(source, connection -> {
+            boolean exists = DBHelper.prepareStatement(connection, "SELECT to_regclass('moves_match_ply') IS NOT NULL", ps -> {
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return rs.getBoolean(1);
+                }
+            });
+
+            if (exists) {
+                return;
+            }
+
+            // keeps moves from being added while the duplicates are removed
+            DBHelper.executeStatement(connection, "LOCK TABLE MOVES IN SHARE ROW EXCLUSIVE MODE");
+
+            DBHelper.prepareStatement(connection, "SELECT DISTINCT a.MATCH_ID, a.PLY FROM MOVES a JOIN MOVES b " +
+                    "ON a.MATCH_ID = b.MATCH_ID AND a.PLY = b.PLY AND a.ID > b.ID " +
+                    "WHERE (a.FROM_SQUARE, a.TO_SQUARE, a.PROMOTION) IS DISTINCT FROM (b.FROM_SQUARE, b.TO_SQUARE, b.PROMOTION) " +
+                    "ORDER BY a.MATCH_ID, a.PLY", ps -> {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        System.err.println("Match " + rs.getString("MATCH_ID") + " has conflicting moves for ply "
+                                + rs.getInt("PLY") + "; keeping the first one stored");
+                    }
+                }
+            });
+
+            int removed = DBHelper.prepareStatement(connection, "DELETE FROM MOVES a USING MOVES b " +
+                    "WHERE a.MATCH_ID = b.MATCH_ID AND a.PLY = b.PLY AND a.ID > b.ID", ps -> {
+                return ps.executeUpdate();
+            });
+
+            if (removed > 0) {
+                System.err.println("Removed " + removed + " duplicate moves before creating the unique index on moves");
+            }
+
+            DBHelper.executeStatement(connection, "CREATE UNIQUE INDEX IF NOT EXISTS MOVES_MATCH_PLY ON MOVES (MATCH_ID, PLY)");
+        });
+    }
+
+    private Game mapResultSetWithMoves(ResultSet rs, List<ChessMove> moves) throws SQLException {
+        Identifier id = new Identifier(rs.getString("ID"));
+        String initialFen = rs.getString("INITIAL_FEN");
+        String whiteIdString = rs.getString("PLAYER_WHITE");
+        String blackIdString = rs.getString("PLAYER_BLACK");
+        String statusName = rs.getString("STATUS_NAME");
+
+        Identifier whitePlayer = whiteIdString == null ? null : new Identifier(whiteIdString);
+        Identifier blackPlayer = blackIdString == null ? null : new Identifier(blackIdString);
+
+        Game game = new Game(id, initialFen, moves, whitePlayer, blackPlayer, GameStatus.valueOf(statusName));
+        game.setTimeControl(TimeControl.parse(rs.getString("TIME_CONTROL")));
+        game.setAiProfile(SearchProfile.parse(rs.getString("AI_PROFILE")));
+
+        return game;
     }
 
-    private ResultSetMapper<Game> generateFirstElementMapper(List<ChessMove> moves) {
-        return (rs) -> {
-            Identifier id = new Identifier(rs.getString("ID"));
-            String initialFen = rs.getString("INITIAL_FEN");
-            String whiteIdString = rs.getString("PLAYER_WHITE");
-            String blackIdString = rs.getString("PLAYER_BLACK");
-            String statusName = rs.getString("STATUS_NAME");
+    private Game mapResultSetOntoCachedGame(ResultSet rs, MatchCache.Entry cached, List<ChessMove> newMoves) throws SQLException {
+        String whiteIdString = rs.getString("PLAYER_WHITE");
+        String blackIdString = rs.getString("PLAYER_BLACK");
+        String statusName = rs.getString("STATUS_NAME");
 
-            Identifier whitePlayer = whiteIdString == null ? null : new Identifier(whiteIdString);
-            Identifier blackPlayer = blackIdString == null ? null : new Identifier(blackIdString);
+        Game game = new Game(cached.getGame(), newMoves);
+        game.setPlayerWhite(whiteIdString == null ? null : new Identifier(whiteIdString));
+        game.setPlayerBlack(blackIdString == null ? null : new Identifier(blackIdString));
+        game.setStatus(GameStatus.valueOf(statusName));
 
-            return new Game(id, initialFen, moves, whitePlayer, blackPlayer, GameStatus.valueOf(statusName));
-        };
+        return game;
     }
 
     private Game mapResultSetWithoutMoves(ResultSet rs) throws SQLException {
@@ -82,84 +205,234 @@ public class MatchDatabase extends Database implements MatchDao {
         Identifier whitePlayer = whiteIdString == null ? null : new Identifier(whiteIdString);
         Identifier blackPlayer = blackIdString == null ? null : new Identifier(blackIdString);
 
-        return new Game(id, initialFen, currentFen, whitePlayer, blackPlayer, GameStatus.valueOf(statusName));
-    }
+        Game game = new Game(id, initialFen, currentFen, whitePlayer, blackPlayer, GameStatus.valueOf(statusName));
+        game.setTimeControl(TimeControl.parse(rs.getString("TIME_CONTROL")));
+        game.setAiProfile(SearchProfile.parse(rs.getString("AI_PROFILE")));
 
-    public List<Game> getMatches(int limit) {
-        return DBHelper.transaction(source, connection -> {
-            return DBHelper.prepareStatement(source,
-                    "SELECT matches.ID, PLAYER_WHITE, PLAYER_BLACK, INITIAL_FEN, CURRENT_FEN, match_status.name AS STATUS_NAME " +
-                            "FROM MATCHES " +
-                            "JOIN match_status " +
-                            "ON matches.STATUS = match_status.ID " +
-                            "LIMIT ?", ps -> {
-                        ps.setInt(1, limit);
-                        ps.executeQuery();
-                        return DBHelper.mapElements(ps.executeQuery(), this::mapResultSetWithoutMoves);
-                    });
-        });
+        return game;
     }
 
     @Override
-    public List<Game> getRecentMatchesForUser(Identifier user, int limit) {
+    public GamePage getActiveMatches(@Nullable String after, int limit) {
+        MatchCursor cursor = after == null ? null : MatchCursor.parse(after);
+
         return DBHelper.prepareStatement(source,
-                "SELECT matches.ID, PLAYER_WHITE, PLAYER_BLACK, INITIAL_FEN, CURRENT_FEN, match_status.name AS STATUS_NAME " +
+                "SELECT matches.ID, PLAYER_WHITE, PLAYER_BLACK, INITIAL_FEN, CURRENT_FEN, TIME_CONTROL, AI_PROFILE, CREATED_AT, UPDATED_AT, match_status.name AS STATUS_NAME " +
                         "FROM MATCHES " +
                         "JOIN match_status " +
                         "ON matches.STATUS = match_status.ID " +
-                        "WHERE matches.player_white = ? OR matches.player_black = ? " +
+                        "WHERE matches.STATUS IN (" + activeStatusIds + ") " +
+                        (cursor == null ? "" : "AND (matches.CREATED_AT, matches.ID) < (?, ?) ") +
+                        "ORDER BY matches.CREATED_AT DESC, matches.ID DESC " +
                         "LIMIT ?", ps -> {
-                    ps.setString(1, user.getId());
-                    ps.setString(2, user.getId());
-                    ps.setInt(3, limit);
-                    return DBHelper.mapElements(ps.executeQuery(), this::mapResultSetWithoutMoves);
+                    int index = setCursor(ps, 1, cursor);
+                    ps.setInt(index, limit);
+
+                    return mapPage(ps.executeQuery(), limit);
                 });
     }
 
+    /**
+     * Lists the matches the user plays white in and those they play black in from their own indexes, and merges them.
+     */
+    @Override
+    public GamePage getRecentMatchesForUser(Identifier user, @Nullable String after, int limit) {
+        MatchCursor cursor = after == null ? null : MatchCursor.parse(after);
+        String keyset = cursor == null ? "" : "AND (CREATED_AT, ID) < (?, ?) ";
+
+        return DBHelper.prepareStatement(source,
+                "SELECT matches.ID, PLAYER_WHITE, PLAYER_BLACK, INITIAL_FEN, CURRENT_FEN, TIME_CONTROL, AI_PROFILE, CREATED_AT, UPDATED_AT, match_status.name AS STATUS_NAME " +
+                        "FROM (" +
+                        "(SELECT " + LISTED_COLUMNS + " FROM MATCHES WHERE PLAYER_WHITE = ? " + keyset +
+                        "ORDER BY CREATED_AT DESC, ID DESC LIMIT ?) " +
+                        "UNION ALL " +
+                        "(SELECT " + LISTED_COLUMNS + " FROM MATCHES WHERE PLAYER_BLACK = ? AND PLAYER_WHITE IS DISTINCT FROM ? " + keyset +
+                        "ORDER BY CREATED_AT DESC, ID DESC LIMIT ?)" +
+                        ") AS matches " +
+                        "JOIN match_status " +
+                        "ON matches.STATUS = match_status.ID " +
+                        "ORDER BY matches.CREATED_AT DESC, matches.ID DESC " +
+                        "LIMIT ?", ps -> {
+                    int index = 1;
+                    ps.setString(index++, user.getId());
+                    index = setCursor(ps, index, cursor);
+                    ps.setInt(index++, limit);
+
+                    ps.setString(index++, user.getId());
+                    ps.setString(index++, user.getId());
+                    index = setCursor(ps, index, cursor);
+                    ps.setInt(index++, limit);
+
+                    ps.setInt(index, limit);
+
+                    return mapPage(ps.executeQuery(), limit);
+                });
+    }
+
+    /**
+     * Sets the parameters of a keyset condition to the given cursor, if there is one.
+     *
+     * @return The index of the next parameter
+     */
+    private static int setCursor(PreparedStatement ps, int index, @Nullable MatchCursor cursor) throws SQLException {
+        if (cursor == null) {
+            return index;
+        }
+
+        ps.setTimestamp(index, Timestamp.from(cursor.getCreatedAt()));
+        ps.setString(index + 1, cursor.getId());
+        return index + 2;
+    }
+
+    private GamePage mapPage(ResultSet rs, int limit) throws SQLException {
+        try (rs) {
+            List<Game> games = new ArrayList<>();
+            MatchCursor last = null;
+
+            while (rs.next()) {
+                Game game = mapResultSetWithoutMoves(rs);
+                game.setUpdatedAt(rs.getTimestamp("UPDATED_AT").toInstant());
+                games.add(game);
+                last = new MatchCursor(rs.getTimestamp("CREATED_AT").toInstant(), rs.getString("ID"));
+            }
+
+            // a full page may be followed by more matches
+            return new GamePage(games, games.size() == limit && last != null ? last.toString() : null);
+        }
+    }
+
     @Override
     public Game updateAndAddMove(Game game, ChessMove move) {
-        DBHelper.transaction(source, connection -> {
+        Integer version = DBHelper.transaction(source, connection -> {
+            // appends the move to the packed moves of the match if it has them, and locks the row so that the layout
+            // of the match cannot change before the move is inserted below
+            Integer updated = updateMatch(connection, game, PackedMoves.encode(move));
+
             DBHelper.prepareStatement(connection,
-                    "INSERT INTO moves(id, match_id, ply, from_square, to_square, promotion) VALUES (DEFAULT, ?, ?, ?, ? ,?);",
+                    "INSERT INTO moves(match_id, ply, from_square, to_square, promotion) " +
+                            "SELECT ?, ?, ?, ?, ? FROM matches WHERE id = ? AND moves_packed IS NULL",
                     ps -> {
                         ps.setString(1, game.getId().getId());
                         ps.setInt(2, game.getBoard().getCurrentPly());
                         ps.setString(3, move.getSource().getPosition());
                         ps.setString(4, move.getEnd().getPosition());
                         ps.setString(5, move.getPromotion() == null ? null : move.getPromotion().name());
+                        ps.setString(6, game.getId().getId());
                         ps.execute();
                     });
-            updateMatch(connection, game);
+
+            return updated;
         });
 
-        return getMatch(game.getId());
+        return written(game, version, 1);
     }
 
-    private List<ChessMove> getMovesForMatch(Connection connection, @NotNull Identifier matchId) throws SQLException {
+    /**
+     * Brings the cached copy of a game up to date with a write of it, so that the next read only has to check the
+     * version of its row. If the write was not made on top of the cached copy, for example because another node wrote to
+     * the game in between, the cached copy is dropped instead.
+     *
+     * @param version    The version of the row after the write, or null if the game does not exist
+     * @param addedPlies The number of moves stored by the write
+     * @return A copy of the written game, or null if the game does not exist
+     */
+    private Game written(Game game, Integer version, int addedPlies) {
+        if (version == null) {
+            cache.invalidate(game.getId());
+            return null;
+        }
+
+        MatchCache.Entry cached = cache.get(game.getId());
+
+        if (cached != null && cached.getVersion() == version - 1
+                && cached.getPly() + addedPlies == game.getBoard().getCurrentPly()) {
+            cache.put(game, version);
+        } else {
+            cache.invalidate(game.getId());
+        }
+
+        return new Game(game);
+    }
+
+    private List<ChessMove> getMovesForMatch(Connection connection, @NotNull Identifier matchId, int afterPly) throws SQLException {
         return DBHelper.prepareStatement(connection,
-                "SELECT id, match_id, ply, from_square, to_square, promotion FROM moves WHERE match_id = ? ORDER BY ply",
+                "SELECT id, match_id, ply, from_square, to_square, promotion FROM moves WHERE match_id = ? AND ply > ? ORDER BY ply",
                 ps -> {
                     ps.setString(1, matchId.getId());
+                    ps.setInt(2, afterPly);
 
                     return DBHelper.mapElements(ps.executeQuery(), this::mapChessMove);
                 });
     }
 
+    /**
+     * Returns the moves of the match in the current row of the given result set, taking them from its packed moves if
+     * it has them.
+     */
+    private List<ChessMove> getMovesForMatch(Connection connection, ResultSet rs, @NotNull Identifier matchId, int afterPly) throws SQLException {
+        byte[] packed = rs.getBytes("MOVES_PACKED");
+
+        if (packed != null) {
+            return PackedMoves.decode(packed, afterPly);
+        }
+
+        return getMovesForMatch(connection, matchId, afterPly);
+    }
+
+    /**
+     * Returns the stored game. Recently used games are kept in memory and only checked against the version column of
+     * their row; if the row has changed since the game was cached, only the moves that were added since then are loaded
+     * and played onto a copy of the cached board instead of replaying the whole game.
+     */
     public Game getMatch(@NotNull Identifier id) {
+        MatchCache.Entry cached = cache.get(id);
+
+        try {
+            return loadMatch(id, cached);
+        } catch (RuntimeException e) {
+            if (cached == null) {
+                throw e;
+            }
+            // The cached copy could not be brought up to date; fall back to loading the game from scratch
+            cache.invalidate(id);
+            return loadMatch(id, null);
+        }
+    }
+
+    private Game loadMatch(@NotNull Identifier id, MatchCache.Entry cached) {
         return DBHelper.transaction(source, connection -> {
             connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
 
-            List<ChessMove> moves = getMovesForMatch(connection, id);
-
             return DBHelper.prepareStatement(connection,
-                    "SELECT matches.ID, PLAYER_WHITE, PLAYER_BLACK, INITIAL_FEN, match_status.name AS STATUS_NAME FROM MATCHES " +
+                    "SELECT matches.ID, PLAYER_WHITE, PLAYER_BLACK, INITIAL_FEN, TIME_CONTROL, AI_PROFILE, VERSION, MOVES_PACKED, match_status.name AS STATUS_NAME FROM MATCHES " +
                             "JOIN match_status " +
                             "ON matches.STATUS = match_status.ID " +
                             "WHERE matches.id = ?", ps -> {
 
                         ps.setString(1, id.getId());
 
-                        return DBHelper.mapFirstElement(ps.executeQuery(), generateFirstElementMapper(moves));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            if (!rs.next()) {
+                                return null;
+                            }
+
+                            int version = rs.getInt("VERSION");
+
+                            if (cached != null && cached.getVersion() == version) {
+                                return cached.copy();
+                            }
+
+                            Game game;
+                            if (cached != null && cached.getVersion() < version) {
+                                List<ChessMove> newMoves = getMovesForMatch(connection, rs, id, cached.getPly());
+                                game = mapResultSetOntoCachedGame(rs, cached, newMoves);
+                            } else {
+                                game = mapResultSetWithMoves(rs, getMovesForMatch(connection, rs, id, 0));
+                            }
+
+                            cache.put(game, version);
+                            return game;
+                        }
                     }
             );
         });
@@ -172,37 +445,165 @@ public class MatchDatabase extends Database implements MatchDao {
 
         PieceType type = pieceType == null ? null : PieceType.valueOf(pieceType);
 
-        return new ChessMove(new ChessPosition(from), new ChessPosition(to), type);
+        return new ChessMove(ChessPosition.of(from), ChessPosition.of(to), type);
     }
 
-    private void updateMatch(Connection connection, Game game) throws SQLException {
-        DBHelper.prepareStatement(connection, "UPDATE matches " +
-                "SET player_white = ?, player_black = ?, status = (SELECT match_status.ID FROM match_status WHERE match_status.name = ?), current_fen = ?" +
-                "WHERE id = ?", ps -> {
+    /**
+     * @param appendedMoves Packed moves to append to the moves of the match if they are stored packed
+     * @return The version of the updated row, or null if the game does not exist
+     */
+    private Integer updateMatch(Connection connection, Game game, byte[] appendedMoves) throws SQLException {
+        return DBHelper.prepareStatement(connection, "UPDATE matches " +
+                "SET player_white = ?, player_black = ?, status = (SELECT match_status.ID FROM match_status WHERE match_status.name = ?), current_fen = ?, version = version + 1, updated_at = now(), " +
+                "moves_packed = moves_packed || ? " +
+                "WHERE id = ? RETURNING version", ps -> {
 
             ps.setString(1, game.getPlayerWhite() == null ? null : game.getPlayerWhite().getId());
             ps.setString(2, game.getPlayerBlack() == null ? null : game.getPlayerBlack().getId());
             ps.setString(3, game.getStatus().name());
             ps.setString(4, game.getCurrentFen());
-            ps.setString(5, game.getId().getId());
+            ps.setBytes(5, appendedMoves);
+            ps.setString(6, game.getId().getId());
 
-            ps.execute();
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
         });
     }
 
-    public Game updateMatch(Game game) {
+    /**
+     * Updates each match row to the latest state in the given writes, bumping its version once per write, and stores
+     * the moves of the writes. Moves that are already stored are skipped.
+     */
+    @Override
+    public void writeBatch(@NotNull List<MatchWrite> writes) {
+        Map<Identifier, MatchWrite> latest = new LinkedHashMap<>();
+        Map<Identifier, Integer> counts = new HashMap<>();
+        // the moves of a match in a batch have consecutive plies, starting at the first ply in firstPlies
+        Map<Identifier, List<ChessMove>> moves = new HashMap<>();
+        Map<Identifier, Integer> firstPlies = new HashMap<>();
+        for (MatchWrite write : writes) {
+            latest.put(write.getGameId(), write);
+            counts.merge(write.getGameId(), 1, Integer::sum);
+
+            if (write.getMove() != null) {
+                moves.computeIfAbsent(write.getGameId(), id -> new ArrayList<>()).add(write.getMove());
+                firstPlies.putIfAbsent(write.getGameId(), write.getPly());
+            }
+        }
+
         DBHelper.transaction(source, connection -> {
-            updateMatch(connection, game);
+            // appends to packed moves only the part of the new moves that is not stored yet
+            DBHelper.prepareStatement(connection, "UPDATE matches " +
+                    "SET player_white = ?, player_black = ?, status = (SELECT match_status.ID FROM match_status WHERE match_status.name = ?), current_fen = ?, version = version + ?, updated_at = now(), " +
+                    "moves_packed = CASE WHEN octet_length(moves_packed) BETWEEN ? AND ? " +
+                    "THEN moves_packed || substring(? FROM octet_length(moves_packed) - ? + 1) ELSE moves_packed END " +
+                    "WHERE id = ?", ps -> {
+                for (MatchWrite write : latest.values()) {
+                    byte[] packed = PackedMoves.encode(moves.getOrDefault(write.getGameId(), Collections.emptyList()));
+                    int offset = (firstPlies.getOrDefault(write.getGameId(), 1) - 1) * PackedMoves.BYTES_PER_MOVE;
+
+                    ps.setString(1, write.getPlayerWhite() == null ? null : write.getPlayerWhite().getId());
+                    ps.setString(2, write.getPlayerBlack() == null ? null : write.getPlayerBlack().getId());
+                    ps.setString(3, write.getStatus().name());
+                    ps.setString(4, write.getCurrentFen());
+                    ps.setInt(5, counts.get(write.getGameId()));
+                    ps.setInt(6, offset);
+                    ps.setInt(7, offset + packed.length);
+                    ps.setBytes(8, packed);
+                    ps.setInt(9, offset);
+                    ps.setString(10, write.getGameId().getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            });
+
+            DBHelper.prepareStatement(connection,
+                    "INSERT INTO moves(match_id, ply, from_square, to_square, promotion) " +
+                            "SELECT ?, ?, ?, ?, ? FROM matches WHERE id = ? AND moves_packed IS NULL " +
+                            "ON CONFLICT (match_id, ply) DO NOTHING",
+                    ps -> {
+                        for (MatchWrite write : writes) {
+                            ChessMove move = write.getMove();
+                            if (move == null) {
+                                continue;
+                            }
+
+                            ps.setString(1, write.getGameId().getId());
+                            ps.setInt(2, write.getPly());
+                            ps.setString(3, move.getSource().getPosition());
+                            ps.setString(4, move.getEnd().getPosition());
+                            ps.setString(5, move.getPromotion() == null ? null : move.getPromotion().name());
+                            ps.setString(6, write.getGameId().getId());
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    });
+        });
+    }
+
+    /**
+     * @return The number of matches whose moves are still stored as rows of the moves table, including matches that are
+     * currently being written to
+     */
+    public long countUnmigratedMatches() {
+        return DBHelper.prepareStatement(source, "SELECT count(*) FROM matches WHERE moves_packed IS NULL", ps -> {
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+    }
+
+    /**
+     * Moves the moves of matches that are stored as rows of the moves table into packed moves on their match row. The
+     * stored games do not change, so their versions are kept. Matches being written to are skipped and picked up by a
+     * later call.
+     *
+     * @param limit The maximum number of matches to migrate
+     * @return The number of migrated matches, which is 0 once every match that is not being written to is migrated; use
+     * {@link #countUnmigratedMatches()} to check that none are left
+     */
+    public int migrateToPackedMoves(int limit) {
+        return DBHelper.transaction(source, connection -> {
+            List<Identifier> ids = DBHelper.prepareStatement(connection,
+                    "SELECT id FROM matches WHERE moves_packed IS NULL LIMIT ? FOR UPDATE SKIP LOCKED", ps -> {
+                        ps.setInt(1, limit);
+                        return DBHelper.mapElements(ps.executeQuery(), rs -> new Identifier(rs.getString("id")));
+                    });
+
+            for (Identifier id : ids) {
+                byte[] packed = PackedMoves.encode(getMovesForMatch(connection, id, 0));
+
+                DBHelper.prepareStatement(connection, "UPDATE matches SET moves_packed = ? WHERE id = ?", ps -> {
+                    ps.setBytes(1, packed);
+                    ps.setString(2, id.getId());
+                    ps.execute();
+                });
+                DBHelper.prepareStatement(connection, "DELETE FROM moves WHERE match_id = ?", ps -> {
+                    ps.setString(1, id.getId());
+                    ps.execute();
+                });
+            }
+
+            return ids.size();
+        });
+    }
+
+    public Game updateMatch(Game game) {
+        Integer version = DBHelper.transaction(source, connection -> {
+            return updateMatch(connection, game, new byte[0]);
         });
 
-        return getMatch(game.getId());
+        return written(game, version, 0);
     }
 
     @Override
     public Game newMatch(Game game) {
-        DBHelper.transaction(source, connection -> {
-            DBHelper.prepareStatement(connection, "INSERT INTO matches(ID, PLAYER_WHITE, PLAYER_BLACK, STATUS, INITIAL_FEN, CURRENT_FEN) " +
-                            "VALUES (?, ?, ?, (SELECT match_status.ID FROM match_status WHERE match_status.name = ?), ?, ?)",
+        int version = DBHelper.transaction(source, connection -> {
+            return DBHelper.prepareStatement(connection, "INSERT INTO matches(ID, PLAYER_WHITE, PLAYER_BLACK, STATUS, INITIAL_FEN, CURRENT_FEN, TIME_CONTROL, AI_PROFILE, MOVES_PACKED) " +
+                            "VALUES (?, ?, ?, (SELECT match_status.ID FROM match_status WHERE match_status.name = ?), ?, ?, ?, ?, ?) " +
+                            "RETURNING version",
                     ps -> {
                         ps.setString(1, game.getId().getId());
                         ps.setString(2, game.getPlayerWhite() == null ? null : game.getPlayerWhite().getId());
@@ -210,11 +611,36 @@ public class MatchDatabase extends Database implements MatchDao {
                         ps.setString(4, game.getStatus().name());
                         ps.setString(5, game.getInitialFen());
                         ps.setString(6, game.getCurrentFen());
-
-                        ps.execute();
+                        ps.setString(7, game.getTimeControl().toString());
+                        ps.setString(8, game.getAiProfile().toString());
+                        ps.setBytes(9, moveStorage == MoveStorage.PACKED ? new byte[0] : null);
+
+                        try (ResultSet rs = ps.executeQuery()) {
+                            rs.next();
+                            return rs.getInt(1);
+                        }
                     });
         });
 
-        return getMatch(game.getId());
+        // moves are not stored with a new match, so only a game that has none matches what would be loaded
+        if (game.getMoves() != null && game.getMoves().isEmpty()) {
+            cache.put(game, version);
+        }
+
+        return new Game(game);
+    }
+
+    /**
+     * How the moves of a match are stored.
+     */
+    public enum MoveStorage {
+        /**
+         * One row of the moves table per move
+         */
+        ROWS,
+        /**
+         * A byte array of two bytes per move on the match row, which is loaded with the match and appended to in place
+         */
+        PACKED
     }
 }
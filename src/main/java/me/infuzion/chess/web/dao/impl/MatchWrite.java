@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A write to a stored match that has not been applied to the database yet: the state of the match row after the write,
+ * and optionally a move to add.
+ */
+final class MatchWrite {
+    private final Identifier gameId;
+    private final Identifier playerWhite;
+    private final Identifier playerBlack;
+    private final GameStatus status;
+    private final String currentFen;
+    private final int ply;
+    private final ChessMove move;
+
+    MatchWrite(@NotNull Identifier gameId, @Nullable Identifier playerWhite, @Nullable Identifier playerBlack,
+               @NotNull GameStatus status, @NotNull String currentFen, int ply, @Nullable ChessMove move) {
+        this.gameId = gameId;
+        this.playerWhite = playerWhite;
+        this.playerBlack = playerBlack;
+        this.status = status;
+        this.currentFen = currentFen;
+        this.ply = ply;
+        this.move = move;
+    }
+
+    /**
+     * @param move The move that was just played on the game's board, or null to only update the match row
+     */
+    static MatchWrite of(@NotNull Game game, @Nullable ChessMove move) {
+        return new MatchWrite(game.getId(), game.getPlayerWhite(), game.getPlayerBlack(), game.getStatus(),
+                game.getCurrentFen(), game.getBoard().getCurrentPly(), move);
+    }
+
+    Identifier getGameId() {
+        return gameId;
+    }
+
+    @Nullable Identifier getPlayerWhite() {
+        return playerWhite;
+    }
+
+    @Nullable Identifier getPlayerBlack() {
+        return playerBlack;
+    }
+
+    GameStatus getStatus() {
+        return status;
+    }
+
+    String getCurrentFen() {
+        return currentFen;
+    }
+
+    /**
+     * @return The ply of the move, which is the number of moves played once it has been made
+     */
+    int getPly() {
+        return ply;
+    }
+
+    @Nullable ChessMove getMove() {
+        return move;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of {@link MatchWrite}s that have been acknowledged but not yet applied to the database. Appends
+ * are only written to the file; {@link #force()} forces them to disk, so that several appends can share one force.
+ * Each record is stored with its length and a checksum, so a record that was only partly written when the process
+ * stopped is detected and discarded when the journal is read back.
+ * <p>
+ * The journal is split into numbered segment files next to the given path, and appends always go to the newest one.
+ * Once every write in the older segments has been applied, they are deleted as a whole, so the journal never has to
+ * be rewritten.
+ * <p>
+ * Not thread safe; callers must synchronize, except for {@link #force()} and {@link #deleteBefore(long)}, which only
+ * touches segments that are no longer appended to.
+ */
+final class MoveJournal implements Closeable {
+    private final Path path;
+    private long segment;
+    private int segmentRecords;
+    private long appended;
+    private volatile FileChannel channel;
+
+    /**
+     * Opens the journal and starts a new segment after the ones left by a previous run.
+     */
+    MoveJournal(@NotNull Path path) throws IOException {
+        this.path = path.toAbsolutePath();
+
+        List<Long> existing = segments();
+        this.segment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+        this.channel = create(segmentPath(segment));
+    }
+
+    private static FileChannel create(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    private static byte[] encode(MatchWrite write) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(write.getGameId().getId());
+            writeNullable(out, write.getPlayerWhite());
+            writeNullable(out, write.getPlayerBlack());
+            out.writeUTF(write.getStatus().name());
+            out.writeUTF(write.getCurrentFen());
+            out.writeInt(write.getPly());
+
+            ChessMove move = write.getMove();
+            out.writeBoolean(move != null);
+            if (move != null) {
+                out.writeInt(move.toPacked());
+            }
+        } catch (IOException e) {
+            // writing to memory cannot fail
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeNullable(DataOutputStream out, Identifier id) throws IOException {
+        out.writeBoolean(id != null);
+        if (id != null) {
+            out.writeUTF(id.getId());
+        }
+    }
+
+    private static MatchWrite decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            Identifier gameId = new Identifier(in.readUTF());
+            Identifier playerWhite = in.readBoolean() ? new Identifier(in.readUTF()) : null;
+            Identifier playerBlack = in.readBoolean() ? new Identifier(in.readUTF()) : null;
+            GameStatus status = GameStatus.valueOf(in.readUTF());
+            String currentFen = in.readUTF();
+            int ply = in.readInt();
+            ChessMove move = in.readBoolean() ? ChessMove.unpack(in.readInt()) : null;
+
+            return new MatchWrite(gameId, playerWhite, playerBlack, status, currentFen, ply, move);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("invalid journal record", e);
+        }
+    }
+
+    private static ByteBuffer frame(MatchWrite write) {
+        byte[] payload = encode(write);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + payload.length + Long.BYTES);
+        buffer.putInt(payload.length).put(payload).putLong(crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void write(FileChannel channel, MatchWrite write) throws IOException {
+        ByteBuffer buffer = frame(write);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Appends the given writes to a file outside of any journal, such as a list of writes that could not be applied.
+     */
+    static void appendTo(@NotNull Path file, @NotNull Collection<MatchWrite> writes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            for (MatchWrite write : writes) {
+                write(channel, write);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Reads every complete record of the given file. Reading stops at a damaged record, which can only be the last
+     * record of the segment that was being appended to when the process stopped.
+     */
+    static List<MatchWrite> read(@NotNull Path file) throws IOException {
+        List<MatchWrite> writes = new ArrayList<>();
+        long size = Files.size(file);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int length = in.readInt();
+                if (length < 0 || length > size) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                long checksum = in.readLong();
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+
+                writes.add(decode(payload));
+            }
+        } catch (EOFException e) {
+            // the last record was not written completely
+        }
+
+        return writes;
+    }
+
+    private Path segmentPath(long segment) {
+        return path.resolveSibling(path.getFileName() + "." + segment);
+    }
+
+    /**
+     * @return The numbers of the segment files on disk, in ascending order
+     */
+    private List<Long> segments() throws IOException {
+        String prefix = path.getFileName() + ".";
+
+        try (Stream<Path> files = Files.list(path.getParent())) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.length() > prefix.length()
+                            && name.substring(prefix.length()).chars().allMatch(Character::isDigit))
+                    .map(name -> Long.parseLong(name.substring(prefix.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return The numbers of the segments left by previous runs, oldest first
+     */
+    List<Long> getPreviousSegments() throws IOException {
+        return segments().stream().filter(existing -> existing < segment).collect(Collectors.toList());
+    }
+
+    /**
+     * Reads every complete record of a segment left by a previous run.
+     */
+    List<MatchWrite> readSegment(long segment) throws IOException {
+        return read(segmentPath(segment));
+    }
+
+    /**
+     * Reads every complete record left by previous runs, oldest first.
+     */
+    List<MatchWrite> readAll() throws IOException {
+        List<MatchWrite> writes = new ArrayList<>();
+
+        for (long previous : getPreviousSegments()) {
+            writes.addAll(readSegment(previous));
+        }
+
+        return writes;
+    }
+
+    void append(@NotNull MatchWrite write) throws IOException {
+        write(channel, write);
+        segmentRecords++;
+        appended++;
+    }
+
+    /**
+     * @return The number of records appended since the journal was opened
+     */
+    long getAppended() {
+        return appended;
+    }
+
+    /**
+     * Forces every record appended before this was called to disk. This may run at the same time as appends and
+     * rotations.
+     */
+    void force() throws IOException {
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // the segment was rotated or closed, which forced it unless its records were already applied
+        }
+    }
+
+    /**
+     * @return The number of the segment that appends go to
+     */
+    long getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return The number of records appended to the current segment
+     */
+    int getSegmentRecords() {
+        return segmentRecords;
+    }
+
+    /**
+     * Starts a new segment; later appends go to it. The new segment is created before the current one is closed, so
+     * appends keep working if this fails.
+     *
+     * @param applied Whether every record of the current segment has been applied. Otherwise the segment is forced to
+     *                disk before it is closed, as {@link #force()} can no longer reach it afterwards.
+     */
+    void rotate(boolean applied) throws IOException {
+        FileChannel next = create(segmentPath(segment + 1));
+        if (!applied) {
+            channel.force(false);
+        }
+        channel.close();
+
+        channel = next;
+        segment++;
+        segmentRecords = 0;
+    }
+
+    /**
+     * Deletes every segment older than the given one.
+     *
+     * @param segment A segment no newer than the current one, whose predecessors only contain applied writes
+     */
+    void deleteBefore(long segment) throws IOException {
+        for (long existing : segments()) {
+            if (existing >= segment) {
+                break;
+            }
+            Files.deleteIfExists(segmentPath(existing));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+}
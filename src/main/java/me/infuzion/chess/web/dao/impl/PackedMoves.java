@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import me.infuzion.chess.game.board.ChessMove;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes a list of moves as a byte array of two bytes per move, which holds the move packed by
+ * {@link ChessMove#toPacked()} in big-endian order. Moves can be appended to an encoded list by concatenating bytes.
+ */
+final class PackedMoves {
+    static final int BYTES_PER_MOVE = 2;
+
+    private PackedMoves() {
+    }
+
+    static byte[] encode(@NotNull List<ChessMove> moves) {
+        byte[] bytes = new byte[moves.size() * BYTES_PER_MOVE];
+
+        for (int i = 0; i < moves.size(); i++) {
+            int packed = moves.get(i).toPacked();
+            bytes[i * BYTES_PER_MOVE] = (byte) (packed >>> 8);
+            bytes[i * BYTES_PER_MOVE + 1] = (byte) packed;
+        }
+
+        return bytes;
+    }
+
+    static byte[] encode(@NotNull ChessMove move) {
+        return encode(List.of(move));
+    }
+
+    static List<ChessMove> decode(@NotNull byte[] bytes) {
+        return decode(bytes, 0);
+    }
+
+    /**
+     * @param fromMove The number of moves to skip at the start of the list
+     * @throws IllegalArgumentException if the length of the given bytes is not a whole number of moves
+     */
+    static List<ChessMove> decode(@NotNull byte[] bytes, int fromMove) {
+        if (bytes.length % BYTES_PER_MOVE != 0) {
+            throw new IllegalArgumentException("truncated move list");
+        }
+
+        int start = Math.min(bytes.length, fromMove * BYTES_PER_MOVE);
+        List<ChessMove> moves = new ArrayList<>((bytes.length - start) / BYTES_PER_MOVE);
+        for (int i = start; i < bytes.length; i += BYTES_PER_MOVE) {
+            moves.add(ChessMove.unpack((bytes[i] & 0xFF) << 8 | (bytes[i + 1] & 0xFF)));
+        }
+
+        return moves;
+    }
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.dao.MatchDao;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GamePage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.*;
+
+/**
+ * Acknowledges writes to matches as soon as they are in a local journal and applies them to the database in batches
+ * from a background thread. Until a write has been applied, reads of its match are answered from memory, so this node
+ * always sees its own writes; other nodes see them once they are flushed, at most one flush interval later. Because of
+ * that, this should only be used when a single node serves the games.
+ * <p>
+ * Writes that were journaled but not applied when the process stopped are queued again when the journal is opened,
+ * ahead of any new write, and are applied by the background thread like any other write. Reads of their matches wait
+ * until they have been applied, as they are not held in memory.
+ * <p>
+ * A batch that keeps failing for a reason other than a lost connection is retried one write at a time, and a write
+ * that still fails after {@link #MAX_ATTEMPTS} attempts is moved to a dead-letter file next to the journal so that it
+ * no longer holds up the writes behind it. The other queued writes of its match go with it, and later writes to the
+ * match are refused until the next start, as they would build on a state that the database does not have.
+ */
+public class WriteBehindMatchDao implements MatchDao, AutoCloseable {
+    static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+    static final int MAX_BATCH_SIZE = 1000;
+    /**
+     * Writers block once this many writes are outstanding, which bounds the lag behind the database.
+     */
+    static final int MAX_PENDING_WRITES = 10_000;
+    /**
+     * The number of times a batch is attempted before it is split up, and a single write before it is dead-lettered.
+     * Failures that look transient, such as a lost connection, do not count.
+     */
+    static final int MAX_ATTEMPTS = 5;
+    static final long DEFAULT_RETRY_DELAY_MILLIS = 1000;
+
+    private final MatchDao reads;
+    private final MatchBatchWriter writes;
+    private final MoveJournal journal;
+    private final Path deadLetterPath;
+    private final long flushIntervalMillis;
+    private final long retryDelayMillis;
+
+    private final Object lock = new Object();
+    private final Deque<QueuedWrite> queue = new ArrayDeque<>();
+    private final List<MatchWrite> deadLetters = new ArrayList<>();
+    /**
+     * Matches with a dead-lettered write
+     */
+    private final Set<Identifier> failedGames = new HashSet<>();
+    /**
+     * The latest state of every match with a write in the queue, and the number of its queued writes.
+     */
+    private final Map<Identifier, Game> pendingGames = new HashMap<>();
+    private final Map<Identifier, Integer> pendingCounts = new HashMap<>();
+
+    private final Object forceLock = new Object();
+    /**
+     * The number of journal records known to be on disk, and whether a writer is forcing the journal. Both are guarded
+     * by {@link #forceLock}.
+     */
+    private long forced;
+    private boolean forcing;
+
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public WriteBehindMatchDao(@NotNull MatchDatabase database, @NotNull Path journalPath) throws IOException {
+        this(database, database, journalPath, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_RETRY_DELAY_MILLIS);
+    }
+
+    WriteBehindMatchDao(@NotNull MatchDao reads, @NotNull MatchBatchWriter writes, @NotNull Path journalPath,
+                        long flushIntervalMillis, long retryDelayMillis) throws IOException {
+        this.reads = reads;
+        this.writes = writes;
+        this.journal = new MoveJournal(journalPath);
+        this.deadLetterPath = journalPath.resolveSibling(journalPath.getFileName() + ".dead");
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.retryDelayMillis = retryDelayMillis;
+
+        recover();
+
+        this.writer = new Thread(this::runWriter);
+        writer.setName("WriteBehindMatchDao - writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the writes left in the journal by a previous run, so that they are retried and dead-lettered like any
+     * other write instead of keeping this from starting.
+     */
+    private void recover() throws IOException {
+        int recovered = 0;
+
+        for (long previous : journal.getPreviousSegments()) {
+            for (MatchWrite write : journal.readSegment(previous)) {
+                queue.add(new QueuedWrite(write, previous));
+                pendingCounts.merge(write.getGameId(), 1, Integer::sum);
+                recovered++;
+            }
+        }
+
+        if (recovered > 0) {
+            System.out.println("Recovered " + recovered + " journaled match writes");
+        } else {
+            journal.deleteBefore(journal.getSegment());
+        }
+    }
+
+    /**
+     * @return Whether the given failure is likely to go away by itself, in which case the write is retried for as long
+     * as it takes
+     */
+    private static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                // connection exceptions, serialization failures and deadlocks, insufficient resources, and shutdowns
+                if (state != null && (state.startsWith("08") || state.startsWith("40") || state.startsWith("53")
+                        || state.startsWith("57"))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Journals and queues a write, and returns once it is on disk. The journal is forced without holding the lock, so
+     * that other writers can append in the meantime and share the next force.
+     */
+    private void enqueue(@NotNull Game game, @Nullable ChessMove move) {
+        MatchWrite write = MatchWrite.of(game, move);
+        long record;
+
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("closed");
+            }
+
+            if (failedGames.contains(game.getId())) {
+                throw new IllegalStateException("writes to match " + game.getId() + " were dead-lettered");
+            }
+
+            while (queue.size() >= MAX_PENDING_WRITES) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for the database to catch up", e);
+                }
+            }
+
+            try {
+                journal.append(write);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            record = journal.getAppended();
+            queue.add(new QueuedWrite(write, journal.getSegment()));
+            if (journal.getSegmentRecords() >= MAX_BATCH_SIZE) {
+                rotateJournal(false);
+            }
+
+            pendingGames.put(game.getId(), new Game(game));
+            pendingCounts.merge(game.getId(), 1, Integer::sum);
+
+            if (queue.size() >= MAX_BATCH_SIZE) {
+                lock.notifyAll();
+            }
+        }
+
+        awaitForced(record);
+    }
+
+    /**
+     * Waits until the journal is on disk up to the given record. One writer forces the journal for every record
+     * appended so far while the others wait for it, so that a force is shared by every write that arrived during the
+     * previous one.
+     */
+    private void awaitForced(long record) {
+        while (true) {
+            synchronized (forceLock) {
+                while (forcing && forced < record) {
+                    try {
+                        forceLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("interrupted while waiting for the journal to be written", e);
+                    }
+                }
+
+                if (forced >= record) {
+                    return;
+                }
+                forcing = true;
+            }
+
+            try {
+                long appended;
+                synchronized (lock) {
+                    appended = journal.getAppended();
+                }
+
+                journal.force();
+
+                synchronized (forceLock) {
+                    forced = Math.max(forced, appended);
+                }
+            } catch (IOException e) {
+                // the write is still queued and will be applied, but it cannot be acknowledged
+                throw new UncheckedIOException(e);
+            } finally {
+                synchronized (forceLock) {
+                    forcing = false;
+                    forceLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void rotateJournal(boolean applied) {
+        try {
+            journal.rotate(applied);
+        } catch (IOException e) {
+            // appends continue in the current segment, which is deleted once all of its writes are applied
+            System.err.println("Failed to start a new match journal segment: " + e);
+        }
+    }
+
+    private void runWriter() {
+        int attempts = 0;
+        // the number of writes at the head of the queue to apply one at a time, after their batch kept failing
+        int isolated = 0;
+
+        while (true) {
+            List<MatchWrite> batch;
+            MatchWrite failed = null;
+
+            synchronized (lock) {
+                if (queue.size() < MAX_BATCH_SIZE && !closed && attempts == 0) {
+                    try {
+                        lock.wait(flushIntervalMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                if (queue.isEmpty()) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+
+                // writes stay queued until they are applied, so that reads keep seeing them
+                int limit = isolated > 0 ? 1 : MAX_BATCH_SIZE;
+                batch = new ArrayList<>(Math.min(queue.size(), limit));
+                Iterator<QueuedWrite> iterator = queue.iterator();
+                while (iterator.hasNext() && batch.size() < limit) {
+                    batch.add(iterator.next().write);
+                }
+            }
+
+            try {
+                writes.writeBatch(batch);
+                attempts = 0;
+            } catch (RuntimeException e) {
+                if (closed) {
+                    // the writes are still in the journal and are applied on the next start
+                    return;
+                }
+
+                if (isTransient(e) || ++attempts < MAX_ATTEMPTS) {
+                    System.err.println("Failed to write " + batch.size() + " match writes; retrying: " + e);
+                    sleep(retryDelayMillis);
+                    continue;
+                }
+
+                attempts = 0;
+
+                if (batch.size() > 1) {
+                    System.err.println("Failed to write " + batch.size() + " match writes; retrying one at a time: " + e);
+                    isolated = batch.size();
+                    continue;
+                }
+
+                failed = batch.get(0);
+                System.err.println("Failed to write a match write to " + failed.getGameId() + "; moving it and the "
+                        + "match's other queued writes to " + deadLetterPath + ": " + e);
+            }
+
+            if (isolated > 0) {
+                isolated--;
+            }
+
+            long oldestSegment;
+            List<MatchWrite> quarantined = new ArrayList<>();
+
+            synchronized (lock) {
+                for (int i = 0; i < batch.size(); i++) {
+                    Identifier gameId = queue.removeFirst().write.getGameId();
+
+                    if (pendingCounts.merge(gameId, -1, Integer::sum) == 0) {
+                        pendingCounts.remove(gameId);
+                        pendingGames.remove(gameId);
+                    }
+                }
+
+                if (failed != null) {
+                    // the match's later writes cannot be applied without the failed one
+                    quarantined.add(failed);
+                    isolated -= quarantine(failed.getGameId(), quarantined, isolated);
+                    deadLetters.addAll(quarantined);
+                }
+
+                if (queue.isEmpty() && journal.getSegmentRecords() > 0) {
+                    // every write in the current segment is applied, so start a new one and let this one be deleted
+                    rotateJournal(true);
+                }
+                oldestSegment = queue.isEmpty() ? journal.getSegment() : queue.peekFirst().segment;
+
+                lock.notifyAll();
+            }
+
+            if (!quarantined.isEmpty()) {
+                // saved before the segments holding them are deleted
+                deadLetter(quarantined);
+            }
+
+            // segments are deleted without holding the lock, so that writers are not held up by the file system
+            try {
+                journal.deleteBefore(oldestSegment);
+            } catch (IOException e) {
+                // the segments still contain the applied writes, which are ignored when they are applied again
+                System.err.println("Failed to delete applied match journal segments: " + e);
+            }
+        }
+    }
+
+    /**
+     * Removes every queued write of the given match and refuses later ones. Must be called while holding the lock.
+     *
+     * @param removed  The list to add the removed writes to
+     * @param isolated The number of writes at the head of the queue that are being applied one at a time
+     * @return The number of removed writes that were among the isolated ones
+     */
+    private int quarantine(Identifier gameId, List<MatchWrite> removed, int isolated) {
+        failedGames.add(gameId);
+
+        int removedIsolated = 0;
+        int position = 0;
+        Iterator<QueuedWrite> iterator = queue.iterator();
+
+        while (iterator.hasNext()) {
+            MatchWrite write = iterator.next().write;
+
+            if (write.getGameId().equals(gameId)) {
+                iterator.remove();
+                removed.add(write);
+
+                if (position < isolated) {
+                    removedIsolated++;
+                }
+            }
+            position++;
+        }
+
+        pendingCounts.remove(gameId);
+        pendingGames.remove(gameId);
+
+        return removedIsolated;
+    }
+
+    private void deadLetter(List<MatchWrite> writes) {
+        try {
+            MoveJournal.appendTo(deadLetterPath, writes);
+        } catch (IOException e) {
+            System.err.println("Failed to save dead-lettered match writes: " + e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The number of writes that have not been applied to the database yet
+     */
+    public int getPendingWrites() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * @return The number of writes given up on since this was opened. They are also appended to a dead-letter file next
+     * to the journal, which is kept across restarts.
+     */
+    public int getDeadLetterCount() {
+        synchronized (lock) {
+            return deadLetters.size();
+        }
+    }
+
+    List<MatchWrite> getDeadLetters() {
+        synchronized (lock) {
+            return new ArrayList<>(deadLetters);
+        }
+    }
+
+    @Override
+    public Game getMatch(Identifier identifier) {
+        synchronized (lock) {
+            // writes recovered from the journal are not held in memory, so the database is behind until they are applied
+            while (!closed && !pendingGames.containsKey(identifier) && pendingCounts.containsKey(identifier)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for recovered writes to be applied", e);
+                }
+            }
+
+            Game pending = pendingGames.get(identifier);
+            if (pending != null) {
+                return new Game(pending);
+            }
+        }
+
+        return reads.getMatch(identifier);
+    }
+
+    /**
+     * Matches with writes that have not been applied yet are listed as they are in the database.
+     */
+    @Override
+    public GamePage getActiveMatches(@Nullable String after, int limit) {
+        return reads.getActiveMatches(after, limit);
+    }
+
+    /**
+     * Matches with writes that have not been applied yet are listed as they are in the database.
+     */
+    @Override
+    public GamePage getRecentMatchesForUser(Identifier user, @Nullable String after, int limit) {
+        return reads.getRecentMatchesForUser(user, after, limit);
+    }
+
+    @Override
+    public Game updateAndAddMove(Game game, ChessMove move) {
+        enqueue(game, move);
+        return new Game(game);
+    }
+
+    @Override
+    public Game updateMatch(Game game) {
+        enqueue(game, null);
+        return new Game(game);
+    }
+
+    /**
+     * New matches are written immediately, so that writes queued for them afterwards can refer to them.
+     */
+    @Override
+    public Game newMatch(Game game) {
+        return reads.newMatch(game);
+    }
+
+    /**
+     * Applies the outstanding writes and closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        journal.close();
+    }
+
+    private static final class QueuedWrite {
+        private final MatchWrite write;
+        /**
+         * The journal segment the write was appended to
+         */
+        private final long segment;
+
+        private QueuedWrite(MatchWrite write, long segment) {
+            this.write = write;
+            this.segment = segment;
+        }
+    }
+}
@@ -16,6 +16,8 @@
 
 package me.infuzion.chess.web.domain;
 
+import me.infuzion.chess.ai.SearchProfile;
+import me.infuzion.chess.clock.TimeControl;
 import me.infuzion.chess.game.board.ChessBoard;
 import me.infuzion.chess.game.board.ChessMove;
 import me.infuzion.chess.game.piece.Color;
@@ -24,6 +26,8 @@ import me.infuzion.chess.web.game.Visibility;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -41,6 +45,14 @@ public class Game {
     private Identifier playerWhite;
     private Identifier playerBlack;
     private GameStatus status;
+    private TimeControl timeControl = TimeControl.DEFAULT;
+    private SearchProfile aiProfile = SearchProfile.DEFAULT;
+    /**
+     * When the stored match was last written, if the game was read from a listing; not sent to clients.
+     */
+    @Nullable
+    private transient Instant updatedAt;
+
     public Game(@NotNull Identifier id, @NotNull String initialFen, @NotNull List<@NotNull ChessMove> moves,
                 @Nullable Identifier playerWhite, @Nullable Identifier playerBlack, @NotNull GameStatus status) {
         this.id = id;
@@ -52,7 +64,7 @@ public class Game {
         visibility = Visibility.PUBLIC;
         this.board = ChessBoard.fromInitialFen(initialFen, moves);
         this.currentFen = this.board.toFen();
-        this.moves = moves;
+        this.moves = new ArrayList<>(moves);
     }
 
     public Game(@NotNull Identifier id, @NotNull String initialFen, @NotNull String currentFen,
@@ -69,6 +81,52 @@ public class Game {
         this.moves = null;
     }
 
+    /**
+     * Creates an independent copy of the given game with the given moves played on top of it. The board is copied
+     * rather than rebuilt from the initial position, so only the new moves are validated.
+     *
+     * @param game     The game to copy
+     * @param newMoves Moves to play after the last move of the copied game
+     * @throws IllegalArgumentException if one of the new moves is not legal
+     */
+    public Game(@NotNull Game game, @NotNull List<@NotNull ChessMove> newMoves) {
+        this.id = game.id;
+        this.playerWhite = game.playerWhite;
+        this.playerBlack = game.playerBlack;
+        this.status = game.status;
+        this.timeControl = game.timeControl;
+        this.aiProfile = game.aiProfile;
+        this.updatedAt = game.updatedAt;
+        this.initialFen = game.initialFen;
+        this.visibility = game.visibility;
+        this.board = new ChessBoard(game.board);
+
+        for (ChessMove move : newMoves) {
+            if (!board.move(move)) {
+                throw new IllegalArgumentException("invalid move list");
+            }
+        }
+
+        if (game.moves == null) {
+            this.moves = null;
+        } else {
+            List<ChessMove> moves = new ArrayList<>(game.moves.size() + newMoves.size());
+            moves.addAll(game.moves);
+            moves.addAll(newMoves);
+            this.moves = moves;
+        }
+        this.currentFen = newMoves.isEmpty() ? game.currentFen : board.toFen();
+    }
+
+    /**
+     * Creates an independent copy of the given game.
+     *
+     * @param game The game to copy
+     */
+    public Game(@NotNull Game game) {
+        this(game, Collections.emptyList());
+    }
+
     public Game(@NotNull Identifier id, @NotNull String initialFen, @NotNull Identifier player, @NotNull Color playerColor,
                 String currentFen) {
         this(id,
@@ -89,6 +147,23 @@ public class Game {
         return moves;
     }
 
+    /**
+     * Plays the given move on the board of this game and adds it to the moves of the game, if they are known. Moves
+     * played on the board directly are not added, so copies of this game made later would not know about them.
+     *
+     * @return True if the move was legal and played
+     */
+    public boolean move(@NotNull ChessMove move) {
+        if (!board.move(move)) {
+            return false;
+        }
+
+        if (moves != null) {
+            moves.add(move);
+        }
+        return true;
+    }
+
     public void setCurrentFen(String currentFen) {
         this.currentFen = currentFen;
     }
@@ -129,7 +204,38 @@ public class Game {
         this.status = status;
     }
 
+    public TimeControl getTimeControl() {
+        return timeControl;
+    }
+
+    public void setTimeControl(@NotNull TimeControl timeControl) {
+        this.timeControl = timeControl;
+    }
+
+    /**
+     * @return How the engine searches for its moves if this game is played against the AI
+     */
+    public SearchProfile getAiProfile() {
+        return aiProfile;
+    }
+
+    public void setAiProfile(@NotNull SearchProfile aiProfile) {
+        this.aiProfile = aiProfile;
+    }
+
     public Visibility getVisibility() {
         return visibility;
     }
+
+    /**
+     * @return When the stored match was last written, or null if it is not known, such as for games that were not read
+     * from a listing
+     */
+    public @Nullable Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(@Nullable Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
 }
@@ -48,4 +48,11 @@ public enum GameStatus {
     public boolean isInProgress() {
         return this == IN_PROGRESS_WHITE || this == IN_PROGRESS_BLACK;
     }
+
+    /**
+     * @return True if the game has a result, false if it is waiting for players or in progress
+     */
+    public boolean isEnded() {
+        return !isInProgress() && this != WAITING;
+    }
 }
@@ -16,21 +16,26 @@
 
 package me.infuzion.chess.web.domain.service;
 
+import me.infuzion.chess.ai.SearchProfile;
+import me.infuzion.chess.clock.TimeControl;
 import me.infuzion.chess.data.PubSubSource;
 import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.board.GameEndReason;
 import me.infuzion.chess.game.piece.Color;
 import me.infuzion.chess.game.util.Identifier;
 import me.infuzion.chess.web.dao.MatchDao;
 import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GamePage;
 import me.infuzion.chess.web.domain.GameStatus;
+import me.infuzion.chess.web.domain.service.message.ChessGameCreateMessage;
 import me.infuzion.chess.web.domain.service.message.ChessGameEndMessage;
 import me.infuzion.chess.web.domain.service.message.ChessGameMoveMessage;
 import me.infuzion.chess.web.domain.service.message.ChessGamePlayerJoinMessage;
 import me.infuzion.chess.web.domain.service.message.ChessGameStartMessage;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.security.SecureRandom;
-import java.util.List;
 
 public class GameService {
     private final MatchDao matchDao;
@@ -51,20 +56,46 @@ public class GameService {
      * @param playerColor The color the player wishes to play
      * @return A game in the {@link me.infuzion.chess.web.domain.GameStatus#WAITING} state
      */
-    public Game createGame(@NotNull String initialFen, @NotNull Identifier player, @NotNull Color playerColor) {
-        return matchDao.newMatch(new Game(new Identifier(), initialFen, player, playerColor, initialFen));
+    public Game createGame(@NotNull String initialFen, @NotNull Identifier player, @NotNull Color playerColor,
+                           @NotNull TimeControl timeControl) {
+        return createGame(initialFen, player, playerColor, timeControl, SearchProfile.DEFAULT);
+    }
+
+    /**
+     * @param aiProfile How the engine searches for its moves if it joins the game
+     * @see #createGame(String, Identifier, Color, TimeControl)
+     */
+    public Game createGame(@NotNull String initialFen, @NotNull Identifier player, @NotNull Color playerColor,
+                           @NotNull TimeControl timeControl, @NotNull SearchProfile aiProfile) {
+        Game game = new Game(new Identifier(), initialFen, player, playerColor, initialFen);
+        game.setTimeControl(timeControl);
+        game.setAiProfile(aiProfile);
+
+        Game created = matchDao.newMatch(game);
+        pubSubSource.publish("chess::game.create", new ChessGameCreateMessage(game.getId(), game.getInitialFen(),
+                game.getVisibility(), game.getPlayerWhite(), game.getPlayerBlack(), game.getCurrentFen(), timeControl));
+
+        return created;
     }
 
     public Game getGame(@NotNull Identifier identifier) {
         return matchDao.getMatch(identifier);
     }
 
-    public List<Game> getRecentGameForUser(@NotNull Identifier user, int limit) {
-        return matchDao.getRecentMatchesForUser(user, limit);
+    /**
+     * @param after The cursor of the previous page, or null to list the first page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public GamePage getRecentGameForUser(@NotNull Identifier user, @Nullable String after, int limit) {
+        return matchDao.getRecentMatchesForUser(user, after, limit);
     }
 
-    public List<Game> getActiveGames(int limit) {
-        return matchDao.getMatches(limit);
+    /**
+     * @param after The cursor of the previous page, or null to list the first page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    public GamePage getActiveGames(@Nullable String after, int limit) {
+        return matchDao.getActiveMatches(after, limit);
     }
 
     /**
@@ -113,7 +144,7 @@ public class GameService {
         pubSubSource.publish("chess::game.player_join", new ChessGamePlayerJoinMessage(gameId, player));
 
         if (game.getStatus() == GameStatus.IN_PROGRESS_WHITE) {
-            pubSubSource.publish("chess::game.start", new ChessGameStartMessage(gameId, game.getPlayerWhite(), game.getPlayerBlack()));
+            pubSubSource.publish("chess::game.start", new ChessGameStartMessage(gameId, game.getPlayerWhite(), game.getPlayerBlack(), game.getTimeControl()));
         }
 
         return true;
@@ -122,6 +153,11 @@ public class GameService {
     public void handleClockExpired(@NotNull Identifier gameId, @NotNull Color expiredColor) {
         Game game = matchDao.getMatch(gameId);
 
+        if (game == null || !game.getStatus().isInProgress()) {
+            // the game ended by checkmate or a draw before the clock ran out
+            return;
+        }
+
         game.setStatus(expiredColor == Color.WHITE ? GameStatus.ENDED_WHITE_OUT_OF_TIME : GameStatus.ENDED_BLACK_OUT_OF_TIME);
 
         matchDao.updateMatch(game);
@@ -131,6 +167,18 @@ public class GameService {
     }
 
     public boolean addMove(@NotNull Identifier matchId, @NotNull Identifier playerId, @NotNull ChessMove move) {
+        return addMove(matchId, playerId, move, System.currentTimeMillis());
+    }
+
+    /**
+     * Validates and persists the given move.
+     *
+     * @param moveTimeEpochMillis The time the move was made at, which the player's clock is charged up to
+     * @return True if the move was played, false if the game is not in progress, it is not the player's turn or the
+     * move is not legal
+     */
+    public boolean addMove(@NotNull Identifier matchId, @NotNull Identifier playerId, @NotNull ChessMove move,
+                           long moveTimeEpochMillis) {
         long start3 = System.currentTimeMillis();
         Game game = matchDao.getMatch(matchId);
         long start = System.currentTimeMillis();
@@ -144,14 +192,18 @@ public class GameService {
             return false;
         }
 
-        boolean moveAllowed = game.getBoard().move(move);
+        boolean moveAllowed = game.move(move);
         Color moveColor = game.getStatus() == GameStatus.IN_PROGRESS_WHITE ? Color.WHITE : Color.BLACK;
 
         if (!moveAllowed) {
             return false;
         }
 
-        if (game.getStatus() == GameStatus.IN_PROGRESS_WHITE) {
+        GameEndReason endReason = game.getBoard().getGameEndReason();
+
+        if (endReason != null) {
+            game.setStatus(getEndStatus(endReason, moveColor));
+        } else if (game.getStatus() == GameStatus.IN_PROGRESS_WHITE) {
             game.setStatus(GameStatus.IN_PROGRESS_BLACK);
         } else if (game.getStatus() == GameStatus.IN_PROGRESS_BLACK) {
             game.setStatus(GameStatus.IN_PROGRESS_WHITE);
@@ -164,7 +216,23 @@ public class GameService {
         long end = System.currentTimeMillis();
         System.out.println("verify: " + (start2 - start) + " fetch: " + (start - start3) + " persist: " + (end - start2) + " total: " + (end - start3));
 
-        pubSubSource.publish("chess::game.move", new ChessGameMoveMessage(game.getId(), playerId, moveColor, move));
+        pubSubSource.publish("chess::game.move", new ChessGameMoveMessage(game.getId(), playerId, moveColor, move,
+                moveTimeEpochMillis, game.getBoard().getCurrentPly(), game.getCurrentFen()));
+
+        if (endReason != null) {
+            // ending the game here stops the clock instead of leaving it to run out
+            pubSubSource.publish("chess::game.end", new ChessGameEndMessage(game.getId(), game.getStatus()));
+        }
+
         return true;
     }
+
+    private static GameStatus getEndStatus(@NotNull GameEndReason reason, @NotNull Color moveColor) {
+        if (reason.isDraw()) {
+            return GameStatus.ENDED_DRAW;
+        }
+
+        // the side that just moved delivered checkmate
+        return moveColor == Color.WHITE ? GameStatus.ENDED_WHITE_WINS : GameStatus.ENDED_BLACK_WINS;
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.domain.service.message;
+
+import me.infuzion.chess.clock.TimeControl;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.game.Visibility;
+
+public class ChessGameCreateMessage {
+    private final Identifier gameId;
+    private final String initialFen;
+    private final Visibility visibility;
+    private final Identifier whitePlayerId;
+    private final Identifier blackPlayerId;
+    private final String currentFen;
+    private final TimeControl timeControl;
+
+    public ChessGameCreateMessage(Identifier gameId, String initialFen, Visibility visibility, Identifier whitePlayerId,
+                                  Identifier blackPlayerId, String currentFen, TimeControl timeControl) {
+        this.gameId = gameId;
+        this.initialFen = initialFen;
+        this.visibility = visibility;
+        this.whitePlayerId = whitePlayerId;
+        this.blackPlayerId = blackPlayerId;
+        this.currentFen = currentFen;
+        this.timeControl = timeControl;
+    }
+
+    public Identifier getGameId() {
+        return gameId;
+    }
+
+    public String getInitialFen() {
+        return initialFen;
+    }
+
+    public Visibility getVisibility() {
+        return visibility;
+    }
+
+    /**
+     * @return The player that created the game if they play white, or null.
+     */
+    public Identifier getWhitePlayerId() {
+        return whitePlayerId;
+    }
+
+    /**
+     * @return The player that created the game if they play black, or null.
+     */
+    public Identifier getBlackPlayerId() {
+        return blackPlayerId;
+    }
+
+    public String getCurrentFen() {
+        return currentFen;
+    }
+
+    public TimeControl getTimeControl() {
+        return timeControl;
+    }
+}
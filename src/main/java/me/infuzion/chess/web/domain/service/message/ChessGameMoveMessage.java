@@ -25,12 +25,19 @@ public class ChessGameMoveMessage {
     private final Identifier playerId;
     private final Color moveColor;
     private final ChessMove move;
+    private final long moveTimeEpochMillis;
+    private final int ply;
+    private final String currentFen;
 
-    public ChessGameMoveMessage(Identifier gameId, Identifier playerId, Color moveColor, ChessMove move) {
+    public ChessGameMoveMessage(Identifier gameId, Identifier playerId, Color moveColor, ChessMove move,
+                                long moveTimeEpochMillis, int ply, String currentFen) {
         this.gameId = gameId;
         this.playerId = playerId;
         this.moveColor = moveColor;
         this.move = move;
+        this.moveTimeEpochMillis = moveTimeEpochMillis;
+        this.ply = ply;
+        this.currentFen = currentFen;
     }
 
     public Identifier getGameId() {
@@ -51,4 +58,25 @@ public class ChessGameMoveMessage {
     public Color getMoveColor() {
         return moveColor;
     }
+
+    /**
+     * @return The time the move was received from the player, less any lag compensation, or 0 if it is not known.
+     */
+    public long getMoveTimeEpochMillis() {
+        return moveTimeEpochMillis;
+    }
+
+    /**
+     * @return The number of moves played in the game, including this one.
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * @return The position after the move.
+     */
+    public String getCurrentFen() {
+        return currentFen;
+    }
 }
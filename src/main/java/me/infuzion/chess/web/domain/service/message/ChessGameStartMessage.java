@@ -16,17 +16,20 @@
 
 package me.infuzion.chess.web.domain.service.message;
 
+import me.infuzion.chess.clock.TimeControl;
 import me.infuzion.chess.game.util.Identifier;
 
 public class ChessGameStartMessage {
     private final Identifier gameId;
     private final Identifier whitePlayerId;
     private final Identifier blackPlayerId;
+    private final TimeControl timeControl;
 
-    public ChessGameStartMessage(Identifier gameId, Identifier whitePlayerId, Identifier blackPlayerId) {
+    public ChessGameStartMessage(Identifier gameId, Identifier whitePlayerId, Identifier blackPlayerId, TimeControl timeControl) {
         this.gameId = gameId;
         this.whitePlayerId = whitePlayerId;
         this.blackPlayerId = blackPlayerId;
+        this.timeControl = timeControl;
     }
 
     public Identifier getWhitePlayerId() {
@@ -40,4 +43,8 @@ public class ChessGameStartMessage {
     public Identifier getGameId() {
         return gameId;
     }
+
+    public TimeControl getTimeControl() {
+        return timeControl;
+    }
 }
@@ -17,7 +17,10 @@
 package me.infuzion.chess.web.listener.game;
 
 import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.lobby.LobbyPage;
+import me.infuzion.chess.lobby.LobbyService;
 import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GamePage;
 import me.infuzion.chess.web.domain.GamePreviewGenerator;
 import me.infuzion.chess.web.domain.service.GameService;
 import me.infuzion.web.server.EventListener;
@@ -30,28 +33,62 @@ import me.infuzion.web.server.event.reflect.param.mapper.impl.UrlParam;
 import org.apache.commons.io.IOUtils;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 public class ChessGameListener implements EventListener {
+    /**
+     * The response header with the cursor to request the next page of a listing with, if there is one.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final GameService gameService;
+    private final LobbyService lobbyService;
 
-    public ChessGameListener(GameService gameService) {
+    public ChessGameListener(GameService gameService, LobbyService lobbyService) {
         this.gameService = gameService;
+        this.lobbyService = lobbyService;
     }
 
+    /**
+     * Lists the games of a user newest first, or the games in the lobby most recently active first, one page at a time.
+     * The lobby is served from its index in Redis. The next page is requested by passing the value of the
+     * {@value #NEXT_CURSOR_HEADER} header of the response as the {@code after} parameter.
+     */
     @EventHandler
     @Route("/api/v1/games/")
     @Response("application/json")
-    public List<Game> multipleGames(PageRequestEvent event, @QueryParam("limit") Integer limit, @QueryParam("user") String user) {
+    public List<?> multipleGames(PageRequestEvent event, @QueryParam("limit") Integer limit, @QueryParam("user") String user,
+                                 @QueryParam("after") String after) {
         if (limit == null) {
-            limit = 100;
+            limit = MAX_PAGE_SIZE;
+        }
+        limit = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        List<?> games;
+        String nextCursor;
+        try {
+            if (user != null) {
+                GamePage page = gameService.getRecentGameForUser(new Identifier(user), after, limit);
+                games = page.getGames();
+                nextCursor = page.getNextCursor();
+            } else {
+                LobbyPage page = lobbyService.getGames(after, limit);
+                games = page.getGames();
+                nextCursor = page.getNextCursor();
+            }
+        } catch (IllegalArgumentException e) {
+            event.getResponse().setStatusCode(400);
+            return Collections.emptyList();
         }
 
-        if (user != null) {
-            return gameService.getRecentGameForUser(new Identifier(user), limit);
+        if (nextCursor != null) {
+            event.setResponseHeader(NEXT_CURSOR_HEADER, nextCursor);
         }
 
-        return gameService.getActiveGames(limit);
+        return games;
     }
 
     @EventHandler(PageRequestEvent.class)
@@ -16,11 +16,14 @@
 
 package me.infuzion.chess.web.listener.game;
 
+import me.infuzion.chess.ai.SearchProfile;
 import me.infuzion.chess.ai.StockfishEngine;
 import me.infuzion.chess.clock.ChessClockExpiredMessage;
 import me.infuzion.chess.clock.ChessClockUpdateMessage;
 import me.infuzion.chess.clock.Clock;
 import me.infuzion.chess.clock.ClockService;
+import me.infuzion.chess.clock.LagEstimator;
+import me.infuzion.chess.clock.TimeControl;
 import me.infuzion.chess.data.PubSubChannel;
 import me.infuzion.chess.data.PubSubMessage;
 import me.infuzion.chess.game.board.ChessMove;
@@ -45,7 +48,9 @@ import me.infuzion.web.server.event.reflect.param.mapper.impl.BodyParam;
 import me.infuzion.web.server.event.reflect.param.mapper.impl.Response;
 import me.infuzion.web.server.websocket.WebsocketRoom;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ChessMoveListener implements EventListener {
@@ -53,6 +58,8 @@ public class ChessMoveListener implements EventListener {
     private final ClockService clockService;
     private final EventManager eventManager;
     private final Map<Identifier, WebsocketRoom> gameListeners = new ConcurrentHashMap<>();
+    // keyed by websocket client; weak so that estimators are dropped with their connection
+    private final Map<Object, LagEstimator> lagEstimators = Collections.synchronizedMap(new WeakHashMap<>());
     private final Object genericSuccess = new Object() {
         @SuppressWarnings("unused")
         final String status = "success";
@@ -90,7 +97,7 @@ public class ChessMoveListener implements EventListener {
         WebsocketRoom room = gameListeners.get(gameId);
         room.addClient(event.getClient());
 
-        return new ClockSyncResponse(gameId, clockService.getClockForGame(gameId));
+        return new ClockSyncResponse(gameId, clockService.getClockForGame(gameId), lagEstimator(event).ping(System.nanoTime()));
     }
 
     @EventHandler
@@ -100,7 +107,23 @@ public class ChessMoveListener implements EventListener {
     private ClockSyncResponse onClockSyncRequest(WebSocketTextMessageEvent event, @BodyParam("id") String id) {
         Identifier gameId = new Identifier(id);
 
-        return new ClockSyncResponse(gameId, clockService.getClockForGame(gameId));
+        return new ClockSyncResponse(gameId, clockService.getClockForGame(gameId), lagEstimator(event).ping(System.nanoTime()));
+    }
+
+    @EventHandler
+    @RequiresAuthentication(value = AuthenticationChecks.REQUEST, request = "pong", requireLoggedIn = false)
+    @Route("/api/v1/games/")
+    private void onPong(WebSocketTextMessageEvent event, @BodyParam PongWebsocketMessage message) {
+        // timed before anything else so that handling the echo is not counted as lag
+        long receivedAt = System.nanoTime();
+
+        if (message.ping != null) {
+            lagEstimator(event).pong(message.ping, receivedAt);
+        }
+    }
+
+    private LagEstimator lagEstimator(WebSocketTextMessageEvent event) {
+        return lagEstimators.computeIfAbsent(event.getClient(), (client) -> new LagEstimator());
     }
 
     @EventHandler
@@ -121,8 +144,15 @@ public class ChessMoveListener implements EventListener {
     @RequiresAuthentication(value = AuthenticationChecks.REQUEST, request = "create_game")
     @Route("/api/v1/games/")
     @Response
-    private CreateResponse onCreateRequest(WebSocketTextMessageEvent event, @RequestUser User user) {
-        Game game = gameService.createGame(Variants.STANDARD_FEN, user.getIdentifier(), Color.WHITE);
+    private CreateResponse onCreateRequest(WebSocketTextMessageEvent event, @RequestUser User user, @BodyParam CreateGameWebsocketMessage message) {
+        TimeControl timeControl;
+        try {
+            timeControl = message.getTimeControl();
+        } catch (IllegalArgumentException e) {
+            return new CreateResponse(e.getMessage());
+        }
+
+        Game game = gameService.createGame(Variants.STANDARD_FEN, user.getIdentifier(), Color.WHITE, timeControl);
 
         WebsocketRoom room = gameListeners.computeIfAbsent(game.getId(), (gid) -> new WebsocketRoom(eventManager));
 
@@ -135,8 +165,17 @@ public class ChessMoveListener implements EventListener {
     @RequiresAuthentication(value = AuthenticationChecks.REQUEST, request = "create_ai_game")
     @Route("/api/v1/games/")
     @Response
-    private CreateResponse onCreateAiRequest(WebSocketTextMessageEvent event, @RequestUser User user) {
-        Game game = gameService.createGame(Variants.STANDARD_FEN, user.getIdentifier(), Color.WHITE);
+    private CreateResponse onCreateAiRequest(WebSocketTextMessageEvent event, @RequestUser User user, @BodyParam CreateGameWebsocketMessage message) {
+        TimeControl timeControl;
+        SearchProfile aiProfile;
+        try {
+            timeControl = message.getTimeControl();
+            aiProfile = message.getAiProfile();
+        } catch (IllegalArgumentException e) {
+            return new CreateResponse(e.getMessage());
+        }
+
+        Game game = gameService.createGame(Variants.STANDARD_FEN, user.getIdentifier(), Color.WHITE, timeControl, aiProfile);
         gameService.addPlayerToGame(game.getId(), StockfishEngine.STOCKFISH_ID);
 
         WebsocketRoom room = gameListeners.computeIfAbsent(game.getId(), (gid) -> new WebsocketRoom(eventManager));
@@ -201,7 +240,9 @@ public class ChessMoveListener implements EventListener {
     @RequiresAuthentication(value = AuthenticationChecks.REQUEST, request = "make_move")
     @Response
     private MoveResponse onMoveRequest(WebSocketTextMessageEvent event, @RequestUser User user, @BodyParam MoveWebsocketMessage message) {
-        System.out.println("move start " + System.currentTimeMillis());
+        // the player is only charged up to the moment the move reached us, not for validating and persisting it
+        long receivedAt = System.currentTimeMillis();
+
         if (message.move.getSource() == null || message.move.getEnd() == null || message.id == null) {
             return new MoveResponse("move requires source, end, and id");
         }
@@ -209,7 +250,13 @@ public class ChessMoveListener implements EventListener {
         Identifier gameId = new Identifier(message.id);
         ChessMove move = message.move;
 
-        if (!gameService.addMove(gameId, user.getIdentifier(), move)) {
+        LagEstimator lagEstimator = lagEstimator(event);
+        if (message.lag != null) {
+            lagEstimator.record(message.lag);
+        }
+        long moveTime = receivedAt - lagEstimator.creditForMove();
+
+        if (!gameService.addMove(gameId, user.getIdentifier(), move, moveTime)) {
             Game game = gameService.getGame(gameId);
 
             if (game != null) {
@@ -223,12 +270,48 @@ public class ChessMoveListener implements EventListener {
             return new MoveResponse("game not found or invalid move");
         }
 
+        // measure the connection again so that the credit for the next move uses a recent round trip
+        event.getClient().send(ChessUtilities.gson.toJson(new PingResponse(lagEstimator.ping(System.nanoTime()))));
+
         return null;
     }
 
     static class MoveWebsocketMessage {
         String id;
         ChessMove move;
+        /**
+         * The one-way lag to the server measured by the client in milliseconds, if it has measured one. It is only
+         * credited up to the lag measured by the server.
+         */
+        Long lag;
+    }
+
+    static class PongWebsocketMessage {
+        /**
+         * The token of the ping being answered
+         */
+        Long ping;
+    }
+
+    static class CreateGameWebsocketMessage {
+        /**
+         * The time control in the format accepted by {@link TimeControl#parse(String)}, or null for the default
+         */
+        String time_control;
+
+        TimeControl getTimeControl() {
+            return time_control == null ? TimeControl.DEFAULT : TimeControl.parse(time_control);
+        }
+
+        /**
+         * The strength of the engine in AI games, from {@link SearchProfile#MIN_LEVEL} to {@link SearchProfile#MAX_LEVEL},
+         * or null for the default
+         */
+        Integer ai_level;
+
+        SearchProfile getAiProfile() {
+            return ai_level == null ? SearchProfile.DEFAULT : SearchProfile.forLevel(ai_level);
+        }
     }
 
     private static class JoinResponse extends ChessWebsocketResponse {
@@ -306,11 +389,37 @@ public class ChessMoveListener implements EventListener {
     private static class ClockSyncResponse extends ChessWebsocketResponse {
         final Identifier game_id;
         final Clock clock;
+        /**
+         * Lets clients measure their lag and the offset of their clock from the server's
+         */
+        final long server_time;
+        /**
+         * A ping token for the client to echo in a pong request, or null for clock updates sent to every listener
+         */
+        final Long ping;
 
         protected ClockSyncResponse(Identifier game_id, Clock clock) {
+            this(game_id, clock, null);
+        }
+
+        protected ClockSyncResponse(Identifier game_id, Clock clock, Long ping) {
             super("clock_sync");
             this.game_id = game_id;
             this.clock = clock;
+            this.server_time = System.currentTimeMillis();
+            this.ping = ping;
+        }
+    }
+
+    private static class PingResponse extends ChessWebsocketResponse {
+        /**
+         * Echoed by the client in a pong request so the server can time the round trip
+         */
+        final long ping;
+
+        protected PingResponse(long ping) {
+            super("ping");
+            this.ping = ping;
         }
     }
 }
@@ -0,0 +1,22 @@
+-- Claims an expired clock so that exactly one node reports it. The clock is only claimed if the player to move has
+-- actually run out of time; a move made after the game was queued as expired keeps the clock running.
+-- KEYS[1] = clock hash
+-- ARGV[1] = now (epoch millis)
+-- Returns the color that ran out of time, or nil if the clock does not exist or has not expired.
+
+local state = redis.call('HMGET', KEYS[1], 'current_active', 'white_time', 'black_time', 'last_move_time')
+
+if not state[1] then
+    return nil
+end
+
+local remaining = state[1] == 'WHITE' and tonumber(state[2]) or tonumber(state[3])
+local elapsed = math.floor((tonumber(ARGV[1]) - tonumber(state[4])) / 100)
+
+if remaining - elapsed > 0 then
+    return nil
+end
+
+redis.call('DEL', KEYS[1])
+
+return state[1]
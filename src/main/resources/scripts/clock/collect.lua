@@ -0,0 +1,19 @@
+-- Moves games whose clock deadline has passed from the expiring sorted set to the expired list.
+-- KEYS[1] = expiring sorted set, KEYS[2] = expired list
+-- ARGV[1] = now (epoch deciseconds), ARGV[2] = maximum number of games to move
+-- Returns the score of the earliest remaining deadline, or nil if the set is empty.
+
+local due = redis.call('ZRANGEBYSCORE', KEYS[1], 0, ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+
+for _, game in ipairs(due) do
+    redis.call('RPUSH', KEYS[2], game)
+    redis.call('ZREM', KEYS[1], game)
+end
+
+local head = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+
+if #head == 0 then
+    return nil
+end
+
+return head[2]
@@ -0,0 +1,17 @@
+-- Rewrites a clock stored before the clock scripts existed: last_move_time was an ISO-8601 instant and the hash did not
+-- record a time control. The clock is left alone if it changed since it was read.
+-- KEYS[1] = clock hash
+-- ARGV[1] = last_move_time as read, ARGV[2] = last_move_time in epoch millis, ARGV[3] = initial time (deciseconds),
+-- ARGV[4] = increment (deciseconds), ARGV[5] = increment type (FISCHER or BRONSTEIN)
+-- Returns 1 if the clock was rewritten, 0 otherwise.
+
+if redis.call('HGET', KEYS[1], 'last_move_time') ~= ARGV[1] then
+    return 0
+end
+
+redis.call('HSET', KEYS[1], 'last_move_time', ARGV[2])
+redis.call('HSETNX', KEYS[1], 'initial_time', ARGV[3])
+redis.call('HSETNX', KEYS[1], 'increment', ARGV[4])
+redis.call('HSETNX', KEYS[1], 'increment_type', ARGV[5])
+
+return 1
@@ -0,0 +1,47 @@
+-- Charges the player that moved for the time they used, credits them with the increment of the time control and starts
+-- their opponent's clock.
+-- KEYS[1] = clock hash, KEYS[2] = expiring sorted set
+-- ARGV[1] = game id, ARGV[2] = color that moved, ARGV[3] = time of the move (epoch millis)
+-- Returns {white time, black time, color to move, initial time, increment, increment type, time charged up to}, or nil if
+-- it is not the given color's turn.
+
+local state = redis.call('HMGET', KEYS[1], 'current_active', 'white_time', 'black_time', 'last_move_time',
+        'initial_time', 'increment', 'increment_type')
+
+if state[1] ~= ARGV[2] then
+    return nil
+end
+
+-- lag compensation can place a move before the previous one; it never gives a player time back
+local now = math.max(tonumber(ARGV[3]), tonumber(state[4]))
+local nowString = string.format('%d', now)
+local elapsed = math.floor((now - tonumber(state[4])) / 100)
+local white = tonumber(state[2])
+local black = tonumber(state[3])
+local increment = tonumber(state[6])
+
+if state[7] == 'BRONSTEIN' then
+    increment = math.max(0, math.min(elapsed, increment))
+end
+
+local active
+local remaining
+
+if ARGV[2] == 'WHITE' then
+    white = white - elapsed + increment
+    active = 'BLACK'
+    remaining = black
+else
+    black = black - elapsed + increment
+    active = 'WHITE'
+    remaining = white
+end
+
+redis.call('HMSET', KEYS[1],
+        'white_time', white,
+        'black_time', black,
+        'current_active', active,
+        'last_move_time', nowString)
+redis.call('ZADD', KEYS[2], now / 100 + remaining, ARGV[1])
+
+return { white, black, active, tonumber(state[5]), tonumber(state[6]), state[7], nowString }
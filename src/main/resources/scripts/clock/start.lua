@@ -0,0 +1,23 @@
+-- Starts the clock of a game unless it is already running.
+-- KEYS[1] = clock hash, KEYS[2] = expiring sorted set
+-- ARGV[1] = game id, ARGV[2] = white time (deciseconds), ARGV[3] = black time (deciseconds), ARGV[4] = now (epoch millis),
+-- ARGV[5] = increment (deciseconds), ARGV[6] = increment type (FISCHER or BRONSTEIN)
+-- Returns 1 if the clock was started, 0 if it was already running.
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+
+local now = tonumber(ARGV[4])
+
+redis.call('HMSET', KEYS[1],
+        'white_time', ARGV[2],
+        'black_time', ARGV[3],
+        'current_active', 'WHITE',
+        'last_move_time', ARGV[4],
+        'initial_time', ARGV[2],
+        'increment', ARGV[5],
+        'increment_type', ARGV[6])
+redis.call('ZADD', KEYS[2], now / 100 + tonumber(ARGV[2]), ARGV[1])
+
+return 1
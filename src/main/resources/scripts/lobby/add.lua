@@ -0,0 +1,24 @@
+-- Adds a game to the lobby unless it is already there or has ended.
+-- KEYS[1] = game summary hash, KEYS[2] = active games sorted set
+-- ARGV[1] = game id, ARGV[2] = white player id or '', ARGV[3] = black player id or '', ARGV[4] = status,
+-- ARGV[5] = current FEN, ARGV[6] = time control, ARGV[7] = ply, ARGV[8] = last activity (epoch millis),
+-- ARGV[9] = initial FEN, ARGV[10] = visibility
+-- Returns 1 if the game was added, 0 otherwise.
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+
+redis.call('HMSET', KEYS[1],
+        'white', ARGV[2],
+        'black', ARGV[3],
+        'status', ARGV[4],
+        'fen', ARGV[5],
+        'time_control', ARGV[6],
+        'ply', ARGV[7],
+        'last_activity', ARGV[8],
+        'initial_fen', ARGV[9],
+        'visibility', ARGV[10])
+redis.call('ZADD', KEYS[2], ARGV[8], ARGV[1])
+
+return 1
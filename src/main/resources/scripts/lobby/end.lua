@@ -0,0 +1,10 @@
+-- Removes an ended game from the lobby. Its summary is kept with the final status for a while, so that late deliveries
+-- of earlier events cannot add the game again.
+-- KEYS[1] = game summary hash, KEYS[2] = active games sorted set
+-- ARGV[1] = game id, ARGV[2] = final status, ARGV[3] = time to keep the summary (seconds)
+
+redis.call('HSET', KEYS[1], 'status', ARGV[2])
+redis.call('EXPIRE', KEYS[1], ARGV[3])
+redis.call('ZREM', KEYS[2], ARGV[1])
+
+return 1
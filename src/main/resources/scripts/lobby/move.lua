@@ -0,0 +1,21 @@
+-- Records a move of a game in the lobby. Moves that are not newer than the last recorded one are ignored, as every
+-- node delivers each move once and deliveries may be late.
+-- KEYS[1] = game summary hash, KEYS[2] = active games sorted set
+-- ARGV[1] = game id, ARGV[2] = ply after the move, ARGV[3] = current FEN, ARGV[4] = status, ARGV[5] = now (epoch millis)
+-- Returns 1 if the game was updated, 0 otherwise.
+
+local summary = redis.call('HMGET', KEYS[1], 'status', 'ply')
+local status = summary[1]
+
+if not status or string.sub(status, 1, 6) == 'ENDED_' or tonumber(summary[2]) >= tonumber(ARGV[2]) then
+    return 0
+end
+
+redis.call('HMSET', KEYS[1],
+        'fen', ARGV[3],
+        'ply', ARGV[2],
+        'status', ARGV[4],
+        'last_activity', ARGV[5])
+redis.call('ZADD', KEYS[2], ARGV[5], ARGV[1])
+
+return 1
@@ -0,0 +1,17 @@
+-- Records that both players of a game waiting in the lobby have joined and white is to move.
+-- KEYS[1] = game summary hash, KEYS[2] = active games sorted set
+-- ARGV[1] = game id, ARGV[2] = white player id, ARGV[3] = black player id, ARGV[4] = now (epoch millis)
+-- Returns 1 if the game was updated, 0 if it is not waiting for players.
+
+if redis.call('HGET', KEYS[1], 'status') ~= 'WAITING' then
+    return 0
+end
+
+redis.call('HMSET', KEYS[1],
+        'white', ARGV[2],
+        'black', ARGV[3],
+        'status', 'IN_PROGRESS_WHITE',
+        'last_activity', ARGV[4])
+redis.call('ZADD', KEYS[2], ARGV[4], ARGV[1])
+
+return 1
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.board.ChessPosition;
+import me.infuzion.chess.game.piece.PieceType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisCacheTest {
+    private static final ChessMove E4 = new ChessMove("e2", "e4");
+    private static final ChessMove D4 = new ChessMove("d2", "d4");
+
+    @Test
+    void keysOnPositionAndProfile() {
+        AnalysisCache cache = new AnalysisCache(16);
+        SearchProfile deeper = SearchProfile.parse("depth=20");
+
+        cache.put(1, SearchProfile.DEFAULT, E4);
+        cache.put(1, deeper, D4);
+
+        assertEquals(E4, cache.get(1, SearchProfile.DEFAULT));
+        assertEquals(D4, cache.get(1, deeper));
+        assertNull(cache.get(2, SearchProfile.DEFAULT));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        AnalysisCache cache = new AnalysisCache(2);
+
+        cache.put(1, SearchProfile.DEFAULT, E4);
+        cache.put(2, SearchProfile.DEFAULT, E4);
+        cache.get(1, SearchProfile.DEFAULT);
+        cache.put(3, SearchProfile.DEFAULT, E4);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(1, SearchProfile.DEFAULT));
+        assertNull(cache.get(2, SearchProfile.DEFAULT));
+        assertNotNull(cache.get(3, SearchProfile.DEFAULT));
+    }
+
+    @Test
+    void doesNotCacheReducedSkill() {
+        AnalysisCache cache = new AnalysisCache(16);
+        SearchProfile weak = SearchProfile.forLevel(1);
+
+        cache.put(1, weak, E4);
+        assertNull(cache.get(1, weak));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void tracksHitRate() {
+        AnalysisCache cache = new AnalysisCache(16);
+        assertEquals(0.0, cache.getHitRate());
+
+        cache.put(1, SearchProfile.DEFAULT, E4);
+        cache.get(1, SearchProfile.DEFAULT);
+        cache.get(1, SearchProfile.DEFAULT);
+        cache.get(1, SearchProfile.DEFAULT);
+        cache.get(2, SearchProfile.DEFAULT);
+
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.75, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void savesAndLoads() throws IOException {
+        Path directory = Files.createTempDirectory("analysis-cache");
+        Path file = directory.resolve("cache.bin");
+        ChessMove promotion = new ChessMove(ChessPosition.of("a7"), ChessPosition.of("a8"), PieceType.KNIGHT);
+
+        try {
+            AnalysisCache cache = new AnalysisCache(16);
+            cache.put(-42, SearchProfile.DEFAULT, E4);
+            cache.put(7, SearchProfile.parse("nodes=5000"), promotion);
+            cache.save(file);
+
+            AnalysisCache loaded = new AnalysisCache(16);
+            loaded.load(file);
+            assertEquals(2, loaded.size());
+            assertEquals(E4, loaded.get(-42, SearchProfile.DEFAULT));
+            assertEquals(promotion, loaded.get(7, SearchProfile.parse("nodes=5000")));
+
+            AnalysisCache missing = new AnalysisCache(16);
+            missing.load(directory.resolve("missing.bin"));
+            assertEquals(0, missing.size());
+
+            Files.write(file, new byte[]{1, 2, 3});
+            assertThrows(IOException.class, () -> new AnalysisCache(16).load(file));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+}
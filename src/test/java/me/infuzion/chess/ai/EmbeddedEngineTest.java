@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.ChessBoard;
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedEngineTest {
+    private static Game game(String fen, List<ChessMove> moves) {
+        return new Game(new Identifier(), fen, moves, null, null, GameStatus.IN_PROGRESS_WHITE);
+    }
+
+    private static Game game(String fen) {
+        return game(fen, Collections.emptyList());
+    }
+
+    @Test
+    void findsMateInOne() {
+        EmbeddedEngine engine = new EmbeddedEngine();
+        // back rank mate with Ra8
+        Game game = game("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+
+        assertEquals(new ChessMove("a1", "a8"), engine.getBestMove(game, SearchProfile.parse("depth=3")));
+    }
+
+    @Test
+    void capturesAHangingQueen() {
+        EmbeddedEngine engine = new EmbeddedEngine();
+        Game game = game("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+
+        assertEquals(new ChessMove("d2", "d5"), engine.getBestMove(game, SearchProfile.parse("depth=4")));
+    }
+
+    @Test
+    void avoidsLosingItsQueen() {
+        EmbeddedEngine engine = new EmbeddedEngine();
+        // the queen is attacked by a pawn and must move
+        Game game = game("4k3/8/8/2p5/3Q4/8/8/4K3 w - - 0 1");
+
+        ChessMove move = engine.getBestMove(game, SearchProfile.parse("depth=3"));
+        ChessBoard board = ChessBoard.fromFen(game.getCurrentFen());
+        assertTrue(board.isLegal(move));
+        assertEquals("d4", move.getSource().getPosition());
+    }
+
+    @Test
+    void searchesPositionsWithMoveHistory() {
+        EmbeddedEngine engine = new EmbeddedEngine();
+        Game game = game(ChessBoard.getDefaultBoard().toFen(), List.of(new ChessMove("e2", "e4"), new ChessMove("e7", "e5")));
+
+        ChessMove move = engine.getBestMove(game, SearchProfile.parse("nodes=5000"));
+        assertTrue(game.getBoard().isLegal(move));
+    }
+
+    @Test
+    void respectsTheNodeLimit() {
+        EmbeddedEngine engine = new EmbeddedEngine();
+        Game game = game(ChessBoard.getDefaultBoard().toFen());
+
+        long start = System.nanoTime();
+        ChessMove move = engine.getBestMove(game, SearchProfile.parse("nodes=2000"));
+        assertTrue(game.getBoard().isLegal(move));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void playsLegalMovesAtEverySkillLevel() {
+        EmbeddedEngine engine = new EmbeddedEngine();
+        Game game = game("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+
+        for (int level = SearchProfile.MIN_LEVEL; level <= SearchProfile.MAX_LEVEL; level++) {
+            assertTrue(game.getBoard().isLegal(engine.getBestMove(game, SearchProfile.forLevel(level))));
+        }
+    }
+
+    @Test
+    void answersWithoutAMoveWhenTheGameIsOver() throws Exception {
+        // black is checkmated
+        Game game = game("R5k1/5ppp/8/8/8/8/8/6K1 b - - 1 1");
+
+        assertNull(new EmbeddedEngine().getBestMove(game, SearchProfile.parse("depth=3")));
+
+        try (EnginePool pool = new EnginePool(1, EmbeddedEngine::new, Duration.ofSeconds(10))) {
+            assertNull(pool.getBestMove(game).get(10, TimeUnit.SECONDS));
+            assertEquals(0, pool.getStats().getFailures());
+        }
+    }
+
+    @Test
+    void runsInAnEnginePool() throws Exception {
+        try (EnginePool pool = new EnginePool(2, EmbeddedEngine::new, Duration.ofSeconds(10))) {
+            Game game = game(ChessBoard.getDefaultBoard().toFen());
+            game.setAiProfile(SearchProfile.parse("nodes=2000"));
+
+            ChessMove move = pool.getBestMove(game).get(10, TimeUnit.SECONDS);
+            assertTrue(game.getBoard().isLegal(move));
+        }
+    }
+
+    @Test
+    void stopsAnsweringOnceDisconnected() {
+        EmbeddedEngine engine = new EmbeddedEngine();
+        assertTrue(engine.isAlive());
+
+        engine.disconnect();
+        assertFalse(engine.isAlive());
+        assertThrows(EngineException.class, () -> engine.getBestMove(game(ChessBoard.getDefaultBoard().toFen())));
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnginePoolTest {
+    private static final Game GAME = new Game(new Identifier("game"), "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            Collections.emptyList(), null, null, GameStatus.IN_PROGRESS_WHITE);
+
+    @Test
+    void searchesConcurrently() throws Exception {
+        int size = 4;
+        CountDownLatch allStarted = new CountDownLatch(size);
+        AtomicInteger created = new AtomicInteger();
+
+        try (EnginePool pool = new EnginePool(size, () -> {
+            created.incrementAndGet();
+            return new FakeEngine(() -> {
+                allStarted.countDown();
+                // only returns once every engine is searching at the same time
+                assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+            });
+        }, Duration.ofSeconds(10))) {
+            List<CompletableFuture<ChessMove>> futures = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                futures.add(pool.getBestMove(GAME));
+            }
+
+            for (CompletableFuture<ChessMove> future : futures) {
+                assertEquals(new ChessMove("e2", "e4"), future.get(10, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(size, created.get());
+    }
+
+    @Test
+    void failsRequestsThatMissTheirDeadline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (EnginePool pool = new EnginePool(1, () -> new FakeEngine(() -> release.await(5, TimeUnit.SECONDS)),
+                Duration.ofSeconds(10))) {
+            CompletableFuture<ChessMove> first = pool.getBestMove(GAME);
+            CompletableFuture<ChessMove> queued = pool.getBestMove(GAME, Duration.ofMillis(50));
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof TimeoutException);
+
+            release.countDown();
+            assertEquals(new ChessMove("e2", "e4"), first.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void reportsEngineFailures() throws Exception {
+        try (EnginePool pool = new EnginePool(1, () -> new FakeEngine(() -> {
+            throw new IllegalStateException("engine failed");
+        }), Duration.ofSeconds(10))) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> pool.getBestMove(GAME).get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    void restartsEnginesThatStopResponding() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+
+        try (EnginePool pool = new EnginePool(1, () -> {
+            boolean first = created.incrementAndGet() == 1;
+            return new FakeEngine(() -> {
+                if (first) {
+                    throw new EngineException("engine exited");
+                }
+            });
+        }, Duration.ofSeconds(10))) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> pool.getBestMove(GAME).get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof EngineException);
+
+            assertEquals(new ChessMove("e2", "e4"), pool.getBestMove(GAME).get(5, TimeUnit.SECONDS));
+
+            EngineStats stats = pool.getStats();
+            assertEquals(2, created.get());
+            assertEquals(1, stats.getRestarts());
+            assertEquals(1, stats.getFailures());
+            assertEquals(1, stats.getSearches());
+        }
+    }
+
+    @Test
+    void restartsEnginesThatExitedWhileIdle() throws Exception {
+        List<FakeEngine> engines = new ArrayList<>();
+
+        try (EnginePool pool = new EnginePool(1, () -> {
+            FakeEngine engine = new FakeEngine(() -> {
+            });
+            engines.add(engine);
+            return engine;
+        }, Duration.ofSeconds(10))) {
+            engines.get(0).disconnect();
+
+            assertEquals(new ChessMove("e2", "e4"), pool.getBestMove(GAME).get(5, TimeUnit.SECONDS));
+            assertEquals(2, engines.size());
+            assertEquals(1, pool.getStats().getRestarts());
+            assertEquals(0, pool.getStats().getFailures());
+        }
+    }
+
+    @Test
+    void answersCachedPositionsWithoutSearching() throws Exception {
+        AtomicInteger searched = new AtomicInteger();
+        AnalysisCache cache = new AnalysisCache(16);
+
+        try (EnginePool pool = new EnginePool(1, () -> new FakeEngine(searched::incrementAndGet), Duration.ofSeconds(10), cache)) {
+            assertEquals(new ChessMove("e2", "e4"), pool.getBestMove(GAME).get(5, TimeUnit.SECONDS));
+
+            CompletableFuture<ChessMove> cached = pool.getBestMove(GAME);
+            assertTrue(cached.isDone());
+            assertEquals(new ChessMove("e2", "e4"), cached.get());
+
+            assertEquals(1, searched.get());
+            assertEquals(1, cache.getHits());
+            assertEquals(1, pool.getStats().getCacheHits());
+        }
+    }
+
+    @Test
+    void searchesWhenTheCachedMoveIsIllegal() throws Exception {
+        AtomicInteger searched = new AtomicInteger();
+        AnalysisCache cache = new AnalysisCache(16);
+        // as if another position with the same hash had been cached
+        cache.put(GAME.getBoard().getHash(), GAME.getAiProfile(), new ChessMove("e2", "e5"));
+
+        try (EnginePool pool = new EnginePool(1, () -> new FakeEngine(searched::incrementAndGet), Duration.ofSeconds(10), cache)) {
+            assertEquals(new ChessMove("e2", "e4"), pool.getBestMove(GAME).get(5, TimeUnit.SECONDS));
+            assertEquals(1, searched.get());
+
+            EngineStats stats = pool.getStats();
+            assertEquals(0, stats.getCacheHits());
+            assertEquals(1, stats.getCacheMisses());
+        }
+
+        // the search replaced the illegal entry
+        assertEquals(new ChessMove("e2", "e4"), cache.get(GAME.getBoard().getHash(), GAME.getAiProfile()));
+    }
+
+    @FunctionalInterface
+    interface SearchHook {
+        void run() throws Exception;
+    }
+
+    /**
+     * Answers every search with e2e4 after running the given hook.
+     */
+    static class FakeEngine extends UciEngine {
+        private final SearchHook hook;
+        private final List<String> pending = new ArrayList<>();
+        private volatile boolean alive = true;
+
+        FakeEngine(SearchHook hook) {
+            this.hook = hook;
+        }
+
+        @Override
+        protected void sendUciCommand(String command) {
+            if (command.equals("isready")) {
+                pending.add("readyok");
+            } else if (command.startsWith("go")) {
+                try {
+                    hook.run();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                pending.add("bestmove e2e4");
+            }
+        }
+
+        @Override
+        protected String readUciResponse(long timeoutNanos) {
+            return pending.isEmpty() ? null : pending.remove(0);
+        }
+
+        @Override
+        protected void disconnect() {
+            alive = false;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return alive;
+        }
+    }
+}
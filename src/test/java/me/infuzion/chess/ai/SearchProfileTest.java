@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchProfileTest {
+    @Test
+    void parsesLimitsAndOptions() {
+        SearchProfile profile = SearchProfile.parse("nodes=20000,skill=5,threads=2,hash=64");
+        assertEquals(0, profile.getMoveTimeMillis());
+        assertEquals(0, profile.getDepth());
+        assertEquals(20000, profile.getNodes());
+        assertEquals(5, profile.getSkillLevel());
+        assertEquals(2, profile.getThreads());
+        assertEquals(64, profile.getHashMegabytes());
+
+        SearchProfile defaults = SearchProfile.parse("depth=12");
+        assertEquals(SearchProfile.DEFAULT.getSkillLevel(), defaults.getSkillLevel());
+        assertEquals(SearchProfile.DEFAULT.getThreads(), defaults.getThreads());
+        assertEquals(SearchProfile.DEFAULT.getHashMegabytes(), defaults.getHashMegabytes());
+    }
+
+    @Test
+    void roundTrips() {
+        for (String profile : new String[]{"movetime=100,skill=20,threads=1,hash=16", "depth=8,nodes=1000,skill=0,threads=4,hash=128",
+                SearchProfile.DEFAULT.toString(), SearchProfile.forLevel(3).toString()}) {
+            assertEquals(profile, SearchProfile.parse(profile).toString());
+        }
+        assertEquals(SearchProfile.forLevel(5), SearchProfile.parse(SearchProfile.forLevel(5).toString()));
+    }
+
+    @Test
+    void rejectsMalformedProfiles() {
+        for (String profile : new String[]{"", "skill=5", "nodes", "nodes=abc", "nodes=-1", "depth=5,skill=21",
+                "depth=5,threads=0", "depth=5,ponder=1"}) {
+            assertThrows(IllegalArgumentException.class, () -> SearchProfile.parse(profile), profile);
+        }
+    }
+
+    @Test
+    void buildsGoCommands() {
+        assertEquals("go movetime 5", SearchProfile.DEFAULT.toGoCommand());
+        assertEquals("go movetime 250 depth 10 nodes 5000", SearchProfile.parse("movetime=250,depth=10,nodes=5000").toGoCommand());
+    }
+
+    @Test
+    void levelsGrowStronger() {
+        assertThrows(IllegalArgumentException.class, () -> SearchProfile.forLevel(SearchProfile.MIN_LEVEL - 1));
+        assertThrows(IllegalArgumentException.class, () -> SearchProfile.forLevel(SearchProfile.MAX_LEVEL + 1));
+
+        for (int level = SearchProfile.MIN_LEVEL; level < SearchProfile.MAX_LEVEL; level++) {
+            SearchProfile weaker = SearchProfile.forLevel(level);
+            SearchProfile stronger = SearchProfile.forLevel(level + 1);
+
+            assertTrue(weaker.getNodes() < stronger.getNodes());
+            assertTrue(weaker.getSkillLevel() < stronger.getSkillLevel());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the engine against a fake UCI binary written as a shell script.
+ */
+class StockfishEngineTest {
+    private static final Game GAME = new Game(new Identifier("game"), "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            Collections.emptyList(), null, null, GameStatus.IN_PROGRESS_WHITE);
+
+    private static StockfishEngine fakeEngine(String onGo) throws IOException {
+        String script = "while read line; do case \"$line\" in " +
+                "uci) echo 'id name fake'; echo uciok;; " +
+                "isready) echo readyok;; " +
+                "go*) " + onGo + ";; " +
+                "esac; done";
+
+        StockfishEngine engine = new StockfishEngine(List.of("/bin/sh", "-c", script));
+        engine.setCommandTimeout(Duration.ofMillis(200));
+        return engine;
+    }
+
+    @BeforeAll
+    static void requireShell() {
+        assumeTrue(new File("/bin/sh").canExecute());
+    }
+
+    @Test
+    void searchesWithAFakeBinary() throws IOException {
+        StockfishEngine engine = fakeEngine("echo 'info depth 1'; echo 'bestmove e2e4 ponder e7e5'");
+        try {
+            assertEquals(new ChessMove("e2", "e4"), engine.getBestMove(GAME));
+            assertEquals(new ChessMove("e2", "e4"), engine.getBestMove(GAME));
+            assertTrue(engine.isAlive());
+        } finally {
+            engine.disconnect();
+        }
+    }
+
+    @Test
+    void failsWhenTheEngineHangs() throws IOException {
+        StockfishEngine engine = fakeEngine("sleep 10");
+        try {
+            long start = System.nanoTime();
+            assertThrows(EngineException.class, () -> engine.getBestMove(GAME));
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+        } finally {
+            engine.disconnect();
+        }
+    }
+
+    @Test
+    void failsWhenTheEngineExits() throws IOException {
+        StockfishEngine engine = fakeEngine("exit 1");
+        try {
+            assertThrows(EngineException.class, () -> engine.getBestMove(GAME));
+            assertThrows(EngineException.class, () -> engine.getBestMove(GAME));
+        } finally {
+            engine.disconnect();
+        }
+    }
+
+    @Test
+    void failsToStartAnEngineThatDoesNotSpeakUci() {
+        assertThrows(EngineException.class, () -> new StockfishEngine(List.of("/bin/sh", "-c", "exit 0")));
+    }
+}
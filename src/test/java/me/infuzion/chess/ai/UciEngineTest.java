@@ -0,0 +1,121 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.ai;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.board.ChessPosition;
+import me.infuzion.chess.game.piece.PieceType;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UciEngineTest {
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static Game game(String id) {
+        return new Game(new Identifier(id), START_FEN, Collections.emptyList(), null, null, GameStatus.IN_PROGRESS_WHITE);
+    }
+
+    @Test
+    void keepsTheHashTableWithinAGame() {
+        RecordingEngine engine = new RecordingEngine();
+        Game first = game("first");
+
+        engine.getBestMove(first);
+        engine.getBestMove(first);
+        assertEquals(1, engine.count("ucinewgame"));
+
+        engine.getBestMove(game("second"));
+        assertEquals(2, engine.count("ucinewgame"));
+    }
+
+    @Test
+    void sendsOptionsOnlyWhenTheyChange() {
+        RecordingEngine engine = new RecordingEngine();
+        Game game = game("game");
+
+        engine.getBestMove(game, SearchProfile.parse("nodes=1000,skill=3,threads=1,hash=16"));
+        engine.getBestMove(game, SearchProfile.parse("nodes=1000,skill=3,threads=1,hash=16"));
+        assertEquals(1, engine.count("setoption name Skill Level value 3"));
+        assertEquals(1, engine.count("setoption name Hash value 16"));
+
+        engine.getBestMove(game, SearchProfile.parse("nodes=1000,skill=7,threads=1,hash=16"));
+        assertEquals(1, engine.count("setoption name Skill Level value 7"));
+        assertEquals(1, engine.count("setoption name Hash value 16"));
+        assertEquals(3, engine.count("go nodes 1000"));
+    }
+
+    @Test
+    void usesTheProfileOfTheGame() {
+        RecordingEngine engine = new RecordingEngine();
+        Game game = game("game");
+        game.setAiProfile(SearchProfile.forLevel(2));
+
+        engine.getBestMove(game);
+        assertEquals(1, engine.count(SearchProfile.forLevel(2).toGoCommand()));
+    }
+
+    @Test
+    void readsMovesInLongAlgebraicNotation() {
+        assertEquals(new ChessMove("e2", "e4"), UciEngine.fromUciMove("e2e4"));
+        assertEquals(new ChessMove(ChessPosition.of("e7"), ChessPosition.of("e8"), PieceType.QUEEN), UciEngine.fromUciMove("e7e8q"));
+        // engines answer these when the game is already over
+        assertNull(UciEngine.fromUciMove("(none)"));
+        assertNull(UciEngine.fromUciMove("0000"));
+    }
+
+    private static class RecordingEngine extends UciEngine {
+        private final List<String> commands = new ArrayList<>();
+        private final List<String> pending = new ArrayList<>();
+
+        int count(String command) {
+            return (int) commands.stream().filter(command::equals).count();
+        }
+
+        @Override
+        protected void sendUciCommand(String command) {
+            commands.add(command);
+
+            if (command.equals("isready")) {
+                pending.add("readyok");
+            } else if (command.startsWith("go")) {
+                pending.add("bestmove e2e4");
+            }
+        }
+
+        @Override
+        protected String readUciResponse(long timeoutNanos) {
+            return pending.isEmpty() ? null : pending.remove(0);
+        }
+
+        @Override
+        protected void disconnect() {
+        }
+
+        @Override
+        public boolean isAlive() {
+            return true;
+        }
+    }
+}
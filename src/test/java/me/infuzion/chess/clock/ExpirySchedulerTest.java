@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package me.infuzion.chess.clock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpirySchedulerTest {
+    private static final long LONG_INTERVAL_MILLIS = 60_000;
+
+    /**
+     * @return The time taken by {@link ExpiryScheduler#await(long)} in milliseconds
+     */
+    private static long timeAwait(ExpiryScheduler scheduler, long nextDeadlineEpochMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        scheduler.await(nextDeadlineEpochMillis);
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    void earlierScheduleWakesAWaitingThread() throws Exception {
+        ExpiryScheduler scheduler = new ExpiryScheduler(LONG_INTERVAL_MILLIS);
+        CountDownLatch woken = new CountDownLatch(1);
+
+        Thread waiter = new Thread(() -> {
+            try {
+                scheduler.await(System.currentTimeMillis() + LONG_INTERVAL_MILLIS);
+                woken.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiter.setDaemon(true);
+        waiter.start();
+
+        Thread.sleep(50);
+        assertEquals(1, woken.getCount());
+
+        scheduler.schedule(System.currentTimeMillis() + 50);
+        assertTrue(woken.await(5, TimeUnit.SECONDS), "await did not return at the scheduled deadline");
+    }
+
+    @Test
+    void laterScheduleDoesNotWakeEarly() throws Exception {
+        ExpiryScheduler scheduler = new ExpiryScheduler(LONG_INTERVAL_MILLIS);
+        scheduler.schedule(System.currentTimeMillis() + LONG_INTERVAL_MILLIS);
+
+        long waited = timeAwait(scheduler, System.currentTimeMillis() + 200);
+        assertTrue(waited >= 190 && waited < 5000, "waited " + waited + "ms");
+    }
+
+    @Test
+    void returnsAtTheReconcileInterval() throws Exception {
+        ExpiryScheduler scheduler = new ExpiryScheduler(200);
+
+        long waited = timeAwait(scheduler, Long.MAX_VALUE);
+        assertTrue(waited >= 190 && waited < 5000, "waited " + waited + "ms");
+    }
+
+    @Test
+    void returnsImmediatelyForAPassedDeadline() throws Exception {
+        ExpiryScheduler scheduler = new ExpiryScheduler(LONG_INTERVAL_MILLIS);
+
+        assertTrue(timeAwait(scheduler, System.currentTimeMillis() - 1) < 1000);
+    }
+
+    @Test
+    void keepsDeadlinesScheduledAfterAReset() throws Exception {
+        ExpiryScheduler scheduler = new ExpiryScheduler(LONG_INTERVAL_MILLIS);
+
+        // the expiry thread resets before reading the sorted set, and a clock is started while it reads
+        scheduler.reset();
+        scheduler.schedule(System.currentTimeMillis() + 100);
+
+        long waited = timeAwait(scheduler, Long.MAX_VALUE);
+        assertTrue(waited < 5000, "the deadline scheduled during the read was lost");
+    }
+
+    @Test
+    void resetForgetsEarlierDeadlines() throws Exception {
+        ExpiryScheduler scheduler = new ExpiryScheduler(LONG_INTERVAL_MILLIS);
+
+        // a deadline that the read of the sorted set already accounts for
+        scheduler.schedule(System.currentTimeMillis());
+        scheduler.reset();
+
+        long waited = timeAwait(scheduler, System.currentTimeMillis() + 200);
+        assertTrue(waited >= 190, "waited " + waited + "ms");
+    }
+}
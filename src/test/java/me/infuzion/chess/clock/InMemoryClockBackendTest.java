@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.util.Identifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryClockBackendTest {
+    private final Identifier game = new Identifier("game");
+
+    private static TimeControl seconds(int seconds) {
+        return new TimeControl(seconds * 10, 0, TimeControl.IncrementType.FISCHER);
+    }
+
+    @Test
+    void startsOnce() {
+        InMemoryClockBackend backend = new InMemoryClockBackend();
+        long now = System.currentTimeMillis();
+
+        Clock clock = backend.start(game, new TimeControl(3000, 0, TimeControl.IncrementType.FISCHER), now);
+
+        assertNotNull(clock);
+        assertEquals(3000, clock.getWhiteTimeDeciSeconds());
+        assertEquals(3000, clock.getBlackTimeDeciSeconds());
+        assertEquals(Color.WHITE, clock.getCurrentActive());
+        assertNull(backend.start(game, seconds(1), now));
+    }
+
+    @Test
+    void chargesOnlyThePlayerToMove() {
+        InMemoryClockBackend backend = new InMemoryClockBackend();
+        long now = System.currentTimeMillis();
+
+        backend.start(game, seconds(300), now - 5000);
+
+        assertNull(backend.move(game, Color.BLACK, now - 3000));
+
+        Clock clock = backend.move(game, Color.WHITE, now - 3000);
+        assertNotNull(clock);
+        assertEquals(2980, clock.getWhiteTimeDeciSeconds());
+        assertEquals(3000, clock.getBlackTimeDeciSeconds());
+        assertEquals(Color.BLACK, clock.getCurrentActive());
+
+        // the same move is not charged twice
+        assertNull(backend.move(game, Color.WHITE, now - 2000));
+
+        Clock current = backend.get(game, now);
+        assertNotNull(current);
+        assertEquals(2980, current.getWhiteTimeDeciSeconds());
+        assertTrue(current.getBlackTimeDeciSeconds() <= 2970);
+    }
+
+    @Test
+    void expiresOnlyClocksThatRanOut() {
+        InMemoryClockBackend backend = new InMemoryClockBackend();
+        Identifier other = new Identifier("other");
+        long now = System.currentTimeMillis();
+
+        backend.start(game, seconds(1), now - 2000);
+        backend.start(other, seconds(60), now);
+
+        List<Identifier> expired = new ArrayList<>();
+        long next = backend.expire(now, (id, color) -> {
+            assertEquals(Color.WHITE, color);
+            expired.add(id);
+        });
+
+        assertEquals(List.of(game), expired);
+        assertNull(backend.get(game, now));
+        assertNotNull(backend.get(other, now));
+        assertTrue(next > now && next <= now + 61_000, "next deadline " + (next - now));
+
+        // the slot of the expired game is reused
+        assertNotNull(backend.start(game, seconds(1), now));
+    }
+
+    @Test
+    void removeStopsTheClock() {
+        InMemoryClockBackend backend = new InMemoryClockBackend();
+        long now = System.currentTimeMillis();
+
+        backend.start(game, seconds(1), now - 2000);
+        backend.remove(game);
+        backend.remove(game);
+
+        assertEquals(Long.MAX_VALUE, backend.expire(now, (id, color) -> fail("removed clock expired")));
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        InMemoryClockBackend backend = new InMemoryClockBackend();
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(backend.start(new Identifier("game" + i), new TimeControl(100 + i, 0, TimeControl.IncrementType.FISCHER), now));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            Clock clock = backend.get(new Identifier("game" + i), now);
+            assertNotNull(clock);
+            assertEquals(100 + i, clock.getWhiteTimeDeciSeconds());
+        }
+    }
+
+    @Test
+    void addsFischerIncrement() {
+        InMemoryClockBackend backend = new InMemoryClockBackend();
+        long now = System.currentTimeMillis();
+
+        backend.start(game, TimeControl.parse("180+2"), now - 5000);
+        Clock clock = backend.move(game, Color.WHITE, now);
+
+        assertNotNull(clock);
+        assertEquals(1800 - 50 + 20, clock.getWhiteTimeDeciSeconds());
+        assertEquals(TimeControl.parse("180+2"), clock.getTimeControl());
+    }
+
+    @Test
+    void bronsteinDelayIsCappedByTimeUsed() {
+        InMemoryClockBackend backend = new InMemoryClockBackend();
+        long now = System.currentTimeMillis();
+
+        backend.start(game, TimeControl.parse("180d3"), now - 8000);
+        assertEquals(1800 - 50 + 30, backend.move(game, Color.WHITE, now - 3000).getWhiteTimeDeciSeconds());
+        assertEquals(1800, backend.move(game, Color.BLACK, now - 2000).getBlackTimeDeciSeconds());
+    }
+
+    @Test
+    void moveBeforeThePreviousOneIsNotCredited() {
+        InMemoryClockBackend backend = new InMemoryClockBackend();
+        long now = System.currentTimeMillis();
+
+        backend.start(game, seconds(60), now - 1000);
+        backend.move(game, Color.WHITE, now);
+        Clock clock = backend.move(game, Color.BLACK, now - 500);
+
+        assertNotNull(clock);
+        assertEquals(600, clock.getBlackTimeDeciSeconds());
+        assertEquals(now, clock.getLastMoveTimeEpochMillis());
+    }
+
+    @Test
+    void movesReplaceEarlierDeadlines() {
+        InMemoryClockBackend backend = new InMemoryClockBackend();
+        long now = System.currentTimeMillis();
+
+        // without the increments both players would have run out of time by now
+        backend.start(game, TimeControl.parse("1+5"), now - 3000);
+        backend.move(game, Color.WHITE, now - 2500);
+        backend.move(game, Color.BLACK, now - 2000);
+
+        long next = backend.expire(now, (id, color) -> fail("clock expired at a replaced deadline"));
+
+        assertNotNull(backend.get(game, now));
+        assertTrue(next > now + 3000 && next <= now + 3501, "next deadline " + (next - now));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LagEstimatorTest {
+    /**
+     * @return An estimator whose server-side measurement saw the given one-way lag
+     */
+    private static LagEstimator measured(long oneWayMillis) {
+        LagEstimator estimator = new LagEstimator();
+        long token = estimator.ping(0);
+        assertTrue(estimator.pong(token, TimeUnit.MILLISECONDS.toNanos(2 * oneWayMillis)));
+        return estimator;
+    }
+
+    @Test
+    void noCreditWithoutSamples() {
+        assertEquals(0, new LagEstimator().creditForMove());
+    }
+
+    @Test
+    void noCreditWithoutMeasurement() {
+        LagEstimator estimator = new LagEstimator();
+        estimator.record(100);
+
+        assertEquals(0, estimator.creditForMove());
+    }
+
+    @Test
+    void creditsTheSmallerOfMeasuredAndClaimed() {
+        LagEstimator estimator = measured(80);
+
+        estimator.record(300);
+        assertEquals(80, estimator.getEstimateMillis());
+
+        LagEstimator honest = measured(80);
+        honest.record(30);
+        assertEquals(30, honest.getEstimateMillis());
+    }
+
+    @Test
+    void ignoresStaleOrRepeatedPongs() {
+        LagEstimator estimator = new LagEstimator();
+        long first = estimator.ping(0);
+        long second = estimator.ping(0);
+
+        assertFalse(estimator.pong(first, TimeUnit.MILLISECONDS.toNanos(10)));
+        assertTrue(estimator.pong(second, TimeUnit.MILLISECONDS.toNanos(100)));
+        assertFalse(estimator.pong(second, TimeUnit.MILLISECONDS.toNanos(5000)));
+
+        estimator.record(1000);
+        assertEquals(50, estimator.getEstimateMillis());
+    }
+
+    @Test
+    void smoothsSamples() {
+        LagEstimator estimator = measured(LagEstimator.MAX_SAMPLE_MILLIS);
+
+        estimator.record(100);
+        assertEquals(100, estimator.getEstimateMillis());
+
+        estimator.record(200);
+        assertEquals(125, estimator.getEstimateMillis());
+
+        estimator.record(-50);
+        assertTrue(estimator.getEstimateMillis() < 125);
+    }
+
+    @Test
+    void creditIsBounded() {
+        LagEstimator estimator = measured(100_000);
+        estimator.record(100_000);
+
+        assertEquals(LagEstimator.MAX_SAMPLE_MILLIS, estimator.getEstimateMillis());
+        assertEquals(LagEstimator.MAX_CREDIT_MILLIS, estimator.creditForMove());
+    }
+
+    @Test
+    void largeLagDrainsTheQuota() {
+        LagEstimator estimator = measured(LagEstimator.MAX_SAMPLE_MILLIS);
+        estimator.record(LagEstimator.MAX_SAMPLE_MILLIS);
+
+        long total = 0;
+        int moves = 20;
+        for (int i = 0; i < moves; i++) {
+            total += estimator.creditForMove();
+        }
+
+        assertEquals(LagEstimator.INITIAL_QUOTA_MILLIS + moves * LagEstimator.QUOTA_GAIN_MILLIS, total);
+        assertEquals(LagEstimator.QUOTA_GAIN_MILLIS, estimator.creditForMove());
+    }
+
+    @Test
+    void smallLagIsFullyCredited() {
+        LagEstimator estimator = measured(50);
+        estimator.record(50);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(50, estimator.creditForMove());
+        }
+    }
+}
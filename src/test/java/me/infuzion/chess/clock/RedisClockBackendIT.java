@@ -0,0 +1,306 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.util.Identifier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the clock scripts against the Redis server given by {@code REDIS_URL}; skipped if it is not set. The clocks are
+ * started a minute in the future, so that a node sharing the server does not expire them before the tests do.
+ */
+class RedisClockBackendIT {
+    private static final String CLOCK_EXPIRING_KEY = "chess::clock.expiring";
+    private static final String CLOCK_EXPIRED_KEY = "chess::clock.expired";
+    private static final int THREADS = 4;
+
+    private final List<Identifier> games = new ArrayList<>();
+    private final long now = System.currentTimeMillis() + 60_000;
+    private JedisPool pool;
+    private RedisClockBackend backend;
+
+    @BeforeEach
+    void connect() throws Exception {
+        String redisUrl = System.getenv("REDIS_URL");
+        assumeTrue(redisUrl != null, "REDIS_URL is not set");
+
+        pool = new JedisPool(new URI(redisUrl));
+        backend = new RedisClockBackend(pool);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        if (pool == null) {
+            return;
+        }
+
+        try (Jedis jedis = pool.getResource()) {
+            for (Identifier game : games) {
+                jedis.del(clockKey(game));
+                jedis.zrem(CLOCK_EXPIRING_KEY, game.getId());
+            }
+        }
+        pool.close();
+    }
+
+    private static String clockKey(Identifier game) {
+        return "chess::clock.active." + game.getId();
+    }
+
+    private static TimeControl seconds(int seconds) {
+        return new TimeControl(seconds * 10, 0, TimeControl.IncrementType.FISCHER);
+    }
+
+    private Identifier newGame() {
+        Identifier game = new Identifier();
+        games.add(game);
+        return game;
+    }
+
+    /**
+     * Runs the task on several threads at once.
+     */
+    private static <T> List<T> concurrently(Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(THREADS);
+
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    return task.call();
+                }));
+            }
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void startsOnce() throws Exception {
+        Identifier game = newGame();
+
+        List<Clock> started = concurrently(() -> backend.start(game, new TimeControl(3000, 0, TimeControl.IncrementType.FISCHER), now));
+        started.removeIf(Objects::isNull);
+
+        assertEquals(1, started.size());
+        Clock clock = backend.get(game, now);
+        assertNotNull(clock);
+        assertEquals(3000, clock.getWhiteTimeDeciSeconds());
+        assertEquals(3000, clock.getBlackTimeDeciSeconds());
+        assertEquals(Color.WHITE, clock.getCurrentActive());
+        assertNull(backend.start(game, seconds(1), now));
+    }
+
+    @Test
+    void chargesOnlyThePlayerToMove() throws Exception {
+        Identifier game = newGame();
+
+        backend.start(game, seconds(300), now - 5000);
+
+        assertNull(backend.move(game, Color.BLACK, now - 3000));
+
+        // the same move delivered by several nodes is charged once
+        List<Clock> moved = concurrently(() -> backend.move(game, Color.WHITE, now - 3000));
+        moved.removeIf(Objects::isNull);
+
+        assertEquals(1, moved.size());
+        Clock clock = moved.get(0);
+        assertEquals(2980, clock.getWhiteTimeDeciSeconds());
+        assertEquals(3000, clock.getBlackTimeDeciSeconds());
+        assertEquals(Color.BLACK, clock.getCurrentActive());
+        assertNull(backend.move(game, Color.WHITE, now - 2000));
+
+        Clock current = backend.get(game, now);
+        assertNotNull(current);
+        assertEquals(2980, current.getWhiteTimeDeciSeconds());
+        assertEquals(2970, current.getBlackTimeDeciSeconds());
+    }
+
+    @Test
+    void addsIncrements() {
+        Identifier fischer = newGame();
+        Identifier bronstein = newGame();
+
+        backend.start(fischer, TimeControl.parse("180+2"), now - 5000);
+        Clock clock = backend.move(fischer, Color.WHITE, now);
+        assertNotNull(clock);
+        assertEquals(1800 - 50 + 20, clock.getWhiteTimeDeciSeconds());
+        assertEquals(TimeControl.parse("180+2"), clock.getTimeControl());
+
+        backend.start(bronstein, TimeControl.parse("180d3"), now - 8000);
+        assertEquals(1800 - 50 + 30, backend.move(bronstein, Color.WHITE, now - 3000).getWhiteTimeDeciSeconds());
+        assertEquals(1800, backend.move(bronstein, Color.BLACK, now - 2000).getBlackTimeDeciSeconds());
+    }
+
+    @Test
+    void moveBeforeThePreviousOneIsNotCredited() {
+        Identifier game = newGame();
+
+        backend.start(game, seconds(60), now - 1000);
+        backend.move(game, Color.WHITE, now);
+        Clock clock = backend.move(game, Color.BLACK, now - 500);
+
+        assertNotNull(clock);
+        assertEquals(600, clock.getBlackTimeDeciSeconds());
+        assertEquals(now, clock.getLastMoveTimeEpochMillis());
+        assertEquals(now, backend.get(game, now).getLastMoveTimeEpochMillis());
+    }
+
+    @Test
+    void expiresEachClockOnce() throws Exception {
+        Identifier first = newGame();
+        Identifier second = newGame();
+        Identifier running = newGame();
+
+        backend.start(first, seconds(1), now - 2000);
+        backend.start(second, seconds(2), now - 3000);
+        backend.move(second, Color.WHITE, now - 2500);
+        backend.start(running, seconds(60), now);
+
+        List<Identifier> expired = Collections.synchronizedList(new ArrayList<>());
+        List<Color> colors = Collections.synchronizedList(new ArrayList<>());
+        concurrently(() -> backend.expire(now, (id, color) -> {
+            if (games.contains(id)) {
+                expired.add(id);
+                colors.add(color);
+            }
+        }));
+
+        assertEquals(2, expired.size(), "expired " + expired);
+        assertTrue(expired.containsAll(List.of(first, second)), "expired " + expired);
+        assertEquals(Color.WHITE, colors.get(expired.indexOf(first)));
+        assertEquals(Color.BLACK, colors.get(expired.indexOf(second)));
+        assertNull(backend.get(first, now));
+        assertNull(backend.get(second, now));
+        assertNotNull(backend.get(running, now));
+
+        // the slot of the expired game is reused
+        assertNotNull(backend.start(first, seconds(1), now));
+    }
+
+    @Test
+    void movesReplaceEarlierDeadlines() {
+        Identifier game = newGame();
+
+        // without the increments both players would have run out of time by now
+        backend.start(game, TimeControl.parse("1+5"), now - 3000);
+        backend.move(game, Color.WHITE, now - 2500);
+        backend.move(game, Color.BLACK, now - 2000);
+
+        List<Identifier> expired = new ArrayList<>();
+        backend.expire(now, (id, color) -> expired.add(id));
+
+        assertFalse(expired.contains(game));
+        assertNotNull(backend.get(game, now));
+    }
+
+    @Test
+    void claimsOnlyClocksThatRanOut() {
+        Identifier game = newGame();
+
+        backend.start(game, seconds(60), now);
+
+        // as if the game had been collected before a move that was made in time
+        try (Jedis jedis = pool.getResource()) {
+            jedis.rpush(CLOCK_EXPIRED_KEY, game.getId());
+        }
+
+        List<Identifier> expired = new ArrayList<>();
+        backend.expire(now, (id, color) -> expired.add(id));
+
+        assertFalse(expired.contains(game));
+        assertNotNull(backend.get(game, now));
+    }
+
+    @Test
+    void removeStopsTheClock() {
+        Identifier game = newGame();
+
+        backend.start(game, seconds(1), now - 2000);
+        backend.remove(game);
+        backend.remove(game);
+
+        List<Identifier> expired = new ArrayList<>();
+        backend.expire(now, (id, color) -> expired.add(id));
+
+        assertFalse(expired.contains(game));
+        assertNull(backend.get(game, now));
+    }
+
+    @Test
+    void migratesClocksWithAnIsoMoveTime() {
+        Identifier legacy = newGame();
+        Identifier current = newGame();
+
+        try (Jedis jedis = pool.getResource()) {
+            jedis.hset(clockKey(legacy), Map.of("white_time", "3000", "black_time", "2900", "current_active", "BLACK",
+                    "last_move_time", Instant.ofEpochMilli(now - 1000).toString()));
+        }
+        backend.start(current, seconds(60), now);
+
+        // a clock in the old format can still be read before it is migrated
+        assertEquals(2890, backend.get(legacy, now).getBlackTimeDeciSeconds());
+
+        assertTrue(backend.migrateLegacyClocks() >= 1);
+
+        try (Jedis jedis = pool.getResource()) {
+            Map<String, String> migrated = jedis.hgetAll(clockKey(legacy));
+            assertEquals(Long.toString(now - 1000), migrated.get("last_move_time"));
+            assertEquals(Integer.toString(TimeControl.DEFAULT.getInitialDeciSeconds()), migrated.get("initial_time"));
+            assertEquals(Integer.toString(TimeControl.DEFAULT.getIncrementDeciSeconds()), migrated.get("increment"));
+            assertEquals(TimeControl.DEFAULT.getIncrementType().name(), migrated.get("increment_type"));
+
+            assertEquals(Long.toString(now), jedis.hget(clockKey(current), "last_move_time"));
+            assertEquals("600", jedis.hget(clockKey(current), "initial_time"));
+        }
+
+        Clock clock = backend.move(legacy, Color.BLACK, now);
+        assertNotNull(clock);
+        assertEquals(2890, clock.getBlackTimeDeciSeconds());
+        assertEquals(TimeControl.DEFAULT, clock.getTimeControl());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.clock;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeControlTest {
+    @Test
+    void parsesFischerAndBronstein() {
+        TimeControl blitz = TimeControl.parse("180+2");
+        assertEquals(1800, blitz.getInitialDeciSeconds());
+        assertEquals(20, blitz.getIncrementDeciSeconds());
+        assertEquals(TimeControl.IncrementType.FISCHER, blitz.getIncrementType());
+
+        TimeControl delay = TimeControl.parse("300d3");
+        assertEquals(3000, delay.getInitialDeciSeconds());
+        assertEquals(30, delay.getIncrementDeciSeconds());
+        assertEquals(TimeControl.IncrementType.BRONSTEIN, delay.getIncrementType());
+
+        assertEquals(5, TimeControl.parse("30+0.5").getIncrementDeciSeconds());
+    }
+
+    @Test
+    void roundTrips() {
+        for (String timeControl : new String[]{"180+2", "300d3", "60+0", "30+0.5", TimeControl.DEFAULT.toString()}) {
+            assertEquals(timeControl, TimeControl.parse(timeControl).toString());
+        }
+    }
+
+    @Test
+    void rejectsMalformedTimeControls() {
+        for (String timeControl : new String[]{"", "180", "+2", "abc+1", "0+1", "60+-1", "1e12+0"}) {
+            assertThrows(IllegalArgumentException.class, () -> TimeControl.parse(timeControl), timeControl);
+        }
+    }
+
+    @Test
+    void rejectsTimeControlsThatDoNotFitTheColumn() {
+        assertThrows(IllegalArgumentException.class, () -> TimeControl.parse("000000000000180+2"));
+        // short, but stored as 100000000+100000000
+        assertThrows(IllegalArgumentException.class, () -> TimeControl.parse("1e8+1e8"));
+
+        TimeControl longest = TimeControl.parse("100000000+1000.5");
+        assertEquals(TimeControl.MAX_LENGTH, longest.toString().length());
+    }
+
+    @Test
+    void credit() {
+        assertEquals(20, TimeControl.parse("180+2").creditFor(5));
+        assertEquals(5, TimeControl.parse("180d2").creditFor(5));
+        assertEquals(20, TimeControl.parse("180d2").creditFor(50));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.piece.Color;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitboardsTest {
+    private static long squares(String... positions) {
+        long bitboard = 0;
+        for (String position : positions) {
+            bitboard |= Bitboards.bit(ChessPosition.of(position).getIndex());
+        }
+        return bitboard;
+    }
+
+    @Test
+    void sliderLookupsMatchRayWalk() {
+        SplittableRandom random = new SplittableRandom(1);
+
+        for (int square = 0; square < 64; square++) {
+            for (int i = 0; i < 200; i++) {
+                long occupancy = random.nextLong() & random.nextLong();
+
+                assertEquals(Bitboards.slidingAttacks(square, occupancy, false), Bitboards.rookAttacks(square, occupancy));
+                assertEquals(Bitboards.slidingAttacks(square, occupancy, true), Bitboards.bishopAttacks(square, occupancy));
+            }
+        }
+    }
+
+    @Test
+    void sliderAttacksStopAtBlockers() {
+        int d4 = ChessPosition.of("d4").getIndex();
+        long blockers = squares("d6", "f4", "b2");
+
+        assertEquals(squares("d5", "d6", "d3", "d2", "d1", "a4", "b4", "c4", "e4", "f4"),
+                Bitboards.rookAttacks(d4, blockers));
+        assertEquals(squares("c3", "b2", "e5", "f6", "g7", "h8", "c5", "b6", "a7", "e3", "f2", "g1"),
+                Bitboards.bishopAttacks(d4, blockers));
+    }
+
+    @Test
+    void leaperTables() {
+        assertEquals(squares("b3", "c2"), Bitboards.knightAttacks(ChessPosition.of("a1").getIndex()));
+        assertEquals(squares("g8", "g7", "h7"), Bitboards.kingAttacks(ChessPosition.of("h8").getIndex()));
+        assertEquals(squares("b3"), Bitboards.pawnAttacks(Color.WHITE, ChessPosition.of("a2").getIndex()));
+        assertEquals(squares("d6", "f6"), Bitboards.pawnAttacks(Color.BLACK, ChessPosition.of("e7").getIndex()));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.piece.ChessPiece;
+import me.infuzion.chess.game.util.Perft;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChessBoardTest {
+    private static void assertUnmakeRestores(ChessBoard board, int depth) {
+        if (depth == 0) {
+            return;
+        }
+
+        String fen = board.toFen();
+        long hash = board.getHash();
+        int ply = board.getCurrentPly();
+
+        for (ChessMove move : MoveGenerator.generateLegalMoves(board)) {
+            board.makeMove(move);
+            assertEquals(Zobrist.computeHash(board.getData(), board.getCurrentTurn()), board.getHash());
+            assertUnmakeRestores(board, depth - 1);
+            board.unmakeMove();
+
+            assertEquals(fen, board.toFen(), "after unmaking " + move);
+            assertEquals(hash, board.getHash());
+            assertEquals(ply, board.getCurrentPly());
+        }
+    }
+
+    private static void assertPiecePositionsMatch(ChessBoard board) {
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getData().getPiece(square);
+            if (piece != null) {
+                assertEquals(square, piece.currentPosition().getIndex());
+            }
+        }
+    }
+
+    @Test
+    void unmakeRestoresPosition() {
+        assertUnmakeRestores(ChessBoard.fromFen(Perft.KIWIPETE), 3);
+        assertUnmakeRestores(ChessBoard.fromFen(Perft.POSITION_3), 3);
+        assertUnmakeRestores(ChessBoard.fromFen(Perft.POSITION_4), 2);
+        assertUnmakeRestores(ChessBoard.fromFen(Perft.POSITION_5), 2);
+    }
+
+    @Test
+    void makeMoveHandlesSpecialMoves() {
+        ChessBoard board = ChessBoard.fromFen("r3k2r/1P6/8/8/5p2/8/4P3/R3K2R w KQkq - 0 1");
+
+        board.makeMove(new ChessMove("e2", "e4"));
+        assertEquals("e3", board.getData().getEnPassantSquare().getPosition());
+
+        board.makeMove(new ChessMove("f4", "e3"));
+        assertNull(board.getData().getPiece(new ChessPosition("e4")));
+
+        board.makeMove(new ChessMove("e1", "g1"));
+        assertEquals("r3k2r/1P6/8/8/8/4p3/8/R4RK1 b kq - 1 2", board.toFen());
+
+        board.makeMove(new ChessMove("e8", "c8"));
+        board.makeMove(new ChessMove("b7", "b8"));
+        assertEquals("1Qkr3r/8/8/8/8/4p3/8/R4RK1 b - - 0 3", board.toFen());
+        assertPiecePositionsMatch(board);
+
+        for (int i = 0; i < 5; i++) {
+            board.unmakeMove();
+        }
+
+        assertEquals("r3k2r/1P6/8/8/5p2/8/4P3/R3K2R w KQkq - 0 1", board.toFen());
+        assertPiecePositionsMatch(board);
+        assertThrows(IllegalStateException.class, board::unmakeMove);
+    }
+
+    @Test
+    void isUnderCheckAfterMoveDoesNotModifyBoard() {
+        ChessBoard board = ChessBoard.fromFen("4r1k1/8/8/8/8/8/4N3/4K3 w - - 0 1");
+
+        assertTrue(ChessBoard.isUnderCheckAfterMove(board.getData(), board.getCurrentTurn(), new ChessMove("e2", "c3")));
+        assertFalse(ChessBoard.isUnderCheckAfterMove(board.getData(), board.getCurrentTurn(), new ChessMove("e1", "d1")));
+        assertEquals("4r1k1/8/8/8/8/8/4N3/4K3 w - - 0 1", board.toFen());
+    }
+
+    @Test
+    void detectsCheckmateAndStalemate() {
+        ChessBoard mate = ChessBoard.fromFen("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3");
+        assertEquals(GameEndReason.CHECKMATE, mate.getGameEndReason());
+
+        ChessBoard stalemate = ChessBoard.fromFen("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        assertEquals(GameEndReason.STALEMATE, stalemate.getGameEndReason());
+
+        assertNull(ChessBoard.getDefaultBoard().getGameEndReason());
+    }
+
+    @Test
+    void detectsThreefoldRepetition() {
+        ChessBoard board = ChessBoard.getDefaultBoard();
+        String[][] shuffle = {{"g1", "f3"}, {"g8", "f6"}, {"f3", "g1"}, {"f6", "g8"}};
+
+        for (int i = 0; i < 2; i++) {
+            for (String[] move : shuffle) {
+                assertNull(board.getGameEndReason());
+                assertTrue(board.move(new ChessMove(move[0], move[1])));
+            }
+        }
+
+        assertTrue(board.isThreefoldRepetition());
+        assertEquals(GameEndReason.THREEFOLD_REPETITION, board.getGameEndReason());
+
+        board.unmakeMove();
+        assertFalse(board.isThreefoldRepetition());
+    }
+
+    @Test
+    void repetitionRequiresSameEnPassantRights() {
+        // after 1. e4 the e3 square cannot be captured on, so the position repeats from the start of the shuffle
+        ChessBoard board = ChessBoard.fromFen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1");
+        board.move(new ChessMove("e2", "e4"));
+
+        String[][] shuffle = {{"e8", "d8"}, {"e1", "d1"}, {"d8", "e8"}, {"d1", "e1"}};
+        for (int i = 0; i < 2; i++) {
+            for (String[] move : shuffle) {
+                assertTrue(board.move(new ChessMove(move[0], move[1])));
+            }
+        }
+
+        assertTrue(board.isThreefoldRepetition());
+    }
+
+    @Test
+    void detectsFiftyMoveRule() {
+        ChessBoard board = ChessBoard.fromFen("4k3/8/8/8/8/8/8/R3K3 w - - 99 80");
+        assertNull(board.getGameEndReason());
+
+        assertTrue(board.move(new ChessMove("a1", "a2")));
+        assertEquals(100, board.getHalfMoveClock());
+        assertEquals(GameEndReason.FIFTY_MOVE_RULE, board.getGameEndReason());
+    }
+}
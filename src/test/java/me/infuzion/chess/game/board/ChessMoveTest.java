@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.piece.PieceType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChessMoveTest {
+    @Test
+    void packRoundTrips() {
+        for (PieceType promotion : new PieceType[]{null, PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN}) {
+            ChessMove move = new ChessMove(ChessPosition.of("b7"), ChessPosition.of("a8"), promotion);
+            int packed = move.toPacked();
+
+            assertEquals(ChessPosition.of("b7").getIndex(), ChessMove.getSource(packed));
+            assertEquals(ChessPosition.of("a8").getIndex(), ChessMove.getEnd(packed));
+            assertEquals(promotion, ChessMove.getPromotion(packed));
+            assertFalse(ChessMove.isCapture(packed));
+            assertEquals(move, ChessMove.unpack(packed));
+            assertEquals(0, packed >>> 16);
+        }
+    }
+
+    @Test
+    void packRejectsInvalidPromotions() {
+        assertThrows(IllegalArgumentException.class, () -> ChessMove.pack(0, 8, PieceType.KING));
+        assertThrows(IllegalArgumentException.class, () -> ChessMove.pack(0, 8, PieceType.PAWN));
+    }
+
+    @Test
+    void equalsAndHashCode() {
+        assertEquals(new ChessMove("e2", "e4"), new ChessMove(ChessPosition.of("e2"), ChessPosition.of("e4")));
+        assertEquals(new ChessMove("e2", "e4").hashCode(), new ChessMove("e2", "e4").hashCode());
+        assertNotEquals(new ChessMove("e2", "e4"), new ChessMove("e2", "e3"));
+        assertNotEquals(new ChessMove(ChessPosition.of("a7"), ChessPosition.of("a8"), PieceType.QUEEN),
+                new ChessMove(ChessPosition.of("a7"), ChessPosition.of("a8"), PieceType.ROOK));
+    }
+}
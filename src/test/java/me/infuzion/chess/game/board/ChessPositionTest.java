@@ -111,4 +111,23 @@ class ChessPositionTest {
         assertNotNull(new ChessPosition("h2").toString());
     }
 
-}
\ No newline at end of file
+    @Test
+    void ofReturnsSharedInstances() {
+        assertSame(ChessPosition.of("e4"), ChessPosition.of(4, 3));
+        assertSame(ChessPosition.of("h8"), ChessPosition.of(63));
+        assertSame(Bitboards.toPosition(0), ChessPosition.of("a1"));
+        assertEquals(new ChessPosition("c6"), ChessPosition.of("C6"));
+
+        assertThrows(IllegalArgumentException.class, () -> ChessPosition.of("e9"));
+        assertThrows(IllegalArgumentException.class, () -> ChessPosition.of("i1"));
+        assertThrows(IllegalArgumentException.class, () -> ChessPosition.of("e10"));
+        assertThrows(IllegalArgumentException.class, () -> ChessPosition.of(64));
+        assertThrows(IllegalArgumentException.class, () -> ChessPosition.of(8, 0));
+    }
+
+    @Test
+    void hashCodeMatchesEquals() {
+        assertEquals(new ChessPosition("d5").hashCode(), ChessPosition.of("d5").hashCode());
+        assertEquals(ChessPosition.of("d5").getIndex(), ChessPosition.of("d5").hashCode());
+    }
+}
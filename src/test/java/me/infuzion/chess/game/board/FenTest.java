@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.piece.CastlingAvailability;
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.piece.PieceType;
+import me.infuzion.chess.game.util.Perft;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FenTest {
+    @Test
+    void roundTrips() {
+        String[] fens = {
+                Perft.STARTING_POSITION, Perft.KIWIPETE, Perft.POSITION_3, Perft.POSITION_4, Perft.POSITION_5,
+                "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3",
+                "8/8/8/8/8/8/8/k6K b - - 42 107"
+        };
+
+        for (String fen : fens) {
+            assertEquals(fen, Fen.parse(fen).toFen());
+        }
+    }
+
+    @Test
+    void parsesAllFields() {
+        ChessBoard board = Fen.parse("r3k2r/8/8/8/4Pp2/8/8/R3K2R b Kq e3 5 12");
+        BoardData data = board.getData();
+
+        assertEquals(Color.BLACK, board.getCurrentTurn());
+        assertEquals(5, board.getHalfMoveClock());
+        assertEquals(12, board.getFullMoveNumber());
+        assertEquals(ChessPosition.of("e3"), data.getEnPassantSquare());
+        assertTrue(data.hasCastlingAvailability(CastlingAvailability.WHITE_KING_SIDE));
+        assertFalse(data.hasCastlingAvailability(CastlingAvailability.WHITE_QUEEN_SIDE));
+        assertFalse(data.hasCastlingAvailability(CastlingAvailability.BLACK_KING_SIDE));
+        assertTrue(data.hasCastlingAvailability(CastlingAvailability.BLACK_QUEEN_SIDE));
+        assertEquals(PieceType.PAWN, data.getPiece(ChessPosition.of("f4")).getType());
+        assertEquals(ChessPosition.of("f4"), data.getPiece(ChessPosition.of("f4")).currentPosition());
+        assertEquals(Zobrist.computeHash(data, board.getCurrentTurn()), board.getHash());
+    }
+
+    @Test
+    void fullMoveNumberAdvancesAfterBlackMoves() {
+        ChessBoard board = Fen.parse("4k3/8/8/8/8/8/8/4K3 b - - 0 7");
+
+        assertTrue(board.move(new ChessMove("e8", "d8")));
+        assertEquals(8, board.getFullMoveNumber());
+        assertTrue(board.move(new ChessMove("e1", "d1")));
+        assertEquals("3k4/8/8/8/8/8/8/3K4 b - - 2 8", board.toFen());
+    }
+
+    @Test
+    void gamePlyCountsMovesBeforeTheFen() {
+        ChessBoard board = Fen.parse("4k3/8/8/8/8/8/8/4K3 b - - 0 7");
+        assertEquals(13, board.getGamePly());
+        assertEquals(0, board.getCurrentPly());
+
+        assertTrue(board.move(new ChessMove("e8", "d8")));
+        assertEquals(14, board.getGamePly());
+        assertEquals(14, Fen.parse(board.toFen()).getGamePly());
+    }
+
+    @Test
+    void rejectsInvalidFen() {
+        String[] invalid = {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNRR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQxq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e9 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - a 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 0"
+        };
+
+        for (String fen : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> Fen.parse(fen), fen);
+        }
+    }
+
+    @Test
+    void writesIntoGivenBuffer() {
+        StringBuilder builder = new StringBuilder("fen: ");
+        Fen.write(ChessBoard.getDefaultBoard(), builder);
+
+        assertEquals("fen: " + Perft.STARTING_POSITION, builder.toString());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.piece.PieceType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveGeneratorTest {
+    @Test
+    void initialPosition() {
+        ChessBoard board = ChessBoard.getDefaultBoard();
+
+        assertEquals(20, MoveGenerator.generateLegalMoves(board).size());
+        assertTrue(MoveGenerator.isLegal(board, new ChessMove("e2", "e4")));
+        assertTrue(MoveGenerator.isLegal(board, new ChessMove("g1", "f3")));
+        assertFalse(MoveGenerator.isLegal(board, new ChessMove("e2", "e5")));
+        assertFalse(MoveGenerator.isLegal(board, new ChessMove("e7", "e5")));
+    }
+
+    @Test
+    void pinnedPieceCannotMove() {
+        ChessBoard board = ChessBoard.fromFen("4r1k1/8/8/8/8/8/4N3/4K3 w - - 0 1");
+
+        assertFalse(MoveGenerator.isLegal(board, new ChessMove("e2", "c3")));
+        assertTrue(MoveGenerator.isLegal(board, new ChessMove("e1", "d1")));
+    }
+
+    @Test
+    void cannotCastleOutOfOrThroughCheck() {
+        ChessBoard inCheck = ChessBoard.fromFen("4r1k1/8/8/8/8/8/8/R3K2R w KQ - 0 1");
+        assertFalse(MoveGenerator.isLegal(inCheck, new ChessMove("e1", "g1")));
+        assertFalse(MoveGenerator.isLegal(inCheck, new ChessMove("e1", "c1")));
+
+        ChessBoard throughCheck = ChessBoard.fromFen("5rk1/8/8/8/8/8/8/R3K2R w KQ - 0 1");
+        assertFalse(MoveGenerator.isLegal(throughCheck, new ChessMove("e1", "g1")));
+        assertTrue(MoveGenerator.isLegal(throughCheck, new ChessMove("e1", "c1")));
+    }
+
+    @Test
+    void promotions() {
+        ChessBoard board = ChessBoard.fromFen("7k/P7/8/8/8/8/8/K7 w - - 0 1");
+        List<ChessMove> moves = MoveGenerator.generateLegalMoves(board);
+
+        assertEquals(4, moves.stream().filter(move -> move.getSource().equals(new ChessPosition("a7"))).count());
+
+        assertTrue(board.move(new ChessMove(new ChessPosition("a7"), new ChessPosition("a8"), PieceType.KNIGHT)));
+        assertEquals(PieceType.KNIGHT, board.getData().getPiece(new ChessPosition("a8")).getType());
+        assertEquals(Color.WHITE, board.getData().getPiece(new ChessPosition("a8")).getColor());
+    }
+
+    @Test
+    void capturingRookRevokesCastling() {
+        ChessBoard board = ChessBoard.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+
+        assertTrue(board.move(new ChessMove("a1", "a8")));
+        assertEquals("Kk", board.getData().getCastlingAvailabilityAsFenString());
+    }
+
+    @Test
+    void packedGenerationMatchesList() {
+        ChessBoard board = ChessBoard.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(board, moves);
+        List<ChessMove> list = MoveGenerator.generateLegalMoves(board);
+
+        assertEquals(list.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(list.get(i), ChessMove.unpack(moves[i]));
+            assertTrue(MoveGenerator.isLegal(board.getData(), board.getCurrentTurn(), moves[i]));
+            assertEquals(board.getData().getPiece(ChessMove.getEnd(moves[i])) != null, ChessMove.isCapture(moves[i]));
+        }
+    }
+
+    @Test
+    void enPassantIsFlaggedAsCapture() {
+        ChessBoard board = ChessBoard.fromFen("4k3/8/8/3Pp3/8/8/8/4K3 w - e6 0 1");
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegalMoves(board, moves);
+        int enPassant = ChessMove.pack(ChessPosition.of("d5").getIndex(), ChessPosition.of("e6").getIndex(), null);
+
+        boolean found = false;
+        for (int i = 0; i < count; i++) {
+            if ((moves[i] & ~ChessMove.CAPTURE_FLAG) == enPassant) {
+                assertTrue(ChessMove.isCapture(moves[i]));
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    void pinnedPieceMovesAlongPin() {
+        ChessBoard board = ChessBoard.fromFen("4k3/8/8/8/4q3/8/4R3/4K3 w - - 0 1");
+
+        assertTrue(board.isLegal(new ChessMove("e2", "e3")));
+        assertTrue(board.isLegal(new ChessMove("e2", "e4")));
+        assertFalse(board.isLegal(new ChessMove("e2", "d2")));
+        assertEquals(2, board.legalMoves().stream().filter(move -> move.getSource().equals(ChessPosition.of("e2"))).count());
+    }
+
+    @Test
+    void onlyKingMovesOutOfDoubleCheck() {
+        ChessBoard board = ChessBoard.fromFen("k7/8/8/8/4r3/3n4/8/R1N1K3 w - - 0 1");
+
+        assertFalse(board.isLegal(new ChessMove("c1", "d3")));
+        assertFalse(board.isLegal(new ChessMove("a1", "a2")));
+        assertFalse(board.legalMoves().isEmpty());
+        assertTrue(board.legalMoves().stream().allMatch(move -> move.getSource().equals(ChessPosition.of("e1"))));
+    }
+
+    @Test
+    void singleCheckMustBeBlockedOrCaptured() {
+        ChessBoard board = ChessBoard.fromFen("4k3/8/8/8/8/8/4r3/R3K3 w - - 0 1");
+
+        assertTrue(board.isLegal(new ChessMove("e1", "e2")));
+        assertFalse(board.isLegal(new ChessMove("e1", "d2")));
+        assertFalse(board.isLegal(new ChessMove("a1", "a2")));
+
+        ChessBoard sliderCheck = ChessBoard.fromFen("4k3/8/8/8/5R2/8/8/4K2r w - - 0 1");
+        assertTrue(sliderCheck.isLegal(new ChessMove("f4", "f1")));
+        assertFalse(sliderCheck.isLegal(new ChessMove("f4", "f2")));
+        // the king cannot step back along the checking ray
+        assertFalse(sliderCheck.isLegal(new ChessMove("e1", "d1")));
+    }
+
+    @Test
+    void enPassantCannotExposeKingAlongRank() {
+        ChessBoard board = ChessBoard.fromFen("8/8/8/K2Pp2r/8/8/8/7k w - e6 0 1");
+
+        assertFalse(board.isLegal(new ChessMove("d5", "e6")));
+        assertTrue(board.legalMoves().stream().noneMatch(move -> move.getEnd().equals(ChessPosition.of("e6"))
+                && move.getSource().equals(ChessPosition.of("d5"))));
+    }
+}
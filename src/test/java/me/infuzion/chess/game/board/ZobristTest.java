@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.board;
+
+import me.infuzion.chess.game.util.Perft;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ZobristTest {
+    private static void assertHashesMatch(ChessBoard board, int depth) {
+        assertEquals(Zobrist.computeHash(board.getData(), board.getCurrentTurn()), board.getHash(), board.toFen());
+
+        if (depth == 0) {
+            return;
+        }
+
+        for (ChessMove move : MoveGenerator.generateLegalMoves(board)) {
+            ChessBoard child = new ChessBoard(board);
+            child.move(move);
+            assertHashesMatch(child, depth - 1);
+        }
+    }
+
+    @Test
+    void incrementalHashMatchesComputedHash() {
+        assertHashesMatch(ChessBoard.fromFen(Perft.KIWIPETE), 2);
+        assertHashesMatch(ChessBoard.fromFen(Perft.POSITION_4), 2);
+        assertHashesMatch(ChessBoard.fromFen(Perft.POSITION_5), 2);
+    }
+
+    @Test
+    void hashMatchesFen() {
+        ChessBoard moved = ChessBoard.fromInitialFen(Perft.STARTING_POSITION,
+                List.of(new ChessMove("e2", "e4"), new ChessMove("e7", "e5"), new ChessMove("g1", "f3")));
+
+        assertEquals(ChessBoard.fromFen(moved.toFen()).getHash(), moved.getHash());
+    }
+
+    @Test
+    void transpositionsHashTheSame() {
+        ChessBoard first = ChessBoard.fromInitialFen(Perft.STARTING_POSITION,
+                List.of(new ChessMove("g1", "f3"), new ChessMove("g8", "f6"), new ChessMove("b1", "c3")));
+        ChessBoard second = ChessBoard.fromInitialFen(Perft.STARTING_POSITION,
+                List.of(new ChessMove("b1", "c3"), new ChessMove("g8", "f6"), new ChessMove("g1", "f3")));
+
+        assertEquals(first.getHash(), second.getHash());
+    }
+
+    @Test
+    void sideToMoveAndCastlingAffectHash() {
+        String pieces = "r3k2r/8/8/8/8/8/8/R3K2R";
+
+        long white = ChessBoard.fromFen(pieces + " w KQkq - 0 1").getHash();
+        assertNotEquals(white, ChessBoard.fromFen(pieces + " b KQkq - 0 1").getHash());
+        assertNotEquals(white, ChessBoard.fromFen(pieces + " w Kkq - 0 1").getHash());
+    }
+
+    @Test
+    void enPassantOnlyAffectsHashWhenCapturable() {
+        String uncapturable = "4k3/8/8/8/4P3/8/8/4K3 b - %s 0 1";
+        assertEquals(ChessBoard.fromFen(String.format(uncapturable, "-")).getHash(),
+                ChessBoard.fromFen(String.format(uncapturable, "e3")).getHash());
+
+        String capturable = "4k3/8/8/8/3pP3/8/8/4K3 b - %s 0 1";
+        assertNotEquals(ChessBoard.fromFen(String.format(capturable, "-")).getHash(),
+                ChessBoard.fromFen(String.format(capturable, "e3")).getHash());
+    }
+}
@@ -60,7 +60,7 @@ class KingTest {
         assertTrue(board.move(new ChessMove("e1", "c1")));
         assertEquals(PieceType.ROOK, def.getPiece(new ChessPosition("d1")).getType());
 
-        def.getCastlingAvailability().remove(CastlingAvailability.WHITE_QUEEN_SIDE);
+        def.removeCastlingAvailability(CastlingAvailability.WHITE_QUEEN_SIDE);
         assertFalse(king.allowed(def, new ChessPosition("c1")));
         assertFalse(king.allowed(def, new ChessPosition("g1")));
         assertFalse(king.allowed(def, new ChessPosition("c8")));
@@ -90,7 +90,7 @@ class KingTest {
         assertTrue(board.move(new ChessMove("e1", "g1")));
         assertEquals(PieceType.ROOK, def.getPiece(new ChessPosition("f1")).getType());
 
-        def.getCastlingAvailability().remove(CastlingAvailability.WHITE_KING_SIDE);
+        def.removeCastlingAvailability(CastlingAvailability.WHITE_KING_SIDE);
         assertFalse(king.allowed(def, new ChessPosition("c1")));
         assertFalse(king.allowed(def, new ChessPosition("g1")));
         assertFalse(king.allowed(def, new ChessPosition("c8")));
@@ -124,7 +124,7 @@ class KingTest {
         assertTrue(board.move(new ChessMove("e8", "c8")));
         assertEquals(PieceType.ROOK, def.getPiece(new ChessPosition("d8")).getType());
 
-        def.getCastlingAvailability().remove(CastlingAvailability.BLACK_QUEEN_SIDE);
+        def.removeCastlingAvailability(CastlingAvailability.BLACK_QUEEN_SIDE);
         assertFalse(king.allowed(def, new ChessPosition("c1")));
         assertFalse(king.allowed(def, new ChessPosition("g1")));
         assertFalse(king.allowed(def, new ChessPosition("c8")));
@@ -156,7 +156,7 @@ class KingTest {
         assertTrue(board.move(new ChessMove("e8", "g8")));
         assertEquals(PieceType.ROOK, def.getPiece(new ChessPosition("f8")).getType());
 
-        def.getCastlingAvailability().remove(CastlingAvailability.BLACK_KING_SIDE);
+        def.removeCastlingAvailability(CastlingAvailability.BLACK_KING_SIDE);
         assertFalse(king.allowed(def, new ChessPosition("c1")));
         assertFalse(king.allowed(def, new ChessPosition("g1")));
         assertFalse(king.allowed(def, new ChessPosition("c8")));
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.util;
+
+import me.infuzion.chess.game.board.BoardData;
+import me.infuzion.chess.game.board.ChessBoard;
+import me.infuzion.chess.game.board.ChessPosition;
+import me.infuzion.chess.game.piece.ChessPiece;
+import me.infuzion.chess.game.piece.Color;
+import me.infuzion.chess.game.piece.PieceType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single-pass FEN codec against the split-based parser and joiner-based serializer it replaced, which
+ * are kept below as the baseline.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=me.infuzion.chess.game.util.FenBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FenBenchmark {
+    @Param({Perft.STARTING_POSITION, Perft.KIWIPETE})
+    public String fen;
+
+    private ChessBoard board;
+
+    @Setup
+    public void setup() {
+        board = ChessBoard.fromFen(fen);
+    }
+
+    @Benchmark
+    public ChessBoard parse() {
+        return ChessBoard.fromFen(fen);
+    }
+
+    @Benchmark
+    public ChessBoard parseBaseline() {
+        return baselineFromFen(fen);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return board.toFen();
+    }
+
+    @Benchmark
+    public String serializeBaseline() {
+        return baselineToFen(board);
+    }
+
+    /**
+     * The previous parser, without assigning the side to move and half move clock, which are private to ChessBoard.
+     */
+    private static ChessBoard baselineFromFen(String fen) {
+        String[] split = fen.split(" ", 6);
+
+        if (split.length != 6) {
+            throw new IllegalArgumentException("invalid fen");
+        }
+
+        final PieceType[][] pieces = new PieceType[8][8];
+        final Color[][] pieceColors = new Color[8][8];
+
+        String[] fenPieces = split[0].split("/");
+
+        for (int i = 0; i < 8; i++) {
+            String fenRank = fenPieces[i];
+
+            int count = 0;
+            for (int j = 0; count < 8; j++) {
+                char cur = fenRank.charAt(j);
+                if (Character.isDigit(cur)) {
+                    count += Character.getNumericValue(cur);
+                    continue;
+                }
+                pieceColors[i][count] = Character.isUpperCase(cur) ? Color.WHITE : Color.BLACK;
+                pieces[i][count] = PieceType.fromAbbreviation(cur);
+                count++;
+            }
+        }
+
+        BoardData data = BoardData.fromPieceTypes(pieces, pieceColors);
+
+        data.setCastlingAvailabilityFromFenString(split[2]);
+        data.setEnPassantSquare(split[3].equals("-") ? null : new ChessPosition(split[3]));
+
+        // the previous parser also parsed the half move clock; the result is not needed here
+        Integer.parseInt(split[4]);
+
+        return new ChessBoard(data);
+    }
+
+    private static String baselineToFen(ChessBoard board) {
+        BoardData data = board.getData();
+        StringJoiner joiner = new StringJoiner("/");
+        for (int i = data.getPieces().length - 1; i >= 0; i--) {
+            ChessPiece[] rank = data.getPieces()[i];
+            StringBuilder builder = new StringBuilder();
+            int counter = 0;
+
+            for (ChessPiece piece : rank) {
+                if (piece == null) {
+                    counter++;
+                    continue;
+                }
+
+                if (counter != 0) {
+                    builder.append(counter);
+                    counter = 0;
+                }
+
+                char abbr = piece.getType().getAbbreviation();
+                char p = piece.getColor() == Color.WHITE ? Character.toUpperCase(abbr) : Character.toLowerCase(abbr);
+                builder.append(p);
+            }
+
+            if (counter != 0) {
+                builder.append(counter);
+            }
+
+            joiner.add(builder.toString());
+        }
+
+        String pieces = joiner.toString();
+        String activeColor = board.getCurrentTurn() == Color.WHITE ? "w" : "b";
+        String castlingAvailability = data.getCastlingAvailabilityAsFenString();
+        String enPassantTarget = data.getEnPassantSquare() == null ? "-" : data.getEnPassantSquare().getPosition();
+
+        return String.format("%s %s %s %s %d %d", pieces, activeColor, castlingAvailability, enPassantTarget,
+                board.getHalfMoveClock(), board.getFullMoveNumber());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FenBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.util;
+
+import me.infuzion.chess.game.board.ChessBoard;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures move generation throughput. Each invocation visits a fixed number of nodes, so the reported operations per
+ * second multiplied by the node count of the position gives the nodes per second.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=me.infuzion.chess.game.util.PerftBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerftBenchmark {
+    @Param({"startpos", "kiwipete", "position3", "position4", "position5"})
+    public String position;
+
+    @Param({"3"})
+    public int depth;
+
+    private ChessBoard board;
+
+    @Setup
+    public void setup() {
+        switch (position) {
+            case "startpos":
+                board = ChessBoard.fromFen(Perft.STARTING_POSITION);
+                break;
+            case "kiwipete":
+                board = ChessBoard.fromFen(Perft.KIWIPETE);
+                break;
+            case "position3":
+                board = ChessBoard.fromFen(Perft.POSITION_3);
+                break;
+            case "position4":
+                board = ChessBoard.fromFen(Perft.POSITION_4);
+                break;
+            case "position5":
+                board = ChessBoard.fromFen(Perft.POSITION_5);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown position: " + position);
+        }
+    }
+
+    @Benchmark
+    public long perft() {
+        return Perft.perft(board, depth);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PerftBenchmark.class.getSimpleName()).build()).run();
+    }
+}
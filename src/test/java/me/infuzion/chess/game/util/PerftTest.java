@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.game.util;
+
+import me.infuzion.chess.game.board.ChessBoard;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerftTest {
+    private static void assertPerft(String fen, long... expected) {
+        for (int depth = 1; depth <= expected.length; depth++) {
+            assertEquals(expected[depth - 1], Perft.perft(ChessBoard.fromFen(fen), depth), "depth " + depth + " of " + fen);
+        }
+    }
+
+    @Test
+    void startingPosition() {
+        assertPerft(Perft.STARTING_POSITION, 20, 400, 8902, 197281);
+    }
+
+    @Test
+    void kiwipete() {
+        assertPerft(Perft.KIWIPETE, 48, 2039, 97862);
+    }
+
+    @Test
+    void position3() {
+        assertPerft(Perft.POSITION_3, 14, 191, 2812, 43238);
+    }
+
+    @Test
+    void position4() {
+        assertPerft(Perft.POSITION_4, 6, 264, 9467);
+    }
+
+    @Test
+    void position5() {
+        assertPerft(Perft.POSITION_5, 44, 1486, 62379);
+    }
+
+    @Test
+    void divide() {
+        Map<String, Long> divide = Perft.divide(ChessBoard.fromFen(Perft.POSITION_5), 2);
+
+        assertEquals(44, divide.size());
+        assertEquals(1486, divide.values().stream().mapToLong(Long::longValue).sum());
+        assertTrue(divide.containsKey("d7c8q"));
+        assertTrue(divide.containsKey("d7c8n"));
+    }
+
+    @Test
+    void boardIsNotModified() {
+        ChessBoard board = ChessBoard.fromFen(Perft.KIWIPETE);
+        Perft.perft(board, 2);
+
+        assertEquals(Perft.KIWIPETE, board.toFen());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.lobby;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LobbyCursorTest {
+    @Test
+    void roundTrips() {
+        LobbyCursor cursor = new LobbyCursor(1588336215123L, "aB3.x-_");
+        LobbyCursor parsed = LobbyCursor.parse(cursor.toString());
+
+        assertEquals(1588336215123L, parsed.getLastActivityEpochMillis());
+        assertEquals("aB3.x-_", parsed.getId());
+    }
+
+    @Test
+    void rejectsInvalidCursors() {
+        assertThrows(IllegalArgumentException.class, () -> LobbyCursor.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> LobbyCursor.parse("123"));
+        assertThrows(IllegalArgumentException.class, () -> LobbyCursor.parse("123."));
+        assertThrows(IllegalArgumentException.class, () -> LobbyCursor.parse(".id"));
+        assertThrows(IllegalArgumentException.class, () -> LobbyCursor.parse("abc.id"));
+    }
+
+    @Test
+    void precedesOlderGamesAndLowerIdsWithTheSameActivity() {
+        LobbyCursor cursor = new LobbyCursor(1000, "m");
+
+        assertTrue(cursor.precedes(999, "z"));
+        assertTrue(cursor.precedes(1000, "l"));
+        assertFalse(cursor.precedes(1000, "m"));
+        assertFalse(cursor.precedes(1000, "n"));
+        assertFalse(cursor.precedes(1001, "a"));
+    }
+}
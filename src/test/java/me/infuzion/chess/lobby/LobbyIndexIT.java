@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.lobby;
+
+import me.infuzion.chess.clock.TimeControl;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.GameStatus;
+import me.infuzion.chess.web.domain.Variants;
+import me.infuzion.chess.web.game.Visibility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the lobby scripts against the Redis server given by {@code REDIS_URL}; skipped if it is not set.
+ */
+class LobbyIndexIT {
+    private static final String ACTIVE_KEY = "chess::lobby.active";
+    private static final String MOVED_FEN = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+
+    private final List<Identifier> games = new ArrayList<>();
+    private JedisPool pool;
+    private LobbyIndex index;
+
+    @BeforeEach
+    void connect() throws Exception {
+        String redisUrl = System.getenv("REDIS_URL");
+        assumeTrue(redisUrl != null, "REDIS_URL is not set");
+
+        pool = new JedisPool(new URI(redisUrl));
+        index = new LobbyIndex(pool);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        if (pool == null) {
+            return;
+        }
+
+        try (Jedis jedis = pool.getResource()) {
+            for (Identifier game : games) {
+                jedis.del(summaryKey(game));
+                jedis.zrem(ACTIVE_KEY, game.getId());
+            }
+        }
+        pool.close();
+    }
+
+    private static String summaryKey(Identifier game) {
+        return "chess::lobby.game." + game.getId();
+    }
+
+    private Identifier add(GameStatus status, int ply) {
+        Identifier game = new Identifier();
+        games.add(game);
+
+        index.add(new GameSummary(game, Variants.STANDARD_FEN, Visibility.PUBLIC, new Identifier(), null, status,
+                Variants.STANDARD_FEN, TimeControl.DEFAULT, ply, 1000));
+        return game;
+    }
+
+    private Map<String, String> summary(Identifier game) {
+        try (Jedis jedis = pool.getResource()) {
+            return jedis.hgetAll(summaryKey(game));
+        }
+    }
+
+    private Double activity(Identifier game) {
+        try (Jedis jedis = pool.getResource()) {
+            return jedis.zscore(ACTIVE_KEY, game.getId());
+        }
+    }
+
+    @Test
+    void addsAGameOnce() {
+        Identifier game = add(GameStatus.WAITING, 0);
+
+        index.add(new GameSummary(game, Variants.STANDARD_FEN, Visibility.UNLISTED, null, null, GameStatus.IN_PROGRESS_WHITE,
+                MOVED_FEN, TimeControl.DEFAULT, 1, 2000));
+
+        Map<String, String> summary = summary(game);
+        assertEquals("WAITING", summary.get("status"));
+        assertEquals(Variants.STANDARD_FEN, summary.get("initial_fen"));
+        assertEquals("PUBLIC", summary.get("visibility"));
+        assertEquals(1000., activity(game));
+    }
+
+    @Test
+    void startsOnlyWaitingGames() {
+        Identifier waiting = add(GameStatus.WAITING, 0);
+        Identifier black = new Identifier();
+
+        index.start(waiting, new Identifier(), black, 2000);
+        assertEquals("IN_PROGRESS_WHITE", summary(waiting).get("status"));
+        assertEquals(black.getId(), summary(waiting).get("black"));
+        assertEquals(2000., activity(waiting));
+
+        // a late start must not undo the moves that followed it
+        index.move(waiting, 1, MOVED_FEN, GameStatus.IN_PROGRESS_BLACK, 3000);
+        index.start(waiting, new Identifier(), new Identifier(), 4000);
+
+        assertEquals("IN_PROGRESS_BLACK", summary(waiting).get("status"));
+        assertEquals(black.getId(), summary(waiting).get("black"));
+        assertEquals(3000., activity(waiting));
+    }
+
+    @Test
+    void ignoresMovesThatAreNotNewer() {
+        Identifier game = add(GameStatus.IN_PROGRESS_WHITE, 0);
+
+        index.move(game, 2, MOVED_FEN, GameStatus.IN_PROGRESS_WHITE, 3000);
+        index.move(game, 1, Variants.STANDARD_FEN, GameStatus.IN_PROGRESS_BLACK, 4000);
+        index.move(game, 2, Variants.STANDARD_FEN, GameStatus.IN_PROGRESS_BLACK, 5000);
+
+        Map<String, String> summary = summary(game);
+        assertEquals("2", summary.get("ply"));
+        assertEquals(MOVED_FEN, summary.get("fen"));
+        assertEquals("IN_PROGRESS_WHITE", summary.get("status"));
+        assertEquals(3000., activity(game));
+    }
+
+    @Test
+    void ignoresMovesOfGamesNotInTheLobby() {
+        Identifier game = new Identifier();
+        games.add(game);
+
+        index.move(game, 1, MOVED_FEN, GameStatus.IN_PROGRESS_BLACK, 3000);
+
+        assertTrue(summary(game).isEmpty());
+        assertNull(activity(game));
+    }
+
+    @Test
+    void ignoresUpdatesAfterTheEnd() {
+        Identifier game = add(GameStatus.WAITING, 0);
+
+        index.end(game, GameStatus.ENDED_DRAW);
+        assertNull(activity(game));
+
+        index.add(new GameSummary(game, Variants.STANDARD_FEN, Visibility.PUBLIC, null, null, GameStatus.WAITING,
+                Variants.STANDARD_FEN, TimeControl.DEFAULT, 0, 2000));
+        index.start(game, new Identifier(), new Identifier(), 3000);
+        index.move(game, 1, MOVED_FEN, GameStatus.IN_PROGRESS_BLACK, 4000);
+
+        assertEquals("ENDED_DRAW", summary(game).get("status"));
+        assertEquals(Variants.STANDARD_FEN, summary(game).get("fen"));
+        assertNull(activity(game));
+
+        try (Jedis jedis = pool.getResource()) {
+            assertTrue(jedis.ttl(summaryKey(game)) > 0);
+        }
+    }
+
+    @Test
+    void listsTheGamesAfterTheCursor() {
+        Identifier first = add(GameStatus.WAITING, 0);
+        Identifier second = add(GameStatus.WAITING, 0);
+        Identifier ended = add(GameStatus.WAITING, 0);
+        index.end(ended, GameStatus.ENDED_WHITE_WINS);
+
+        // every game has the same activity, so the cursor has to tell them apart by id
+        List<Identifier> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            LobbyPage page = index.getGames(cursor, 1);
+            page.getGames().stream().map(GameSummary::getId).filter(games::contains).forEach(listed::add);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(2, listed.size());
+        assertTrue(listed.containsAll(List.of(first, second)));
+    }
+}
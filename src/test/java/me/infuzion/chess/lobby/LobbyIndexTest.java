@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.lobby;
+
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Tuple;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LobbyIndexTest {
+    // ordered like ZREVRANGEBYSCORE: by activity and then id, both descending
+    private static final List<Tuple> ENTRIES = List.of(
+            new Tuple("e", 3000.), new Tuple("d", 2000.), new Tuple("c", 2000.), new Tuple("b", 2000.), new Tuple("a", 1000.));
+
+    private static List<String> ids(List<Tuple> page) {
+        return page.stream().map(Tuple::getElement).collect(Collectors.toList());
+    }
+
+    @Test
+    void firstPageStartsWithTheMostRecentGame() {
+        assertEquals(List.of("e", "d"), ids(LobbyIndex.selectPage(ENTRIES, null, 2)));
+    }
+
+    @Test
+    void skipsTiesUpToTheCursor() {
+        List<Tuple> fromCursor = ENTRIES.subList(1, ENTRIES.size());
+
+        assertEquals(List.of("c", "b"), ids(LobbyIndex.selectPage(fromCursor, new LobbyCursor(2000, "d"), 2)));
+        assertEquals(List.of("b", "a"), ids(LobbyIndex.selectPage(fromCursor, new LobbyCursor(2000, "c"), 2)));
+        assertEquals(List.of("a"), ids(LobbyIndex.selectPage(fromCursor, new LobbyCursor(2000, "b"), 2)));
+    }
+
+    @Test
+    void pagesThroughTiesSplitAcrossPages() {
+        LobbyCursor cursor = null;
+        StringBuilder listed = new StringBuilder();
+
+        while (true) {
+            List<Tuple> page = LobbyIndex.selectPage(ENTRIES, cursor, 2);
+            page.forEach(entry -> listed.append(entry.getElement()));
+
+            if (page.size() < 2) {
+                break;
+            }
+
+            Tuple last = page.get(page.size() - 1);
+            cursor = LobbyCursor.parse(new LobbyCursor((long) last.getScore(), last.getElement()).toString());
+        }
+
+        assertEquals("edcba", listed.toString());
+    }
+
+    @Test
+    void keepsGamesWithAnIdAfterTheCursorWhenTheyAreOlder() {
+        // the cursor's game moved to a later activity; older games are listed whatever their id
+        assertEquals(List.of("a"), ids(LobbyIndex.selectPage(List.of(new Tuple("a", 1000.)), new LobbyCursor(2000, "0"), 2)));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.lobby;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GameStatus;
+import me.infuzion.chess.web.domain.Variants;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LobbyServiceTest {
+    private static Game listed(String initialFen, String currentFen) {
+        return new Game(new Identifier(), initialFen, currentFen, null, null, GameStatus.IN_PROGRESS_WHITE);
+    }
+
+    @Test
+    void newGameHasNoMoves() {
+        assertEquals(0, LobbyService.plyOf(listed(Variants.STANDARD_FEN, Variants.STANDARD_FEN)));
+    }
+
+    @Test
+    void countsTheMovesFromTheStandardPosition() {
+        Game played = new Game(new Identifier(), Variants.STANDARD_FEN,
+                List.of(new ChessMove("e2", "e4"), new ChessMove("e7", "e5"), new ChessMove("g1", "f3")),
+                null, null, GameStatus.IN_PROGRESS_BLACK);
+
+        assertEquals(3, LobbyService.plyOf(listed(Variants.STANDARD_FEN, played.getCurrentFen())));
+    }
+
+    @Test
+    void countsTheMovesFromACustomPosition() {
+        String initialFen = "4k3/8/8/8/8/8/8/4K2R b K - 0 10";
+        Game played = new Game(new Identifier(), initialFen, List.of(new ChessMove("e8", "d7"), new ChessMove("e1", "f1")),
+                null, null, GameStatus.IN_PROGRESS_BLACK);
+
+        assertEquals(2, LobbyService.plyOf(listed(initialFen, played.getCurrentFen())));
+    }
+
+    @Test
+    void isNeverNegative() {
+        assertEquals(0, LobbyService.plyOf(listed("4k3/8/8/8/8/8/8/4K3 w - - 0 10", "4k3/8/8/8/8/8/8/4K3 w - - 0 1")));
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatchCursorTest {
+    @Test
+    void roundTrips() {
+        MatchCursor cursor = new MatchCursor(Instant.parse("2020-05-01T12:30:15.123456Z"), "aB3.x-_");
+        MatchCursor parsed = MatchCursor.parse(cursor.toString());
+
+        assertEquals(Instant.parse("2020-05-01T12:30:15.123456Z"), parsed.getCreatedAt());
+        assertEquals("aB3.x-_", parsed.getId());
+    }
+
+    @Test
+    void keepsTheDatabasePrecision() {
+        MatchCursor cursor = new MatchCursor(Instant.parse("2020-05-01T12:30:15.123456789Z"), "id");
+
+        assertEquals(Instant.parse("2020-05-01T12:30:15.123456Z"), MatchCursor.parse(cursor.toString()).getCreatedAt());
+    }
+
+    @Test
+    void rejectsInvalidCursors() {
+        assertThrows(IllegalArgumentException.class, () -> MatchCursor.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> MatchCursor.parse("123"));
+        assertThrows(IllegalArgumentException.class, () -> MatchCursor.parse("123."));
+        assertThrows(IllegalArgumentException.class, () -> MatchCursor.parse(".id"));
+        assertThrows(IllegalArgumentException.class, () -> MatchCursor.parse("abc.id"));
+    }
+}
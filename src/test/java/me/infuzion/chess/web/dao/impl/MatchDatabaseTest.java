@@ -0,0 +1,338 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package me.infuzion.chess.web.dao.impl;
+
+import me.infuzion.chess.ai.SearchProfile;
+import me.infuzion.chess.clock.TimeControl;
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the versioned cache of {@link MatchDatabase} against an in-memory stand-in for the statements it makes.
+ */
+class MatchDatabaseTest {
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final Identifier GAME = new Identifier("game");
+
+    private FakeDatabase database;
+    private MatchDatabase matches;
+
+    @BeforeEach
+    void createDatabase() {
+        database = new FakeDatabase();
+        matches = new MatchDatabase(database.dataSource());
+        matches.newMatch(new Game(GAME, START_FEN, new ArrayList<>(), new Identifier("white"), new Identifier("black"),
+                GameStatus.IN_PROGRESS_WHITE));
+    }
+
+    private Game play(Game game, ChessMove move) {
+        assertTrue(game.move(move));
+        game.setStatus(game.getStatus() == GameStatus.IN_PROGRESS_WHITE ? GameStatus.IN_PROGRESS_BLACK : GameStatus.IN_PROGRESS_WHITE);
+        game.setCurrentFen(game.getBoard().toFen());
+        return game;
+    }
+
+    /**
+     * Stores a move the way another node would, without going through this node's cache.
+     */
+    private void moveFromAnotherNode(ChessMove move) {
+        MatchRow row = database.matches.get(GAME.getId());
+        row.moves.add(move);
+        row.version++;
+    }
+
+    @Test
+    void versionHitReturnsACopy() {
+        Game first = matches.getMatch(GAME);
+        play(first, new ChessMove("e2", "e4"));
+
+        Game second = matches.getMatch(GAME);
+        assertEquals(0, second.getBoard().getCurrentPly());
+        assertEquals(START_FEN, second.getCurrentFen());
+        // the version matched, so no moves were loaded
+        assertEquals(List.of(), database.movesLoadedAfterPly);
+    }
+
+    @Test
+    void catchesUpWithOnlyTheNewPlies() {
+        ChessMove e4 = new ChessMove("e2", "e4");
+        matches.updateAndAddMove(play(matches.getMatch(GAME), e4), e4);
+        moveFromAnotherNode(new ChessMove("e7", "e5"));
+
+        Game game = matches.getMatch(GAME);
+
+        assertEquals(List.of(1), database.movesLoadedAfterPly);
+        assertEquals(2, game.getBoard().getCurrentPly());
+        assertEquals(List.of(e4, new ChessMove("e7", "e5")), game.getMoves());
+    }
+
+    @Test
+    void writeOnTopOfAnotherVersionDropsTheCachedGame() {
+        Game game = matches.getMatch(GAME);
+        moveFromAnotherNode(new ChessMove("e2", "e4"));
+
+        // written on top of version 0 while the row is at version 1
+        game.setStatus(GameStatus.ENDED_WHITE_OUT_OF_TIME);
+        matches.updateMatch(game);
+
+        Game read = matches.getMatch(GAME);
+        assertEquals(List.of(0), database.movesLoadedAfterPly);
+        assertEquals(1, read.getBoard().getCurrentPly());
+        assertEquals(GameStatus.ENDED_WHITE_OUT_OF_TIME, read.getStatus());
+    }
+
+    @Test
+    void writeWithUnexpectedPliesDropsTheCachedGame() {
+        Game game = matches.getMatch(GAME);
+        play(game, new ChessMove("e2", "e4"));
+
+        // the version lines up, but the game has a move that the write does not store
+        matches.updateMatch(game);
+
+        Game read = matches.getMatch(GAME);
+        assertEquals(List.of(0), database.movesLoadedAfterPly);
+        assertEquals(0, read.getBoard().getCurrentPly());
+    }
+
+    @Test
+    void fallsBackToAFullLoadWhenCatchingUpFails() {
+        ChessMove e4 = new ChessMove("e2", "e4");
+        matches.updateAndAddMove(play(matches.getMatch(GAME), e4), e4);
+        moveFromAnotherNode(new ChessMove("e7", "e5"));
+        database.failCatchUp = true;
+
+        Game game = matches.getMatch(GAME);
+
+        assertEquals(List.of(1, 0), database.movesLoadedAfterPly);
+        assertEquals(List.of(e4, new ChessMove("e7", "e5")), game.getMoves());
+
+        // the full load is cached again
+        matches.getMatch(GAME);
+        assertEquals(List.of(1, 0), database.movesLoadedAfterPly);
+    }
+
+    private static final class MatchRow {
+        private final String id;
+        private final String initialFen;
+        private final List<ChessMove> moves = new ArrayList<>();
+        private String playerWhite;
+        private String playerBlack;
+        private String status;
+        private int version;
+
+        private MatchRow(String id, String initialFen) {
+            this.id = id;
+            this.initialFen = initialFen;
+        }
+    }
+
+    /**
+     * Answers the statements that {@link MatchDatabase} makes for matches that store their moves as rows, keeping the
+     * matches in memory. Statements that only change the schema are accepted and ignored.
+     */
+    private static final class FakeDatabase {
+        private final Map<String, MatchRow> matches = new HashMap<>();
+        /**
+         * The ply after which moves were loaded, for every query of the moves of a match
+         */
+        private final List<Integer> movesLoadedAfterPly = new ArrayList<>();
+        private boolean failCatchUp;
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+
+        DataSource dataSource() {
+            return proxy(DataSource.class, (self, method, args) -> {
+                if (method.getName().equals("getConnection")) {
+                    return connection();
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private Connection connection() {
+            return proxy(Connection.class, (self, method, args) -> {
+                switch (method.getName()) {
+                    case "createStatement":
+                        return proxy(Statement.class, (statement, statementMethod, statementArgs) ->
+                                statementMethod.getName().equals("execute") ? false : null);
+                    case "prepareStatement":
+                        return preparedStatement((String) args[0]);
+                    case "setAutoCommit":
+                    case "setTransactionIsolation":
+                    case "commit":
+                    case "rollback":
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private PreparedStatement preparedStatement(String sql) {
+            Map<Integer, Object> parameters = new HashMap<>();
+
+            return proxy(PreparedStatement.class, (self, method, args) -> {
+                String name = method.getName();
+
+                if (name.startsWith("set")) {
+                    parameters.put((Integer) args[0], args[1]);
+                    return null;
+                }
+
+                switch (name) {
+                    case "executeQuery":
+                        return resultSet(query(sql, parameters));
+                    case "execute":
+                        query(sql, parameters);
+                        return false;
+                    case "executeBatch":
+                        return new int[0];
+                    case "addBatch":
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(name);
+                }
+            });
+        }
+
+        private List<Map<String, Object>> query(String sql, Map<Integer, Object> parameters) throws SQLException {
+            if (sql.startsWith("SELECT ID, NAME FROM MATCH_STATUS")) {
+                List<Map<String, Object>> statuses = new ArrayList<>();
+                for (GameStatus status : GameStatus.values) {
+                    statuses.add(Map.of("ID", status.ordinal() + 1, "NAME", status.name()));
+                }
+                return statuses;
+            }
+
+            if (sql.startsWith("SELECT to_regclass")) {
+                return List.of(Map.of("1", true));
+            }
+
+            if (sql.startsWith("INSERT INTO matches")) {
+                MatchRow row = new MatchRow((String) parameters.get(1), (String) parameters.get(5));
+                row.playerWhite = (String) parameters.get(2);
+                row.playerBlack = (String) parameters.get(3);
+                row.status = (String) parameters.get(4);
+                matches.put(row.id, row);
+                return List.of(Map.of("1", row.version));
+            }
+
+            if (sql.startsWith("UPDATE matches")) {
+                MatchRow row = matches.get((String) parameters.get(6));
+                if (row == null) {
+                    return List.of();
+                }
+                row.playerWhite = (String) parameters.get(1);
+                row.playerBlack = (String) parameters.get(2);
+                row.status = (String) parameters.get(3);
+                row.version++;
+                return List.of(Map.of("1", row.version));
+            }
+
+            if (sql.startsWith("INSERT INTO moves")) {
+                MatchRow row = matches.get((String) parameters.get(1));
+                row.moves.add(new ChessMove((String) parameters.get(3), (String) parameters.get(4)));
+                return List.of();
+            }
+
+            if (sql.startsWith("SELECT matches.ID")) {
+                MatchRow row = matches.get((String) parameters.get(1));
+                if (row == null) {
+                    return List.of();
+                }
+
+                Map<String, Object> columns = new HashMap<>();
+                columns.put("ID", row.id);
+                columns.put("PLAYER_WHITE", row.playerWhite);
+                columns.put("PLAYER_BLACK", row.playerBlack);
+                columns.put("INITIAL_FEN", row.initialFen);
+                columns.put("TIME_CONTROL", TimeControl.DEFAULT.toString());
+                columns.put("AI_PROFILE", SearchProfile.DEFAULT.toString());
+                columns.put("VERSION", row.version);
+                columns.put("MOVES_PACKED", null);
+                columns.put("STATUS_NAME", row.status);
+                return List.of(columns);
+            }
+
+            if (sql.startsWith("SELECT id, match_id, ply")) {
+                MatchRow row = matches.get((String) parameters.get(1));
+                int afterPly = (Integer) parameters.get(2);
+                movesLoadedAfterPly.add(afterPly);
+
+                if (failCatchUp && afterPly > 0) {
+                    throw new SQLException("connection reset");
+                }
+
+                List<Map<String, Object>> moves = new ArrayList<>();
+                for (int ply = afterPly + 1; ply <= row.moves.size(); ply++) {
+                    ChessMove move = row.moves.get(ply - 1);
+                    Map<String, Object> columns = new HashMap<>();
+                    columns.put("FROM_SQUARE", move.getSource().getPosition());
+                    columns.put("TO_SQUARE", move.getEnd().getPosition());
+                    columns.put("PROMOTION", null);
+                    moves.add(columns);
+                }
+                return moves;
+            }
+
+            // statements that only change the schema
+            return List.of();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static ResultSet resultSet(List<Map<String, Object>> rows) {
+            Iterator<Map<String, Object>> iterator = rows.iterator();
+            Map<String, Object>[] current = new Map[1];
+
+            return proxy(ResultSet.class, (self, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        current[0] = iterator.hasNext() ? iterator.next() : null;
+                        return current[0] != null;
+                    case "close":
+                        return null;
+                    case "getString":
+                    case "getInt":
+                    case "getBytes":
+                    case "getBoolean":
+                        Object column = args[0] instanceof Integer ? args[0].toString() : ((String) args[0]).toUpperCase();
+                        return current[0].get(column);
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+}
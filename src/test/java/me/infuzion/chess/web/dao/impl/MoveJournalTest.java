@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveJournalTest {
+    private Path directory;
+    private Path path;
+
+    static MatchWrite write(String gameId, int ply, ChessMove move) {
+        return new MatchWrite(new Identifier(gameId), new Identifier("white"), null, GameStatus.IN_PROGRESS_BLACK,
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", ply, move);
+    }
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        path = directory.resolve("moves.journal");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private Path segment(long segment) {
+        return directory.resolve("moves.journal." + segment);
+    }
+
+    @Test
+    void readsBackAppendedWrites() throws IOException {
+        try (MoveJournal journal = new MoveJournal(path)) {
+            journal.append(write("a", 1, new ChessMove("e2", "e4")));
+            journal.append(write("b", 3, null));
+        }
+
+        try (MoveJournal journal = new MoveJournal(path)) {
+            List<MatchWrite> writes = journal.readAll();
+
+            assertEquals(2, writes.size());
+            assertEquals(new Identifier("a"), writes.get(0).getGameId());
+            assertEquals(new ChessMove("e2", "e4"), writes.get(0).getMove());
+            assertEquals(1, writes.get(0).getPly());
+            assertEquals(new Identifier("white"), writes.get(0).getPlayerWhite());
+            assertNull(writes.get(0).getPlayerBlack());
+            assertEquals(GameStatus.IN_PROGRESS_BLACK, writes.get(0).getStatus());
+            assertNull(writes.get(1).getMove());
+        }
+    }
+
+    @Test
+    void discardsAPartlyWrittenRecord() throws IOException {
+        try (MoveJournal journal = new MoveJournal(path)) {
+            journal.append(write("a", 1, new ChessMove("e2", "e4")));
+            journal.append(write("a", 2, new ChessMove("e7", "e5")));
+        }
+
+        long size = Files.size(segment(0));
+        try (FileChannel channel = FileChannel.open(segment(0), StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (MoveJournal journal = new MoveJournal(path)) {
+            List<MatchWrite> writes = journal.readAll();
+            assertEquals(1, writes.size());
+            assertEquals(1, writes.get(0).getPly());
+        }
+    }
+
+    @Test
+    void readsSegmentsInOrder() throws IOException {
+        try (MoveJournal journal = new MoveJournal(path)) {
+            journal.append(write("a", 1, new ChessMove("e2", "e4")));
+            journal.rotate(false);
+            journal.append(write("a", 2, new ChessMove("e7", "e5")));
+            assertEquals(1, journal.getSegment());
+            assertEquals(1, journal.getSegmentRecords());
+        }
+
+        try (MoveJournal journal = new MoveJournal(path)) {
+            assertEquals(2, journal.getSegment());
+
+            List<MatchWrite> writes = journal.readAll();
+            assertEquals(2, writes.size());
+            assertEquals(1, writes.get(0).getPly());
+            assertEquals(2, writes.get(1).getPly());
+        }
+    }
+
+    @Test
+    void forcesAfterARotation() throws IOException {
+        try (MoveJournal journal = new MoveJournal(path)) {
+            journal.append(write("a", 1, new ChessMove("e2", "e4")));
+            journal.rotate(true);
+            journal.force();
+            journal.append(write("a", 2, new ChessMove("e7", "e5")));
+            journal.force();
+
+            assertEquals(2, journal.getAppended());
+            assertEquals(1, journal.getSegmentRecords());
+        }
+
+        try (MoveJournal journal = new MoveJournal(path)) {
+            assertEquals(List.of(1, 2), journal.readAll().stream().map(MatchWrite::getPly).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void deletesOnlyOlderSegments() throws IOException {
+        try (MoveJournal journal = new MoveJournal(path)) {
+            journal.append(write("a", 1, new ChessMove("e2", "e4")));
+            journal.rotate(false);
+            journal.append(write("a", 2, new ChessMove("e7", "e5")));
+            journal.rotate(false);
+
+            journal.deleteBefore(1);
+
+            assertFalse(Files.exists(segment(0)));
+            assertTrue(Files.exists(segment(1)));
+            assertTrue(Files.exists(segment(2)));
+        }
+
+        try (MoveJournal journal = new MoveJournal(path)) {
+            assertEquals(List.of(2), journal.readAll().stream().map(MatchWrite::getPly).collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time taken to play a move in a stored game, as {@link me.infuzion.chess.web.domain.service.GameService}
+ * does: the game is read, the move is played on its board and the game is written with the move. The time should not
+ * grow with the length of the game. Each iteration plays {@link #MOVES_PER_ITERATION} moves in a new game that already
+ * has {@link #plies} moves, so the reported time is for that many moves.
+ * <p>
+ * Needs a PostgreSQL database; run with {@code JDBC_DATABASE_URL=... mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=me.infuzion.chess.web.dao.impl.MoveLatencyBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = MoveLatencyBenchmark.MOVES_PER_ITERATION)
+@Measurement(iterations = 20, batchSize = MoveLatencyBenchmark.MOVES_PER_ITERATION)
+@Fork(1)
+public class MoveLatencyBenchmark {
+    static final int MOVES_PER_ITERATION = 20;
+
+    private static final String STARTING_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    /**
+     * Both knights move out and back, which can be repeated indefinitely.
+     */
+    private static final ChessMove[] KNIGHT_SHUFFLE = {
+            new ChessMove("g1", "f3"), new ChessMove("g8", "f6"), new ChessMove("f3", "g1"), new ChessMove("f6", "g8")
+    };
+
+    @Param({"0", "100", "400"})
+    public int plies;
+
+    private HikariDataSource source;
+    private MatchDatabase database;
+    private Identifier gameId;
+
+    @Setup(Level.Trial)
+    public void connect() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(System.getenv("JDBC_DATABASE_URL"));
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+
+        source = new HikariDataSource(config);
+        // creates the users table that matches refer to
+        new UserDatabase(source);
+        database = new MatchDatabase(source);
+    }
+
+    @Setup(Level.Iteration)
+    public void createGame() {
+        gameId = new Identifier();
+        Game game = database.newMatch(new Game(gameId, STARTING_POSITION, Collections.emptyList(), null, null,
+                GameStatus.IN_PROGRESS_WHITE));
+
+        for (int i = 0; i < plies; i++) {
+            ChessMove move = KNIGHT_SHUFFLE[i % KNIGHT_SHUFFLE.length];
+            game.getBoard().move(move);
+            game.setCurrentFen(game.getBoard().toFen());
+            game = database.updateAndAddMove(game, move);
+        }
+    }
+
+    @Benchmark
+    public Game move() {
+        Game game = database.getMatch(gameId);
+        ChessMove move = KNIGHT_SHUFFLE[game.getBoard().getCurrentPly() % KNIGHT_SHUFFLE.length];
+
+        game.getBoard().move(move);
+        game.setCurrentFen(game.getBoard().toFen());
+
+        return database.updateAndAddMove(game, move);
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() {
+        source.close();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MoveLatencyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.board.ChessPosition;
+import me.infuzion.chess.game.piece.PieceType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedMovesTest {
+    private static final List<ChessMove> MOVES = List.of(
+            new ChessMove("e2", "e4"),
+            new ChessMove("h8", "a1"),
+            new ChessMove(ChessPosition.of("b7"), ChessPosition.of("a8"), PieceType.QUEEN),
+            new ChessMove(ChessPosition.of("g2"), ChessPosition.of("h1"), PieceType.KNIGHT)
+    );
+
+    @Test
+    void roundTrips() {
+        byte[] bytes = PackedMoves.encode(MOVES);
+
+        assertEquals(MOVES.size() * PackedMoves.BYTES_PER_MOVE, bytes.length);
+        assertEquals(MOVES, PackedMoves.decode(bytes));
+        assertEquals(Collections.emptyList(), PackedMoves.decode(new byte[0]));
+    }
+
+    @Test
+    void appendsByConcatenation() {
+        byte[] first = PackedMoves.encode(MOVES.subList(0, 2));
+        byte[] second = PackedMoves.encode(MOVES.get(2));
+
+        byte[] joined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, joined, 0, first.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+
+        assertEquals(MOVES.subList(0, 3), PackedMoves.decode(joined));
+    }
+
+    @Test
+    void skipsMoves() {
+        byte[] bytes = PackedMoves.encode(MOVES);
+
+        assertEquals(MOVES.subList(3, 4), PackedMoves.decode(bytes, 3));
+        assertEquals(Collections.emptyList(), PackedMoves.decode(bytes, 4));
+        assertEquals(Collections.emptyList(), PackedMoves.decode(bytes, 10));
+    }
+
+    @Test
+    void rejectsTruncatedLists() {
+        assertThrows(IllegalArgumentException.class, () -> PackedMoves.decode(new byte[3]));
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2021 Srikavin Ramkumar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package me.infuzion.chess.web.dao.impl;
+
+import me.infuzion.chess.game.board.ChessMove;
+import me.infuzion.chess.game.util.Identifier;
+import me.infuzion.chess.web.dao.MatchDao;
+import me.infuzion.chess.web.domain.Game;
+import me.infuzion.chess.web.domain.GamePage;
+import me.infuzion.chess.web.domain.GameStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindMatchDaoTest {
+    private static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private Path directory;
+    private Path path;
+
+    private static Game newGame(String id) {
+        return new Game(new Identifier(id), START_FEN, Collections.emptyList(), new Identifier("white"),
+                new Identifier("black"), GameStatus.IN_PROGRESS_WHITE);
+    }
+
+    private static Game play(Game game, ChessMove move) {
+        assertTrue(game.getBoard().move(move));
+        game.setStatus(game.getStatus() == GameStatus.IN_PROGRESS_WHITE ? GameStatus.IN_PROGRESS_BLACK : GameStatus.IN_PROGRESS_WHITE);
+        game.setCurrentFen(game.getBoard().toFen());
+        return game;
+    }
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("write-behind");
+        path = directory.resolve("moves.journal");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * @return The total size of the journal segments
+     */
+    private long journalSize() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            long size = 0;
+            for (Path file : files.collect(Collectors.toList())) {
+                if (file.getFileName().toString().matches("moves\\.journal\\.\\d+")) {
+                    try {
+                        size += Files.size(file);
+                    } catch (NoSuchFileException e) {
+                        // deleted by the writer since it was listed
+                    }
+                }
+            }
+            return size;
+        }
+    }
+
+    private static void awaitFlush(WriteBehindMatchDao dao) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dao.getPendingWrites() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void servesUnflushedWritesFromMemory() throws IOException {
+        FakeDatabase database = new FakeDatabase();
+        CountDownLatch release = new CountDownLatch(1);
+        database.beforeWrite = () -> release.await(5, TimeUnit.SECONDS);
+
+        try (WriteBehindMatchDao dao = new WriteBehindMatchDao(database, database, path, 10, 1)) {
+            Game game = dao.newMatch(newGame("game"));
+            dao.updateAndAddMove(play(game, new ChessMove("e2", "e4")), new ChessMove("e2", "e4"));
+
+            Game read = dao.getMatch(new Identifier("game"));
+            assertEquals(GameStatus.IN_PROGRESS_BLACK, read.getStatus());
+            assertEquals(1, read.getBoard().getCurrentPly());
+            assertTrue(dao.getPendingWrites() > 0);
+
+            release.countDown();
+        }
+
+        assertEquals(List.of(new ChessMove("e2", "e4")), database.moves.get(new Identifier("game")));
+    }
+
+    @Test
+    void flushesInBatches() throws Exception {
+        FakeDatabase database = new FakeDatabase();
+
+        try (WriteBehindMatchDao dao = new WriteBehindMatchDao(database, database, path, 50, 1)) {
+            Game game = dao.newMatch(newGame("game"));
+            ChessMove[] moves = {new ChessMove("e2", "e4"), new ChessMove("e7", "e5"), new ChessMove("g1", "f3")};
+            for (ChessMove move : moves) {
+                game = dao.updateAndAddMove(play(game, move), move);
+            }
+
+            awaitFlush(dao);
+
+            assertEquals(0, dao.getPendingWrites());
+            assertEquals(List.of(moves), database.moves.get(new Identifier("game")));
+            assertTrue(database.batches.size() < moves.length, "writes were not batched");
+            // applied segments are deleted once the writer catches up
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (journalSize() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, journalSize());
+        }
+    }
+
+    @Test
+    void acknowledgesConcurrentWriters() throws Exception {
+        FakeDatabase database = new FakeDatabase();
+        ChessMove[] moves = {new ChessMove("g1", "f3"), new ChessMove("g8", "f6"), new ChessMove("f3", "g1"),
+                new ChessMove("f6", "g8")};
+        int games = 8;
+        int movesPerGame = 20;
+
+        try (WriteBehindMatchDao dao = new WriteBehindMatchDao(database, database, path, 10, 1)) {
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+            for (int i = 0; i < games; i++) {
+                Game game = dao.newMatch(newGame("game" + i));
+                Thread thread = new Thread(() -> {
+                    try {
+                        Game current = game;
+                        for (int ply = 0; ply < movesPerGame; ply++) {
+                            ChessMove move = moves[ply % moves.length];
+                            current = dao.updateAndAddMove(play(current, move), move);
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(List.of(), failures);
+            awaitFlush(dao);
+
+            for (int i = 0; i < games; i++) {
+                assertEquals(movesPerGame, database.moves.get(new Identifier("game" + i)).size());
+            }
+        }
+    }
+
+    @Test
+    void deadLettersWritesThatKeepFailing() throws Exception {
+        FakeDatabase database = new FakeDatabase();
+        database.beforeBatch = writes -> {
+            if (writes.stream().anyMatch(write -> write.getGameId().equals(new Identifier("poison")))) {
+                throw new IllegalArgumentException("constraint violation");
+            }
+        };
+
+        try (WriteBehindMatchDao dao = new WriteBehindMatchDao(database, database, path, 10, 1)) {
+            Game poison = dao.newMatch(newGame("poison"));
+            Game game = dao.newMatch(newGame("game"));
+            dao.updateAndAddMove(play(poison, new ChessMove("e2", "e4")), new ChessMove("e2", "e4"));
+            dao.updateAndAddMove(play(game, new ChessMove("d2", "d4")), new ChessMove("d2", "d4"));
+
+            awaitFlush(dao);
+
+            assertEquals(0, dao.getPendingWrites());
+            assertEquals(List.of(new ChessMove("d2", "d4")), database.moves.get(new Identifier("game")));
+            assertEquals(1, dao.getDeadLetterCount());
+            assertEquals(new Identifier("poison"), dao.getDeadLetters().get(0).getGameId());
+        }
+
+        List<MatchWrite> saved = MoveJournal.read(directory.resolve("moves.journal.dead"));
+        assertEquals(1, saved.size());
+        assertEquals(new ChessMove("e2", "e4"), saved.get(0).getMove());
+    }
+
+    @Test
+    void deadLettersTheLaterWritesOfAFailedMatch() throws Exception {
+        FakeDatabase database = new FakeDatabase();
+        CountDownLatch release = new CountDownLatch(1);
+        database.beforeWrite = () -> release.await(5, TimeUnit.SECONDS);
+        database.beforeBatch = writes -> {
+            if (writes.stream().anyMatch(write -> write.getGameId().equals(new Identifier("game")) && write.getPly() == 2)) {
+                throw new IllegalArgumentException("constraint violation");
+            }
+        };
+
+        try (WriteBehindMatchDao dao = new WriteBehindMatchDao(database, database, path, 10, 1)) {
+            Game game = dao.newMatch(newGame("game"));
+            Game other = dao.newMatch(newGame("other"));
+            ChessMove[] moves = {new ChessMove("e2", "e4"), new ChessMove("e7", "e5"), new ChessMove("g1", "f3")};
+            for (ChessMove move : moves) {
+                game = dao.updateAndAddMove(play(game, move), move);
+            }
+            dao.updateAndAddMove(play(other, new ChessMove("d2", "d4")), new ChessMove("d2", "d4"));
+
+            release.countDown();
+            awaitFlush(dao);
+
+            // the move after the failed one is not applied, so the stored moves have no gap
+            assertEquals(List.of(moves[0]), database.moves.get(new Identifier("game")));
+            assertEquals(List.of(new ChessMove("d2", "d4")), database.moves.get(new Identifier("other")));
+            assertEquals(List.of(2, 3), dao.getDeadLetters().stream().map(MatchWrite::getPly).collect(Collectors.toList()));
+
+            ChessMove next = new ChessMove("b8", "c6");
+            Game failed = play(game, next);
+            assertThrows(IllegalStateException.class, () -> dao.updateAndAddMove(failed, next));
+        }
+
+        assertEquals(2, MoveJournal.read(directory.resolve("moves.journal.dead")).size());
+    }
+
+    @Test
+    void retriesTransientFailuresIndefinitely() throws Exception {
+        FakeDatabase database = new FakeDatabase();
+        AtomicInteger failures = new AtomicInteger();
+        database.beforeWrite = () -> {
+            if (failures.getAndIncrement() < 2 * WriteBehindMatchDao.MAX_ATTEMPTS) {
+                throw new RuntimeException(new SQLTransientConnectionException("connection is not available"));
+            }
+        };
+
+        try (WriteBehindMatchDao dao = new WriteBehindMatchDao(database, database, path, 10, 1)) {
+            Game game = dao.newMatch(newGame("game"));
+            dao.updateAndAddMove(play(game, new ChessMove("e2", "e4")), new ChessMove("e2", "e4"));
+
+            awaitFlush(dao);
+
+            assertEquals(0, dao.getPendingWrites());
+            assertEquals(0, dao.getDeadLetterCount());
+            assertEquals(List.of(new ChessMove("e2", "e4")), database.moves.get(new Identifier("game")));
+        }
+    }
+
+    /**
+     * Journals the given moves with a database that is down, so that they are left for the next start.
+     */
+    private void crashWith(Map<String, ChessMove> moves) throws IOException {
+        FakeDatabase unavailable = new FakeDatabase();
+        unavailable.beforeWrite = () -> {
+            throw new IllegalStateException("database is down");
+        };
+
+        WriteBehindMatchDao crashed = new WriteBehindMatchDao(unavailable, unavailable, path, 10, WriteBehindMatchDao.DEFAULT_RETRY_DELAY_MILLIS);
+        for (Map.Entry<String, ChessMove> move : moves.entrySet()) {
+            Game game = crashed.newMatch(newGame(move.getKey()));
+            crashed.updateAndAddMove(play(game, move.getValue()), move.getValue());
+        }
+        crashed.close();
+        assertTrue(unavailable.moves.isEmpty());
+    }
+
+    @Test
+    void recoversJournaledWritesAfterACrash() throws Exception {
+        crashWith(Map.of("game", new ChessMove("e2", "e4")));
+
+        FakeDatabase database = new FakeDatabase();
+        try (WriteBehindMatchDao recovered = new WriteBehindMatchDao(database, database, path, 10, 1)) {
+            // reads wait for the recovered writes of their match
+            recovered.getMatch(new Identifier("game"));
+            assertEquals(List.of(new ChessMove("e2", "e4")), database.moves.get(new Identifier("game")));
+            assertEquals(GameStatus.IN_PROGRESS_BLACK, database.statuses.get(new Identifier("game")));
+
+            awaitFlush(recovered);
+            assertEquals(0, recovered.getPendingWrites());
+        }
+    }
+
+    @Test
+    void startsWithAFailingWriteInTheJournal() throws Exception {
+        crashWith(Map.of("poison", new ChessMove("e2", "e4"), "game", new ChessMove("d2", "d4")));
+
+        FakeDatabase database = new FakeDatabase();
+        AtomicInteger failures = new AtomicInteger();
+        database.beforeWrite = () -> {
+            // the database is still starting up
+            if (failures.getAndIncrement() < 3) {
+                throw new RuntimeException(new SQLTransientConnectionException("connection is not available"));
+            }
+        };
+        database.beforeBatch = writes -> {
+            if (writes.stream().anyMatch(write -> write.getGameId().equals(new Identifier("poison")))) {
+                throw new IllegalArgumentException("constraint violation");
+            }
+        };
+
+        try (WriteBehindMatchDao recovered = new WriteBehindMatchDao(database, database, path, 10, 1)) {
+            awaitFlush(recovered);
+
+            assertEquals(0, recovered.getPendingWrites());
+            assertEquals(List.of(new ChessMove("d2", "d4")), database.moves.get(new Identifier("game")));
+            assertEquals(1, recovered.getDeadLetterCount());
+            assertEquals(new Identifier("poison"), recovered.getDeadLetters().get(0).getGameId());
+        }
+        assertEquals(0, journalSize());
+    }
+
+    @FunctionalInterface
+    interface WriteHook {
+        void run() throws Exception;
+    }
+
+    /**
+     * Stores moves and statuses, and reads matches back only by their id.
+     */
+    private static class FakeDatabase implements MatchDao, MatchBatchWriter {
+        final Map<Identifier, List<ChessMove>> moves = new ConcurrentHashMap<>();
+        final Map<Identifier, GameStatus> statuses = new ConcurrentHashMap<>();
+        final List<List<MatchWrite>> batches = new CopyOnWriteArrayList<>();
+        final Map<Identifier, Game> matches = new ConcurrentHashMap<>();
+        volatile WriteHook beforeWrite = () -> {
+        };
+        volatile Consumer<List<MatchWrite>> beforeBatch = writes -> {
+        };
+
+        @Override
+        public void writeBatch(List<MatchWrite> writes) {
+            try {
+                beforeWrite.run();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            beforeBatch.accept(writes);
+
+            batches.add(new ArrayList<>(writes));
+            for (MatchWrite write : writes) {
+                if (write.getMove() != null) {
+                    List<ChessMove> gameMoves = moves.computeIfAbsent(write.getGameId(), id -> new ArrayList<>());
+                    if (gameMoves.size() < write.getPly()) {
+                        gameMoves.add(write.getMove());
+                    }
+                }
+                statuses.put(write.getGameId(), write.getStatus());
+            }
+        }
+
+        @Override
+        public Game getMatch(Identifier identifier) {
+            Game game = matches.get(identifier);
+            return game == null ? null : new Game(game);
+        }
+
+        @Override
+        public GamePage getActiveMatches(String after, int limit) {
+            return new GamePage(new ArrayList<>(matches.values()), null);
+        }
+
+        @Override
+        public GamePage getRecentMatchesForUser(Identifier user, String after, int limit) {
+            return new GamePage(new ArrayList<>(matches.values()), null);
+        }
+
+        @Override
+        public Game updateAndAddMove(Game game, ChessMove move) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Game updateMatch(Game game) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Game newMatch(Game game) {
+            matches.put(game.getId(), new Game(game));
+            return new Game(game);
+        }
+    }
+}